@@ -2,10 +2,16 @@ package com.vindex;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class VindexApplication {
     public static void main(String[] args) {
-        SpringApplication.run(VindexApplication.class, args);
+        SpringApplication application = new SpringApplication(VindexApplication.class);
+        // Records startup steps so StartupTimelineReporter can print where the boot time went
+        application.setApplicationStartup(new BufferingApplicationStartup(4096));
+        application.run(args);
     }
 }
@@ -0,0 +1,352 @@
+package com.vindex.cache;
+
+import com.vindex.dto.CellarFacetsResponse;
+import com.vindex.dto.WineResponse;
+import com.vindex.replica.ReplicaContext;
+import com.vindex.stream.WineChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Each user's cellar as one bitmap per filter facet value (type, year, grape, winery,
+ * location) over dense per-user wine ordinals, so the counts behind the cellar filters and the
+ * ids matching them come from a few bitmap intersections instead of a {@code GROUP BY} per
+ * click. An index is built from the listing on the first query, patched in place by this
+ * node's wine change events (other nodes drop their copy), and dropped once it has not been
+ * queried for {@code facet-index.idle-ms}.
+ */
+@Component
+public class CellarFacetIndex {
+
+    public static final String NAME = "cellar-facets";
+
+    private static final int STRIPES = 64;
+
+    public enum Facet {
+        TYPE("type"), YEAR("year"), GRAPE("grape"), WINERY("winery"), LOCATION("location");
+
+        private final String key;
+
+        Facet(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Name of the facet in requests and responses.
+         */
+        public String key() {
+            return key;
+        }
+
+        private String valueOf(WineResponse wine) {
+            String value = switch (this) {
+                case TYPE -> wine.getType();
+                case YEAR -> wine.getVintage();
+                case GRAPE -> wine.getGrapeVariety();
+                case WINERY -> wine.getWinery();
+                case LOCATION -> wine.getLocation();
+            };
+            return value == null ? "" : value;
+        }
+    }
+
+    private static final Facet[] FACETS = Facet.values();
+
+    private final SharedCacheTier sharedCacheTier;
+    private final int maxUsers;
+    private final long idleNanos;
+    private final long maxAgeNanos;
+    private final Map<Long, UserIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLongArray changes = new AtomicLongArray(STRIPES);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public CellarFacetIndex(SharedCacheTier sharedCacheTier,
+                            MeterRegistry meterRegistry,
+                            @Value("${facet-index.max-users:10000}") int maxUsers,
+                            @Value("${facet-index.idle-ms:600000}") long idleMs,
+                            @Value("${facet-index.max-age-ms:3600000}") long maxAgeMs) {
+        this.sharedCacheTier = sharedCacheTier;
+        this.maxUsers = maxUsers;
+        this.idleNanos = idleMs * 1_000_000L;
+        this.maxAgeNanos = maxAgeMs * 1_000_000L;
+        this.hits = meterRegistry.counter("cellar.facets.gets", "result", "hit");
+        this.misses = meterRegistry.counter("cellar.facets.gets", "result", "miss");
+        this.evictions = meterRegistry.counter("cellar.facets.evictions");
+        meterRegistry.gauge("cellar.facets.users", this, index -> index.size());
+        sharedCacheTier.register(NAME, key -> evict(Long.valueOf(key)));
+    }
+
+    /**
+     * @param filters selected values per facet; values within a facet are alternatives
+     * @param loader  the user's cellar listing; only called when there is no current index
+     */
+    public CellarFacetsResponse query(Long userId, Map<Facet, Set<String>> filters,
+                                      Supplier<List<WineResponse>> loader) {
+        UserIndex index = lookup(userId);
+        if (index != null) {
+            hits.increment();
+            return index.query(filters);
+        }
+        misses.increment();
+
+        long stamp = changes.get(stripe(userId));
+        // Patched for as long as it is kept, so it must not start out behind the primary
+        index = new UserIndex(ReplicaContext.callOnPrimary(loader));
+        store(userId, index, stamp);
+        return index.query(filters);
+    }
+
+    /**
+     * Quantity changes leave every facet as it was and are ignored.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onWineChange(WineChangeEvent event) {
+        if (event.getType() == WineChangeEvent.Type.QUANTITY) {
+            return;
+        }
+        Long userId = event.getUserId();
+        changes.incrementAndGet(stripe(userId));
+        UserIndex index;
+        synchronized (indexes) {
+            index = indexes.get(userId);
+        }
+        if (index != null) {
+            if (event.getType() == WineChangeEvent.Type.DELETED) {
+                index.remove(event.getWineId());
+            } else if (event.getPayload() instanceof WineResponse wine) {
+                index.put(wine);
+            } else {
+                evict(userId);
+            }
+        }
+        sharedCacheTier.invalidateRemote(NAME, userId.toString());
+    }
+
+    /**
+     * For writers that change faceted fields without a {@link WineChangeEvent}; call after commit.
+     */
+    public void invalidate(Long userId) {
+        sharedCacheTier.invalidate(NAME, userId.toString());
+    }
+
+    @Scheduled(fixedDelayString = "${facet-index.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        synchronized (indexes) {
+            Iterator<UserIndex> iterator = indexes.values().iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next().lastQueried > idleNanos) {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private UserIndex lookup(Long userId) {
+        long now = System.nanoTime();
+        synchronized (indexes) {
+            UserIndex index = indexes.get(userId);
+            if (index == null) {
+                return null;
+            }
+            // Safety net for changes that reached neither the events nor an invalidation
+            if (now - index.createdAt > maxAgeNanos) {
+                indexes.remove(userId);
+                return null;
+            }
+            index.lastQueried = now;
+            return index;
+        }
+    }
+
+    private void store(Long userId, UserIndex index, long stamp) {
+        synchronized (indexes) {
+            // A change that committed while the listing was loading may be missing from it
+            if (changes.get(stripe(userId)) != stamp) {
+                return;
+            }
+            indexes.put(userId, index);
+            Iterator<UserIndex> eldest = indexes.values().iterator();
+            while (indexes.size() > maxUsers && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void evict(Long userId) {
+        changes.incrementAndGet(stripe(userId));
+        synchronized (indexes) {
+            indexes.remove(userId);
+        }
+    }
+
+    private int size() {
+        synchronized (indexes) {
+            return indexes.size();
+        }
+    }
+
+    private static int stripe(Long userId) {
+        return (int) Math.floorMod(userId, (long) STRIPES);
+    }
+
+    /**
+     * Freed ordinals are reused lowest first, so the bitmaps stay as short as the cellar.
+     * Change events may arrive out of commit order: older versions of a wine are ignored, and
+     * deleted ids are remembered so a late update cannot bring a wine back.
+     */
+    private static final class UserIndex {
+        private final long createdAt = System.nanoTime();
+        private volatile long lastQueried = createdAt;
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private final Set<Long> deleted = new HashSet<>();
+        private final BitSet live = new BitSet();
+        private final Map<Facet, Map<String, BitSet>> bitmaps = new EnumMap<>(Facet.class);
+        private long[] ids;
+        private long[] versions;
+        private String[][] values;
+
+        private UserIndex(List<WineResponse> wines) {
+            int capacity = Math.max(16, wines.size());
+            ids = new long[capacity];
+            versions = new long[capacity];
+            values = new String[capacity][];
+            for (Facet facet : FACETS) {
+                bitmaps.put(facet, new HashMap<>());
+            }
+            wines.forEach(this::put);
+        }
+
+        private synchronized void put(WineResponse wine) {
+            Long id = wine.getId();
+            if (deleted.contains(id)) {
+                return;
+            }
+            Integer ordinal = ordinals.get(id);
+            if (ordinal != null) {
+                if (wine.getVersion() <= versions[ordinal]) {
+                    return;
+                }
+                unset(ordinal);
+            } else {
+                ordinal = live.nextClearBit(0);
+                ensureCapacity(ordinal + 1);
+                ordinals.put(id, ordinal);
+                ids[ordinal] = id;
+                live.set(ordinal);
+            }
+            versions[ordinal] = wine.getVersion();
+            String[] row = new String[FACETS.length];
+            for (Facet facet : FACETS) {
+                row[facet.ordinal()] = facet.valueOf(wine);
+                bitmaps.get(facet).computeIfAbsent(row[facet.ordinal()], value -> new BitSet()).set(ordinal);
+            }
+            values[ordinal] = row;
+        }
+
+        private synchronized void remove(Long id) {
+            deleted.add(id);
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            unset(ordinal);
+            live.clear(ordinal);
+            values[ordinal] = null;
+        }
+
+        private synchronized CellarFacetsResponse query(Map<Facet, Set<String>> filters) {
+            BitSet[] selected = new BitSet[FACETS.length];
+            for (Facet facet : FACETS) {
+                Set<String> wanted = filters.get(facet);
+                if (wanted == null || wanted.isEmpty()) {
+                    continue;
+                }
+                BitSet union = new BitSet();
+                for (String value : wanted) {
+                    BitSet bits = bitmaps.get(facet).get(value);
+                    if (bits != null) {
+                        union.or(bits);
+                    }
+                }
+                selected[facet.ordinal()] = union;
+            }
+
+            BitSet matching = matchingAllBut(selected, null);
+            Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+            for (Facet facet : FACETS) {
+                // A facet's own selection does not narrow its counts, so the other values stay pickable
+                BitSet within = selected[facet.ordinal()] == null ? matching : matchingAllBut(selected, facet);
+                Map<String, Integer> byValue = new TreeMap<>();
+                for (Map.Entry<String, BitSet> entry : bitmaps.get(facet).entrySet()) {
+                    BitSet bits = (BitSet) entry.getValue().clone();
+                    bits.and(within);
+                    byValue.put(entry.getKey(), bits.cardinality());
+                }
+                counts.put(facet.key(), byValue);
+            }
+
+            List<Long> matchingIds = new ArrayList<>(matching.cardinality());
+            for (int ordinal = matching.nextSetBit(0); ordinal >= 0; ordinal = matching.nextSetBit(ordinal + 1)) {
+                matchingIds.add(ids[ordinal]);
+            }
+            return new CellarFacetsResponse(ordinals.size(), matchingIds.size(), counts, matchingIds);
+        }
+
+        private BitSet matchingAllBut(BitSet[] selected, Facet skipped) {
+            BitSet result = (BitSet) live.clone();
+            for (Facet facet : FACETS) {
+                if (facet != skipped && selected[facet.ordinal()] != null) {
+                    result.and(selected[facet.ordinal()]);
+                }
+            }
+            return result;
+        }
+
+        private void unset(int ordinal) {
+            for (Facet facet : FACETS) {
+                Map<String, BitSet> byValue = bitmaps.get(facet);
+                String value = values[ordinal][facet.ordinal()];
+                BitSet bits = byValue.get(value);
+                bits.clear(ordinal);
+                if (bits.isEmpty()) {
+                    byValue.remove(value);
+                }
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= ids.length) {
+                return;
+            }
+            int grown = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, grown);
+            versions = Arrays.copyOf(versions, grown);
+            values = Arrays.copyOf(values, grown);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.vindex.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vindex.replica.ReplicaContext;
+import com.vindex.stream.WineChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Each user's cellar listing as ready-to-send JSON bytes, plus a gzip variant for larger
+ * cellars, so a repeated {@code GET /wines} skips the query, the mapping and Jackson. Entries
+ * are held in an LRU bounded by their encoded size rather than their count. Any wine change
+ * drops the user's entry on every node once it commits; a listing loaded while such a change
+ * was committing is served but not kept. Misses are loaded from the primary.
+ */
+@Component
+public class CellarSnapshotCache {
+
+    public static final String NAME = "cellar-snapshots";
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int STRIPES = 64;
+
+    private final ObjectMapper objectMapper;
+    private final SharedCacheTier sharedCacheTier;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final int compressMinBytes;
+    private final long ttlNanos;
+    private final Map<Long, Snapshot> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+    private long weight;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public CellarSnapshotCache(ObjectMapper objectMapper,
+                               SharedCacheTier sharedCacheTier,
+                               MeterRegistry meterRegistry,
+                               @Value("${cellar-snapshot.max-bytes:67108864}") long maxBytes,
+                               @Value("${cellar-snapshot.max-entry-bytes:1048576}") long maxEntryBytes,
+                               @Value("${cellar-snapshot.compress-min-bytes:1024}") int compressMinBytes,
+                               @Value("${cellar-snapshot.ttl-ms:300000}") long ttlMs) {
+        this.objectMapper = objectMapper;
+        this.sharedCacheTier = sharedCacheTier;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.compressMinBytes = compressMinBytes;
+        this.ttlNanos = ttlMs * 1_000_000L;
+        this.hits = meterRegistry.counter("cellar.snapshot.gets", "result", "hit");
+        this.misses = meterRegistry.counter("cellar.snapshot.gets", "result", "miss");
+        this.evictions = meterRegistry.counter("cellar.snapshot.evictions");
+        meterRegistry.gauge("cellar.snapshot.bytes", this, cache -> cache.currentWeight());
+        sharedCacheTier.register(NAME, key -> evict(Long.valueOf(key)));
+    }
+
+    /**
+     * @param loader produces the listing; only called on a miss
+     */
+    public Snapshot get(Long userId, Supplier<?> loader) {
+        Snapshot cached = lookup(userId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        long stamp = invalidations.get(stripe(userId));
+        // A lagging replica could return the listing from before the change that evicted it,
+        // which would then be kept past the invalidation
+        Snapshot loaded = encode(ReplicaContext.callOnPrimary(loader));
+        if (loaded.weight() <= maxEntryBytes) {
+            store(userId, loaded, stamp);
+        }
+        return loaded;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onWineChange(WineChangeEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    /**
+     * For writers that change listed fields without a {@link WineChangeEvent}; call after commit.
+     */
+    public void invalidate(Long userId) {
+        sharedCacheTier.invalidate(NAME, userId.toString());
+    }
+
+    private Snapshot lookup(Long userId) {
+        synchronized (entries) {
+            Snapshot snapshot = entries.get(userId);
+            if (snapshot != null && System.nanoTime() - snapshot.createdAt > ttlNanos) {
+                remove(userId);
+                return null;
+            }
+            return snapshot;
+        }
+    }
+
+    private void store(Long userId, Snapshot snapshot, long stamp) {
+        synchronized (entries) {
+            // Checked under the lock evict takes, so an invalidation cannot slip in between
+            if (invalidations.get(stripe(userId)) != stamp) {
+                return;
+            }
+            remove(userId);
+            entries.put(userId, snapshot);
+            weight += snapshot.weight();
+            Iterator<Map.Entry<Long, Snapshot>> eldest = entries.entrySet().iterator();
+            while (weight > maxBytes && eldest.hasNext()) {
+                weight -= eldest.next().getValue().weight();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void evict(Long userId) {
+        invalidations.incrementAndGet(stripe(userId));
+        synchronized (entries) {
+            remove(userId);
+        }
+    }
+
+    private void remove(Long userId) {
+        Snapshot removed = entries.remove(userId);
+        if (removed != null) {
+            weight -= removed.weight();
+        }
+    }
+
+    private long currentWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    private Snapshot encode(Object value) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not encode cellar listing", ex);
+        }
+        byte[] gzip = json.length >= compressMinBytes ? gzip(json) : null;
+        String etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        return new Snapshot(json, gzip != null && gzip.length < json.length ? gzip : null, etag);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static int stripe(Long userId) {
+        return (int) Math.floorMod(userId, (long) STRIPES);
+    }
+
+    public static final class Snapshot {
+        private final byte[] json;
+        private final byte[] gzip;
+        private final String etag;
+        private final long createdAt = System.nanoTime();
+
+        private Snapshot(byte[] json, byte[] gzip, String etag) {
+            this.json = json;
+            this.gzip = gzip;
+            this.etag = etag;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * @return the gzip-encoded listing, or null when it is too small to be worth compressing
+         */
+        public byte[] getGzip() {
+            return gzip;
+        }
+
+        /**
+         * Strong validator derived from the content, so it is the same on every node.
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        private long weight() {
+            return json.length + (gzip == null ? 0 : gzip.length) + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.vindex.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The cluster-wide half of the {@link TwoTierCache}s: a Redis-protocol store every node reads
+ * through, and a pub/sub channel that carries invalidations to the other nodes' near-caches.
+ * When {@code cache.shared.enabled=false} the tier is absent and invalidations only reach the
+ * caches of this process. Redis being unavailable never fails a request; the cache falls back
+ * to the database, and peers that missed an invalidation catch up when their local entry
+ * expires.
+ *
+ * <p>Every key has a generation counter next to its value. Invalidations bump it, and a value
+ * is only stored if the generation is still the one read before the value was loaded, so a
+ * node cannot write back what it read before another node's commit.
+ */
+public class SharedCacheTier implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedCacheTier.class);
+
+    static final String CHANNEL = "vindex:cache:invalidate";
+    private static final String KEY_PREFIX = "vindex:cache:";
+    private static final String GENERATION_PREFIX = "vindex:cache-gen:";
+    // Outlives any load that read the generation before it was bumped
+    private static final Duration GENERATION_TTL = Duration.ofHours(1);
+
+    static final RedisScript<Long> PUT_IF_UNCHANGED = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then return 0 end "
+                    + "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) return 1", Long.class);
+    static final RedisScript<Long> BUMP = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) local generation = redis.call('INCR', KEYS[2]) "
+                    + "redis.call('PEXPIRE', KEYS[2], ARGV[1]) return generation", Long.class);
+
+    private final StringRedisTemplate redis;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Consumer<String>> localEvictors = new ConcurrentHashMap<>();
+    private final Counter errors;
+
+    /**
+     * @param connectionFactory null to keep invalidations in-process
+     */
+    public SharedCacheTier(RedisConnectionFactory connectionFactory, MeterRegistry meterRegistry) {
+        this.errors = meterRegistry.counter("cache.shared.errors");
+        if (connectionFactory == null) {
+            this.redis = null;
+            this.listenerContainer = null;
+            return;
+        }
+        this.redis = new StringRedisTemplate(connectionFactory);
+        this.listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener((message, pattern) ->
+                onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        try {
+            listenerContainer.start();
+        } catch (RuntimeException ex) {
+            // The container keeps retrying the subscription; until then peers' writes only reach
+            // this node through local expiry
+            errors.increment();
+            log.warn("Could not subscribe to cache invalidations yet, retrying in the background", ex);
+        }
+    }
+
+    /**
+     * Over an existing template and without subscribing, so only writes reach other nodes.
+     */
+    SharedCacheTier(StringRedisTemplate redis, MeterRegistry meterRegistry) {
+        this.errors = meterRegistry.counter("cache.shared.errors");
+        this.redis = redis;
+        this.listenerContainer = null;
+    }
+
+    public boolean isEnabled() {
+        return redis != null;
+    }
+
+    /**
+     * Drops {@code key} from {@code cache} on every node, this one included.
+     */
+    public void invalidate(String cache, String key) {
+        evictLocal(cache, key);
+        if (redis == null) {
+            return;
+        }
+        try {
+            redis.execute(BUMP, List.of(KEY_PREFIX + cache + ':' + key, GENERATION_PREFIX + cache + ':' + key),
+                    String.valueOf(GENERATION_TTL.toMillis()));
+            redis.convertAndSend(CHANNEL, nodeId + ' ' + cache + ' ' + key);
+        } catch (RuntimeException ex) {
+            errors.increment();
+            log.warn("Could not broadcast invalidation of {} in cache {}", key, cache, ex);
+        }
+    }
+
+    /**
+     * Drops {@code key} from {@code cache} on the other nodes only, for node-local caches that
+     * have already brought their own entry up to date.
+     */
+    public void invalidateRemote(String cache, String key) {
+        if (redis == null) {
+            return;
+        }
+        try {
+            redis.convertAndSend(CHANNEL, nodeId + ' ' + cache + ' ' + key);
+        } catch (RuntimeException ex) {
+            errors.increment();
+            log.warn("Could not broadcast invalidation of {} in cache {}", key, cache, ex);
+        }
+    }
+
+    void register(String cache, Consumer<String> evictor) {
+        localEvictors.put(cache, evictor);
+    }
+
+    /**
+     * @return the stored value (null when absent) with the key's current generation, or null
+     *         when the store could not be read
+     */
+    Versioned get(String cache, String key) {
+        try {
+            List<String> values = redis.opsForValue().multiGet(
+                    List.of(KEY_PREFIX + cache + ':' + key, GENERATION_PREFIX + cache + ':' + key));
+            if (values == null) {
+                return null;
+            }
+            return new Versioned(values.get(0), values.get(1) == null ? "" : values.get(1));
+        } catch (RuntimeException ex) {
+            errors.increment();
+            log.debug("Shared cache read of {} in {} failed", key, cache, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the value unless the key was invalidated since {@code generation} was read.
+     */
+    void put(String cache, String key, String value, Duration ttl, String generation) {
+        try {
+            redis.execute(PUT_IF_UNCHANGED, List.of(KEY_PREFIX + cache + ':' + key, GENERATION_PREFIX + cache + ':' + key),
+                    generation, value, String.valueOf(ttl.toMillis()));
+        } catch (RuntimeException ex) {
+            errors.increment();
+            log.debug("Shared cache write of {} in {} failed", key, cache, ex);
+        }
+    }
+
+    private void onInvalidation(String message) {
+        String[] parts = message.split(" ", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        evictLocal(parts[1], parts[2]);
+    }
+
+    private void evictLocal(String cache, String key) {
+        Consumer<String> evictor = localEvictors.get(cache);
+        if (evictor != null) {
+            evictor.accept(key);
+        }
+    }
+
+    static final class Versioned {
+        private final String value;
+        private final String generation;
+
+        Versioned(String value, String generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+
+        String value() {
+            return value;
+        }
+
+        String generation() {
+            return generation;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.vindex.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache with a bounded, short-lived near-cache in front of the
+ * {@link SharedCacheTier}. Lookups try the local entry, then the shared store (as JSON), then
+ * the loader, filling both tiers on the way back. Writers call {@link #invalidate} or
+ * {@link #invalidateAfterCommit}; a load that overlapped an invalidation is returned but not
+ * cached, so a value read before a commit cannot outlive it here. Locally that is judged by
+ * the invalidations this node has seen, in the shared store by the key's generation there,
+ * which also covers invalidations still on their way from other nodes. The local TTL bounds
+ * how long a node can serve a value whose invalidation it missed.
+ */
+public class TwoTierCache<V> {
+
+    private static final Logger log = LoggerFactory.getLogger(TwoTierCache.class);
+
+    private final String name;
+    private final JavaType type;
+    private final ObjectMapper objectMapper;
+    private final SharedCacheTier sharedTier;
+    private final long localTtlNanos;
+    private final Duration sharedTtl;
+    private final Map<String, LocalEntry<V>> local;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Counter localHits;
+    private final Counter sharedHits;
+    private final Counter misses;
+
+    public TwoTierCache(String name, JavaType type, ObjectMapper objectMapper, SharedCacheTier sharedTier,
+                        int maxLocalEntries, Duration localTtl, Duration sharedTtl, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.type = type;
+        this.objectMapper = objectMapper;
+        this.sharedTier = sharedTier;
+        this.localTtlNanos = localTtl.toNanos();
+        this.sharedTtl = sharedTtl;
+        this.local = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalEntry<V>> eldest) {
+                return size() > maxLocalEntries;
+            }
+        };
+        this.localHits = meterRegistry.counter("cache.gets", "cache", name, "result", "local");
+        this.sharedHits = meterRegistry.counter("cache.gets", "cache", name, "result", "shared");
+        this.misses = meterRegistry.counter("cache.gets", "cache", name, "result", "miss");
+        sharedTier.register(name, this::evictLocal);
+    }
+
+    /**
+     * @param loader may return null, which is passed through and not cached
+     */
+    public V get(String key, Supplier<V> loader) {
+        V cached = getLocal(key);
+        if (cached != null) {
+            localHits.increment();
+            return cached;
+        }
+
+        long epoch = invalidations.get();
+        SharedCacheTier.Versioned stored = null;
+        if (sharedTier.isEnabled()) {
+            stored = sharedTier.get(name, key);
+            V shared = stored == null ? null : decode(stored.value());
+            if (shared != null) {
+                sharedHits.increment();
+                putLocal(key, shared, epoch);
+                return shared;
+            }
+        }
+
+        misses.increment();
+        V loaded = loader.get();
+        if (loaded == null) {
+            return null;
+        }
+        putLocal(key, loaded, epoch);
+        // Without a generation to compare against (store unreadable) nothing is written back
+        if (stored != null && invalidations.get() == epoch) {
+            String encoded = encode(loaded);
+            if (encoded != null) {
+                sharedTier.put(name, key, encoded, sharedTtl, stored.generation());
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidate(String key) {
+        sharedTier.invalidate(name, key);
+    }
+
+    /**
+     * Invalidates once the current transaction commits (immediately without one), so no node
+     * reloads the old value in between.
+     */
+    public void invalidateAfterCommit(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(key);
+            }
+        });
+    }
+
+    void evictLocal(String key) {
+        invalidations.incrementAndGet();
+        synchronized (local) {
+            local.remove(key);
+        }
+    }
+
+    private V getLocal(String key) {
+        synchronized (local) {
+            LocalEntry<V> entry = local.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.storedAt > localTtlNanos) {
+                local.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private void putLocal(String key, V value, long epoch) {
+        synchronized (local) {
+            // Checked under the lock evictLocal takes, so an invalidation cannot slip in between
+            if (invalidations.get() == epoch) {
+                local.put(key, new LocalEntry<>(value, System.nanoTime()));
+            }
+        }
+    }
+
+    private String encode(V value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            log.warn("Could not encode entry of cache {}", name, ex);
+            return null;
+        }
+    }
+
+    private V decode(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException ex) {
+            log.warn("Discarding undecodable entry of cache {}", name, ex);
+            return null;
+        }
+    }
+
+    private static final class LocalEntry<V> {
+        private final V value;
+        private final long storedAt;
+
+        private LocalEntry(V value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+}
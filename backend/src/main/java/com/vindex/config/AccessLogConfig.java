@@ -0,0 +1,27 @@
+package com.vindex.config;
+
+import com.vindex.web.AccessLogFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class AccessLogConfig {
+
+    /**
+     * Outermost filter, so the latency covers load shedding and authentication too.
+     */
+    @Bean
+    public FilterRegistrationBean<AccessLogFilter> accessLogFilter(
+            @Value("${access-log.enabled:true}") boolean enabled,
+            @Value("${access-log.sample-rate:1.0}") double sampleRate,
+            @Value("${access-log.slow-ms:1000}") long slowMs) {
+        FilterRegistrationBean<AccessLogFilter> registration =
+                new FilterRegistrationBean<>(new AccessLogFilter(sampleRate, slowMs));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+}
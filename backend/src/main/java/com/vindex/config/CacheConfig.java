@@ -0,0 +1,102 @@
+package com.vindex.config;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vindex.cache.SharedCacheTier;
+import com.vindex.cache.TwoTierCache;
+import com.vindex.dto.CellarStatsResponse;
+import com.vindex.dto.WineSuggestionDto;
+import com.vindex.security.CustomUserDetailsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.data.redis.RedisHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Two-tier caches for data every request or node keeps asking for. Each cache is tuned under
+ * {@code cache.<name>.*}: {@code local-max-entries}, {@code local-ttl-ms} (how stale a node
+ * may be if it misses an invalidation) and {@code shared-ttl-ms}. The shared tier is the
+ * {@code spring.data.redis} server and is only used when {@code cache.shared.enabled=true}.
+ */
+@Configuration
+public class CacheConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheConfig.class);
+
+    public static final String PRINCIPALS = "principals";
+    public static final String CELLAR_STATS = "cellar-stats";
+    public static final String SUGGESTIONS = "suggestions";
+
+    private final Environment environment;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    public CacheConfig(Environment environment, ObjectProvider<ObjectMapper> objectMapper,
+                       ObjectProvider<MeterRegistry> meterRegistry) {
+        this.environment = environment;
+        this.objectMapper = objectMapper.getIfAvailable(ObjectMapper::new);
+        this.meterRegistry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    }
+
+    @Bean(destroyMethod = "close")
+    public SharedCacheTier sharedCacheTier(ObjectProvider<RedisConnectionFactory> connectionFactory) {
+        if (!environment.getProperty("cache.shared.enabled", Boolean.class, false)) {
+            return new SharedCacheTier(null, meterRegistry);
+        }
+        log.info("Shared cache tier enabled");
+        return new SharedCacheTier(connectionFactory.getObject(), meterRegistry);
+    }
+
+    /**
+     * Redis health that follows {@code cache.shared.enabled} at run time. It replaces Spring
+     * Boot's indicator, whose on/off condition an AOT build would fix at build time, and it
+     * keeps Redis out of the health status of nodes that do not use it.
+     */
+    @Bean
+    public HealthIndicator redisHealthIndicator(SharedCacheTier sharedCacheTier,
+                                                ObjectProvider<RedisConnectionFactory> connectionFactory) {
+        if (!sharedCacheTier.isEnabled()) {
+            return () -> Health.up().withDetail("sharedTier", "disabled").build();
+        }
+        return new RedisHealthIndicator(connectionFactory.getObject());
+    }
+
+    @Bean
+    public TwoTierCache<CustomUserDetailsService.CachedPrincipal> principalCache(SharedCacheTier sharedCacheTier) {
+        return cache(PRINCIPALS, objectMapper.constructType(CustomUserDetailsService.CachedPrincipal.class),
+                sharedCacheTier, 10_000, 2_000, 60_000);
+    }
+
+    @Bean
+    public TwoTierCache<CellarStatsResponse> cellarStatsCache(SharedCacheTier sharedCacheTier) {
+        return cache(CELLAR_STATS, objectMapper.constructType(CellarStatsResponse.class),
+                sharedCacheTier, 10_000, 30_000, 600_000);
+    }
+
+    @Bean
+    public TwoTierCache<List<WineSuggestionDto>> suggestionCache(SharedCacheTier sharedCacheTier) {
+        return cache(SUGGESTIONS, objectMapper.getTypeFactory().constructCollectionType(List.class, WineSuggestionDto.class),
+                sharedCacheTier, 2_000, 300_000, 3_600_000);
+    }
+
+    private <V> TwoTierCache<V> cache(String name, JavaType type, SharedCacheTier sharedCacheTier,
+                                      int defaultMaxEntries, long defaultLocalTtlMs, long defaultSharedTtlMs) {
+        String prefix = "cache." + name + ".";
+        return new TwoTierCache<>(name, type, objectMapper, sharedCacheTier,
+                environment.getProperty(prefix + "local-max-entries", Integer.class, defaultMaxEntries),
+                Duration.ofMillis(environment.getProperty(prefix + "local-ttl-ms", Long.class, defaultLocalTtlMs)),
+                Duration.ofMillis(environment.getProperty(prefix + "shared-ttl-ms", Long.class, defaultSharedTtlMs)),
+                meterRegistry);
+    }
+}
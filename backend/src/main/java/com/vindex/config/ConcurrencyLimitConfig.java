@@ -0,0 +1,52 @@
+package com.vindex.config;
+
+import com.vindex.web.AimdConcurrencyLimiter;
+import com.vindex.web.ConcurrencyLimitFilter;
+import com.vindex.web.ConcurrencyLimitFilter.EndpointClass;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+@Configuration
+public class ConcurrencyLimitConfig {
+
+    private final Environment environment;
+
+    public ConcurrencyLimitConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    private Map<EndpointClass, AimdConcurrencyLimiter> concurrencyLimiters() {
+        Map<EndpointClass, AimdConcurrencyLimiter> limiters = new EnumMap<>(EndpointClass.class);
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            String prefix = "concurrency-limit." + endpointClass.name().toLowerCase(Locale.ROOT).replace('_', '-') + ".";
+            limiters.put(endpointClass, new AimdConcurrencyLimiter(
+                    endpointClass.name(),
+                    environment.getProperty(prefix + "initial-limit", Integer.class, 20),
+                    environment.getProperty(prefix + "min-limit", Integer.class, 2),
+                    environment.getProperty(prefix + "max-limit", Integer.class, 100),
+                    environment.getProperty(prefix + "target-latency-ms", Long.class, 250L),
+                    environment.getProperty("concurrency-limit.backoff-ratio", Double.class, 0.9)));
+        }
+        return limiters;
+    }
+
+    /**
+     * Registered ahead of the Spring Security chain so shed requests never reach the JWT
+     * filter's user lookup.
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter() {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(concurrencyLimiters()));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        registration.setEnabled(environment.getProperty("concurrency-limit.enabled", Boolean.class, true));
+        return registration;
+    }
+}
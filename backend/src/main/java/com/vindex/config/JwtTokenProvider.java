@@ -11,6 +11,7 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @Component
 public class JwtTokenProvider {
@@ -37,6 +38,8 @@ public class JwtTokenProvider {
     public String generateRefreshToken(String username) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("type", "refresh");
+        // Unique id so tokens issued to the same user in the same second still hash differently
+        claims.put("jti", UUID.randomUUID().toString());
         return createToken(claims, username, refreshExpirationMs);
     }
 
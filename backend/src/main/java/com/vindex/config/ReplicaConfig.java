@@ -0,0 +1,103 @@
+package com.vindex.config;
+
+import com.vindex.replica.ReplicaRegistry;
+import com.vindex.shard.ShardRegistry;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds read-only pools for the replicas listed under {@code read-replicas.replicas}, keyed by
+ * the shard they replicate ({@code primary} is the {@code spring.datasource} database). Shards
+ * without a replica, and everything when {@code read-replicas.enabled=false}, keep reading
+ * from their primary.
+ */
+@Configuration
+public class ReplicaConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaConfig.class);
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRegistry replicaRegistry(ShardRegistry shardRegistry, DataSourceProperties properties,
+                                           Environment environment) {
+        long maxLagMs = environment.getProperty("read-replicas.max-lag-ms", Long.class, 2000L);
+        long heartbeatIntervalMs = environment.getProperty("read-replicas.heartbeat-interval-ms", Long.class, 1000L);
+        long maxReadingAgeMs = environment.getProperty("read-replicas.max-reading-age-ms", Long.class,
+                heartbeatIntervalMs * 3);
+        Map<String, DataSource> pools = new LinkedHashMap<>();
+        if (!environment.getProperty("read-replicas.enabled", Boolean.class, false)) {
+            return new ReplicaRegistry(pools, maxLagMs, maxReadingAgeMs);
+        }
+
+        Binder binder = Binder.get(environment);
+        Map<String, ReplicaProperties> replicas = binder
+                .bind("read-replicas.replicas", Bindable.mapOf(String.class, ReplicaProperties.class))
+                .orElse(Map.of());
+        for (Map.Entry<String, ReplicaProperties> entry : replicas.entrySet()) {
+            String shard = entry.getKey();
+            ReplicaProperties replica = entry.getValue();
+            if (!StringUtils.hasText(replica.getUrl())) {
+                continue;
+            }
+            if (!shardRegistry.getShardNames().contains(shard)) {
+                throw new IllegalStateException("Replica configured for unknown shard: " + shard);
+            }
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(replica.getUrl())
+                    .username(StringUtils.hasText(replica.getUsername()) ? replica.getUsername() : properties.determineUsername())
+                    .password(StringUtils.hasText(replica.getPassword()) ? replica.getPassword() : properties.determinePassword())
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            pool.setPoolName("replica-" + shard);
+            pool.setReadOnly(true);
+            pools.put(shard, pool);
+        }
+
+        log.info("Read replicas configured for shards {} (max lag {} ms)", pools.keySet(), maxLagMs);
+        return new ReplicaRegistry(pools, maxLagMs, maxReadingAgeMs);
+    }
+
+    public static class ReplicaProperties {
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
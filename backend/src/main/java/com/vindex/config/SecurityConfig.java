@@ -1,7 +1,18 @@
 package com.vindex.config;
 
+import com.vindex.replica.ReadYourWritesFilter;
+import com.vindex.replica.ReadYourWritesTracker;
+import com.vindex.replica.ReplicaRegistry;
+import com.vindex.security.CustomUserDetailsService;
+import com.vindex.security.IteratedPbkdf2PasswordEncoder;
 import com.vindex.security.JwtAuthenticationEntryPoint;
 import com.vindex.security.JwtAuthenticationFilter;
+import com.vindex.security.SearchRateLimitFilter;
+import com.vindex.security.TokenBucketRateLimiter;
+import com.vindex.shard.ShardContextFilter;
+import com.vindex.shard.ShardRouter;
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -11,8 +22,8 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -20,6 +31,9 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
@@ -27,20 +41,47 @@ import java.util.Arrays;
 public class SecurityConfig {
 
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
-    private final UserDetailsService userDetailsService;
+    private final CustomUserDetailsService userDetailsService;
     private final JwtTokenProvider jwtTokenProvider;
 
     public SecurityConfig(JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint,
-                         UserDetailsService userDetailsService,
+                         CustomUserDetailsService userDetailsService,
                          JwtTokenProvider jwtTokenProvider) {
         this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
         this.userDetailsService = userDetailsService;
         this.jwtTokenProvider = jwtTokenProvider;
     }
 
+    @Value("${security.password.algorithm:bcrypt}")
+    private String passwordAlgorithm;
+
+    @Value("${security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    @Value("${security.password.pbkdf2-iterations:310000}")
+    private int pbkdf2Iterations;
+
+    @Value("${security.password.pbkdf2-legacy-iterations:310000}")
+    private int pbkdf2LegacyIterations;
+
+    /**
+     * Encodes with the configured algorithm and cost under a {@code {id}} prefix. Legacy
+     * unprefixed hashes are matched as BCrypt and report {@code upgradeEncoding}, as do hashes
+     * of the configured algorithm with a lower cost, so {@code AuthService.login} rehashes them
+     * on the next successful login.
+     */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put("pbkdf2", new IteratedPbkdf2PasswordEncoder(pbkdf2Iterations, pbkdf2LegacyIterations));
+        if (!encoders.containsKey(passwordAlgorithm)) {
+            throw new IllegalStateException("Unsupported password algorithm: " + passwordAlgorithm);
+        }
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(passwordAlgorithm, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return encoder;
     }
 
     @Bean
@@ -57,6 +98,17 @@ public class SecurityConfig {
         return new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService);
     }
 
+    @Bean
+    public SearchRateLimitFilter searchRateLimitFilter(
+            @Value("${rate-limit.search.burst:20}") int burst,
+            @Value("${rate-limit.search.refill-per-second:5}") double refillPerSecond,
+            @Value("${rate-limit.search.max-clients:10000}") int maxClients,
+            @Value("${rate-limit.search.idle-timeout-ms:600000}") long idleTimeoutMs,
+            @Value("${rate-limit.search.stripes:16}") int stripes) {
+        return new SearchRateLimitFilter(
+                new TokenBucketRateLimiter(burst, refillPerSecond, maxClients, idleTimeoutMs, stripes));
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
@@ -72,7 +124,22 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public ShardContextFilter shardContextFilter(
+            ShardRouter shardRouter,
+            @Value("${sharding.user-scoped-paths:/wines/**}") List<String> userScopedPaths,
+            @Value("${sharding.rebalance.retry-after-seconds:5}") long moveRetryAfterSeconds) {
+        return new ShardContextFilter(shardRouter, userScopedPaths, moveRetryAfterSeconds);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(ReplicaRegistry replicaRegistry, ReadYourWritesTracker tracker) {
+        return new ReadYourWritesFilter(replicaRegistry, tracker);
+    }
+
+    @Bean
+    public SecurityFilterChain filterChain(HttpSecurity http, SearchRateLimitFilter searchRateLimitFilter,
+                                           ShardContextFilter shardContextFilter,
+                                           ReadYourWritesFilter readYourWritesFilter) throws Exception {
         http
                 .cors().and()
                 .csrf().disable()
@@ -83,12 +150,19 @@ public class SecurityConfig {
                     .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                     .and()
                 .authorizeHttpRequests()
+                    // The completion dispatch of change streams carries no token; the request was authorized on entry
+                    .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                     .requestMatchers(HttpMethod.POST, "/auth/**").permitAll()
                     .requestMatchers(HttpMethod.GET, "/health").permitAll()
+                    .requestMatchers(HttpMethod.GET, "/actuator/health", "/actuator/health/**").permitAll()
                     .requestMatchers(HttpMethod.GET, "/wines/search").permitAll()
+                    .requestMatchers(HttpMethod.GET, "/images/**").permitAll()
                     .anyRequest().authenticated()
                     .and()
-                .addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(searchRateLimitFilter, JwtAuthenticationFilter.class)
+                .addFilterAfter(shardContextFilter, SearchRateLimitFilter.class)
+                .addFilterAfter(readYourWritesFilter, ShardContextFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,238 @@
+package com.vindex.config;
+
+import com.vindex.replica.ReadWriteRoutingDataSource;
+import com.vindex.replica.ReplicaRegistry;
+import com.vindex.shard.ShardRegistry;
+import com.vindex.shard.ShardRoutingDataSource;
+import com.vindex.web.ConnectionHoldTimeDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the application's {@link DataSource}. With {@code sharding.enabled=false} this is the
+ * single pool configured under {@code spring.datasource}; with sharding on, that pool becomes
+ * the directory shard and every entry under {@code sharding.shards} gets a pool of its own,
+ * all behind a {@link ShardRoutingDataSource}. The decision is made at runtime so it also works
+ * with AOT-processed builds.
+ */
+@Configuration
+public class ShardingConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardingConfig.class);
+
+    @Bean(destroyMethod = "close")
+    public ShardRegistry shardRegistry(DataSourceProperties properties, Environment environment) {
+        Binder binder = Binder.get(environment);
+        boolean enabled = environment.getProperty("sharding.enabled", Boolean.class, false);
+        String directoryName = environment.getProperty("sharding.directory.name", "primary");
+
+        HikariDataSource directory = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(directory));
+
+        Map<String, DataSource> pools = new LinkedHashMap<>();
+        pools.put(directoryName, directory);
+        if (!enabled) {
+            return new ShardRegistry(false, directoryName, pools, List.of(directoryName), 1);
+        }
+
+        int idStride = environment.getProperty("sharding.id-stride", Integer.class, 16);
+        int virtualNodes = environment.getProperty("sharding.virtual-nodes", Integer.class, 128);
+        List<String> placement = new ArrayList<>();
+        Set<Integer> slots = new HashSet<>();
+
+        int directorySlot = environment.getProperty("sharding.directory.id-slot", Integer.class, 1);
+        configureShard(directory, directoryName, directorySlot, idStride, slots);
+        if (environment.getProperty("sharding.directory.accepts-new-users", Boolean.class, true)) {
+            placement.add(directoryName);
+        }
+
+        List<ShardProperties> shards = binder.bind("sharding.shards", Bindable.listOf(ShardProperties.class))
+                .orElse(List.of());
+        for (ShardProperties shard : shards) {
+            if (shard.getName() == null || pools.containsKey(shard.getName())) {
+                throw new IllegalStateException("Shard names must be present and unique: " + shard.getName());
+            }
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            configureShard(pool, shard.getName(), shard.getIdSlot(), idStride, slots);
+            pools.put(shard.getName(), pool);
+            if (shard.isAcceptsNewUsers()) {
+                placement.add(shard.getName());
+            }
+        }
+
+        log.info("Sharding enabled: shards {}, new users placed on {}", pools.keySet(), placement);
+        return new ShardRegistry(true, directoryName, pools, placement, virtualNodes);
+    }
+
+    /**
+     * The registries own and close the pools, so the wrappers have nothing to destroy. Physical
+     * connections are fetched lazily, on a transaction's first statement: transactions hold a
+     * pooled connection only while they actually talk to the database, and the read/write
+     * routing can see whether the transaction that asks for one is read-only.
+     */
+    @Bean(destroyMethod = "")
+    @Primary
+    public DataSource dataSource(ShardRegistry shardRegistry, ReplicaRegistry replicaRegistry,
+                                 ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        // The pools are not beans, so Boot does not bind their metrics; they start on first use
+        bindPoolMetrics(shardRegistry.getDataSources().values(), meterRegistry);
+        bindPoolMetrics(replicaRegistry.getReplicas().values(), meterRegistry);
+        DataSource routed = shardRegistry.isEnabled()
+                ? new ShardRoutingDataSource(shardRegistry)
+                : shardRegistry.getDirectoryDataSource();
+        if (replicaRegistry.isEnabled()) {
+            routed = new ReadWriteRoutingDataSource(routed, replicaRegistry, shardRegistry.getDirectoryShard(), meterRegistry);
+        }
+        LazyConnectionDataSourceProxy lazy = new LazyConnectionDataSourceProxy();
+        lazy.setTargetDataSource(new ConnectionHoldTimeDataSource(routed, meterRegistry));
+        // MySQL defaults; set up front so the proxy never opens a connection just to ask
+        lazy.setDefaultAutoCommit(true);
+        lazy.setDefaultTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        lazy.afterPropertiesSet();
+        return lazy;
+    }
+
+    private void bindPoolMetrics(Collection<DataSource> pools, MeterRegistry meterRegistry) {
+        for (DataSource pool : pools) {
+            if (pool instanceof HikariDataSource hikari) {
+                hikari.setMetricRegistry(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * Applies the same migrations to every shard so a user's rows can live on any of them, then
+     * lifts the shards' id counters clear of the ids the directory issued before sharding.
+     * {@code spring.flyway.enabled} is checked here as well because an AOT build fixes the
+     * auto-configuration's own check at build time.
+     */
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(ShardRegistry shardRegistry, Environment environment) {
+        return flyway -> {
+            if (!environment.getProperty("spring.flyway.enabled", Boolean.class, true)) {
+                log.info("Flyway disabled, skipping migrations");
+                return;
+            }
+            flyway.migrate();
+            if (!shardRegistry.isEnabled()) {
+                return;
+            }
+            shardRegistry.getDataSources().forEach((name, dataSource) -> {
+                if (!shardRegistry.isDirectory(name)) {
+                    log.info("Migrating shard {}", name);
+                    Flyway.configure()
+                            .configuration(flyway.getConfiguration())
+                            .dataSource(dataSource)
+                            .load()
+                            .migrate();
+                }
+            });
+            shardRegistry.raiseIdCounters();
+        };
+    }
+
+    /**
+     * Interleaves AUTO_INCREMENT values across shards ({@code id = slot + k * stride}), so the
+     * ids they issue from now on never collide and rows can be copied between shards as they
+     * are. Ids the directory issued before sharding are contiguous; {@link
+     * ShardRegistry#raiseIdCounters()} keeps the other shards above them.
+     */
+    private void configureShard(HikariDataSource pool, String name, int idSlot, int idStride, Set<Integer> slots) {
+        if (idSlot < 1 || idSlot > idStride || !slots.add(idSlot)) {
+            throw new IllegalStateException("Shard " + name + " needs a unique id-slot between 1 and " + idStride);
+        }
+        pool.setPoolName("shard-" + name);
+        pool.setConnectionInitSql("SET SESSION auto_increment_increment = " + idStride
+                + ", auto_increment_offset = " + idSlot);
+    }
+
+    public static class ShardProperties {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private int idSlot;
+        private boolean acceptsNewUsers = true;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getIdSlot() {
+            return idSlot;
+        }
+
+        public void setIdSlot(int idSlot) {
+            this.idSlot = idSlot;
+        }
+
+        public boolean isAcceptsNewUsers() {
+            return acceptsNewUsers;
+        }
+
+        public void setAcceptsNewUsers(boolean acceptsNewUsers) {
+            this.acceptsNewUsers = acceptsNewUsers;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.vindex.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * Beans that stay eager when the fast-start profile turns on lazy initialization. Schema
+ * migration must finish before the first request, and the entity manager factory is
+ * bootstrapped on a background thread, so starting it early overlaps it with the rest of the
+ * context instead of charging it to the first caller. Beans with {@code @Scheduled} methods
+ * are already kept eager by Spring Boot.
+ */
+@Configuration
+public class StartupConfig {
+
+    private static final Set<String> EAGER_BEANS = Set.of("flywayInitializer", "entityManagerFactory");
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return (beanName, beanDefinition, beanType) ->
+                EAGER_BEANS.contains(beanName)
+                        || (beanType != null && FlywayMigrationInitializer.class.isAssignableFrom(beanType));
+    }
+}
@@ -0,0 +1,82 @@
+package com.vindex.controller;
+
+import com.vindex.service.ImageStorageService;
+import com.vindex.service.RemoteImageProxyService;
+import com.vindex.web.FileResponseWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/images")
+public class ImageController {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "public, no-cache";
+    private static final String PROXIED = "public, max-age=86400";
+
+    private final ImageStorageService imageStorageService;
+    private final RemoteImageProxyService remoteImageProxyService;
+
+    public ImageController(ImageStorageService imageStorageService, RemoteImageProxyService remoteImageProxyService) {
+        this.imageStorageService = imageStorageService;
+        this.remoteImageProxyService = remoteImageProxyService;
+    }
+
+    @GetMapping("/remote")
+    public void getRemote(@RequestParam("url") String url, @RequestParam(value = "w", required = false) Integer width,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        RemoteImageProxyService.CachedImage image = remoteImageProxyService.get(url, width);
+        FileResponseWriter.write(request, response, image.getPath(), image.getContentType(), image.getEtag(), PROXIED);
+    }
+
+    @GetMapping("/{fileName:.+}")
+    public void getOriginal(@PathVariable String fileName, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Path original = imageStorageService.findOriginal(fileName)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found"));
+        FileResponseWriter.write(request, response, original, contentType(fileName), etag(fileName), IMMUTABLE);
+    }
+
+    @GetMapping("/thumbs/{size}/{fileName:.+}")
+    public void getThumbnail(@PathVariable int size, @PathVariable String fileName,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Path> thumbnail = imageStorageService.findThumbnail(size, fileName);
+        if (thumbnail.isPresent()) {
+            FileResponseWriter.write(request, response, thumbnail.get(), "image/jpeg",
+                    etag(size + "-" + fileName), IMMUTABLE);
+            return;
+        }
+
+        // Thumbnail still being generated: serve the original but don't let it be cached forever
+        String hash = fileName.endsWith(".jpg") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        Path original = imageStorageService.findOriginalByHash(hash)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found"));
+        String originalName = original.getFileName().toString();
+        FileResponseWriter.write(request, response, original, contentType(originalName), etag(originalName), REVALIDATE);
+    }
+
+    private String etag(String name) {
+        return "\"" + name + "\"";
+    }
+
+    private String contentType(String fileName) {
+        if (fileName.endsWith(".png")) {
+            return "image/png";
+        }
+        if (fileName.endsWith(".gif")) {
+            return "image/gif";
+        }
+        return "image/jpeg";
+    }
+}
@@ -0,0 +1,30 @@
+package com.vindex.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vindex.dto.JobResponse;
+import com.vindex.service.JobService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/jobs")
+public class JobController {
+
+    private final JobService jobService;
+
+    public JobController(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @GetMapping("/{id}")
+    public JobResponse getJob(@PathVariable Long id) {
+        return jobService.getJob(id);
+    }
+
+    @GetMapping("/{id}/result")
+    public JsonNode getResult(@PathVariable Long id) {
+        return jobService.getResult(id);
+    }
+}
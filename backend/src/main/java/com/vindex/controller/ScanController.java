@@ -0,0 +1,26 @@
+package com.vindex.controller;
+
+import com.vindex.dto.JobResponse;
+import com.vindex.service.LabelScanService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+@RestController
+@RequestMapping("/scans")
+public class ScanController {
+
+    private final LabelScanService labelScanService;
+
+    public ScanController(LabelScanService labelScanService) {
+        this.labelScanService = labelScanService;
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public JobResponse scan(@RequestParam("file") MultipartFile file,
+                            @RequestParam(value = "hint", required = false) String hint) {
+        return labelScanService.submit(file, hint);
+    }
+}
@@ -1,33 +1,145 @@
 package com.vindex.controller;
 
+import com.vindex.cache.CellarFacetIndex;
+import com.vindex.cache.CellarSnapshotCache;
+import com.vindex.dto.CellarFacetsResponse;
+import com.vindex.dto.CellarStatsResponse;
+import com.vindex.dto.QuantityChangeRequest;
+import com.vindex.dto.QuantityResponse;
+import com.vindex.dto.TastingRequest;
+import com.vindex.dto.WineBatchRequest;
+import com.vindex.dto.WineBatchResponse;
+import com.vindex.dto.WineHistoryResponse;
+import com.vindex.dto.WineReplayRequest;
+import com.vindex.dto.WineReplayResponse;
 import com.vindex.dto.WineRequest;
 import com.vindex.dto.WineResponse;
+import com.vindex.service.CurrentUserService;
+import com.vindex.service.WineBatchService;
+import com.vindex.service.WineHistoryService;
+import com.vindex.service.WineReplayService;
 import com.vindex.service.WineService;
+import com.vindex.stream.CellarEventBus;
+import com.vindex.web.EncodedJsonResponseWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/wines")
 public class WineController {
 
     private final WineService wineService;
+    private final CurrentUserService currentUserService;
+    private final CellarEventBus cellarEventBus;
+    private final WineHistoryService wineHistoryService;
+    private final CellarSnapshotCache cellarSnapshotCache;
+    private final WineBatchService wineBatchService;
+    private final WineReplayService wineReplayService;
+    private final CellarFacetIndex cellarFacetIndex;
 
-    public WineController(WineService wineService) {
+    public WineController(WineService wineService, CurrentUserService currentUserService,
+                          CellarEventBus cellarEventBus, WineHistoryService wineHistoryService,
+                          CellarSnapshotCache cellarSnapshotCache, WineBatchService wineBatchService,
+                          WineReplayService wineReplayService, CellarFacetIndex cellarFacetIndex) {
         this.wineService = wineService;
+        this.cellarFacetIndex = cellarFacetIndex;
+        this.wineBatchService = wineBatchService;
+        this.wineReplayService = wineReplayService;
+        this.currentUserService = currentUserService;
+        this.cellarEventBus = cellarEventBus;
+        this.wineHistoryService = wineHistoryService;
+        this.cellarSnapshotCache = cellarSnapshotCache;
     }
 
+    /**
+     * Served from the caller's encoded cellar snapshot when it is current; the listing is only
+     * queried, mapped and serialized after a change. Supports {@code If-None-Match}.
+     */
     @GetMapping
-    public List<WineResponse> listWines() {
-        return wineService.listWines();
+    public void listWines(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CellarSnapshotCache.Snapshot snapshot =
+                cellarSnapshotCache.get(currentUserService.getCurrentUserId(), wineService::listWines);
+        EncodedJsonResponseWriter.write(request, response, snapshot.getJson(), snapshot.getGzip(), snapshot.getEtag());
     }
 
+    /**
+     * Live create, update, move, quantity and delete events for the caller's cellar. Send the
+     * last received id back as {@code Last-Event-ID} when reconnecting to resume.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return cellarEventBus.subscribe(currentUserService.getCurrentUserId(), lastEventId);
+    }
+
+    /**
+     * History of the caller's cellar, newest first, within {@code [from, to)} (default: the last
+     * 90 days). Pass {@code nextCursor} back as {@code cursor} for the following page. Entries
+     * show up shortly after the change, not necessarily on the very next read.
+     */
+    @GetMapping("/history")
+    public WineHistoryResponse getHistory(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long wineId,
+            @RequestParam(required = false) String type) {
+        return wineHistoryService.getHistory(from, to, cursor, limit, wineId, type);
+    }
+
+    @GetMapping("/stats")
+    public CellarStatsResponse getCellarStats() {
+        return wineService.getCellarStats();
+    }
+
+    /**
+     * Wine counts per type, year, grape, winery and location for the cellar filters, plus the
+     * ids of the wines matching them. Repeat a parameter to select several values of a facet.
+     * Answered from the caller's in-memory facet index; only the first call after the index was
+     * dropped queries the listing.
+     */
+    @GetMapping("/facets")
+    public CellarFacetsResponse getFacets(@RequestParam(required = false) List<String> type,
+                                          @RequestParam(required = false) List<String> year,
+                                          @RequestParam(required = false) List<String> grape,
+                                          @RequestParam(required = false) List<String> winery,
+                                          @RequestParam(required = false) List<String> location) {
+        Map<CellarFacetIndex.Facet, Set<String>> filters = new EnumMap<>(CellarFacetIndex.Facet.class);
+        addFilter(filters, CellarFacetIndex.Facet.TYPE, type);
+        addFilter(filters, CellarFacetIndex.Facet.YEAR, year);
+        addFilter(filters, CellarFacetIndex.Facet.GRAPE, grape);
+        addFilter(filters, CellarFacetIndex.Facet.WINERY, winery);
+        addFilter(filters, CellarFacetIndex.Facet.LOCATION, location);
+        return cellarFacetIndex.query(currentUserService.getCurrentUserId(), filters, wineService::listWines);
+    }
+
+    /**
+     * With {@code onDuplicate} other than {@code CREATE}, a wine already in the cellar (same
+     * name, winery and vintage, ignoring case, accents and punctuation) is not added again: see
+     * {@link WineService.OnDuplicate}. Bottles added to an existing wine answer 200 instead of 201.
+     */
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public WineResponse createWine(@Valid @RequestBody WineRequest request) {
-        return wineService.createWine(request);
+    public ResponseEntity<WineResponse> createWine(
+            @Valid @RequestBody WineRequest request,
+            @RequestParam(defaultValue = "CREATE") WineService.OnDuplicate onDuplicate) {
+        WineService.Posted posted = wineService.createWine(request, onDuplicate);
+        return ResponseEntity.status(posted.isCreated() ? HttpStatus.CREATED : HttpStatus.OK).body(posted.getWine());
     }
 
     @PutMapping("/{id}")
@@ -35,9 +147,61 @@ public class WineController {
         return wineService.updateWine(id, request);
     }
 
+    /**
+     * Creates, updates and deletes many wines in one transaction and reports every operation's
+     * outcome. An {@code ATOMIC} batch (the default) answers 422 and writes nothing when any
+     * operation fails; {@code BEST_EFFORT} applies the rest.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<WineBatchResponse> applyBatch(@Valid @RequestBody WineBatchRequest request) {
+        WineBatchResponse response = wineBatchService.apply(request);
+        return ResponseEntity.status(response.isCommitted() ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(response);
+    }
+
+    /**
+     * Applies the mutation log an offline client queued, skipping keys it already sent. Updates
+     * and deletes carrying a {@code baseVersion} the wine has moved past come back in
+     * {@code conflicts} with the current wine.
+     */
+    @PostMapping("/replay")
+    public WineReplayResponse replay(@Valid @RequestBody WineReplayRequest request) {
+        return wineReplayService.replay(request);
+    }
+
+    @PostMapping("/{id}/consume")
+    public QuantityResponse consume(@PathVariable Long id,
+                                    @Valid @RequestBody(required = false) QuantityChangeRequest request) {
+        return wineService.consume(id, request == null ? 1 : request.getCount());
+    }
+
+    @PostMapping("/{id}/restock")
+    public QuantityResponse restock(@PathVariable Long id,
+                                    @Valid @RequestBody(required = false) QuantityChangeRequest request) {
+        return wineService.restock(id, request == null ? 1 : request.getCount());
+    }
+
+    @PostMapping("/{id}/tastings")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void recordTasting(@PathVariable Long id, @Valid @RequestBody TastingRequest request) {
+        wineHistoryService.recordTasting(id, request);
+    }
+
+    @PostMapping(value = "/{id}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public WineResponse uploadImage(@PathVariable Long id, @RequestParam("file") MultipartFile file) {
+        return wineService.uploadImage(id, file);
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteWine(@PathVariable Long id) {
         wineService.deleteWine(id);
     }
+
+    private void addFilter(Map<CellarFacetIndex.Facet, Set<String>> filters, CellarFacetIndex.Facet facet,
+                           List<String> values) {
+        if (values != null && !values.isEmpty()) {
+            filters.put(facet, new HashSet<>(values));
+        }
+    }
 }
@@ -19,6 +19,10 @@ public class WineSuggestionController {
         this.wineSuggestionService = wineSuggestionService;
     }
 
+    /**
+     * Served from the in-memory catalog or Snooth; the only statement is the JWT filter's
+     * user lookup when a token is sent.
+     */
     @GetMapping("/search")
     public List<WineSuggestionDto> search(@RequestParam("query") String query) {
         return wineSuggestionService.search(query);
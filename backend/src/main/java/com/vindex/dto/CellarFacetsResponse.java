@@ -0,0 +1,43 @@
+package com.vindex.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class CellarFacetsResponse {
+    private int totalWines;
+    private int matchingWines;
+    private Map<String, Map<String, Integer>> counts;
+    private List<Long> ids;
+
+    public CellarFacetsResponse(int totalWines, int matchingWines, Map<String, Map<String, Integer>> counts,
+                                List<Long> ids) {
+        this.totalWines = totalWines;
+        this.matchingWines = matchingWines;
+        this.counts = counts;
+        this.ids = ids;
+    }
+
+    public int getTotalWines() {
+        return totalWines;
+    }
+
+    public int getMatchingWines() {
+        return matchingWines;
+    }
+
+    /**
+     * Wines per value of each facet ({@code type}, {@code year}, {@code grape}, {@code winery},
+     * {@code location}), counted with the filters on all other facets applied. Wines without a
+     * value count under {@code ""}.
+     */
+    public Map<String, Map<String, Integer>> getCounts() {
+        return counts;
+    }
+
+    /**
+     * Ids of the wines matching every filter, in no particular order.
+     */
+    public List<Long> getIds() {
+        return ids;
+    }
+}
@@ -0,0 +1,78 @@
+package com.vindex.dto;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+public class CellarStatsResponse {
+    private long totalWines;
+    private long totalBottles;
+    private BigDecimal totalValue;
+    private Map<String, Bucket> byType;
+    private Map<String, Bucket> byCountry;
+    private Map<String, Bucket> byRegion;
+    private Map<String, Bucket> byVintage;
+
+    public CellarStatsResponse(long totalWines, long totalBottles, BigDecimal totalValue,
+                               Map<String, Bucket> byType, Map<String, Bucket> byCountry,
+                               Map<String, Bucket> byRegion, Map<String, Bucket> byVintage) {
+        this.totalWines = totalWines;
+        this.totalBottles = totalBottles;
+        this.totalValue = totalValue;
+        this.byType = byType;
+        this.byCountry = byCountry;
+        this.byRegion = byRegion;
+        this.byVintage = byVintage;
+    }
+
+    public long getTotalWines() {
+        return totalWines;
+    }
+
+    public long getTotalBottles() {
+        return totalBottles;
+    }
+
+    public BigDecimal getTotalValue() {
+        return totalValue;
+    }
+
+    public Map<String, Bucket> getByType() {
+        return byType;
+    }
+
+    public Map<String, Bucket> getByCountry() {
+        return byCountry;
+    }
+
+    public Map<String, Bucket> getByRegion() {
+        return byRegion;
+    }
+
+    public Map<String, Bucket> getByVintage() {
+        return byVintage;
+    }
+
+    public static class Bucket {
+        private long wines;
+        private long bottles;
+        private BigDecimal value;
+
+        public Bucket(long wines, long bottles, BigDecimal value) {
+            this.wines = wines;
+            this.bottles = bottles;
+            this.value = value;
+        }
+
+        public long getWines() {
+            return wines;
+        }
+
+        public long getBottles() {
+            return bottles;
+        }
+
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.vindex.dto;
+
+import java.time.LocalDateTime;
+
+public class JobResponse {
+    private Long id;
+    private String type;
+    private String status;
+    private Integer progress;
+    private Integer attempts;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public JobResponse(Long id, String type, String status, Integer progress, Integer attempts,
+                       String error, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.type = type;
+        this.status = status;
+        this.progress = progress;
+        this.attempts = attempts;
+        this.error = error;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Integer getProgress() {
+        return progress;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,18 @@
+package com.vindex.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+public class QuantityChangeRequest {
+    @Min(1)
+    @Max(1000)
+    private int count = 1;
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,19 @@
+package com.vindex.dto;
+
+public class QuantityResponse {
+    private Long wineId;
+    private int quantity;
+
+    public QuantityResponse(Long wineId, int quantity) {
+        this.wineId = wineId;
+        this.quantity = quantity;
+    }
+
+    public Long getWineId() {
+        return wineId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+}
@@ -0,0 +1,30 @@
+package com.vindex.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+
+public class TastingRequest {
+    @Min(1)
+    @Max(5)
+    private Integer rating;
+
+    @Size(max = 4000)
+    private String note;
+
+    public Integer getRating() {
+        return rating;
+    }
+
+    public void setRating(Integer rating) {
+        this.rating = rating;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+}
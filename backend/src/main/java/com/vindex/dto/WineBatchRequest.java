@@ -0,0 +1,89 @@
+package com.vindex.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class WineBatchRequest {
+    public static final int MAX_OPERATIONS = 100;
+
+    public enum Mode {
+        /** Nothing is written unless every operation is valid. */
+        ATOMIC,
+        /** Valid operations are written, failing ones are reported and skipped. */
+        BEST_EFFORT
+    }
+
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+
+    private Mode mode = Mode.ATOMIC;
+
+    @NotEmpty
+    @Size(max = MAX_OPERATIONS)
+    private List<@NotNull Operation> operations;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<Operation> operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * {@code wine} is required for creates and updates, {@code id} for updates and deletes. The
+     * wine is checked per operation, so one bad entry does not reject the whole batch. With
+     * {@code baseVersion} set, an update or delete only applies if the wine is still at that
+     * version.
+     */
+    public static class Operation {
+        private Type op;
+        private Long id;
+        private Long baseVersion;
+        private WineRequest wine;
+
+        public Type getOp() {
+            return op;
+        }
+
+        public void setOp(Type op) {
+            this.op = op;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public Long getBaseVersion() {
+            return baseVersion;
+        }
+
+        public void setBaseVersion(Long baseVersion) {
+            this.baseVersion = baseVersion;
+        }
+
+        public WineRequest getWine() {
+            return wine;
+        }
+
+        public void setWine(WineRequest wine) {
+            this.wine = wine;
+        }
+    }
+}
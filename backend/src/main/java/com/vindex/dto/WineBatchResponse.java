@@ -0,0 +1,81 @@
+package com.vindex.dto;
+
+import java.util.List;
+
+public class WineBatchResponse {
+    private boolean committed;
+    private int applied;
+    private int failed;
+    private List<Result> results;
+
+    public WineBatchResponse(boolean committed, int applied, int failed, List<Result> results) {
+        this.committed = committed;
+        this.applied = applied;
+        this.failed = failed;
+        this.results = results;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public int getApplied() {
+        return applied;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Outcome of one operation, in request order. {@code status} follows the single-wine
+     * endpoints (201, 200, 204, 400, 404). 409 marks a wine targeted twice in one batch or no
+     * longer at the operation's base version, and then carries the wine as it is now. 424 marks
+     * a valid operation that was not applied because an atomic batch failed.
+     */
+    public static class Result {
+        private int index;
+        private String op;
+        private int status;
+        private Long id;
+        private WineResponse wine;
+        private String error;
+
+        public Result(int index, String op, int status, Long id, WineResponse wine, String error) {
+            this.index = index;
+            this.op = op;
+            this.status = status;
+            this.id = id;
+            this.wine = wine;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public WineResponse getWine() {
+            return wine;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
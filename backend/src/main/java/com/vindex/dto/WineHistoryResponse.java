@@ -0,0 +1,102 @@
+package com.vindex.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class WineHistoryResponse {
+    private List<Entry> items;
+    private String nextCursor;
+
+    public WineHistoryResponse(List<Entry> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Entry> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public static class Entry {
+        private Long id;
+        private Long wineId;
+        private String type;
+        private String wineName;
+        private String vintage;
+        private Integer quantityDelta;
+        private Integer quantityAfter;
+        private Integer rating;
+        private String note;
+        private String location;
+        private Integer rowId;
+        private LocalDateTime occurredAt;
+
+        public Entry(Long id, Long wineId, String type, String wineName, String vintage,
+                     Integer quantityDelta, Integer quantityAfter, Integer rating, String note,
+                     String location, Integer rowId, LocalDateTime occurredAt) {
+            this.id = id;
+            this.wineId = wineId;
+            this.type = type;
+            this.wineName = wineName;
+            this.vintage = vintage;
+            this.quantityDelta = quantityDelta;
+            this.quantityAfter = quantityAfter;
+            this.rating = rating;
+            this.note = note;
+            this.location = location;
+            this.rowId = rowId;
+            this.occurredAt = occurredAt;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Long getWineId() {
+            return wineId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getWineName() {
+            return wineName;
+        }
+
+        public String getVintage() {
+            return vintage;
+        }
+
+        public Integer getQuantityDelta() {
+            return quantityDelta;
+        }
+
+        public Integer getQuantityAfter() {
+            return quantityAfter;
+        }
+
+        public Integer getRating() {
+            return rating;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public Integer getRowId() {
+            return rowId;
+        }
+
+        public LocalDateTime getOccurredAt() {
+            return occurredAt;
+        }
+    }
+}
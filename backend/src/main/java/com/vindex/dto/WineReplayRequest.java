@@ -0,0 +1,46 @@
+package com.vindex.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class WineReplayRequest {
+    public static final int MAX_MUTATIONS = 500;
+
+    @NotEmpty
+    @Size(max = MAX_MUTATIONS)
+    private List<@NotNull @Valid Mutation> mutations;
+
+    public List<Mutation> getMutations() {
+        return mutations;
+    }
+
+    public void setMutations(List<Mutation> mutations) {
+        this.mutations = mutations;
+    }
+
+    /**
+     * A batch operation queued on the client, in the order it was made. {@code key} is
+     * generated by the client once per mutation and sent unchanged on every retry.
+     * {@code baseVersion} is the version the client last received for the wine; later
+     * mutations of the same wine in one log may repeat it, the replay accounts for the log's
+     * own earlier writes.
+     */
+    public static class Mutation extends WineBatchRequest.Operation {
+        @NotBlank
+        @Size(max = 100)
+        private String key;
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+    }
+}
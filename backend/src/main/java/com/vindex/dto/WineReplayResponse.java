@@ -0,0 +1,93 @@
+package com.vindex.dto;
+
+import java.util.List;
+
+public class WineReplayResponse {
+    private int applied;
+    private int replayed;
+    private List<Result> results;
+    private List<Result> conflicts;
+
+    public WineReplayResponse(int applied, int replayed, List<Result> results, List<Result> conflicts) {
+        this.applied = applied;
+        this.replayed = replayed;
+        this.results = results;
+        this.conflicts = conflicts;
+    }
+
+    public int getApplied() {
+        return applied;
+    }
+
+    public int getReplayed() {
+        return replayed;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public List<Result> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Outcome of one mutation, in log order, with the statuses of {@link WineBatchResponse.Result}.
+     * {@code replayed} is set when the key had already been processed; the stored outcome is
+     * returned without the wine.
+     */
+    public static class Result {
+        private int index;
+        private String key;
+        private String op;
+        private int status;
+        private Long id;
+        private WineResponse wine;
+        private String error;
+        private boolean replayed;
+
+        public Result(int index, String key, String op, int status, Long id, WineResponse wine, String error,
+                      boolean replayed) {
+            this.index = index;
+            this.key = key;
+            this.op = op;
+            this.status = status;
+            this.id = id;
+            this.wine = wine;
+            this.error = error;
+            this.replayed = replayed;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public WineResponse getWine() {
+            return wine;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+}
@@ -8,6 +8,7 @@ public class WineRequest {
     private String type;
     private String vintage;
     private Integer quantity;
+    private Double price;
     private String winery;
     private String region;
     private String country;
@@ -47,6 +48,14 @@ public class WineRequest {
         this.quantity = quantity;
     }
 
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
     public String getWinery() {
         return winery;
     }
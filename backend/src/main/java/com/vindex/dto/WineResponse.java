@@ -6,27 +6,35 @@ public class WineResponse {
     private String type;
     private String vintage;
     private Integer quantity;
+    private Double price;
     private String winery;
     private String region;
     private String country;
+    private String grapeVariety;
     private String imageUrl;
+    private String thumbnailUrl;
     private String location;
     private Integer rowId;
+    private long version;
 
-    public WineResponse(Long id, String name, String type, String vintage, Integer quantity,
-                        String winery, String region, String country, String imageUrl, 
-                        String location, Integer rowId) {
+    public WineResponse(Long id, String name, String type, String vintage, Integer quantity, Double price,
+                        String winery, String region, String country, String grapeVariety, String imageUrl,
+                        String thumbnailUrl, String location, Integer rowId, long version) {
         this.id = id;
         this.name = name;
         this.type = type;
         this.vintage = vintage;
         this.quantity = quantity;
+        this.price = price;
         this.winery = winery;
         this.region = region;
         this.country = country;
+        this.grapeVariety = grapeVariety;
         this.imageUrl = imageUrl;
+        this.thumbnailUrl = thumbnailUrl;
         this.location = location;
         this.rowId = rowId;
+        this.version = version;
     }
 
     public Long getId() {
@@ -49,6 +57,10 @@ public class WineResponse {
         return quantity;
     }
 
+    public Double getPrice() {
+        return price;
+    }
+
     public String getWinery() {
         return winery;
     }
@@ -61,10 +73,18 @@ public class WineResponse {
         return country;
     }
 
+    public String getGrapeVariety() {
+        return grapeVariety;
+    }
+
     public String getImageUrl() {
         return imageUrl;
     }
 
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
     public String getLocation() {
         return location;
     }
@@ -72,4 +92,8 @@ public class WineResponse {
     public Integer getRowId() {
         return rowId;
     }
+
+    public long getVersion() {
+        return version;
+    }
 }
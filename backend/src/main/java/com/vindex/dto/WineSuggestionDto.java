@@ -1,5 +1,7 @@
 package com.vindex.dto;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+
 public class WineSuggestionDto {
     private String name;
     private String type;
@@ -8,9 +10,16 @@ public class WineSuggestionDto {
     private String region;
     private String country;
     private String imageUrl;
+    private String grapeVariety;
 
     public WineSuggestionDto(String name, String type, String vintage, String winery,
                              String region, String country, String imageUrl) {
+        this(name, type, vintage, winery, region, country, imageUrl, null);
+    }
+
+    @JsonCreator
+    public WineSuggestionDto(String name, String type, String vintage, String winery,
+                             String region, String country, String imageUrl, String grapeVariety) {
         this.name = name;
         this.type = type;
         this.vintage = vintage;
@@ -18,6 +27,7 @@ public class WineSuggestionDto {
         this.region = region;
         this.country = country;
         this.imageUrl = imageUrl;
+        this.grapeVariety = grapeVariety;
     }
 
     public String getName() {
@@ -47,4 +57,8 @@ public class WineSuggestionDto {
     public String getImageUrl() {
         return imageUrl;
     }
+
+    public String getGrapeVariety() {
+        return grapeVariety;
+    }
 }
@@ -0,0 +1,57 @@
+package com.vindex.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "cellar_stats")
+@IdClass(CellarStat.Key.class)
+@Data
+@NoArgsConstructor
+public class CellarStat {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "dimension")
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private Dimension dimension;
+
+    @Id
+    @Column(name = "dim_value")
+    private String dimValue;
+
+    @Column(name = "wine_count", nullable = false)
+    private Long wineCount = 0L;
+
+    @Column(name = "bottle_count", nullable = false)
+    private Long bottleCount = 0L;
+
+    @Column(name = "total_value", nullable = false)
+    private BigDecimal totalValue = BigDecimal.ZERO;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public enum Dimension {
+        TOTAL, TYPE, COUNTRY, REGION, VINTAGE
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private Dimension dimension;
+        private String dimValue;
+    }
+}
@@ -0,0 +1,72 @@
+package com.vindex.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "jobs")
+@Data
+@NoArgsConstructor
+public class Job {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "job_type", nullable = false)
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private JobType jobType;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private JobStatus status = JobStatus.QUEUED;
+
+    @Column(name = "payload", columnDefinition = "LONGTEXT")
+    private String payload;
+
+    @Column(name = "result", columnDefinition = "LONGTEXT")
+    private String result;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @Column(name = "progress", nullable = false)
+    private Integer progress = 0;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "max_attempts", nullable = false)
+    private Integer maxAttempts = 3;
+
+    @Column(name = "run_after", nullable = false)
+    private LocalDateTime runAfter = LocalDateTime.now();
+
+    @Column(name = "locked_by")
+    private String lockedBy;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public enum JobType {
+        LABEL_SCAN
+    }
+
+    public enum JobStatus {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+}
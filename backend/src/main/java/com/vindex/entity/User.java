@@ -37,18 +37,21 @@ public class User {
     @JdbcTypeCode(SqlTypes.VARCHAR)
     private Language preferredLanguage = Language.EN;
 
+    /**
+     * Shard holding this user's cellar; {@code null} means the directory database.
+     */
+    @Column(name = "shard")
+    private String shard;
+
+    @Column(name = "shard_moving", nullable = false)
+    private boolean shardMoving;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt = LocalDateTime.now();
 
-    @Column(name = "refresh_token")
-    private String refreshToken;
-
-    @Column(name = "refresh_token_expiry")
-    private LocalDateTime refreshTokenExpiry;
-
     public enum Language {
         EN, HE
     }
@@ -1,7 +1,6 @@
 package com.vindex.entity;
 
 import jakarta.persistence.*;
-import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.JdbcTypeCode;
@@ -18,33 +17,17 @@ public class Wine {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @NotBlank
-    @Column(name = "wine_name")
-    private String wineName;
-
-    @Column(name = "wine_type")
-    @Enumerated(EnumType.STRING)
-    @JdbcTypeCode(SqlTypes.VARCHAR)
-    private WineType wineType;
-
-    @Column(name = "vintage_year")
-    private Integer vintageYear;
-
-    @Column(name = "winery")
-    private String winery;
-
-    @Column(name = "grape_variety")
-    private String grapeVariety;
-
-    @Column(name = "region")
-    private String region;
-
-    @Column(name = "country")
-    private String country;
+    /**
+     * Name, type, vintage, winery, grape, region and country, shared with every other cellar
+     * holding the same wine; read them through the getters below.
+     */
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "catalog_id", nullable = false)
+    private WineCatalogEntry catalog;
 
     @Column(name = "alcohol_percentage")
     @JdbcTypeCode(SqlTypes.DECIMAL)
@@ -77,12 +60,56 @@ public class Wine {
     @Column(name = "row_id")
     private Integer rowId;
 
+    /**
+     * See {@code WineIdentity}; kept in step with name, winery and vintage on every write.
+     */
+    @Column(name = "identity_key", columnDefinition = "BINARY(16)")
+    private byte[] identityKey;
+
+    @Column(name = "enriched_at")
+    private LocalDateTime enrichedAt;
+
+    /**
+     * Primitive so Spring Data keeps telling new wines apart by their id.
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    public String getWineName() {
+        return catalog.getWineName();
+    }
+
+    public WineType getWineType() {
+        return catalog.getWineType();
+    }
+
+    public Integer getVintageYear() {
+        return catalog.getVintageYear();
+    }
+
+    public String getWinery() {
+        return catalog.getWinery();
+    }
+
+    public String getGrapeVariety() {
+        return catalog.getGrapeVariety();
+    }
+
+    public String getRegion() {
+        return catalog.getRegion();
+    }
+
+    public String getCountry() {
+        return catalog.getCountry();
+    }
+
     public enum WineType {
         RED, WHITE, SPARKLING, ROSÉ, DESSERT, FORTIFIED
     }
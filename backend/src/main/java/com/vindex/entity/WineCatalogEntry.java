@@ -0,0 +1,122 @@
+package com.vindex.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.springframework.util.DigestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * A wine's identity, shared by every cellar on the shard that holds it. Rows are addressed by
+ * the hash of their fields and never change; an instance built with the public constructor is
+ * a draft until {@code WineCatalogService} resolves it to the stored row. Columns are not
+ * updatable and there are no setters, but the entity is not {@code @Immutable}: Hibernate
+ * refuses the share lock {@code WineCatalogService} takes on an immutable row that is already
+ * loaded, as it is when a wine is saved again with an unchanged identity.
+ */
+@Entity
+@Table(name = "wine_catalog")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class WineCatalogEntry {
+    private static final String SEPARATOR = "\u001f";
+
+    @Id
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "id", columnDefinition = "BINARY(16)", updatable = false)
+    private UUID id;
+
+    @Column(name = "wine_name", nullable = false, updatable = false)
+    private String wineName;
+
+    @Column(name = "wine_type", updatable = false)
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private Wine.WineType wineType;
+
+    @Column(name = "vintage_year", updatable = false)
+    private Integer vintageYear;
+
+    @Column(name = "winery", updatable = false)
+    private String winery;
+
+    @Column(name = "grape_variety", updatable = false)
+    private String grapeVariety;
+
+    @Column(name = "region", updatable = false)
+    private String region;
+
+    @Column(name = "country", updatable = false)
+    private String country;
+
+    public WineCatalogEntry(String wineName, Wine.WineType wineType, Integer vintageYear, String winery,
+                            String region, String country, String grapeVariety) {
+        this.id = idOf(wineName, wineType, vintageYear, winery, region, country, grapeVariety);
+        this.wineName = wineName;
+        this.wineType = wineType;
+        this.vintageYear = vintageYear;
+        this.winery = winery;
+        this.region = region;
+        this.country = country;
+        this.grapeVariety = grapeVariety;
+    }
+
+    /**
+     * MD5 of the fields joined with 0x1F, nulls as empty strings; V12 computes the same in SQL.
+     */
+    public static UUID idOf(String wineName, Wine.WineType wineType, Integer vintageYear, String winery,
+                            String region, String country, String grapeVariety) {
+        String fields = String.join(SEPARATOR, wineName,
+                wineType == null ? "" : wineType.name(),
+                vintageYear == null ? "" : vintageYear.toString(),
+                nullToEmpty(winery), nullToEmpty(region), nullToEmpty(country), nullToEmpty(grapeVariety));
+        ByteBuffer digest = ByteBuffer.wrap(DigestUtils.md5Digest(fields.getBytes(StandardCharsets.UTF_8)));
+        return new UUID(digest.getLong(), digest.getLong());
+    }
+
+    /**
+     * The id as stored in {@code BINARY(16)} columns, for plain JDBC statements.
+     */
+    public static byte[] bytesOf(UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    /**
+     * This entry with its blank type, winery, region, country and grape taken from
+     * {@code other}; the entry itself when there is nothing to fill.
+     */
+    public WineCatalogEntry withMissingFrom(WineCatalogEntry other) {
+        // Getters, as other may be a lazy proxy
+        return withMissing(other.getWineType(), other.getWinery(), other.getRegion(), other.getCountry(),
+                other.getGrapeVariety());
+    }
+
+    /**
+     * This entry with the given values in place of its blank fields; the entry itself when
+     * nothing changes.
+     */
+    public WineCatalogEntry withMissing(Wine.WineType type, String winery, String region, String country,
+                                        String grapeVariety) {
+        WineCatalogEntry filled = new WineCatalogEntry(wineName,
+                wineType == null ? type : wineType,
+                vintageYear,
+                this.winery == null ? winery : this.winery,
+                this.region == null ? region : this.region,
+                this.country == null ? country : this.country,
+                this.grapeVariety == null ? grapeVariety : this.grapeVariety);
+        return filled.id.equals(id) ? this : filled;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
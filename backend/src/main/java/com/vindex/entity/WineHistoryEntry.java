@@ -0,0 +1,72 @@
+package com.vindex.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the append-only wine history. Entries are inserted in batches by
+ * {@code WineHistoryWriter}, which fills a missing name, vintage and placement from the wine
+ * row; JPA only reads them.
+ */
+@Entity
+@Table(name = "wine_history")
+@Data
+@NoArgsConstructor
+public class WineHistoryEntry {
+    @Id
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "wine_id", nullable = false)
+    private Long wineId;
+
+    @Column(name = "event_type", nullable = false)
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private EventType eventType;
+
+    @Column(name = "wine_name")
+    private String wineName;
+
+    @Column(name = "vintage_year")
+    private Integer vintageYear;
+
+    @Column(name = "quantity_delta")
+    private Integer quantityDelta;
+
+    @Column(name = "quantity_after")
+    private Integer quantityAfter;
+
+    @Column(name = "rating")
+    private Integer rating;
+
+    @Column(name = "note", columnDefinition = "TEXT")
+    private String note;
+
+    @Column(name = "location")
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private Wine.WineLocation location;
+
+    @Column(name = "row_id")
+    private Integer rowId;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt = LocalDateTime.now();
+
+    public WineHistoryEntry(Long userId, Long wineId, EventType eventType) {
+        this.userId = userId;
+        this.wineId = wineId;
+        this.eventType = eventType;
+    }
+
+    public enum EventType {
+        CREATED, CONSUMED, RESTOCKED, TASTED, MOVED, DELETED
+    }
+}
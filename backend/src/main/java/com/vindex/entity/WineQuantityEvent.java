@@ -0,0 +1,50 @@
+package com.vindex.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "wine_quantity_events")
+@Data
+@NoArgsConstructor
+public class WineQuantityEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "wine_id", nullable = false)
+    private Long wineId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "event_type", nullable = false)
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private EventType eventType;
+
+    @Column(name = "quantity_delta", nullable = false)
+    private Integer quantityDelta;
+
+    @Column(name = "quantity_after", nullable = false)
+    private Integer quantityAfter;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public WineQuantityEvent(Long wineId, Long userId, EventType eventType, int quantityDelta, int quantityAfter) {
+        this.wineId = wineId;
+        this.userId = userId;
+        this.eventType = eventType;
+        this.quantityDelta = quantityDelta;
+        this.quantityAfter = quantityAfter;
+    }
+
+    public enum EventType {
+        CONSUME, RESTOCK
+    }
+}
@@ -0,0 +1,21 @@
+package com.vindex.exception;
+
+import com.vindex.dto.WineResponse;
+
+/**
+ * Thrown when a new wine is already in the cellar and the client asked to be told instead of
+ * getting a second row. Rendered as 409 carrying the existing wine.
+ */
+public class DuplicateWineException extends RuntimeException {
+
+    private final WineResponse existing;
+
+    public DuplicateWineException(WineResponse existing) {
+        super("Wine is already in the cellar");
+        this.existing = existing;
+    }
+
+    public WineResponse getExisting() {
+        return existing;
+    }
+}
@@ -0,0 +1,19 @@
+package com.vindex.exception;
+
+/**
+ * Thrown when a bounded resource is saturated and the request is shed instead of queued.
+ * Rendered as 503 with a {@code Retry-After} hint.
+ */
+public class OverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public OverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
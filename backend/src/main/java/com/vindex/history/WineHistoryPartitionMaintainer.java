@@ -0,0 +1,70 @@
+package com.vindex.history;
+
+import com.vindex.shard.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps monthly partitions of {@code wine_history} ahead of the clock on every shard. New
+ * months are split off the catch-all {@code p_future} partition, which is empty in steady
+ * state, so the reorganize only touches metadata. Range queries on the history then only open
+ * the months they cover.
+ */
+@Component
+public class WineHistoryPartitionMaintainer {
+
+    private static final Logger log = LoggerFactory.getLogger(WineHistoryPartitionMaintainer.class);
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    @Value("${history.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    public WineHistoryPartitionMaintainer(DataSource dataSource, ShardRouter shardRouter) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.shardRouter = shardRouter;
+    }
+
+    @Scheduled(fixedDelayString = "${history.partitions.interval-ms:86400000}",
+            initialDelayString = "${history.partitions.initial-delay-ms:30000}")
+    public void run() {
+        shardRouter.forEachShard(() -> {
+            try {
+                ensurePartitions();
+            } catch (RuntimeException ex) {
+                log.warn("Could not extend wine_history partitions", ex);
+            }
+        });
+    }
+
+    void ensurePartitions() {
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'wine_history'", String.class));
+        YearMonth month = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++, month = month.plusMonths(1)) {
+            String name = month.format(PARTITION_NAME);
+            if (existing.contains(name)) {
+                continue;
+            }
+            LocalDate upperBound = month.plusMonths(1).atDay(1);
+            jdbcTemplate.execute("ALTER TABLE wine_history REORGANIZE PARTITION p_future INTO (" +
+                    "PARTITION " + name + " VALUES LESS THAN ('" + upperBound + "'), " +
+                    "PARTITION p_future VALUES LESS THAN (MAXVALUE))");
+            log.info("Added wine_history partition {}", name);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.vindex.history;
+
+import com.vindex.entity.WineHistoryEntry;
+import com.vindex.shard.ShardContext;
+import com.vindex.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes history entries off the request path. Callers enqueue and return; a single writer
+ * thread collects whatever arrives within {@code linger-ms} (up to {@code batch-size}) and
+ * inserts it per shard as one multi-row statement in one transaction, so a burst of changes
+ * costs one commit instead of one per change. The queue is bounded: when the database cannot
+ * keep up, entries are dropped and counted rather than slowing cellar writes down. Entries
+ * still queued at shutdown are flushed; a crash loses at most the queued ones.
+ */
+@Component
+public class WineHistoryWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(WineHistoryWriter.class);
+
+    private static final String[] COLUMNS = {
+            "user_id", "wine_id", "event_type", "wine_name", "vintage_year", "quantity_delta",
+            "quantity_after", "rating", "note", "location", "row_id", "occurred_at"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final BlockingQueue<Pending> queue;
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+    private final DistributionSummary batchSizes;
+    private volatile boolean running;
+    private Thread writer;
+
+    @Value("${history.batch-size:500}")
+    private int batchSize;
+
+    @Value("${history.linger-ms:200}")
+    private long lingerMs;
+
+    public WineHistoryWriter(DataSource dataSource,
+                             TransactionTemplate transactionTemplate,
+                             ShardRouter shardRouter,
+                             MeterRegistry meterRegistry,
+                             @Value("${history.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        meterRegistry.gaugeCollectionSize("history.queue", List.of(), queue);
+        this.written = meterRegistry.counter("history.entries", "outcome", "written");
+        this.dropped = meterRegistry.counter("history.entries", "outcome", "dropped");
+        this.failed = meterRegistry.counter("history.entries", "outcome", "failed");
+        this.batchSizes = meterRegistry.summary("history.batch.size");
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writer = new Thread(this::run, "history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the entry for the shard the calling thread is routed to.
+     */
+    public void append(WineHistoryEntry entry) {
+        if (!queue.offer(new Pending(ShardContext.current(), entry))) {
+            dropped.increment();
+            log.warn("History queue full, dropped {} entry for wine {}", entry.getEventType(), entry.getWineId());
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            write(remaining);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < batchSize) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    Pending next = remainingNanos > 0 ? queue.poll(remainingNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                // Shutting down; stop() flushes whatever is still queued
+                queue.addAll(batch);
+                return;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        Map<String, List<WineHistoryEntry>> byShard = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            byShard.computeIfAbsent(pending.shard, shard -> new ArrayList<>()).add(pending.entry);
+        }
+        byShard.forEach((shard, entries) -> {
+            try {
+                shardRouter.runOnShard(shard, () -> transactionTemplate.executeWithoutResult(status -> insert(entries)));
+                written.increment(entries.size());
+                batchSizes.record(entries.size());
+            } catch (RuntimeException ex) {
+                failed.increment(entries.size());
+                log.error("Could not write {} history entries to shard {}", entries.size(),
+                        shard == null ? "(directory)" : shard, ex);
+            }
+        });
+    }
+
+    /**
+     * Entries without a wine snapshot (consume, restock, tastings) take name, vintage and
+     * placement from the wine and catalog rows as they are at write time.
+     */
+    private void insert(List<WineHistoryEntry> entries) {
+        StringJoiner rows = new StringJoiner(" UNION ALL ");
+        List<Object> args = new ArrayList<>(entries.size() * COLUMNS.length);
+        for (WineHistoryEntry entry : entries) {
+            rows.add(rows.length() == 0 ? firstRowSelect() : "SELECT ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?");
+            args.add(entry.getUserId());
+            args.add(entry.getWineId());
+            args.add(entry.getEventType().name());
+            args.add(entry.getWineName());
+            args.add(entry.getVintageYear());
+            args.add(entry.getQuantityDelta());
+            args.add(entry.getQuantityAfter());
+            args.add(entry.getRating());
+            args.add(entry.getNote());
+            args.add(entry.getLocation() == null ? null : entry.getLocation().name());
+            args.add(entry.getRowId());
+            args.add(Timestamp.valueOf(entry.getOccurredAt()));
+        }
+        jdbcTemplate.update("INSERT INTO wine_history (" + String.join(", ", COLUMNS) + ") " +
+                "SELECT e.user_id, e.wine_id, e.event_type, COALESCE(e.wine_name, c.wine_name), " +
+                "COALESCE(e.vintage_year, c.vintage_year), e.quantity_delta, e.quantity_after, e.rating, e.note, " +
+                "COALESCE(e.location, w.location), COALESCE(e.row_id, w.row_id), e.occurred_at " +
+                "FROM (" + rows + ") e LEFT JOIN wines w ON w.id = e.wine_id AND w.user_id = e.user_id " +
+                "LEFT JOIN wine_catalog c ON c.id = w.catalog_id", args.toArray());
+    }
+
+    private static String firstRowSelect() {
+        StringJoiner select = new StringJoiner(", ", "SELECT ", "");
+        for (String column : COLUMNS) {
+            select.add("? AS " + column);
+        }
+        return select.toString();
+    }
+
+    private static final class Pending {
+        private final String shard;
+        private final WineHistoryEntry entry;
+
+        private Pending(String shard, WineHistoryEntry entry) {
+            this.shard = shard;
+            this.entry = entry;
+        }
+    }
+}
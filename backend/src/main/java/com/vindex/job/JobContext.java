@@ -0,0 +1,45 @@
+package com.vindex.job;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.function.IntConsumer;
+
+public class JobContext {
+
+    private final Long jobId;
+    private final Long userId;
+    private final JsonNode payload;
+    private final int attempt;
+    private final IntConsumer progressReporter;
+
+    public JobContext(Long jobId, Long userId, JsonNode payload, int attempt, IntConsumer progressReporter) {
+        this.jobId = jobId;
+        this.userId = userId;
+        this.payload = payload;
+        this.attempt = attempt;
+        this.progressReporter = progressReporter;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public JsonNode getPayload() {
+        return payload;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Records progress (0-100) for pollers; also renews the job's lease.
+     */
+    public void reportProgress(int percent) {
+        progressReporter.accept(Math.max(0, Math.min(100, percent)));
+    }
+}
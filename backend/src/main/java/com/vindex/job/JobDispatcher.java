@@ -0,0 +1,129 @@
+package com.vindex.job;
+
+import com.vindex.entity.Job;
+import com.vindex.service.JobService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the job table and feeds each job type's bounded worker pool. A type only claims as many
+ * jobs as it has idle workers, so unclaimed work stays in the table where another node can pick
+ * it up, and a flood of one type cannot starve the others.
+ */
+@Component
+public class JobDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(JobDispatcher.class);
+
+    private final JobService jobService;
+    private final String workerId = "worker-" + UUID.randomUUID();
+    private final Map<Job.JobType, Worker> workers = new EnumMap<>(Job.JobType.class);
+
+    @Value("${jobs.lease-timeout-ms:600000}")
+    private long leaseTimeoutMs;
+
+    public JobDispatcher(JobService jobService, List<JobHandler> handlers, Environment environment) {
+        this.jobService = jobService;
+        for (JobHandler handler : handlers) {
+            String key = "jobs.workers." + handler.getType().name().toLowerCase(Locale.ROOT).replace('_', '-') + ".threads";
+            int threads = environment.getProperty(key, Integer.class, 2);
+            workers.put(handler.getType(), new Worker(handler, threads));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.poll-interval-ms:1000}")
+    public void poll() {
+        for (Worker worker : workers.values()) {
+            int capacity = worker.threads - worker.busy.get();
+            if (capacity <= 0) {
+                continue;
+            }
+            try {
+                List<Job> claimed = jobService.claim(worker.handler.getType(), capacity, workerId);
+                for (Job job : claimed) {
+                    worker.busy.incrementAndGet();
+                    worker.executor.execute(() -> run(worker, job));
+                }
+            } catch (Exception ex) {
+                log.warn("Could not claim {} jobs", worker.handler.getType(), ex);
+            }
+        }
+    }
+
+    /**
+     * Returns jobs whose worker stopped renewing its lease (for example because the node died)
+     * to the queue.
+     */
+    @Scheduled(fixedDelayString = "${jobs.reap-interval-ms:60000}")
+    public void reapStaleJobs() {
+        int requeued = jobService.requeueStale(LocalDateTime.now().minusNanos(leaseTimeoutMs * 1_000_000));
+        if (requeued > 0) {
+            log.warn("Requeued {} jobs with expired leases", requeued);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.values().forEach(worker -> worker.executor.shutdown());
+    }
+
+    private void run(Worker worker, Job job) {
+        try {
+            JobContext context = new JobContext(job.getId(), job.getUserId(),
+                    jobService.readJson(job.getPayload()), job.getAttempts(),
+                    progress -> jobService.reportProgress(job.getId(), workerId, progress));
+            Object result = worker.handler.handle(context);
+            if (!jobService.complete(job.getId(), workerId, result)) {
+                log.warn("Job {} lost its lease before completing, result discarded", job.getId());
+            }
+        } catch (Exception ex) {
+            log.warn("Job {} ({}) attempt {} failed: {}", job.getId(), job.getJobType(), job.getAttempts(), ex.getMessage());
+            try {
+                if (!jobService.fail(job.getId(), workerId, ex)) {
+                    log.warn("Job {} lost its lease before its failure was recorded", job.getId());
+                }
+            } catch (Exception failEx) {
+                log.error("Could not record failure of job {}", job.getId(), failEx);
+            }
+        } finally {
+            worker.busy.decrementAndGet();
+        }
+    }
+
+    private static final class Worker {
+        private final JobHandler handler;
+        private final int threads;
+        private final ThreadPoolExecutor executor;
+        private final AtomicInteger busy = new AtomicInteger();
+
+        private Worker(JobHandler handler, int threads) {
+            this.handler = handler;
+            this.threads = Math.max(1, threads);
+            AtomicInteger counter = new AtomicInteger();
+            String prefix = "job-" + handler.getType().name().toLowerCase(Locale.ROOT) + "-";
+            this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+}
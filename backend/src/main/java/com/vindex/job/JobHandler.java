@@ -0,0 +1,18 @@
+package com.vindex.job;
+
+import com.vindex.entity.Job;
+
+/**
+ * Executes jobs of one {@link Job.JobType}. Implementations are discovered as Spring beans and
+ * run on that type's dedicated worker pool, never on HTTP threads.
+ */
+public interface JobHandler {
+
+    Job.JobType getType();
+
+    /**
+     * Runs the job and returns its result, which is stored as JSON. Throwing schedules a retry
+     * with backoff until the job's attempts are exhausted.
+     */
+    Object handle(JobContext context) throws Exception;
+}
@@ -0,0 +1,91 @@
+package com.vindex.replica;
+
+import com.vindex.shard.ShardContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends read-only transactions to the replica of the current shard and everything else to the
+ * primary. Transactions only know they are read-only after they have begun, so this must sit
+ * behind a {@code LazyConnectionDataSourceProxy} that defers fetching the physical connection
+ * to the first statement. Reads stay on the primary while the replica lags, while the caller
+ * is pinned by {@link ReplicaContext}, and when the replica refuses a connection.
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final ReplicaRegistry replicas;
+    private final String directoryShard;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaRegistry replicas, String directoryShard,
+                                      MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.directoryShard = directoryShard;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(target -> target.getConnection(username, password));
+    }
+
+    private Connection route(ConnectionOpener opener) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return opener.open(primary);
+        }
+        String shard = ShardContext.current() == null ? directoryShard : ShardContext.current();
+        if (!replicas.hasReplica(shard)) {
+            return opener.open(primary);
+        }
+        if (ReplicaContext.isPrimaryPinned()) {
+            count(shard, "primary", "read-your-writes");
+            return opener.open(primary);
+        }
+        DataSource replica = replicas.usableReplica(shard);
+        if (replica == null) {
+            count(shard, "primary", "lag");
+            return opener.open(primary);
+        }
+        try {
+            Connection connection = opener.open(replica);
+            count(shard, "replica", "ok");
+            return connection;
+        } catch (SQLException ex) {
+            log.warn("Replica of shard {} refused a connection, reading from the primary", shard, ex);
+            replicas.recordLag(shard, ReplicaRegistry.UNKNOWN_LAG);
+            count(shard, "primary", "unavailable");
+            return opener.open(primary);
+        }
+    }
+
+    private void count(String shard, String target, String reason) {
+        counters.computeIfAbsent(shard + '|' + target + '|' + reason,
+                key -> meterRegistry.counter("datasource.reads", "shard", shard, "target", target, "reason", reason))
+                .increment();
+    }
+
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(DataSource target) throws SQLException;
+    }
+}
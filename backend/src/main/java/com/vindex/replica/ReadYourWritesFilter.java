@@ -0,0 +1,60 @@
+package com.vindex.replica;
+
+import com.vindex.security.UserPrincipal;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Keeps a user's reads on the primary while they write and for a short window afterwards.
+ * The window starts when the writing request completes, which is after its commit.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final ReplicaRegistry replicaRegistry;
+    private final ReadYourWritesTracker tracker;
+
+    public ReadYourWritesFilter(ReplicaRegistry replicaRegistry, ReadYourWritesTracker tracker) {
+        this.replicaRegistry = replicaRegistry;
+        this.tracker = tracker;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !replicaRegistry.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal principal)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean write = !isRead(request);
+        if (write || tracker.wroteRecently(principal.getId())) {
+            ReplicaContext.pinPrimary();
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaContext.clear();
+            if (write) {
+                tracker.recordWrite(principal.getId());
+            }
+        }
+    }
+
+    private boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+}
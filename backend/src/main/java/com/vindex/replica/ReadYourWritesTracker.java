@@ -0,0 +1,40 @@
+package com.vindex.replica;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which users wrote in the last {@code read-replicas.read-your-writes-ms}, so their
+ * next reads see their own changes even on a lagging replica. The window should cover the
+ * highest lag the replicas are allowed before reads fall back to the primary anyway. State is
+ * per instance; behind a load balancer without sticky sessions the window is best effort.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    private final Map<Long, Long> lastWriteNanos = new ConcurrentHashMap<>();
+    private final long windowNanos;
+
+    public ReadYourWritesTracker(@Value("${read-replicas.read-your-writes-ms:5000}") long windowMs) {
+        this.windowNanos = windowMs * 1_000_000L;
+    }
+
+    public void recordWrite(long userId) {
+        lastWriteNanos.put(userId, System.nanoTime());
+    }
+
+    public boolean wroteRecently(long userId) {
+        Long wroteAt = lastWriteNanos.get(userId);
+        return wroteAt != null && System.nanoTime() - wroteAt < windowNanos;
+    }
+
+    @Scheduled(fixedDelayString = "${read-replicas.read-your-writes-ms:5000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        lastWriteNanos.values().removeIf(wroteAt -> now - wroteAt >= windowNanos);
+    }
+}
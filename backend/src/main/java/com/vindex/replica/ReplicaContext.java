@@ -0,0 +1,43 @@
+package com.vindex.replica;
+
+import java.util.function.Supplier;
+
+/**
+ * Whether the current thread's read-only transactions must stay on the primary, either
+ * because the caller wrote something moments ago or because a replica miss is being retried.
+ */
+public final class ReplicaContext {
+
+    private static final ThreadLocal<Boolean> PRIMARY_PINNED = new ThreadLocal<>();
+
+    private ReplicaContext() {
+    }
+
+    public static boolean isPrimaryPinned() {
+        return Boolean.TRUE.equals(PRIMARY_PINNED.get());
+    }
+
+    /**
+     * Runs {@code action} with every read on the primary; the transaction it opens must not
+     * have started yet.
+     */
+    public static <T> T callOnPrimary(Supplier<T> action) {
+        boolean pinned = isPrimaryPinned();
+        pinPrimary();
+        try {
+            return action.get();
+        } finally {
+            if (!pinned) {
+                clear();
+            }
+        }
+    }
+
+    static void pinPrimary() {
+        PRIMARY_PINNED.set(Boolean.TRUE);
+    }
+
+    static void clear() {
+        PRIMARY_PINNED.remove();
+    }
+}
@@ -0,0 +1,98 @@
+package com.vindex.replica;
+
+import com.vindex.shard.ShardRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Measures how far each replica trails its primary with a heartbeat row: the current time is
+ * written into {@code replication_heartbeat} on the primary and read back from the replica.
+ * The application's clock produces both ends, so database clock skew does not matter. A failed
+ * read makes the lag unknown, which keeps reads on the primary until a later beat succeeds.
+ */
+@Component
+public class ReplicaLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final ReplicaRegistry replicas;
+    private final List<Heartbeat> heartbeats;
+
+    public ReplicaLagMonitor(ReplicaRegistry replicas, ShardRegistry shards, MeterRegistry meterRegistry) {
+        this.replicas = replicas;
+        this.heartbeats = replicas.getReplicas().entrySet().stream()
+                .map(entry -> new Heartbeat(entry.getKey(),
+                        new JdbcTemplate(shards.dataSource(entry.getKey())), new JdbcTemplate(entry.getValue())))
+                .toList();
+        for (Heartbeat heartbeat : heartbeats) {
+            Gauge.builder("datasource.replica.lag", replicas, registry -> lagSeconds(registry, heartbeat.shard))
+                    .tag("shard", heartbeat.shard)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replica.usable", replicas,
+                            registry -> registry.usableReplica(heartbeat.shard) == null ? 0 : 1)
+                    .tag("shard", heartbeat.shard)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${read-replicas.heartbeat-interval-ms:1000}")
+    public void beat() {
+        for (Heartbeat heartbeat : heartbeats) {
+            replicas.recordLag(heartbeat.shard, measure(heartbeat));
+        }
+    }
+
+    /**
+     * Reads the replica before writing the next beat: a replica that already has the previous
+     * beat is caught up to within one interval, otherwise it trails by at least as long as that
+     * beat has been waiting.
+     */
+    private long measure(Heartbeat heartbeat) {
+        long now = System.currentTimeMillis();
+        long lag = ReplicaRegistry.UNKNOWN_LAG;
+        if (heartbeat.lastBeat > 0) {
+            try {
+                List<Long> seen = heartbeat.replica.queryForList("SELECT beat_at FROM replication_heartbeat WHERE id = 1", Long.class);
+                if (!seen.isEmpty()) {
+                    lag = seen.get(0) >= heartbeat.lastBeat ? 0 : now - seen.get(0);
+                }
+            } catch (RuntimeException ex) {
+                log.debug("Heartbeat read from the replica of shard {} failed", heartbeat.shard, ex);
+            }
+        }
+        try {
+            heartbeat.primary.update("INSERT INTO replication_heartbeat (id, beat_at) VALUES (1, ?) " +
+                    "ON DUPLICATE KEY UPDATE beat_at = VALUES(beat_at)", now);
+            heartbeat.lastBeat = now;
+        } catch (RuntimeException ex) {
+            log.debug("Heartbeat write to shard {} failed", heartbeat.shard, ex);
+        }
+        return lag;
+    }
+
+    private static double lagSeconds(ReplicaRegistry registry, String shard) {
+        long lag = registry.lagMs(shard);
+        return lag == ReplicaRegistry.UNKNOWN_LAG ? Double.NaN : lag / 1000.0;
+    }
+
+    private static final class Heartbeat {
+        private final String shard;
+        private final JdbcTemplate primary;
+        private final JdbcTemplate replica;
+        private long lastBeat;
+
+        private Heartbeat(String shard, JdbcTemplate primary, JdbcTemplate replica) {
+            this.shard = shard;
+            this.primary = primary;
+            this.replica = replica;
+        }
+    }
+}
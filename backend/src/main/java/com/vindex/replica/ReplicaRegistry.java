@@ -0,0 +1,114 @@
+package com.vindex.replica;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replica pools keyed by the shard they follow, together with the lag last measured for each.
+ * A replica only serves reads while its lag is known and within {@code maxLagMs}; until the
+ * first heartbeat comes back, and whenever it cannot be reached, its shard reads from the
+ * primary. A measurement older than {@code maxReadingAgeMs} counts as unknown too: when the
+ * heartbeat itself stalls, the last good reading says nothing about the replica any more.
+ */
+public class ReplicaRegistry implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRegistry.class);
+
+    public static final long UNKNOWN_LAG = Long.MAX_VALUE;
+
+    private final Map<String, DataSource> replicas;
+    private final Map<String, Reading> readings = new ConcurrentHashMap<>();
+    private final long maxLagMs;
+    private final long maxReadingAgeMs;
+
+    public ReplicaRegistry(Map<String, DataSource> replicas, long maxLagMs, long maxReadingAgeMs) {
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        this.maxLagMs = maxLagMs;
+        this.maxReadingAgeMs = maxReadingAgeMs;
+    }
+
+    public boolean isEnabled() {
+        return !replicas.isEmpty();
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public long getMaxLagMs() {
+        return maxLagMs;
+    }
+
+    public boolean hasReplica(String shard) {
+        return replicas.containsKey(shard);
+    }
+
+    /**
+     * @return the shard's replica when it is close enough to the primary, otherwise {@code null}
+     */
+    public DataSource usableReplica(String shard) {
+        DataSource replica = replicas.get(shard);
+        return replica != null && lagMs(shard) <= maxLagMs ? replica : null;
+    }
+
+    /**
+     * @return the last measured lag, or {@link #UNKNOWN_LAG} when there is none or it is too old
+     */
+    public long lagMs(String shard) {
+        return lagAt(readings.get(shard), System.currentTimeMillis());
+    }
+
+    void recordLag(String shard, long lag) {
+        recordLag(shard, lag, System.currentTimeMillis());
+    }
+
+    void recordLag(String shard, long lag, long measuredAtMs) {
+        Reading previous = readings.put(shard, new Reading(lag, measuredAtMs));
+        boolean wasUsable = lagAt(previous, measuredAtMs) <= maxLagMs;
+        boolean usable = lag <= maxLagMs;
+        if (wasUsable != usable) {
+            if (usable) {
+                log.info("Replica of shard {} is back within {} ms of the primary, serving reads again", shard, maxLagMs);
+            } else {
+                log.warn("Replica of shard {} is {} behind, reading from the primary", shard,
+                        lag == UNKNOWN_LAG ? "unreachable or unknown" : lag + " ms");
+            }
+        }
+    }
+
+    private long lagAt(Reading reading, long now) {
+        if (reading == null || now - reading.measuredAtMs > maxReadingAgeMs) {
+            return UNKNOWN_LAG;
+        }
+        return reading.lagMs;
+    }
+
+    @Override
+    public void close() {
+        for (Map.Entry<String, DataSource> entry : replicas.entrySet()) {
+            if (entry.getValue() instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception ex) {
+                    log.warn("Could not close replica pool of shard {}", entry.getKey(), ex);
+                }
+            }
+        }
+    }
+
+    private static final class Reading {
+        private final long lagMs;
+        private final long measuredAtMs;
+
+        private Reading(long lagMs, long measuredAtMs) {
+            this.lagMs = lagMs;
+            this.measuredAtMs = measuredAtMs;
+        }
+    }
+}
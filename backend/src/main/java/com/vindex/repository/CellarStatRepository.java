@@ -0,0 +1,64 @@
+package com.vindex.repository;
+
+import com.vindex.entity.CellarStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface CellarStatRepository extends JpaRepository<CellarStat, CellarStat.Key> {
+    /**
+     * Run as a JDBC batch by {@code CellarStatsService}, one row per dimension a write touches.
+     */
+    String APPLY_DELTA = "INSERT INTO cellar_stats (user_id, dimension, dim_value, wine_count, bottle_count, total_value) " +
+            "VALUES (:userId, :dimension, :dimValue, :wines, :bottles, :value) " +
+            "ON DUPLICATE KEY UPDATE wine_count = wine_count + VALUES(wine_count), " +
+            "bottle_count = bottle_count + VALUES(bottle_count), " +
+            "total_value = total_value + VALUES(total_value)";
+
+    List<CellarStat> findByUserId(Long userId);
+
+    /**
+     * Shifts the bottle count and value of every summary row a wine contributes to, reading the
+     * wine's dimensions straight from its rows instead of loading the entity.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO cellar_stats (user_id, dimension, dim_value, wine_count, bottle_count, total_value) " +
+            "SELECT * FROM (" +
+            "SELECT user_id, 'TOTAL' AS dimension, '' AS dim_value, 0 AS wine_count, :bottles AS bottle_count, " +
+            "ROUND(COALESCE(price, 0) * :bottles, 2) AS total_value FROM " + WineRepository.WITH_CATALOG + " WHERE w.id = :wineId " +
+            "UNION ALL SELECT user_id, 'TYPE', COALESCE(wine_type, ''), 0, :bottles, ROUND(COALESCE(price, 0) * :bottles, 2) " +
+            "FROM " + WineRepository.WITH_CATALOG + " WHERE w.id = :wineId " +
+            "UNION ALL SELECT user_id, 'COUNTRY', COALESCE(country, ''), 0, :bottles, ROUND(COALESCE(price, 0) * :bottles, 2) " +
+            "FROM " + WineRepository.WITH_CATALOG + " WHERE w.id = :wineId " +
+            "UNION ALL SELECT user_id, 'REGION', COALESCE(region, ''), 0, :bottles, ROUND(COALESCE(price, 0) * :bottles, 2) " +
+            "FROM " + WineRepository.WITH_CATALOG + " WHERE w.id = :wineId " +
+            "UNION ALL SELECT user_id, 'VINTAGE', COALESCE(CAST(vintage_year AS CHAR CHARACTER SET utf8mb4) COLLATE utf8mb4_unicode_ci, ''), 0, :bottles, ROUND(COALESCE(price, 0) * :bottles, 2) " +
+            "FROM " + WineRepository.WITH_CATALOG + " WHERE w.id = :wineId" +
+            ") AS delta " +
+            "ON DUPLICATE KEY UPDATE bottle_count = cellar_stats.bottle_count + delta.bottle_count, " +
+            "total_value = cellar_stats.total_value + delta.total_value",
+            nativeQuery = true)
+    void applyBottleDelta(@Param("wineId") Long wineId, @Param("bottles") long bottles);
+
+    @Modifying
+    @Query(value = "DELETE FROM cellar_stats WHERE user_id = :userId", nativeQuery = true)
+    void deleteAllForUser(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "INSERT INTO cellar_stats (user_id, dimension, dim_value, wine_count, bottle_count, total_value) " +
+            "SELECT user_id, 'TOTAL', '', COUNT(*), COALESCE(SUM(quantity), 0), COALESCE(SUM(price * quantity), 0) " +
+            "FROM " + WineRepository.WITH_CATALOG + " WHERE w.user_id = :userId GROUP BY user_id " +
+            "UNION ALL SELECT user_id, 'TYPE', COALESCE(wine_type, ''), COUNT(*), COALESCE(SUM(quantity), 0), COALESCE(SUM(price * quantity), 0) " +
+            "FROM " + WineRepository.WITH_CATALOG + " WHERE w.user_id = :userId GROUP BY user_id, COALESCE(wine_type, '') " +
+            "UNION ALL SELECT user_id, 'COUNTRY', COALESCE(country, ''), COUNT(*), COALESCE(SUM(quantity), 0), COALESCE(SUM(price * quantity), 0) " +
+            "FROM " + WineRepository.WITH_CATALOG + " WHERE w.user_id = :userId GROUP BY user_id, COALESCE(country, '') " +
+            "UNION ALL SELECT user_id, 'REGION', COALESCE(region, ''), COUNT(*), COALESCE(SUM(quantity), 0), COALESCE(SUM(price * quantity), 0) " +
+            "FROM " + WineRepository.WITH_CATALOG + " WHERE w.user_id = :userId GROUP BY user_id, COALESCE(region, '') " +
+            "UNION ALL SELECT user_id, 'VINTAGE', COALESCE(CAST(vintage_year AS CHAR CHARACTER SET utf8mb4) COLLATE utf8mb4_unicode_ci, ''), COUNT(*), COALESCE(SUM(quantity), 0), COALESCE(SUM(price * quantity), 0) " +
+            "FROM " + WineRepository.WITH_CATALOG + " WHERE w.user_id = :userId GROUP BY user_id, COALESCE(CAST(vintage_year AS CHAR CHARACTER SET utf8mb4) COLLATE utf8mb4_unicode_ci, '')",
+            nativeQuery = true)
+    void rebuildForUser(@Param("userId") Long userId);
+}
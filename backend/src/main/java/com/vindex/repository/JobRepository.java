@@ -0,0 +1,52 @@
+package com.vindex.repository;
+
+import com.vindex.entity.Job;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface JobRepository extends JpaRepository<Job, Long> {
+    Optional<Job> findByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Locks up to {@code limit} due jobs of one type. Rows already locked by another node are
+     * skipped rather than waited on, so concurrent pollers never block each other.
+     */
+    @Query(value = "SELECT * FROM jobs WHERE job_type = :jobType AND status = 'QUEUED' AND run_after <= :now " +
+            "ORDER BY run_after, id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Job> lockDueJobs(@Param("jobType") String jobType, @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Reports progress and renews the lease, but only while {@code worker} still holds it.
+     */
+    @Modifying
+    @Query("update Job j set j.progress = :progress, j.lockedAt = :now, j.updatedAt = :now " +
+            "where j.id = :id and j.lockedBy = :worker and j.status = :running")
+    int updateProgress(@Param("id") Long id, @Param("worker") String worker, @Param("progress") int progress,
+                       @Param("running") Job.JobStatus running, @Param("now") LocalDateTime now);
+
+    /**
+     * Finishes a job and drops its lease. Matches nothing once the lease has been reaped, so a
+     * worker that outlived its lease cannot overwrite the outcome of the attempt that replaced it.
+     */
+    @Modifying
+    @Query("update Job j set j.status = :status, j.result = :result, j.errorMessage = :errorMessage, " +
+            "j.progress = :progress, j.runAfter = :runAfter, j.lockedBy = null, j.lockedAt = null, j.updatedAt = :now " +
+            "where j.id = :id and j.lockedBy = :worker and j.status = :running")
+    int releaseLease(@Param("id") Long id, @Param("worker") String worker, @Param("running") Job.JobStatus running,
+                     @Param("status") Job.JobStatus status, @Param("result") String result,
+                     @Param("errorMessage") String errorMessage, @Param("progress") int progress,
+                     @Param("runAfter") LocalDateTime runAfter, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update Job j set j.status = :queued, j.lockedBy = null, j.lockedAt = null, j.updatedAt = :now " +
+            "where j.status = :running and j.lockedAt < :staleBefore")
+    int requeueStale(@Param("queued") Job.JobStatus queued, @Param("running") Job.JobStatus running,
+                     @Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+}
@@ -2,10 +2,22 @@ package com.vindex.repository;
 
 import com.vindex.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     Optional<User> findByUsername(String username);
-    Optional<User> findByRefreshToken(String refreshToken);
+
+    @Query("select u.id from User u order by u.id")
+    List<Long> findAllIds();
+
+    /**
+     * Locks the user's row on the current shard, which holds one for every user whose cellar
+     * it stores, until the transaction ends.
+     */
+    @Query(value = "SELECT id FROM users WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Long lockById(@Param("id") Long id);
 }
@@ -0,0 +1,23 @@
+package com.vindex.repository;
+
+import com.vindex.entity.WineCatalogEntry;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface WineCatalogRepository extends JpaRepository<WineCatalogEntry, UUID> {
+
+    /**
+     * A locking read, so rows inserted by other transactions since this one's snapshot are
+     * seen too. Nothing ever takes an exclusive lock on catalog rows, so it never waits.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT c FROM WineCatalogEntry c WHERE c.id IN :ids")
+    List<WineCatalogEntry> findAllForShare(@Param("ids") Collection<UUID> ids);
+}
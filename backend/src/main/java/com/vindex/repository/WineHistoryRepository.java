@@ -0,0 +1,32 @@
+package com.vindex.repository;
+
+import com.vindex.entity.WineHistoryEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface WineHistoryRepository extends JpaRepository<WineHistoryEntry, Long> {
+
+    /**
+     * Newest first, continuing strictly after the {@code (beforeAt, beforeId)} cursor. The
+     * bounded {@code occurredAt} range lets MySQL prune the monthly partitions.
+     */
+    @Query("SELECT h FROM WineHistoryEntry h WHERE h.userId = :userId " +
+            "AND h.occurredAt >= :from AND h.occurredAt < :to " +
+            "AND (h.occurredAt < :beforeAt OR (h.occurredAt = :beforeAt AND h.id < :beforeId)) " +
+            "AND (:wineId IS NULL OR h.wineId = :wineId) " +
+            "AND (:eventType IS NULL OR h.eventType = :eventType) " +
+            "ORDER BY h.occurredAt DESC, h.id DESC")
+    List<WineHistoryEntry> findPage(@Param("userId") Long userId,
+                                    @Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to,
+                                    @Param("beforeAt") LocalDateTime beforeAt,
+                                    @Param("beforeId") Long beforeId,
+                                    @Param("wineId") Long wineId,
+                                    @Param("eventType") WineHistoryEntry.EventType eventType,
+                                    Pageable pageable);
+}
@@ -0,0 +1,7 @@
+package com.vindex.repository;
+
+import com.vindex.entity.WineQuantityEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface WineQuantityEventRepository extends JpaRepository<WineQuantityEvent, Long> {
+}
@@ -1,12 +1,158 @@
 package com.vindex.repository;
 
 import com.vindex.entity.Wine;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface WineRepository extends JpaRepository<Wine, Long> {
+    /**
+     * Wines with their catalog rows, for native queries: {@code w} and {@code c}.
+     */
+    String WITH_CATALOG = "wines w JOIN wine_catalog c ON c.id = w.catalog_id";
+    String INCOMPLETE = "(c.winery IS NULL OR c.region IS NULL OR c.country IS NULL OR c.grape_variety IS NULL " +
+            "OR w.image_url IS NULL OR w.image_url = '/wine-placeholder.svg')";
+
+    // Every finder whose wines get mapped to responses fetches the catalog in the same query
+    @EntityGraph(attributePaths = "catalog")
     List<Wine> findByUserIdOrderByCreatedAtDesc(Long userId);
+    @EntityGraph(attributePaths = "catalog")
     Optional<Wine> findByIdAndUserId(Long id, Long userId);
+    @EntityGraph(attributePaths = "catalog")
+    List<Wine> findByUserIdAndIdIn(Long userId, Collection<Long> ids);
+    @EntityGraph(attributePaths = "catalog")
+    Optional<Wine> findFirstByUserIdAndIdentityKeyOrderByIdAsc(Long userId, byte[] identityKey);
+    @EntityGraph(attributePaths = "catalog")
+    List<Wine> findByUserIdAndIdentityKeyOrderByIdAsc(Long userId, byte[] identityKey);
+
+    /**
+     * Same wine in the same place; copies kept in different places are not duplicates.
+     */
+    @Query(value = "SELECT user_id AS userId, identity_key AS identityKey, location, row_id AS rowId FROM wines " +
+            "WHERE identity_key IS NOT NULL GROUP BY user_id, identity_key, location, row_id HAVING COUNT(*) > 1 " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<DuplicateGroup> findDuplicateGroups(@Param("limit") int limit);
+
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM wines WHERE identity_key IS NOT NULL " +
+            "GROUP BY user_id, identity_key " +
+            "HAVING COUNT(DISTINCT COALESCE(location, ''), COALESCE(row_id, -1)) > 1) AS split",
+            nativeQuery = true)
+    long countDuplicatesInSeveralPlaces();
+
+    @Query(value = "SELECT w.id, c.wine_name AS wineName, c.winery, c.vintage_year AS vintageYear " +
+            "FROM " + WITH_CATALOG + " WHERE w.identity_key IS NULL ORDER BY w.id LIMIT :limit",
+            nativeQuery = true)
+    List<IdentityCandidate> findMissingIdentityKeys(@Param("limit") int limit);
+
+    /**
+     * Keeps the quantity log of merged duplicates, which would otherwise cascade away with them.
+     */
+    @Modifying
+    @Query(value = "UPDATE wine_quantity_events SET wine_id = :targetId WHERE wine_id IN (:sourceIds)",
+            nativeQuery = true)
+    int reassignQuantityEvents(@Param("sourceIds") Collection<Long> sourceIds, @Param("targetId") Long targetId);
+
+    /**
+     * Hands the oldest shelf position of merged duplicates to the target unless it has its own;
+     * a wine holds one position, so the others go with the duplicates.
+     */
+    @Modifying
+    @Query(value = "UPDATE IGNORE wine_positions SET wine_id = :targetId WHERE wine_id IN (:sourceIds) ORDER BY id",
+            nativeQuery = true)
+    int reassignPositions(@Param("sourceIds") Collection<Long> sourceIds, @Param("targetId") Long targetId);
+    boolean existsByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Takes bottles out only if enough are left. The new quantity is stashed in the
+     * connection's LAST_INSERT_ID so it can be read back without selecting the row.
+     */
+    @Modifying
+    @Query(value = "UPDATE wines SET quantity = LAST_INSERT_ID(quantity - :count), version = version + 1, updated_at = :now " +
+            "WHERE id = :id AND user_id = :userId AND quantity >= :count",
+            nativeQuery = true)
+    int consume(@Param("id") Long id, @Param("userId") Long userId, @Param("count") int count,
+                @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "UPDATE wines SET quantity = LAST_INSERT_ID(COALESCE(quantity, 0) + :count), version = version + 1, " +
+            "updated_at = :now " +
+            "WHERE id = :id AND user_id = :userId",
+            nativeQuery = true)
+    int restock(@Param("id") Long id, @Param("userId") Long userId, @Param("count") int count,
+                @Param("now") LocalDateTime now);
+
+    /**
+     * Value stored by the last {@link #consume} or {@link #restock} on this connection; must be
+     * read in the same transaction before any other insert.
+     */
+    @Query(value = "SELECT LAST_INSERT_ID()", nativeQuery = true)
+    long lastUpdatedQuantity();
+
+    @Query(value = "SELECT w.id, w.user_id AS userId, c.wine_name AS wineName, c.wine_type AS wineType, " +
+            "c.vintage_year AS vintageYear, c.winery, c.region, c.country, c.grape_variety AS grapeVariety " +
+            "FROM " + WITH_CATALOG + " WHERE w.enriched_at IS NULL AND " + INCOMPLETE + " ORDER BY w.id LIMIT :limit",
+            nativeQuery = true)
+    List<EnrichmentCandidate> findEnrichmentCandidates(@Param("limit") int limit);
+
+    @Query(value = "SELECT COUNT(*) FROM " + WITH_CATALOG + " WHERE w.enriched_at IS NULL AND " + INCOMPLETE, nativeQuery = true)
+    long countEnrichmentBacklog();
+
+    /**
+     * Points every listed wine at its enriched catalog row, with the identity key that goes
+     * with it, and fills in a missing image, with one statement. Wines edited since they were
+     * read (no longer on {@code fromCatalogId}, or already enriched) are left as they are, and
+     * the version bump makes clients holding the old version conflict instead of undoing it.
+     *
+     * @return number of wines enriched
+     */
+    @Modifying
+    @Query(value = "UPDATE wines SET catalog_id = :catalogId, identity_key = :identityKey, " +
+            "image_url = IF(image_url IS NULL OR image_url = '/wine-placeholder.svg', COALESCE(:imageUrl, image_url), image_url), " +
+            "enriched_at = :now, version = version + 1 " +
+            "WHERE id IN (:ids) AND catalog_id = :fromCatalogId AND enriched_at IS NULL",
+            nativeQuery = true)
+    int applyEnrichment(@Param("ids") Collection<Long> ids,
+                        @Param("fromCatalogId") byte[] fromCatalogId,
+                        @Param("catalogId") byte[] catalogId,
+                        @Param("identityKey") byte[] identityKey,
+                        @Param("imageUrl") String imageUrl,
+                        @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "UPDATE wines SET enriched_at = :now WHERE id IN (:ids)", nativeQuery = true)
+    int markEnrichmentChecked(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    interface EnrichmentCandidate {
+        Long getId();
+        Long getUserId();
+        String getWineName();
+        String getWineType();
+        Integer getVintageYear();
+        String getWinery();
+        String getRegion();
+        String getCountry();
+        String getGrapeVariety();
+    }
+
+    interface DuplicateGroup {
+        Long getUserId();
+        byte[] getIdentityKey();
+        String getLocation();
+        Integer getRowId();
+    }
+
+    interface IdentityCandidate {
+        Long getId();
+        String getWineName();
+        String getWinery();
+        Integer getVintageYear();
+    }
 }
@@ -1,30 +1,110 @@
 package com.vindex.security;
 
+import com.vindex.cache.TwoTierCache;
 import com.vindex.entity.User;
+import com.vindex.replica.ReplicaContext;
+import com.vindex.replica.ReplicaRegistry;
 import com.vindex.repository.UserRepository;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
     private final UserRepository userRepository;
+    private final ReplicaRegistry replicaRegistry;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TwoTierCache<CachedPrincipal> principalCache;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    ReplicaRegistry replicaRegistry,
+                                    PlatformTransactionManager transactionManager,
+                                    TwoTierCache<CachedPrincipal> principalCache) {
         this.userRepository = userRepository;
+        this.replicaRegistry = replicaRegistry;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.principalCache = principalCache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-
-        return org.springframework.security.core.userdetails.User
-                .withUsername(user.getEmail())
-                .password(user.getPassword())
-                .roles("USER")
-                .build();
+        User user = findUser(email).orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        return new UserPrincipal(user.getId(), user.getEmail(), user.getPassword(),
+                user.getShard(), user.isShardMoving(), AUTHORITIES);
+    }
+
+    /**
+     * Principal for a request that already proved its identity with a token. Runs on every
+     * authenticated request, so it is served from the principal cache and carries no password.
+     * Shard moves invalidate the entry; {@code cache.principals.local-ttl-ms} must stay below
+     * {@code sharding.rebalance.drain-ms} for nodes that miss the invalidation.
+     */
+    public UserPrincipal loadPrincipal(String email) throws UsernameNotFoundException {
+        CachedPrincipal cached = principalCache.get(email, () -> findUser(email)
+                .map(user -> new CachedPrincipal(user.getId(), user.getEmail(), user.getShard(), user.isShardMoving()))
+                .orElse(null));
+        if (cached == null) {
+            throw new UsernameNotFoundException("User not found");
+        }
+        return new UserPrincipal(cached.getId(), cached.getEmail(), "", cached.getShard(), cached.isShardMoving(),
+                AUTHORITIES);
+    }
+
+    /**
+     * Reads from a replica when one is configured. An account created moments ago may not have
+     * reached the replica yet; a miss is retried on the primary before the user is rejected.
+     */
+    private Optional<User> findUser(String email) {
+        Optional<User> found = findByEmail(email);
+        if (found.isEmpty() && replicaRegistry.isEnabled()) {
+            found = ReplicaContext.callOnPrimary(() -> findByEmail(email));
+        }
+        return found;
+    }
+
+    private Optional<User> findByEmail(String email) {
+        return readOnlyTransaction.execute(status -> userRepository.findByEmail(email));
+    }
+
+    public static final class CachedPrincipal {
+        private final Long id;
+        private final String email;
+        private final String shard;
+        private final boolean shardMoving;
+
+        public CachedPrincipal(Long id, String email, String shard, boolean shardMoving) {
+            this.id = id;
+            this.email = email;
+            this.shard = shard;
+            this.shardMoving = shardMoving;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getShard() {
+            return shard;
+        }
+
+        public boolean isShardMoving() {
+            return shardMoving;
+        }
     }
 }
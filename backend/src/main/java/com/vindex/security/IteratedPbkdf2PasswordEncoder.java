@@ -0,0 +1,80 @@
+package com.vindex.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PBKDF2-HMAC-SHA256 that records its iteration count in the hash ({@code <iterations>$<hex>}),
+ * so raising the configured count neither breaks existing hashes nor leaves them weaker:
+ * each hash is checked with its own count and reports {@code upgradeEncoding} while that count
+ * is below the configured one. Hashes without a count, as written by
+ * {@link Pbkdf2PasswordEncoder}, are checked with {@code legacyIterations}.
+ */
+public class IteratedPbkdf2PasswordEncoder implements PasswordEncoder {
+
+    private static final int SALT_LENGTH = 16;
+
+    private final int iterations;
+    private final int legacyIterations;
+    private final Map<Integer, Pbkdf2PasswordEncoder> encoders = new ConcurrentHashMap<>();
+
+    public IteratedPbkdf2PasswordEncoder(int iterations, int legacyIterations) {
+        if (iterations < 1 || legacyIterations < 1) {
+            throw new IllegalArgumentException("PBKDF2 iteration counts must be positive");
+        }
+        this.iterations = iterations;
+        this.legacyIterations = legacyIterations;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return iterations + "$" + encoder(iterations).encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        int count = iterationsOf(encodedPassword);
+        if (count < 1) {
+            return false;
+        }
+        return encoder(count).matches(rawPassword, hashOf(encodedPassword));
+    }
+
+    /**
+     * Hashes without a recorded count are always upgraded, so they get one.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return encodedPassword == null || encodedPassword.indexOf('$') < 0 || iterationsOf(encodedPassword) < iterations;
+    }
+
+    /**
+     * @return the hash's iteration count, or 0 if it cannot be read
+     */
+    private int iterationsOf(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return 0;
+        }
+        int separator = encodedPassword.indexOf('$');
+        if (separator < 0) {
+            return legacyIterations;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(0, separator));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private String hashOf(String encodedPassword) {
+        return encodedPassword.substring(encodedPassword.indexOf('$') + 1);
+    }
+
+    private Pbkdf2PasswordEncoder encoder(int count) {
+        return encoders.computeIfAbsent(count, key -> new Pbkdf2PasswordEncoder("", SALT_LENGTH, key,
+                Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256));
+    }
+}
@@ -1,10 +1,10 @@
 package com.vindex.security;
 
 import com.vindex.config.JwtTokenProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -13,13 +13,20 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
+
+    // A client replaying a bad token would otherwise log on every request it sends
+    private final TokenBucketRateLimiter failureLogLimiter = new TokenBucketRateLimiter(5, 0.1, 64, 600_000, 1);
+    private final AtomicLong suppressedFailures = new AtomicLong();
+
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserDetailsService userDetailsService;
+    private final CustomUserDetailsService userDetailsService;
 
-    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, CustomUserDetailsService userDetailsService) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.userDetailsService = userDetailsService;
     }
@@ -32,7 +39,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
             if (StringUtils.hasText(jwt) && jwtTokenProvider.validateToken(jwt)) {
                 String username = jwtTokenProvider.getUsernameFromToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserPrincipal userDetails = userDetailsService.loadPrincipal(username);
 
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
@@ -41,12 +48,29 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             }
         } catch (Exception ex) {
-            logger.error("Could not set user authentication", ex);
+            logFailure(ex);
         }
 
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * At most a few lines a minute per exception type, each with the count of failures left
+     * out since the last one. The stack trace is only logged at debug level.
+     */
+    private void logFailure(Exception ex) {
+        if (failureLogLimiter.tryAcquire(ex.getClass().getName()) != 0) {
+            suppressedFailures.incrementAndGet();
+            return;
+        }
+        long suppressed = suppressedFailures.getAndSet(0);
+        if (log.isDebugEnabled()) {
+            log.debug("Could not set user authentication ({} similar failures not logged)", suppressed, ex);
+        } else {
+            log.warn("Could not set user authentication: {} ({} similar failures not logged)", ex, suppressed);
+        }
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
@@ -0,0 +1,121 @@
+package com.vindex.security;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory token buckets keyed by client. Keys are spread over a fixed number of stripes, each
+ * with its own lock and access-ordered map, so unrelated clients rarely contend. Each stripe is
+ * capped and drops idle or least-recently-used buckets, which bounds total memory regardless of
+ * how many distinct keys are seen.
+ */
+public class TokenBucketRateLimiter {
+
+    private final Stripe[] stripes;
+    private final double capacity;
+    private final double tokensPerNano;
+    private final long idleTimeoutNanos;
+    private final int maxBucketsPerStripe;
+
+    public TokenBucketRateLimiter(int burst, double refillPerSecond, int maxBuckets,
+                                  long idleTimeoutMs, int stripeCount) {
+        if (burst < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate limit burst and refill rate must be positive");
+        }
+        this.capacity = burst;
+        this.tokensPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+
+        int stripesPowerOfTwo = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.maxBucketsPerStripe = Math.max(1, maxBuckets / stripesPowerOfTwo);
+        this.stripes = new Stripe[stripesPowerOfTwo];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Takes one token for {@code key}.
+     *
+     * @return 0 if the call is allowed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String key) {
+        Stripe stripe = stripes[spread(key.hashCode()) & (stripes.length - 1)];
+        long now = System.nanoTime();
+
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                evict(stripe, now);
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.refill(now, capacity, tokensPerNano);
+            }
+
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.buckets.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private void evict(Stripe stripe, long now) {
+        Iterator<Bucket> iterator = stripe.buckets.values().iterator();
+        while (iterator.hasNext()) {
+            Bucket eldest = iterator.next();
+            if (stripe.buckets.size() >= maxBucketsPerStripe || now - eldest.lastRefillNanos > idleTimeoutNanos) {
+                iterator.remove();
+            } else {
+                break;
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long lastRefillNanos;
+
+        private Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefillNanos = now;
+        }
+
+        private void refill(long now, double capacity, double tokensPerNano) {
+            long elapsed = now - lastRefillNanos;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+                lastRefillNanos = now;
+            }
+        }
+    }
+}
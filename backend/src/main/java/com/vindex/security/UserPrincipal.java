@@ -0,0 +1,37 @@
+package com.vindex.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Authenticated user that also carries the database id and shard placement, so request
+ * handlers and shard routing do not have to look the user up a second time.
+ */
+public class UserPrincipal extends User {
+
+    private final Long id;
+    private final String shard;
+    private final boolean shardMoving;
+
+    public UserPrincipal(Long id, String email, String password, String shard, boolean shardMoving,
+                         Collection<? extends GrantedAuthority> authorities) {
+        super(email, password, authorities);
+        this.id = id;
+        this.shard = shard;
+        this.shardMoving = shardMoving;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getShard() {
+        return shard;
+    }
+
+    public boolean isShardMoving() {
+        return shardMoving;
+    }
+}
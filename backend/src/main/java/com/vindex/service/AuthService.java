@@ -1,5 +1,6 @@
 package com.vindex.service;
 
+import com.vindex.cache.TwoTierCache;
 import com.vindex.config.JwtTokenProvider;
 import com.vindex.dto.AuthResponse;
 import com.vindex.dto.LoginRequest;
@@ -8,10 +9,11 @@ import com.vindex.dto.RegisterRequest;
 import com.vindex.dto.UserResponse;
 import com.vindex.entity.User;
 import com.vindex.repository.UserRepository;
+import com.vindex.security.CustomUserDetailsService;
+import com.vindex.shard.ShardRouter;
 import org.springframework.http.HttpStatus;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
@@ -20,59 +22,80 @@ import java.time.LocalDateTime;
 public class AuthService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtTokenProvider jwtTokenProvider;
-
-    @Value("${jwt.refresh-expiration}")
-    private long refreshExpirationMs;
+    private final RefreshTokenService refreshTokenService;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final TwoTierCache<CustomUserDetailsService.CachedPrincipal> principalCache;
 
     public AuthService(UserRepository userRepository,
-                       PasswordEncoder passwordEncoder,
-                       JwtTokenProvider jwtTokenProvider) {
+                       PasswordHashingService passwordHashingService,
+                       JwtTokenProvider jwtTokenProvider,
+                       RefreshTokenService refreshTokenService,
+                       TransactionTemplate transactionTemplate,
+                       ShardRouter shardRouter,
+                       TwoTierCache<CustomUserDetailsService.CachedPrincipal> principalCache) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.refreshTokenService = refreshTokenService;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+        this.principalCache = principalCache;
     }
 
+    /**
+     * Hashes before opening the transaction so no connection is held while hashing; the
+     * duplicate checks run in the same transaction as the insert, on the primary.
+     */
     public AuthResponse register(RegisterRequest request) {
-        if (userRepository.findByEmail(request.getEmail()).isPresent()) {
-            throw new IllegalArgumentException("Email already registered");
-        }
-        if (userRepository.findByUsername(request.getUsername()).isPresent()) {
-            throw new IllegalArgumentException("Username already taken");
-        }
-
         User user = new User();
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHashingService.encode(request.getPassword()));
         user.setFirstName(request.getFirstName());
         user.setLastName(request.getLastName());
         user.setPreferredLanguage(User.Language.EN);
 
-        String accessToken = jwtTokenProvider.generateAccessToken(user.getEmail());
-        String refreshToken = jwtTokenProvider.generateRefreshToken(user.getEmail());
-        user.setRefreshToken(refreshToken);
-        user.setRefreshTokenExpiry(LocalDateTime.now().plusSeconds(refreshExpirationMs / 1000));
-
-        User savedUser = userRepository.save(user);
+        User savedUser = transactionTemplate.execute(status -> {
+            if (userRepository.findByEmail(request.getEmail()).isPresent()) {
+                throw new IllegalArgumentException("Email already registered");
+            }
+            if (userRepository.findByUsername(request.getUsername()).isPresent()) {
+                throw new IllegalArgumentException("Username already taken");
+            }
+            return userRepository.save(user);
+        });
+        shardRouter.placeNewUser(savedUser.getId());
+        // Placement rewrites the user's shard; no node may keep a principal cached before it
+        principalCache.invalidate(savedUser.getEmail());
+        String refreshToken = refreshTokenService.issue(savedUser);
+        String accessToken = jwtTokenProvider.generateAccessToken(savedUser.getEmail());
 
         return new AuthResponse(UserResponse.fromUser(savedUser), accessToken, refreshToken);
     }
 
+    /**
+     * The lookup, the optional rehash and the token issue each run in their own short
+     * transaction; password verification runs between them without a connection.
+     */
     public AuthResponse login(LoginRequest request) {
         User user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new IllegalArgumentException("Email or password are incorrect"));
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
             throw new IllegalArgumentException("Email or password are incorrect");
         }
 
+        if (passwordHashingService.needsUpgrade(user.getPassword())) {
+            user.setPassword(passwordHashingService.encode(request.getPassword()));
+            user.setUpdatedAt(LocalDateTime.now());
+            transactionTemplate.executeWithoutResult(status -> userRepository.save(user));
+        }
+
         String accessToken = jwtTokenProvider.generateAccessToken(user.getEmail());
-        String refreshToken = jwtTokenProvider.generateRefreshToken(user.getEmail());
-        user.setRefreshToken(refreshToken);
-        user.setRefreshTokenExpiry(LocalDateTime.now().plusSeconds(refreshExpirationMs / 1000));
-        userRepository.save(user);
+        String refreshToken = refreshTokenService.issue(user);
 
         return new AuthResponse(UserResponse.fromUser(user), accessToken, refreshToken);
     }
@@ -97,19 +120,10 @@ public class AuthService {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token");
         }
 
-        User user = userRepository.findByRefreshToken(refreshToken)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token"));
-
-        if (user.getRefreshTokenExpiry() == null || user.getRefreshTokenExpiry().isBefore(LocalDateTime.now())) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh token expired");
-        }
-
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+        User user = rotation.getUser();
         String newAccessToken = jwtTokenProvider.generateAccessToken(user.getEmail());
-        String newRefreshToken = jwtTokenProvider.generateRefreshToken(user.getEmail());
-        user.setRefreshToken(newRefreshToken);
-        user.setRefreshTokenExpiry(LocalDateTime.now().plusSeconds(refreshExpirationMs / 1000));
-        userRepository.save(user);
 
-        return new AuthResponse(UserResponse.fromUser(user), newAccessToken, newRefreshToken);
+        return new AuthResponse(UserResponse.fromUser(user), newAccessToken, rotation.getRefreshToken());
     }
 }
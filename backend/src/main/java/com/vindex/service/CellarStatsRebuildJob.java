@@ -0,0 +1,54 @@
+package com.vindex.service;
+
+import com.vindex.repository.UserRepository;
+import com.vindex.shard.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Periodically rebuilds every user's cellar summary from {@code wines} to repair any drift
+ * between the incremental deltas and the source rows. Each user is rebuilt in its own
+ * transaction on its own shard so a failure only affects that user. Users being moved to
+ * another shard are skipped until the next run.
+ */
+@Component
+public class CellarStatsRebuildJob {
+
+    private static final Logger log = LoggerFactory.getLogger(CellarStatsRebuildJob.class);
+
+    private final UserRepository userRepository;
+    private final CellarStatsService cellarStatsService;
+    private final ShardRouter shardRouter;
+
+    public CellarStatsRebuildJob(UserRepository userRepository, CellarStatsService cellarStatsService,
+                                 ShardRouter shardRouter) {
+        this.userRepository = userRepository;
+        this.cellarStatsService = cellarStatsService;
+        this.shardRouter = shardRouter;
+    }
+
+    @Scheduled(cron = "${cellar.stats.rebuild-cron:0 30 3 * * *}")
+    public void rebuildAll() {
+        List<Long> userIds = userRepository.findAllIds();
+        int failed = 0;
+        int skipped = 0;
+        for (Long userId : userIds) {
+            try {
+                if (shardRouter.isMoving(userId)) {
+                    skipped++;
+                    continue;
+                }
+                shardRouter.runForUser(userId, () -> cellarStatsService.rebuild(userId));
+            } catch (Exception ex) {
+                failed++;
+                log.warn("Cellar stats rebuild failed for user {}", userId, ex);
+            }
+        }
+        log.info("Cellar stats rebuilt for {} users ({} failed, {} being moved)",
+                userIds.size() - failed - skipped, failed, skipped);
+    }
+}
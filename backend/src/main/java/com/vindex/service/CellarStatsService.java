@@ -0,0 +1,234 @@
+package com.vindex.service;
+
+import com.vindex.cache.TwoTierCache;
+import com.vindex.dto.CellarStatsResponse;
+import com.vindex.entity.CellarStat;
+import com.vindex.entity.Wine;
+import com.vindex.repository.CellarStatRepository;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the per-user {@code cellar_stats} summary. Wine writes apply signed deltas to the
+ * affected rows inside the caller's transaction, so the dashboard never has to aggregate
+ * over {@code wines}. Summaries are cached per user and invalidated cluster-wide once a write
+ * commits.
+ */
+@Service
+public class CellarStatsService {
+
+    private static final String UNKNOWN = "UNKNOWN";
+
+    private final CellarStatRepository cellarStatRepository;
+    private final TwoTierCache<CellarStatsResponse> cellarStatsCache;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public CellarStatsService(CellarStatRepository cellarStatRepository,
+                              TwoTierCache<CellarStatsResponse> cellarStatsCache,
+                              DataSource dataSource) {
+        this.cellarStatRepository = cellarStatRepository;
+        this.cellarStatsCache = cellarStatsCache;
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(Long userId, Wine wine) {
+        apply(userId, null, Snapshot.of(wine));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordUpdated(Long userId, Snapshot before, Wine after) {
+        apply(userId, before, Snapshot.of(after));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeleted(Long userId, Snapshot before) {
+        apply(userId, before, null);
+    }
+
+    /**
+     * Nets the contributions of many wine writes per summary row and applies them as a single
+     * JDBC batch. Updates pass the old state in {@code removed} and the new one in {@code added}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBatch(Long userId, Collection<Snapshot> removed, Collection<Snapshot> added) {
+        Map<CellarStat.Key, Delta> deltas = new LinkedHashMap<>();
+        removed.forEach(snapshot -> snapshot.collect(userId, -1, deltas));
+        added.forEach(snapshot -> snapshot.collect(userId, 1, deltas));
+
+        List<SqlParameterSource> batch = new ArrayList<>();
+        deltas.forEach((key, delta) -> {
+            if (!delta.isZero()) {
+                batch.add(new MapSqlParameterSource()
+                        .addValue("userId", key.getUserId())
+                        .addValue("dimension", key.getDimension().name())
+                        .addValue("dimValue", key.getDimValue())
+                        .addValue("wines", delta.wines)
+                        .addValue("bottles", delta.bottles)
+                        .addValue("value", delta.value));
+            }
+        });
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(CellarStatRepository.APPLY_DELTA, batch.toArray(new SqlParameterSource[0]));
+            cellarStatsCache.invalidateAfterCommit(userId.toString());
+        }
+    }
+
+    /**
+     * Applies a pure quantity change without loading the wine; the dimensions are read from
+     * its row by the upsert itself.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordQuantityChanged(Long userId, Long wineId, int bottles) {
+        if (bottles != 0) {
+            cellarStatRepository.applyBottleDelta(wineId, bottles);
+            cellarStatsCache.invalidateAfterCommit(userId.toString());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public CellarStatsResponse getStats(Long userId) {
+        return cellarStatsCache.get(userId.toString(), () -> loadStats(userId));
+    }
+
+    private CellarStatsResponse loadStats(Long userId) {
+        List<CellarStat> rows = cellarStatRepository.findByUserId(userId);
+
+        CellarStatsResponse.Bucket total = new CellarStatsResponse.Bucket(0, 0, BigDecimal.ZERO.setScale(2));
+        Map<CellarStat.Dimension, Map<String, CellarStatsResponse.Bucket>> buckets = new LinkedHashMap<>();
+        for (CellarStat.Dimension dimension : CellarStat.Dimension.values()) {
+            buckets.put(dimension, new TreeMap<>());
+        }
+
+        for (CellarStat row : rows) {
+            if (row.getWineCount() <= 0) {
+                continue;
+            }
+            CellarStatsResponse.Bucket bucket = new CellarStatsResponse.Bucket(
+                    row.getWineCount(), row.getBottleCount(), row.getTotalValue());
+            if (row.getDimension() == CellarStat.Dimension.TOTAL) {
+                total = bucket;
+            } else {
+                buckets.get(row.getDimension()).put(label(row.getDimension(), row.getDimValue()), bucket);
+            }
+        }
+
+        return new CellarStatsResponse(
+                total.getWines(),
+                total.getBottles(),
+                total.getValue(),
+                buckets.get(CellarStat.Dimension.TYPE),
+                buckets.get(CellarStat.Dimension.COUNTRY),
+                buckets.get(CellarStat.Dimension.REGION),
+                buckets.get(CellarStat.Dimension.VINTAGE)
+        );
+    }
+
+    /**
+     * Recomputes a user's summary from {@code wines}, discarding any drift accumulated by the
+     * incremental path.
+     */
+    @Transactional
+    public void rebuild(Long userId) {
+        cellarStatRepository.deleteAllForUser(userId);
+        cellarStatRepository.rebuildForUser(userId);
+        cellarStatsCache.invalidateAfterCommit(userId.toString());
+    }
+
+    /**
+     * One batch for all dimensions a single wine touches, rather than an upsert per dimension.
+     */
+    private void apply(Long userId, Snapshot before, Snapshot after) {
+        recordBatch(userId, before == null ? List.of() : List.of(before), after == null ? List.of() : List.of(after));
+    }
+
+    private String label(CellarStat.Dimension dimension, String value) {
+        if (value == null || value.isEmpty()) {
+            return UNKNOWN;
+        }
+        if (dimension == CellarStat.Dimension.TYPE && Wine.WineType.ROSÉ.name().equals(value)) {
+            return "ROSE";
+        }
+        return value;
+    }
+
+    /**
+     * The fields of a wine that contribute to the summary, captured before a mutation so the
+     * old contribution can be subtracted afterwards.
+     */
+    public static final class Snapshot {
+        private final String type;
+        private final String country;
+        private final String region;
+        private final String vintage;
+        private final long bottles;
+        private final BigDecimal value;
+
+        private Snapshot(String type, String country, String region, String vintage, long bottles, BigDecimal value) {
+            this.type = type;
+            this.country = country;
+            this.region = region;
+            this.vintage = vintage;
+            this.bottles = bottles;
+            this.value = value;
+        }
+
+        public static Snapshot of(Wine wine) {
+            long bottles = wine.getQuantity() == null ? 0 : wine.getQuantity();
+            BigDecimal value = wine.getPrice() == null
+                    ? BigDecimal.ZERO
+                    : BigDecimal.valueOf(wine.getPrice()).multiply(BigDecimal.valueOf(bottles));
+            return new Snapshot(
+                    wine.getWineType() == null ? "" : wine.getWineType().name(),
+                    nullToEmpty(wine.getCountry()),
+                    nullToEmpty(wine.getRegion()),
+                    wine.getVintageYear() == null ? "" : wine.getVintageYear().toString(),
+                    bottles,
+                    value.setScale(2, RoundingMode.HALF_UP)
+            );
+        }
+
+        private void collect(Long userId, int sign, Map<CellarStat.Key, Delta> deltas) {
+            add(deltas, new CellarStat.Key(userId, CellarStat.Dimension.TOTAL, ""), sign);
+            add(deltas, new CellarStat.Key(userId, CellarStat.Dimension.TYPE, type), sign);
+            add(deltas, new CellarStat.Key(userId, CellarStat.Dimension.COUNTRY, country), sign);
+            add(deltas, new CellarStat.Key(userId, CellarStat.Dimension.REGION, region), sign);
+            add(deltas, new CellarStat.Key(userId, CellarStat.Dimension.VINTAGE, vintage), sign);
+        }
+
+        private void add(Map<CellarStat.Key, Delta> deltas, CellarStat.Key key, int sign) {
+            Delta delta = deltas.computeIfAbsent(key, k -> new Delta());
+            delta.wines += sign;
+            delta.bottles += sign * bottles;
+            delta.value = delta.value.add(sign < 0 ? value.negate() : value);
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+    }
+
+    private static final class Delta {
+        private long wines;
+        private long bottles;
+        private BigDecimal value = BigDecimal.ZERO;
+
+        private boolean isZero() {
+            return wines == 0 && bottles == 0 && value.signum() == 0;
+        }
+    }
+}
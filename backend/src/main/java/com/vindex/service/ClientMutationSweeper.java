@@ -0,0 +1,57 @@
+package com.vindex.service;
+
+import com.vindex.shard.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Forgets replayed mutation keys once clients can no longer be retrying them, on every shard
+ * and in bounded batches like {@link RefreshTokenSweeper}.
+ */
+@Component
+public class ClientMutationSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientMutationSweeper.class);
+
+    private final WineReplayService wineReplayService;
+    private final ShardRouter shardRouter;
+
+    @Value("${replay.dedupe.ttl-hours:168}")
+    private long ttlHours;
+
+    @Value("${replay.dedupe.sweep-batch-size:5000}")
+    private int batchSize;
+
+    public ClientMutationSweeper(WineReplayService wineReplayService, ShardRouter shardRouter) {
+        this.wineReplayService = wineReplayService;
+        this.shardRouter = shardRouter;
+    }
+
+    @Scheduled(fixedDelayString = "${replay.dedupe.sweep-interval-ms:3600000}",
+            initialDelayString = "${replay.dedupe.sweep-interval-ms:3600000}")
+    public void sweep() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(ttlHours);
+        AtomicInteger total = new AtomicInteger();
+        shardRouter.forEachShard(() -> {
+            try {
+                int deleted;
+                do {
+                    deleted = wineReplayService.deleteExpiredKeys(cutoff, batchSize);
+                    total.addAndGet(deleted);
+                } while (deleted == batchSize);
+            } catch (RuntimeException ex) {
+                log.warn("Could not purge expired client mutation keys", ex);
+            }
+        });
+
+        if (total.get() > 0) {
+            log.info("Purged {} expired client mutation keys", total.get());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.vindex.service;
+
+import com.vindex.entity.User;
+import com.vindex.repository.UserRepository;
+import com.vindex.security.UserPrincipal;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+@Service
+public class CurrentUserService {
+
+    private final UserRepository userRepository;
+
+    public CurrentUserService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public User getCurrentUser() {
+        Authentication authentication = requireAuthentication();
+        return userRepository.findByEmail(authentication.getName())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+    }
+
+    /**
+     * Id of the authenticated user, taken from the principal when the JWT filter put one there
+     * so the hot paths skip the user lookup.
+     */
+    public Long getCurrentUserId() {
+        Authentication authentication = requireAuthentication();
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getId();
+        }
+        return getCurrentUser().getId();
+    }
+
+    /**
+     * Unloaded reference to the authenticated user for setting associations, so writes do not
+     * pay for a user lookup.
+     */
+    public User getCurrentUserReference() {
+        return userRepository.getReferenceById(getCurrentUserId());
+    }
+
+    private Authentication requireAuthentication() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication.getName() == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
+        }
+        return authentication;
+    }
+}
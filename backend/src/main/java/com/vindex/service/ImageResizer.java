@@ -0,0 +1,53 @@
+package com.vindex.service;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Shared downscaling used for uploaded label thumbnails and proxied remote image variants.
+ */
+final class ImageResizer {
+
+    private ImageResizer() {
+    }
+
+    /**
+     * Scales {@code source} so its longest side is at most {@code maxDimension} and writes it as
+     * JPEG to {@code target}, going through a temp file in {@code workDir} so readers never see
+     * a partial image.
+     */
+    static void writeJpeg(BufferedImage source, int maxDimension, Path workDir, Path target) throws IOException {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Files.createDirectories(target.getParent());
+        Path partial = Files.createTempFile(workDir, "resize-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(partial)) {
+                ImageIO.write(resized, "jpg", out);
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+}
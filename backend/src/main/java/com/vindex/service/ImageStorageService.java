@@ -0,0 +1,258 @@
+package com.vindex.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store for label photos. Originals are named by the SHA-256 of their bytes,
+ * so the same photo uploaded by any number of users is stored once. Thumbnails are derived
+ * from the original on a small background pool, never on the request thread.
+ */
+@Service
+public class ImageStorageService {
+
+    public static final String URL_PREFIX = "/api/images/";
+
+    private static final Logger log = LoggerFactory.getLogger(ImageStorageService.class);
+    private static final Pattern ORIGINAL_NAME = Pattern.compile("([0-9a-f]{64})\\.(jpg|png|gif)");
+    private static final Pattern THUMBNAIL_NAME = Pattern.compile("([0-9a-f]{64})\\.jpg");
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path originalsDir;
+    private final Path thumbnailsDir;
+    private final Path uploadsDir;
+    private final List<Integer> thumbnailSizes;
+    private final int gridThumbnailSize;
+    private final ThreadPoolExecutor thumbnailExecutor;
+    private final Set<String> pendingThumbnails = ConcurrentHashMap.newKeySet();
+
+    public ImageStorageService(@Value("${images.storage-dir:./data/images}") String storageDir,
+                               @Value("${images.thumbnail-sizes:160,480}") List<Integer> thumbnailSizes,
+                               @Value("${images.thumbnail-threads:2}") int thumbnailThreads,
+                               @Value("${images.thumbnail-queue-capacity:256}") int thumbnailQueueCapacity)
+            throws IOException {
+        Path root = Paths.get(storageDir).toAbsolutePath().normalize();
+        this.originalsDir = Files.createDirectories(root.resolve("originals"));
+        this.thumbnailsDir = Files.createDirectories(root.resolve("thumbs"));
+        this.uploadsDir = Files.createDirectories(root.resolve("tmp"));
+        this.thumbnailSizes = List.copyOf(thumbnailSizes);
+        this.gridThumbnailSize = thumbnailSizes.stream().min(Integer::compare).orElse(160);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.thumbnailExecutor = new ThreadPoolExecutor(thumbnailThreads, thumbnailThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(thumbnailQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-thumbnail-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Streams the upload to disk while hashing it, then moves it into place under its hash.
+     *
+     * @return the public URL of the stored original
+     */
+    public String store(InputStream content) throws IOException {
+        Path upload = Files.createTempFile(uploadsDir, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(content, digest)) {
+                Files.copy(in, upload, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            String extension = detectExtension(upload);
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String fileName = hash + "." + extension;
+            Path target = originalPath(hash, extension);
+
+            if (Files.exists(target)) {
+                log.debug("Image {} already stored, reusing it", hash);
+            } else {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ex) {
+                    // Another upload of the same bytes won the race
+                    if (!Files.exists(target)) {
+                        throw ex;
+                    }
+                }
+            }
+
+            scheduleThumbnails(fileName);
+            return URL_PREFIX + fileName;
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    public Optional<Path> findOriginal(String fileName) {
+        Matcher matcher = ORIGINAL_NAME.matcher(fileName);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        Path path = originalPath(matcher.group(1), matcher.group(2));
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * Returns the thumbnail if it has been generated. When it has not, generation is queued and
+     * the caller should fall back to the original.
+     */
+    public Optional<Path> findThumbnail(int size, String fileName) {
+        Matcher matcher = THUMBNAIL_NAME.matcher(fileName);
+        if (!matcher.matches() || !thumbnailSizes.contains(size)) {
+            return Optional.empty();
+        }
+        Path path = thumbnailPath(matcher.group(1), size);
+        if (Files.isRegularFile(path)) {
+            return Optional.of(path);
+        }
+        findOriginalByHash(matcher.group(1)).ifPresent(original -> scheduleThumbnails(original.getFileName().toString()));
+        return Optional.empty();
+    }
+
+    public Optional<Path> findOriginalByHash(String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        for (String extension : List.of("jpg", "png", "gif")) {
+            Path path = originalPath(hash, extension);
+            if (Files.isRegularFile(path)) {
+                return Optional.of(path);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Maps a stored or proxied image URL to its grid-sized thumbnail URL; other URLs are
+     * returned unchanged.
+     */
+    public String thumbnailUrlFor(String imageUrl) {
+        if (imageUrl == null || !imageUrl.startsWith(URL_PREFIX)) {
+            return imageUrl;
+        }
+        if (imageUrl.startsWith(RemoteImageProxyService.PROXY_PATH + "?")) {
+            return imageUrl + "&w=" + gridThumbnailSize;
+        }
+        Matcher matcher = ORIGINAL_NAME.matcher(imageUrl.substring(URL_PREFIX.length()));
+        if (!matcher.matches()) {
+            return imageUrl;
+        }
+        return URL_PREFIX + "thumbs/" + gridThumbnailSize + "/" + matcher.group(1) + ".jpg";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        thumbnailExecutor.shutdownNow();
+    }
+
+    private void scheduleThumbnails(String fileName) {
+        Matcher matcher = ORIGINAL_NAME.matcher(fileName);
+        if (!matcher.matches() || !pendingThumbnails.add(matcher.group(1))) {
+            return;
+        }
+        String hash = matcher.group(1);
+        Path original = originalPath(hash, matcher.group(2));
+        try {
+            thumbnailExecutor.execute(() -> {
+                try {
+                    generateThumbnails(hash, original);
+                } finally {
+                    pendingThumbnails.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pendingThumbnails.remove(hash);
+            log.warn("Thumbnail queue full, deferring thumbnails for {}", hash);
+        }
+    }
+
+    private void generateThumbnails(String hash, Path original) {
+        try {
+            BufferedImage source = null;
+            for (int size : thumbnailSizes) {
+                Path target = thumbnailPath(hash, size);
+                if (Files.exists(target)) {
+                    continue;
+                }
+                if (source == null) {
+                    source = ImageIO.read(original.toFile());
+                    if (source == null) {
+                        log.warn("Unreadable image {}, skipping thumbnails", hash);
+                        return;
+                    }
+                }
+                ImageResizer.writeJpeg(source, size, uploadsDir, target);
+            }
+        } catch (IOException ex) {
+            log.warn("Thumbnail generation failed for {}", hash, ex);
+        }
+    }
+
+    private Path originalPath(String hash, String extension) {
+        return originalsDir.resolve(hash.substring(0, 2)).resolve(hash + "." + extension);
+    }
+
+    private Path thumbnailPath(String hash, int size) {
+        return thumbnailsDir.resolve(String.valueOf(size)).resolve(hash.substring(0, 2)).resolve(hash + ".jpg");
+    }
+
+    private String detectExtension(Path file) throws IOException {
+        byte[] header = new byte[8];
+        int read;
+        try (InputStream in = Files.newInputStream(file)) {
+            read = in.readNBytes(header, 0, header.length);
+        }
+        if (read >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (read >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "png";
+        }
+        if (read >= 4 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return "gif";
+        }
+        throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Only JPEG, PNG and GIF images are supported");
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.vindex.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vindex.dto.JobResponse;
+import com.vindex.entity.Job;
+import com.vindex.entity.User;
+import com.vindex.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Persistent job queue backed by the {@code jobs} table. Workers claim due rows with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, so any number of backend nodes can poll the same
+ * table without handing one job to two workers.
+ */
+@Service
+public class JobService {
+
+    private final JobRepository jobRepository;
+    private final CurrentUserService currentUserService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${jobs.retry.base-delay-ms:5000}")
+    private long retryBaseDelayMs;
+
+    @Value("${jobs.retry.max-delay-ms:600000}")
+    private long retryMaxDelayMs;
+
+    public JobService(JobRepository jobRepository, CurrentUserService currentUserService, ObjectMapper objectMapper) {
+        this.jobRepository = jobRepository;
+        this.currentUserService = currentUserService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional
+    public Job enqueue(Job.JobType type, Long userId, Object payload, int maxAttempts) {
+        Job job = new Job();
+        job.setJobType(type);
+        job.setUserId(userId);
+        job.setPayload(toJson(payload));
+        job.setMaxAttempts(Math.max(1, maxAttempts));
+        return jobRepository.save(job);
+    }
+
+    @Transactional(readOnly = true)
+    public JobResponse getJob(Long id) {
+        return toResponse(findForCurrentUser(id));
+    }
+
+    @Transactional(readOnly = true)
+    public JsonNode getResult(Long id) {
+        Job job = findForCurrentUser(id);
+        if (job.getStatus() == Job.JobStatus.FAILED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Job failed: " + job.getErrorMessage());
+        }
+        if (job.getStatus() != Job.JobStatus.SUCCEEDED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Job has not finished");
+        }
+        return readJson(job.getResult());
+    }
+
+    @Transactional
+    public List<Job> claim(Job.JobType type, int limit, String workerId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Job> jobs = jobRepository.lockDueJobs(type.name(), now, limit);
+        for (Job job : jobs) {
+            job.setStatus(Job.JobStatus.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLockedBy(workerId);
+            job.setLockedAt(now);
+            job.setUpdatedAt(now);
+        }
+        return jobs;
+    }
+
+    /**
+     * @return false if {@code workerId} no longer holds the job's lease
+     */
+    @Transactional
+    public boolean reportProgress(Long jobId, String workerId, int progress) {
+        return jobRepository.updateProgress(jobId, workerId, progress, Job.JobStatus.RUNNING, LocalDateTime.now()) > 0;
+    }
+
+    /**
+     * @return false if {@code workerId} no longer holds the job's lease, in which case nothing
+     *         is written
+     */
+    @Transactional
+    public boolean complete(Long jobId, String workerId, Object result) {
+        Job job = jobRepository.findById(jobId).orElseThrow();
+        return jobRepository.releaseLease(jobId, workerId, Job.JobStatus.RUNNING, Job.JobStatus.SUCCEEDED,
+                toJson(result), null, 100, job.getRunAfter(), LocalDateTime.now()) > 0;
+    }
+
+    /**
+     * Requeues the job with exponential backoff, or fails it permanently once its attempts are
+     * used up.
+     *
+     * @return false if {@code workerId} no longer holds the job's lease, in which case nothing
+     *         is written
+     */
+    @Transactional
+    public boolean fail(Long jobId, String workerId, Throwable error) {
+        Job job = jobRepository.findById(jobId).orElseThrow();
+        String message = error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+        String errorMessage = message.length() > 1000 ? message.substring(0, 1000) : message;
+
+        Job.JobStatus status;
+        LocalDateTime runAfter = job.getRunAfter();
+        if (job.getAttempts() >= job.getMaxAttempts()) {
+            status = Job.JobStatus.FAILED;
+        } else {
+            long delay = Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.min(20, job.getAttempts() - 1));
+            status = Job.JobStatus.QUEUED;
+            runAfter = LocalDateTime.now().plusNanos(delay * 1_000_000);
+        }
+        return jobRepository.releaseLease(jobId, workerId, Job.JobStatus.RUNNING, status,
+                job.getResult(), errorMessage, job.getProgress(), runAfter, LocalDateTime.now()) > 0;
+    }
+
+    @Transactional
+    public int requeueStale(LocalDateTime staleBefore) {
+        return jobRepository.requeueStale(Job.JobStatus.QUEUED, Job.JobStatus.RUNNING, staleBefore, LocalDateTime.now());
+    }
+
+    public JsonNode readJson(String json) {
+        if (json == null) {
+            return objectMapper.nullNode();
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Stored job JSON is corrupt", ex);
+        }
+    }
+
+    public JobResponse toResponse(Job job) {
+        return new JobResponse(
+                job.getId(),
+                job.getJobType().name(),
+                job.getStatus().name(),
+                job.getProgress(),
+                job.getAttempts(),
+                job.getErrorMessage(),
+                job.getCreatedAt(),
+                job.getUpdatedAt()
+        );
+    }
+
+    private Job findForCurrentUser(Long id) {
+        User user = currentUserService.getCurrentUser();
+        return jobRepository.findByIdAndUserId(id, user.getId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found"));
+    }
+
+    private String toJson(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Job data is not serializable", ex);
+        }
+    }
+}
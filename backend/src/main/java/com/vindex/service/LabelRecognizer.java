@@ -0,0 +1,24 @@
+package com.vindex.service;
+
+import com.vindex.dto.WineSuggestionDto;
+
+import java.util.List;
+
+/**
+ * Identifies a wine from a label photo. The production implementation calls an AI vision
+ * provider; {@link StubLabelRecognizer} stands in for it locally and in development.
+ */
+public interface LabelRecognizer {
+
+    /**
+     * @return the {@code labels.recognizer} value that selects this implementation
+     */
+    String getName();
+
+    /**
+     * @param image raw image bytes
+     * @param hint  optional free text typed by the user, may be {@code null}
+     * @return candidate wines, best match first
+     */
+    List<WineSuggestionDto> recognize(byte[] image, String hint) throws Exception;
+}
@@ -0,0 +1,100 @@
+package com.vindex.service;
+
+import com.vindex.dto.JobResponse;
+import com.vindex.dto.WineSuggestionDto;
+import com.vindex.entity.Job;
+import com.vindex.entity.User;
+import com.vindex.job.JobContext;
+import com.vindex.job.JobHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Quick Scan: the upload request only stores the photo and enqueues a {@code LABEL_SCAN} job;
+ * recognition runs later on the scan worker pool and the client polls {@code /jobs/{id}}.
+ */
+@Service
+public class LabelScanService implements JobHandler {
+
+    private final CurrentUserService currentUserService;
+    private final ImageStorageService imageStorageService;
+    private final JobService jobService;
+    private final LabelRecognizer labelRecognizer;
+
+    @Value("${jobs.label-scan.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * Every recognizer is a bean and {@code labels.recognizer} picks one here, at run time; a
+     * bean condition would be fixed when the AOT image is built.
+     */
+    public LabelScanService(CurrentUserService currentUserService,
+                            ImageStorageService imageStorageService,
+                            JobService jobService,
+                            List<LabelRecognizer> labelRecognizers,
+                            @Value("${labels.recognizer:stub}") String recognizerName) {
+        this.currentUserService = currentUserService;
+        this.imageStorageService = imageStorageService;
+        this.jobService = jobService;
+        this.labelRecognizer = labelRecognizers.stream()
+                .filter(recognizer -> recognizer.getName().equals(recognizerName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown labels.recognizer '" + recognizerName + "', available: "
+                        + labelRecognizers.stream().map(LabelRecognizer::getName).toList()));
+    }
+
+    public JobResponse submit(MultipartFile file, String hint) {
+        if (file == null || file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Image file is required");
+        }
+        User user = currentUserService.getCurrentUser();
+
+        String imageUrl;
+        try (InputStream content = file.getInputStream()) {
+            imageUrl = imageStorageService.store(content);
+        } catch (IOException ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not store image", ex);
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("imageUrl", imageUrl);
+        payload.put("hint", hint);
+        Job job = jobService.enqueue(Job.JobType.LABEL_SCAN, user.getId(), payload, maxAttempts);
+        return jobService.toResponse(job);
+    }
+
+    @Override
+    public Job.JobType getType() {
+        return Job.JobType.LABEL_SCAN;
+    }
+
+    @Override
+    public Object handle(JobContext context) throws Exception {
+        String imageUrl = context.getPayload().path("imageUrl").asText();
+        String hint = context.getPayload().path("hint").isNull() ? null : context.getPayload().path("hint").asText(null);
+
+        String fileName = imageUrl.substring(imageUrl.lastIndexOf('/') + 1);
+        Path image = imageStorageService.findOriginal(fileName)
+                .orElseThrow(() -> new IllegalStateException("Scanned image is missing: " + fileName));
+        context.reportProgress(10);
+
+        List<WineSuggestionDto> candidates = labelRecognizer.recognize(Files.readAllBytes(image), hint);
+        context.reportProgress(90);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("imageUrl", imageUrl);
+        result.put("candidates", candidates);
+        return result;
+    }
+}
@@ -0,0 +1,121 @@
+package com.vindex.service;
+
+import com.vindex.config.JwtTokenProvider;
+import com.vindex.entity.RefreshToken;
+import com.vindex.entity.User;
+import com.vindex.repository.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Stores refresh tokens as SHA-256 hashes in {@code refresh_tokens}, one row per issued token.
+ * Tokens issued by successive refreshes share a family id; presenting a token that was already
+ * rotated revokes the whole family, since it means the token leaked.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    @Value("${jwt.refresh-expiration}")
+    private long refreshExpirationMs;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, JwtTokenProvider jwtTokenProvider) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.jwtTokenProvider = jwtTokenProvider;
+    }
+
+    @Transactional
+    public String issue(User user) {
+        return issue(user, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Consumes the presented refresh token and issues its successor in the same family.
+     * Revocations caused by reuse detection must survive the 401, hence no rollback for it.
+     */
+    @Transactional(noRollbackFor = ResponseStatusException.class)
+    public Rotation rotate(String rawToken) {
+        RefreshToken token = refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token"));
+
+        LocalDateTime now = LocalDateTime.now();
+        if (token.getRevokedAt() != null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token");
+        }
+        if (token.getUsedAt() != null) {
+            int revoked = refreshTokenRepository.revokeFamily(token.getFamilyId(), now);
+            log.warn("Refresh token reuse detected for user {}, revoked {} tokens", token.getUser().getId(), revoked);
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token");
+        }
+        if (token.getExpiresAt().isBefore(now)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh token expired");
+        }
+
+        token.setUsedAt(now);
+        refreshTokenRepository.save(token);
+
+        User user = token.getUser();
+        return new Rotation(user, issue(user, token.getFamilyId()));
+    }
+
+    @Transactional
+    public int deleteExpiredBatch(LocalDateTime cutoff, int batchSize) {
+        return refreshTokenRepository.deleteExpiredBatch(cutoff, batchSize);
+    }
+
+    private String issue(User user, String familyId) {
+        String rawToken = jwtTokenProvider.generateRefreshToken(user.getEmail());
+
+        RefreshToken token = new RefreshToken();
+        token.setUser(user);
+        token.setTokenHash(hash(rawToken));
+        token.setFamilyId(familyId);
+        token.setExpiresAt(LocalDateTime.now().plusSeconds(refreshExpirationMs / 1000));
+        refreshTokenRepository.save(token);
+
+        return rawToken;
+    }
+
+    private String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    public static final class Rotation {
+        private final User user;
+        private final String refreshToken;
+
+        private Rotation(User user, String refreshToken) {
+            this.user = user;
+            this.refreshToken = refreshToken;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+    }
+}
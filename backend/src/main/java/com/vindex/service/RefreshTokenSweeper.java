@@ -0,0 +1,44 @@
+package com.vindex.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Purges expired refresh tokens in bounded batches so a large backlog never turns into one
+ * long-running delete holding locks on {@code refresh_tokens}.
+ */
+@Component
+public class RefreshTokenSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenSweeper.class);
+
+    private final RefreshTokenService refreshTokenService;
+
+    @Value("${jwt.refresh-sweep.batch-size:1000}")
+    private int batchSize;
+
+    public RefreshTokenSweeper(RefreshTokenService refreshTokenService) {
+        this.refreshTokenService = refreshTokenService;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-sweep.interval-ms:3600000}",
+            initialDelayString = "${jwt.refresh-sweep.interval-ms:3600000}")
+    public void sweep() {
+        LocalDateTime cutoff = LocalDateTime.now();
+        int total = 0;
+        int deleted;
+        do {
+            deleted = refreshTokenService.deleteExpiredBatch(cutoff, batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+
+        if (total > 0) {
+            log.info("Purged {} expired refresh tokens", total);
+        }
+    }
+}
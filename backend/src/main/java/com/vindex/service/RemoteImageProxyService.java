@@ -0,0 +1,481 @@
+package com.vindex.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Proxies remote wine images (typically Snooth's) through a bounded on-disk LRU cache so the
+ * grid never waits on third-party hosts. Concurrent misses for the same URL share one upstream
+ * fetch, stale entries are revalidated with {@code If-None-Match}/{@code If-Modified-Since},
+ * and resized variants are derived from the cached original.
+ */
+@Service
+public class RemoteImageProxyService {
+
+    public static final String PROXY_PATH = "/api/images/remote";
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteImageProxyService.class);
+    private static final int MAX_REDIRECTS = 5;
+
+    private final Path cacheDir;
+    private final Path workDir;
+    private final List<String> allowedHosts;
+    private final List<Integer> variantWidths;
+    private final long maxCacheBytes;
+    private final long maxImageBytes;
+    private final Duration freshFor;
+    private final HttpClient httpClient;
+
+    private final Map<String, Entry> index = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private long cachedBytes;
+
+    public RemoteImageProxyService(@Value("${images.storage-dir:./data/images}") String storageDir,
+                                   @Value("${images.proxy.allowed-hosts:snooth.com}") List<String> allowedHosts,
+                                   @Value("${images.thumbnail-sizes:160,480}") List<Integer> variantWidths,
+                                   @Value("${images.proxy.max-cache-bytes:536870912}") long maxCacheBytes,
+                                   @Value("${images.proxy.max-image-bytes:5242880}") long maxImageBytes,
+                                   @Value("${images.proxy.fresh-for:P1D}") Duration freshFor,
+                                   @Value("${images.proxy.connect-timeout:PT3S}") Duration connectTimeout)
+            throws IOException {
+        Path root = Paths.get(storageDir).toAbsolutePath().normalize();
+        this.cacheDir = Files.createDirectories(root.resolve("remote"));
+        this.workDir = Files.createDirectories(root.resolve("tmp"));
+        this.allowedHosts = allowedHosts.stream().map(host -> host.trim().toLowerCase(Locale.ROOT)).toList();
+        this.variantWidths = List.copyOf(variantWidths);
+        this.maxCacheBytes = maxCacheBytes;
+        this.maxImageBytes = maxImageBytes;
+        this.freshFor = freshFor;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        loadIndex();
+    }
+
+    /**
+     * Rewrites an allowed remote image URL to go through the proxy; anything else is returned
+     * unchanged.
+     */
+    public String proxyUrlFor(String remoteUrl) {
+        if (remoteUrl == null || !isAllowed(remoteUrl)) {
+            return remoteUrl;
+        }
+        return PROXY_PATH + "?url=" + URLEncoder.encode(remoteUrl, StandardCharsets.UTF_8);
+    }
+
+    public CachedImage get(String remoteUrl, Integer width) {
+        if (!isAllowed(remoteUrl)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Image host not allowed");
+        }
+        if (width != null && !variantWidths.contains(width)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported image width");
+        }
+
+        String key = sha256(remoteUrl);
+        Entry original = coalesce(key, () -> fetchOriginal(key, URI.create(remoteUrl)));
+        if (width == null) {
+            return original.toCachedImage();
+        }
+
+        String variantKey = key + "-w" + width;
+        Entry variant = lookup(variantKey);
+        if (variant == null || variant.storedAt != original.storedAt) {
+            variant = coalesce(variantKey, () -> resize(variantKey, original, width));
+        }
+        return variant.toCachedImage();
+    }
+
+    private Entry fetchOriginal(String key, URI uri) throws IOException, InterruptedException {
+        Entry cached = lookup(key);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.fetchedAt < freshFor.toMillis()) {
+            return cached;
+        }
+
+        HttpResponse<InputStream> response;
+        try {
+            response = send(uri, cached);
+        } catch (IOException ex) {
+            return staleOrFail(cached, uri, ex.getMessage());
+        }
+
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 304 && cached != null) {
+                cached.fetchedAt = now;
+                writeMeta(cached);
+                return cached;
+            }
+            String contentType = response.headers().firstValue("Content-Type").orElse("");
+            if (response.statusCode() != 200 || !contentType.startsWith("image/")) {
+                return staleOrFail(cached, uri, "status " + response.statusCode() + ", type " + contentType);
+            }
+
+            Path partial = Files.createTempFile(workDir, "remote-", ".tmp");
+            try {
+                long size = copyBounded(body, partial);
+                Path target = cacheDir.resolve(key);
+                Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+                Entry entry = new Entry(key, target, contentType, size, now, now,
+                        response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null));
+                writeMeta(entry);
+                admit(entry);
+                return entry;
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+
+    /**
+     * Follows redirects by hand so every hop is checked against the allowed hosts; the client's
+     * own redirect handling would fetch from wherever an allowed host points it.
+     */
+    private HttpResponse<InputStream> send(URI uri, Entry cached) throws IOException, InterruptedException {
+        URI current = uri;
+        for (int redirects = 0; ; redirects++) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(current)
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Accept", "image/*");
+            if (cached != null && cached.remoteEtag != null) {
+                request.header("If-None-Match", cached.remoteEtag);
+            }
+            if (cached != null && cached.remoteLastModified != null) {
+                request.header("If-Modified-Since", cached.remoteLastModified);
+            }
+
+            HttpResponse<InputStream> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            if (!isRedirect(response.statusCode())) {
+                return response;
+            }
+            response.body().close();
+
+            String location = response.headers().firstValue("Location").orElse(null);
+            if (location == null) {
+                throw new IOException("redirect " + response.statusCode() + " without Location");
+            }
+            if (redirects >= MAX_REDIRECTS) {
+                throw new IOException("too many redirects");
+            }
+            URI next;
+            try {
+                next = current.resolve(location.trim());
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("invalid redirect location " + location);
+            }
+            if (!isAllowed(next.toString())) {
+                throw new IOException("redirect to disallowed host " + next.getHost());
+            }
+            current = next;
+        }
+    }
+
+    private static boolean isRedirect(int status) {
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    private Entry resize(String variantKey, Entry original, int width) throws IOException {
+        BufferedImage source = ImageIO.read(original.path.toFile());
+        if (source == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Remote image could not be decoded");
+        }
+        Path target = cacheDir.resolve(variantKey);
+        ImageResizer.writeJpeg(source, width, workDir, target);
+
+        Entry entry = new Entry(variantKey, target, "image/jpeg", Files.size(target),
+                original.storedAt, original.storedAt, null, null);
+        writeMeta(entry);
+        admit(entry);
+        return entry;
+    }
+
+    private Entry staleOrFail(Entry cached, URI uri, String reason) {
+        if (cached != null) {
+            log.debug("Serving stale {} after failed revalidation: {}", uri, reason);
+            return cached;
+        }
+        log.debug("Remote image fetch failed for {}: {}", uri, reason);
+        throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Remote image unavailable");
+    }
+
+    /**
+     * Runs {@code loader} at most once per key at a time; concurrent callers wait for and share
+     * the leader's result.
+     */
+    private Entry coalesce(String key, Loader loader) {
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            try {
+                return leader.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted");
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof ResponseStatusException status) {
+                    throw status;
+                }
+                throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Remote image unavailable", ex.getCause());
+            }
+        }
+
+        try {
+            Entry entry = loader.load();
+            mine.complete(entry);
+            return entry;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            mine.completeExceptionally(ex);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted");
+        } catch (ResponseStatusException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } catch (Exception ex) {
+            mine.completeExceptionally(ex);
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Remote image unavailable", ex);
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Entry lookup(String key) {
+        synchronized (index) {
+            return index.get(key);
+        }
+    }
+
+    private void admit(Entry entry) {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (index) {
+            Entry previous = index.put(entry.key, entry);
+            if (previous != null) {
+                cachedBytes -= previous.size;
+            }
+            cachedBytes += entry.size;
+
+            Iterator<Entry> iterator = index.values().iterator();
+            while (cachedBytes > maxCacheBytes && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                if (eldest == entry) {
+                    continue;
+                }
+                iterator.remove();
+                cachedBytes -= eldest.size;
+                evicted.add(eldest);
+            }
+        }
+
+        for (Entry eldest : evicted) {
+            try {
+                Files.deleteIfExists(eldest.path);
+                Files.deleteIfExists(metaPath(eldest.key));
+            } catch (IOException ex) {
+                log.warn("Could not delete evicted image {}", eldest.key, ex);
+            }
+        }
+    }
+
+    private long copyBounded(InputStream in, Path target) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[16 * 1024];
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxImageBytes) {
+                    throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Remote image too large");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return total;
+    }
+
+    private boolean isAllowed(String remoteUrl) {
+        try {
+            URI uri = URI.create(remoteUrl);
+            String scheme = uri.getScheme();
+            String host = uri.getHost();
+            if (host == null || !("http".equals(scheme) || "https".equals(scheme))) {
+                return false;
+            }
+            String normalizedHost = host.toLowerCase(Locale.ROOT);
+            return allowedHosts.stream()
+                    .anyMatch(allowed -> normalizedHost.equals(allowed) || normalizedHost.endsWith("." + allowed));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> metas = Files.newDirectoryStream(cacheDir, "*.meta")) {
+            for (Path meta : metas) {
+                Entry entry = readMeta(meta);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry.fetchedAt));
+        for (Entry entry : entries) {
+            admit(entry);
+        }
+        log.info("Remote image cache loaded {} entries ({} bytes)", entries.size(), cachedBytes);
+    }
+
+    private Entry readMeta(Path meta) {
+        String fileName = meta.getFileName().toString();
+        String key = fileName.substring(0, fileName.length() - ".meta".length());
+        Path data = cacheDir.resolve(key);
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(meta)) {
+            properties.load(reader);
+            if (!Files.isRegularFile(data)) {
+                Files.deleteIfExists(meta);
+                return null;
+            }
+            return new Entry(key, data,
+                    properties.getProperty("contentType", "image/jpeg"),
+                    Files.size(data),
+                    Long.parseLong(properties.getProperty("storedAt", "0")),
+                    Long.parseLong(properties.getProperty("fetchedAt", "0")),
+                    properties.getProperty("etag"),
+                    properties.getProperty("lastModified"));
+        } catch (IOException | NumberFormatException ex) {
+            log.warn("Discarding unreadable cache entry {}", key, ex);
+            return null;
+        }
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("contentType", entry.contentType);
+        properties.setProperty("storedAt", String.valueOf(entry.storedAt));
+        properties.setProperty("fetchedAt", String.valueOf(entry.fetchedAt));
+        if (entry.remoteEtag != null) {
+            properties.setProperty("etag", entry.remoteEtag);
+        }
+        if (entry.remoteLastModified != null) {
+            properties.setProperty("lastModified", entry.remoteLastModified);
+        }
+        Path partial = Files.createTempFile(workDir, "meta-", ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(partial)) {
+                properties.store(writer, null);
+            }
+            Files.move(partial, metaPath(entry.key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private Path metaPath(String key) {
+        return cacheDir.resolve(key + ".meta");
+    }
+
+    private String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader {
+        Entry load() throws Exception;
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final Path path;
+        private final String contentType;
+        private final long size;
+        private final String remoteEtag;
+        private final String remoteLastModified;
+        private final long storedAt;
+        private volatile long fetchedAt;
+
+        private Entry(String key, Path path, String contentType, long size, long storedAt, long fetchedAt,
+                      String remoteEtag, String remoteLastModified) {
+            this.key = key;
+            this.path = path;
+            this.contentType = contentType;
+            this.size = size;
+            this.storedAt = storedAt;
+            this.fetchedAt = fetchedAt;
+            this.remoteEtag = remoteEtag;
+            this.remoteLastModified = remoteLastModified;
+        }
+
+        private CachedImage toCachedImage() {
+            return new CachedImage(path, contentType, "\"" + key + "-" + storedAt + "\"");
+        }
+    }
+
+    public static final class CachedImage {
+        private final Path path;
+        private final String contentType;
+        private final String etag;
+
+        private CachedImage(Path path, String contentType, String etag) {
+            this.path = path;
+            this.contentType = contentType;
+            this.etag = etag;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.vindex.service;
+
+import com.vindex.dto.WineSuggestionDto;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Offline recognizer that resolves the user's hint against the suggestion catalog instead of
+ * looking at the image. Selected by {@code labels.recognizer=stub}, the default.
+ */
+@Component
+public class StubLabelRecognizer implements LabelRecognizer {
+
+    private final WineSuggestionService wineSuggestionService;
+
+    public StubLabelRecognizer(WineSuggestionService wineSuggestionService) {
+        this.wineSuggestionService = wineSuggestionService;
+    }
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+
+    @Override
+    public List<WineSuggestionDto> recognize(byte[] image, String hint) {
+        if (hint == null || hint.isBlank()) {
+            return List.of();
+        }
+        return wineSuggestionService.search(hint);
+    }
+}
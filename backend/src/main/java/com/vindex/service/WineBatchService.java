@@ -0,0 +1,280 @@
+package com.vindex.service;
+
+import com.vindex.dto.WineBatchRequest;
+import com.vindex.dto.WineBatchResponse;
+import com.vindex.entity.Wine;
+import com.vindex.entity.WineCatalogEntry;
+import com.vindex.repository.WineRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies a list of creates, updates and deletes to the current user's cellar in one
+ * transaction. Every operation is checked before anything is written, against the targeted
+ * wines loaded with a single {@code IN} query. The catalog rows of all new and edited wines
+ * are resolved with two more statements, new rows then go in as one JDBC batch, updates and
+ * deletes are flushed by Hibernate in JDBC batches, and the cellar stats deltas of the whole
+ * batch are netted and written as one more. Atomic batches write nothing when any operation
+ * fails its checks; best-effort batches skip the failing operations.
+ */
+@Service
+public class WineBatchService {
+
+    private static final String INSERT_SQL = "INSERT INTO wines (user_id, catalog_id, quantity, price, image_url, " +
+            "location, row_id, is_kosher, identity_key, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final WineRepository wineRepository;
+    private final WineService wineService;
+    private final WineCatalogService wineCatalogService;
+    private final CellarStatsService cellarStatsService;
+    private final CurrentUserService currentUserService;
+    private final JdbcTemplate jdbcTemplate;
+
+    public WineBatchService(WineRepository wineRepository,
+                            WineService wineService,
+                            WineCatalogService wineCatalogService,
+                            CellarStatsService cellarStatsService,
+                            CurrentUserService currentUserService,
+                            DataSource dataSource) {
+        this.wineRepository = wineRepository;
+        this.wineService = wineService;
+        this.wineCatalogService = wineCatalogService;
+        this.cellarStatsService = cellarStatsService;
+        this.currentUserService = currentUserService;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Transactional
+    public WineBatchResponse apply(WineBatchRequest request) {
+        return apply(currentUserService.getCurrentUserId(), request.getOperations(), request.getMode());
+    }
+
+    /**
+     * Applies at most {@link WineBatchRequest#MAX_OPERATIONS} operations within the caller's
+     * transaction. Wines already loaded by an earlier call in the same transaction come back
+     * from the persistence context, so their versions include that call's writes.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public WineBatchResponse apply(Long userId, List<? extends WineBatchRequest.Operation> operations,
+                                   WineBatchRequest.Mode mode) {
+        Map<Long, Wine> targets = loadTargets(userId, operations);
+
+        WineBatchResponse.Result[] results = new WineBatchResponse.Result[operations.size()];
+        Set<Long> targeted = new HashSet<>();
+        int failed = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            WineBatchRequest.Operation operation = operations.get(i);
+            try {
+                check(operation, targets, targeted);
+            } catch (ResponseStatusException ex) {
+                Wine current = ex.getStatusCode() == HttpStatus.CONFLICT ? targets.get(operation.getId()) : null;
+                results[i] = new WineBatchResponse.Result(i, name(operation), ex.getStatusCode().value(),
+                        operation.getId(), current == null ? null : wineService.toResponse(current), ex.getReason());
+                failed++;
+            }
+        }
+
+        if (failed > 0 && mode == WineBatchRequest.Mode.ATOMIC) {
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = new WineBatchResponse.Result(i, name(operations.get(i)),
+                            HttpStatus.FAILED_DEPENDENCY.value(), operations.get(i).getId(), null, "Not applied");
+                }
+            }
+            return new WineBatchResponse(false, 0, failed, Arrays.asList(results));
+        }
+
+        // Resolved before any wine is touched, so no managed wine ever points at a draft
+        WineCatalogEntry[] drafts = new WineCatalogEntry[operations.size()];
+        for (int i = 0; i < operations.size(); i++) {
+            WineBatchRequest.Operation operation = operations.get(i);
+            if (results[i] == null && operation.getOp() != WineBatchRequest.Type.DELETE) {
+                Wine current = operation.getOp() == WineBatchRequest.Type.UPDATE ? targets.get(operation.getId()) : null;
+                drafts[i] = wineService.catalogEntryFor(operation.getWine(), current == null ? null : current.getCatalog());
+            }
+        }
+        Map<UUID, WineCatalogEntry> catalog = wineCatalogService.resolveAll(
+                Arrays.stream(drafts).filter(Objects::nonNull).collect(Collectors.toList()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Change> changes = new ArrayList<>();
+        List<Wine> inserts = new ArrayList<>();
+        List<Wine> deletes = new ArrayList<>();
+        List<CellarStatsService.Snapshot> removed = new ArrayList<>();
+        List<CellarStatsService.Snapshot> added = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            WineBatchRequest.Operation operation = operations.get(i);
+            switch (operation.getOp()) {
+                case CREATE -> {
+                    Wine wine = new Wine();
+                    wineService.applyRequest(wine, operation.getWine(), catalog.get(drafts[i].getId()));
+                    inserts.add(wine);
+                    added.add(CellarStatsService.Snapshot.of(wine));
+                    changes.add(new Change(i, operation.getOp(), wine, null, null));
+                }
+                case UPDATE -> {
+                    Wine wine = targets.get(operation.getId());
+                    removed.add(CellarStatsService.Snapshot.of(wine));
+                    changes.add(new Change(i, operation.getOp(), wine, wine.getLocation(), wine.getRowId()));
+                    wineService.applyRequest(wine, operation.getWine(), catalog.get(drafts[i].getId()));
+                    wine.setUpdatedAt(now);
+                    added.add(CellarStatsService.Snapshot.of(wine));
+                }
+                case DELETE -> {
+                    Wine wine = targets.get(operation.getId());
+                    removed.add(CellarStatsService.Snapshot.of(wine));
+                    deletes.add(wine);
+                    changes.add(new Change(i, operation.getOp(), wine, null, null));
+                }
+            }
+        }
+
+        insert(userId, inserts);
+        wineRepository.deleteAll(deletes);
+        wineRepository.flush();
+        cellarStatsService.recordBatch(userId, removed, added);
+
+        for (Change change : changes) {
+            Wine wine = change.wine;
+            results[change.index] = switch (change.type) {
+                case CREATE -> new WineBatchResponse.Result(change.index, change.type.name(),
+                        HttpStatus.CREATED.value(), wine.getId(), wineService.afterCreate(userId, wine), null);
+                case UPDATE -> new WineBatchResponse.Result(change.index, change.type.name(), HttpStatus.OK.value(),
+                        wine.getId(), wineService.afterUpdate(userId, wine, change.locationBefore, change.rowBefore), null);
+                case DELETE -> {
+                    wineService.afterDelete(userId, wine);
+                    yield new WineBatchResponse.Result(change.index, change.type.name(),
+                            HttpStatus.NO_CONTENT.value(), wine.getId(), null, null);
+                }
+            };
+        }
+        return new WineBatchResponse(true, changes.size(), failed, Arrays.asList(results));
+    }
+
+    private Map<Long, Wine> loadTargets(Long userId, List<? extends WineBatchRequest.Operation> operations) {
+        Set<Long> ids = operations.stream()
+                .filter(operation -> operation.getOp() != WineBatchRequest.Type.CREATE)
+                .map(WineBatchRequest.Operation::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return wineRepository.findByUserIdAndIdIn(userId, ids).stream()
+                .collect(Collectors.toMap(Wine::getId, Function.identity()));
+    }
+
+    private void check(WineBatchRequest.Operation operation, Map<Long, Wine> targets, Set<Long> targeted) {
+        if (operation.getOp() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Operation type is required");
+        }
+        if (operation.getOp() != WineBatchRequest.Type.DELETE) {
+            if (operation.getWine() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Wine is required");
+            }
+            wineService.validateRequest(operation.getWine());
+        }
+        if (operation.getOp() == WineBatchRequest.Type.CREATE) {
+            return;
+        }
+        if (operation.getId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Wine id is required");
+        }
+        if (!targets.containsKey(operation.getId())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Wine not found");
+        }
+        if (!targeted.add(operation.getId())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Wine is targeted more than once");
+        }
+        long version = targets.get(operation.getId()).getVersion();
+        if (operation.getBaseVersion() != null && operation.getBaseVersion() != version) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Wine is at version " + version + ", not " + operation.getBaseVersion());
+        }
+    }
+
+    /**
+     * Inserts all new wines with one batched statement and reads their ids back; with
+     * {@code rewriteBatchedStatements} the driver sends it as a single multi-row insert.
+     */
+    private void insert(Long userId, List<Wine> wines) {
+        if (wines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Wine wine : wines) {
+                    statement.setLong(1, userId);
+                    statement.setBytes(2, WineCatalogEntry.bytesOf(wine.getCatalog().getId()));
+                    statement.setObject(3, wine.getQuantity(), Types.INTEGER);
+                    statement.setBigDecimal(4, wine.getPrice() == null ? null : BigDecimal.valueOf(wine.getPrice()));
+                    statement.setString(5, wine.getImageUrl());
+                    statement.setString(6, wine.getLocation().name());
+                    statement.setObject(7, wine.getRowId(), Types.INTEGER);
+                    statement.setBoolean(8, Boolean.TRUE.equals(wine.getIsKosher()));
+                    statement.setBytes(9, wine.getIdentityKey());
+                    statement.setObject(10, wine.getCreatedAt());
+                    statement.setObject(11, wine.getUpdatedAt());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (Wine wine : wines) {
+                        if (!keys.next()) {
+                            throw new IllegalStateException("Batch insert returned fewer ids than rows");
+                        }
+                        wine.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private String name(WineBatchRequest.Operation operation) {
+        return operation.getOp() == null ? null : operation.getOp().name();
+    }
+
+    private static final class Change {
+        private final int index;
+        private final WineBatchRequest.Type type;
+        private final Wine wine;
+        private final Wine.WineLocation locationBefore;
+        private final Integer rowBefore;
+
+        private Change(int index, WineBatchRequest.Type type, Wine wine,
+                       Wine.WineLocation locationBefore, Integer rowBefore) {
+            this.index = index;
+            this.type = type;
+            this.wine = wine;
+            this.locationBefore = locationBefore;
+            this.rowBefore = rowBefore;
+        }
+    }
+}
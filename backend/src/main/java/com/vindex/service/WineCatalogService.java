@@ -0,0 +1,73 @@
+package com.vindex.service;
+
+import com.vindex.entity.WineCatalogEntry;
+import com.vindex.repository.WineCatalogRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Turns catalog drafts into stored rows. Ids are content hashes, so there is nothing to look
+ * up first: the drafts are inserted with {@code INSERT IGNORE} in one batch and read back with
+ * one locking query, two statements however many wines are written.
+ */
+@Service
+public class WineCatalogService {
+
+    private static final String INSERT_SQL = "INSERT IGNORE INTO wine_catalog (id, wine_name, wine_type, " +
+            "vintage_year, winery, grape_variety, region, country) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final WineCatalogRepository wineCatalogRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public WineCatalogService(WineCatalogRepository wineCatalogRepository, DataSource dataSource) {
+        this.wineCatalogRepository = wineCatalogRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public WineCatalogEntry resolve(WineCatalogEntry draft) {
+        return resolveAll(List.of(draft)).get(draft.getId());
+    }
+
+    /**
+     * @return the stored row of every draft, by id
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<UUID, WineCatalogEntry> resolveAll(Collection<WineCatalogEntry> drafts) {
+        // One order for every writer, so two batches adding the same new wines cannot deadlock
+        Map<UUID, WineCatalogEntry> distinct = new TreeMap<>();
+        drafts.forEach(draft -> distinct.putIfAbsent(draft.getId(), draft));
+        if (distinct.isEmpty()) {
+            return Map.of();
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, distinct.values(), distinct.size(), (statement, entry) -> {
+            statement.setBytes(1, WineCatalogEntry.bytesOf(entry.getId()));
+            statement.setString(2, entry.getWineName());
+            statement.setString(3, entry.getWineType() == null ? null : entry.getWineType().name());
+            statement.setObject(4, entry.getVintageYear(), Types.INTEGER);
+            statement.setString(5, entry.getWinery());
+            statement.setString(6, entry.getGrapeVariety());
+            statement.setString(7, entry.getRegion());
+            statement.setString(8, entry.getCountry());
+        });
+        Map<UUID, WineCatalogEntry> stored = wineCatalogRepository.findAllForShare(distinct.keySet()).stream()
+                .collect(Collectors.toMap(WineCatalogEntry::getId, Function.identity()));
+        if (stored.size() != distinct.size()) {
+            throw new IllegalStateException("Catalog returned " + stored.size() + " of " + distinct.size() + " wines");
+        }
+        return stored;
+    }
+}
@@ -0,0 +1,111 @@
+package com.vindex.service;
+
+import com.vindex.entity.Wine;
+import com.vindex.replica.ReplicaContext;
+import com.vindex.repository.WineRepository;
+import com.vindex.shard.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Nightly clean-up of cellars that hold the same wine more than once. On every shard it first
+ * computes the identity key of rows from before the column existed, then merges each group of
+ * wines sharing a key and a place (location and row) into its oldest row, one group per
+ * transaction so a failure only skips that group. Copies of a wine kept in different places
+ * are never merged, only counted in the run's summary. Users being moved to another shard are
+ * left for the next run.
+ */
+@Component
+public class WineDuplicateMergeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(WineDuplicateMergeJob.class);
+
+    private final WineRepository wineRepository;
+    private final WineService wineService;
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${wines.dedupe.enabled:true}")
+    private boolean enabled;
+
+    @Value("${wines.dedupe.batch-size:500}")
+    private int batchSize;
+
+    @Value("${wines.dedupe.max-groups-per-run:1000}")
+    private int maxGroupsPerRun;
+
+    public WineDuplicateMergeJob(WineRepository wineRepository, WineService wineService, ShardRouter shardRouter,
+                                 DataSource dataSource) {
+        this.wineRepository = wineRepository;
+        this.wineService = wineService;
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Scheduled(cron = "${wines.dedupe.cron:0 0 4 * * *}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger keyed = new AtomicInteger();
+        AtomicInteger merged = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicLong keptApart = new AtomicLong();
+        shardRouter.forEachShard(() -> {
+            try {
+                keyed.addAndGet(backfillKeys());
+            } catch (RuntimeException ex) {
+                log.warn("Wine identity key backfill aborted", ex);
+            }
+            for (WineRepository.DuplicateGroup group : wineRepository.findDuplicateGroups(maxGroupsPerRun)) {
+                try {
+                    if (shardRouter.isMoving(group.getUserId())) {
+                        skipped.incrementAndGet();
+                        continue;
+                    }
+                    Wine.WineLocation location = group.getLocation() == null ? null
+                            : Wine.WineLocation.valueOf(group.getLocation());
+                    merged.addAndGet(wineService.mergeDuplicates(group.getUserId(), group.getIdentityKey(),
+                            location, group.getRowId()));
+                } catch (RuntimeException ex) {
+                    failed.incrementAndGet();
+                    log.warn("Merging duplicate wines failed for user {}", group.getUserId(), ex);
+                }
+            }
+            keptApart.addAndGet(wineRepository.countDuplicatesInSeveralPlaces());
+        });
+        log.info("Duplicate wine merge: {} keys computed, {} wines merged away ({} groups failed, {} being moved, "
+                        + "{} wines held in more than one place)",
+                keyed.get(), merged.get(), failed.get(), skipped.get(), keptApart.get());
+    }
+
+    private int backfillKeys() {
+        int total = 0;
+        List<WineRepository.IdentityCandidate> candidates;
+        do {
+            // A lagging replica would hand back the rows just keyed
+            candidates = ReplicaContext.callOnPrimary(() -> wineRepository.findMissingIdentityKeys(batchSize));
+            if (candidates.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate("UPDATE wines SET identity_key = ? WHERE id = ?", candidates.stream()
+                    .map(candidate -> new Object[]{
+                            WineIdentity.keyOf(candidate.getWineName(), candidate.getWinery(), candidate.getVintageYear()),
+                            candidate.getId()})
+                    .collect(Collectors.toList()));
+            total += candidates.size();
+        } while (candidates.size() == batchSize);
+        return total;
+    }
+}
@@ -0,0 +1,335 @@
+package com.vindex.service;
+
+import com.vindex.cache.CellarFacetIndex;
+import com.vindex.cache.CellarSnapshotCache;
+import com.vindex.dto.WineSuggestionDto;
+import com.vindex.entity.Wine;
+import com.vindex.entity.WineCatalogEntry;
+import com.vindex.repository.WineRepository;
+import com.vindex.security.TokenBucketRateLimiter;
+import com.vindex.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Fills in missing winery, region, country, grape and image for cellar wines in the background.
+ * Each batch of incomplete rows is grouped by normalized name and vintage so every distinct
+ * wine is looked up once, first in the local catalog and then on Snooth under a shared rate
+ * limit. Catalog rows are never changed, so the wines of a group are repointed at the enriched
+ * catalog row, with a single update per catalog row they started from.
+ * <p>
+ * Runs happen on a dedicated thread: waiting for the Snooth rate limit can take minutes, and
+ * doing that on the shared scheduler thread would stall replica heartbeats and job polling.
+ */
+@Service
+public class WineEnrichmentService {
+
+    private static final Logger log = LoggerFactory.getLogger(WineEnrichmentService.class);
+
+    private final WineRepository wineRepository;
+    private final WineSuggestionService wineSuggestionService;
+    private final WineCatalogService wineCatalogService;
+    private final CellarStatsService cellarStatsService;
+    private final CellarSnapshotCache cellarSnapshotCache;
+    private final CellarFacetIndex cellarFacetIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final TokenBucketRateLimiter remoteRateLimiter;
+    private final ShardRouter shardRouter;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wine-enrichment");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong backlog = new AtomicLong();
+    private final Counter catalogHits;
+    private final Counter remoteHits;
+    private final Counter misses;
+    private final Counter winesEnriched;
+    private final Timer batchTimer;
+
+    @Value("${enrichment.enabled:true}")
+    private boolean enabled;
+
+    @Value("${enrichment.batch-size:200}")
+    private int batchSize;
+
+    @Value("${enrichment.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    public WineEnrichmentService(WineRepository wineRepository,
+                                 WineSuggestionService wineSuggestionService,
+                                 WineCatalogService wineCatalogService,
+                                 CellarStatsService cellarStatsService,
+                                 CellarSnapshotCache cellarSnapshotCache,
+                                 CellarFacetIndex cellarFacetIndex,
+                                 TransactionTemplate transactionTemplate,
+                                 ShardRouter shardRouter,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${enrichment.remote.requests-per-second:1}") double remoteRequestsPerSecond,
+                                 @Value("${enrichment.remote.burst:5}") int remoteBurst) {
+        this.wineRepository = wineRepository;
+        this.wineSuggestionService = wineSuggestionService;
+        this.wineCatalogService = wineCatalogService;
+        this.cellarStatsService = cellarStatsService;
+        this.cellarSnapshotCache = cellarSnapshotCache;
+        this.cellarFacetIndex = cellarFacetIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+        this.remoteRateLimiter = new TokenBucketRateLimiter(remoteBurst, remoteRequestsPerSecond, 1, Long.MAX_VALUE / 1_000_000, 1);
+
+        meterRegistry.gauge("enrichment.backlog", backlog);
+        this.catalogHits = meterRegistry.counter("enrichment.lookups", "source", "catalog", "outcome", "hit");
+        this.remoteHits = meterRegistry.counter("enrichment.lookups", "source", "snooth", "outcome", "hit");
+        this.misses = meterRegistry.counter("enrichment.lookups", "source", "any", "outcome", "miss");
+        this.winesEnriched = meterRegistry.counter("enrichment.wines.enriched");
+        this.batchTimer = meterRegistry.timer("enrichment.batch.duration");
+    }
+
+    /**
+     * Hands a run to the enrichment thread and returns at once; a tick that arrives while the
+     * previous run is still going is dropped.
+     */
+    @Scheduled(fixedDelayString = "${enrichment.interval-ms:300000}", initialDelayString = "${enrichment.initial-delay-ms:60000}")
+    public void trigger() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run();
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void run() {
+        AtomicLong remaining = new AtomicLong();
+        // Every shard holds its own slice of the cellars; with sharding off this runs once
+        shardRouter.forEachShard(() -> {
+            try {
+                for (int i = 0; i < maxBatchesPerRun; i++) {
+                    Timer.Sample sample = Timer.start();
+                    int processed = enrichBatch();
+                    sample.stop(batchTimer);
+                    if (processed < batchSize) {
+                        break;
+                    }
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Wine enrichment run aborted", ex);
+            } finally {
+                remaining.addAndGet(wineRepository.countEnrichmentBacklog());
+            }
+        });
+        backlog.set(remaining.get());
+    }
+
+    /**
+     * @return number of candidate rows processed
+     */
+    int enrichBatch() {
+        List<WineRepository.EnrichmentCandidate> candidates = wineRepository.findEnrichmentCandidates(batchSize);
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        // Users being moved to another shard are picked up again once they have landed
+        Set<Long> moving = shardRouter.movingUsers();
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (WineRepository.EnrichmentCandidate candidate : candidates) {
+            if (moving.contains(candidate.getUserId())) {
+                continue;
+            }
+            String key = WineIdentity.normalize(candidate.getWineName()) + "|" + candidate.getVintageYear();
+            groups.computeIfAbsent(key, k -> new Group(candidate.getWineName(), candidate.getVintageYear()))
+                    .add(candidate);
+        }
+
+        for (Group group : groups.values()) {
+            group.match = lookup(group.name, group.vintage);
+        }
+
+        // Lookups can wait minutes for the Snooth rate limit, long past a move's drain period
+        Set<Long> movedMeanwhile = shardRouter.movingUsers();
+        if (!movedMeanwhile.isEmpty()) {
+            groups.values().forEach(group -> group.exclude(movedMeanwhile));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> unmatched = new ArrayList<>();
+            List<Enriched> enriched = new ArrayList<>();
+            for (Group group : groups.values()) {
+                if (group.match.isEmpty()) {
+                    unmatched.addAll(group.wineIds());
+                    continue;
+                }
+                WineSuggestionDto match = group.match.get();
+                for (Map.Entry<UUID, List<Long>> variant : group.variants.entrySet()) {
+                    if (variant.getValue().isEmpty()) {
+                        continue;
+                    }
+                    WineCatalogEntry catalog = group.entries.get(variant.getKey()).withMissing(null,
+                            blankToNull(match.getWinery()),
+                            blankToNull(match.getRegion()),
+                            blankToNull(match.getCountry()),
+                            blankToNull(match.getGrapeVariety()));
+                    enriched.add(new Enriched(variant.getValue(), variant.getKey(), catalog,
+                            blankToNull(match.getImageUrl())));
+                }
+            }
+
+            Map<UUID, WineCatalogEntry> catalog = wineCatalogService.resolveAll(
+                    enriched.stream().map(item -> item.catalog).collect(Collectors.toList()));
+            for (Enriched item : enriched) {
+                WineCatalogEntry entry = catalog.get(item.catalog.getId());
+                // Wines edited meanwhile keep the edit and are looked at again next run
+                winesEnriched.increment(wineRepository.applyEnrichment(item.wineIds, WineCatalogEntry.bytesOf(item.from),
+                        WineCatalogEntry.bytesOf(entry.getId()), WineIdentity.keyOf(entry), item.imageUrl, now));
+            }
+            if (!unmatched.isEmpty()) {
+                wineRepository.markEnrichmentChecked(unmatched, now);
+            }
+        });
+
+        // Region and country feed the cellar summary, so resync it for every touched cellar;
+        // the enriched fields are also part of the listing and the filter facets
+        Set<Long> affectedUsers = new LinkedHashSet<>();
+        groups.values().stream().filter(group -> group.match.isPresent()).forEach(group -> affectedUsers.addAll(group.userIds));
+        affectedUsers.forEach(cellarStatsService::rebuild);
+        affectedUsers.forEach(cellarSnapshotCache::invalidate);
+        affectedUsers.forEach(cellarFacetIndex::invalidate);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Enriched batch of {} wines ({} distinct)", candidates.size(), groups.size());
+        }
+        return candidates.size();
+    }
+
+    private Optional<WineSuggestionDto> lookup(String name, Integer vintage) {
+        Optional<WineSuggestionDto> match = wineSuggestionService.findInCatalog(name, vintage);
+        if (match.isPresent()) {
+            catalogHits.increment();
+            return match;
+        }
+
+        if (wineSuggestionService.isRemoteLookupEnabled()) {
+            awaitRemotePermit();
+            match = wineSuggestionService.findRemote(name, vintage);
+            if (match.isPresent()) {
+                remoteHits.increment();
+                return match;
+            }
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    private void awaitRemotePermit() {
+        long waitNanos;
+        while ((waitNanos = remoteRateLimiter.tryAcquire("snooth")) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for Snooth rate limit", ex);
+            }
+        }
+    }
+
+    private String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private static final class Group {
+        private final String name;
+        private final Integer vintage;
+        /** Wine ids by the catalog entry they currently point at. */
+        private final Map<UUID, List<Long>> variants = new LinkedHashMap<>();
+        private final Map<UUID, WineCatalogEntry> entries = new HashMap<>();
+        private final Map<Long, Long> owners = new HashMap<>();
+        private final Set<Long> userIds = new LinkedHashSet<>();
+        private Optional<WineSuggestionDto> match = Optional.empty();
+
+        private Group(String name, Integer vintage) {
+            this.name = name;
+            this.vintage = vintage;
+        }
+
+        private void add(WineRepository.EnrichmentCandidate candidate) {
+            WineCatalogEntry entry = new WineCatalogEntry(candidate.getWineName(),
+                    candidate.getWineType() == null ? null : Wine.WineType.valueOf(candidate.getWineType()),
+                    candidate.getVintageYear(), candidate.getWinery(), candidate.getRegion(),
+                    candidate.getCountry(), candidate.getGrapeVariety());
+            entries.putIfAbsent(entry.getId(), entry);
+            variants.computeIfAbsent(entry.getId(), id -> new ArrayList<>()).add(candidate.getId());
+            owners.put(candidate.getId(), candidate.getUserId());
+            userIds.add(candidate.getUserId());
+        }
+
+        private void exclude(Set<Long> users) {
+            variants.values().forEach(ids -> ids.removeIf(id -> users.contains(owners.get(id))));
+            userIds.removeAll(users);
+        }
+
+        private List<Long> wineIds() {
+            List<Long> ids = new ArrayList<>();
+            variants.values().forEach(ids::addAll);
+            return ids;
+        }
+    }
+
+    private static final class Enriched {
+        private final List<Long> wineIds;
+        /** Catalog row the wines pointed at when they were read. */
+        private final UUID from;
+        private final WineCatalogEntry catalog;
+        private final String imageUrl;
+
+        private Enriched(List<Long> wineIds, UUID from, WineCatalogEntry catalog, String imageUrl) {
+            this.wineIds = wineIds;
+            this.from = from;
+            this.catalog = catalog;
+            this.imageUrl = imageUrl;
+        }
+    }
+}
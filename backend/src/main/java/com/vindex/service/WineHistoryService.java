@@ -0,0 +1,162 @@
+package com.vindex.service;
+
+import com.vindex.dto.TastingRequest;
+import com.vindex.dto.WineHistoryResponse;
+import com.vindex.entity.Wine;
+import com.vindex.entity.WineHistoryEntry;
+import com.vindex.history.WineHistoryWriter;
+import com.vindex.repository.WineHistoryRepository;
+import com.vindex.repository.WineRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Records what happens to wines (added, consumed, restocked, tasted, moved, removed) and pages
+ * through it newest first. Entries are handed to {@link WineHistoryWriter} only once the
+ * surrounding transaction has committed, so a rolled back change leaves no trace and the
+ * insert never adds to the request's transaction.
+ */
+@Service
+public class WineHistoryService {
+
+    private final WineHistoryRepository wineHistoryRepository;
+    private final WineRepository wineRepository;
+    private final WineHistoryWriter wineHistoryWriter;
+    private final CurrentUserService currentUserService;
+
+    @Value("${history.page.default-limit:50}")
+    private int defaultLimit;
+
+    @Value("${history.page.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${history.page.default-range-days:90}")
+    private int defaultRangeDays;
+
+    public WineHistoryService(WineHistoryRepository wineHistoryRepository,
+                              WineRepository wineRepository,
+                              WineHistoryWriter wineHistoryWriter,
+                              CurrentUserService currentUserService) {
+        this.wineHistoryRepository = wineHistoryRepository;
+        this.wineRepository = wineRepository;
+        this.wineHistoryWriter = wineHistoryWriter;
+        this.currentUserService = currentUserService;
+    }
+
+    /**
+     * Entry carrying the wine as it is now, for changes after which the row is gone or differs.
+     */
+    public static WineHistoryEntry snapshot(Wine wine, Long userId, WineHistoryEntry.EventType type) {
+        WineHistoryEntry entry = new WineHistoryEntry(userId, wine.getId(), type);
+        entry.setWineName(wine.getWineName());
+        entry.setVintageYear(wine.getVintageYear());
+        entry.setLocation(wine.getLocation());
+        entry.setRowId(wine.getRowId());
+        return entry;
+    }
+
+    public void record(WineHistoryEntry entry) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            wineHistoryWriter.append(entry);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                wineHistoryWriter.append(entry);
+            }
+        });
+    }
+
+    public void recordTasting(Long wineId, TastingRequest request) {
+        String note = request.getNote() == null || request.getNote().isBlank() ? null : request.getNote().trim();
+        if (request.getRating() == null && note == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A rating or a note is required");
+        }
+        Long userId = currentUserService.getCurrentUserId();
+        if (!wineRepository.existsByIdAndUserId(wineId, userId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Wine not found");
+        }
+        WineHistoryEntry entry = new WineHistoryEntry(userId, wineId, WineHistoryEntry.EventType.TASTED);
+        entry.setRating(request.getRating());
+        entry.setNote(note);
+        record(entry);
+    }
+
+    /**
+     * @param cursor {@code nextCursor} of the previous page, or null for the newest entries
+     */
+    @Transactional(readOnly = true)
+    public WineHistoryResponse getHistory(LocalDateTime from, LocalDateTime to, String cursor, Integer limit,
+                                          Long wineId, String type) {
+        LocalDateTime end = to == null ? LocalDateTime.now() : to;
+        LocalDateTime start = from == null ? end.minusDays(defaultRangeDays) : from;
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must be before 'to'");
+        }
+        int pageSize = limit == null ? defaultLimit : Math.max(1, Math.min(limit, maxLimit));
+
+        LocalDateTime beforeAt = end;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = cursor.split(":", 2);
+            try {
+                beforeAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[0])), ZoneOffset.UTC);
+                beforeId = Long.parseLong(parts[1]);
+            } catch (RuntimeException ex) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+        }
+
+        List<WineHistoryEntry> entries = wineHistoryRepository.findPage(currentUserService.getCurrentUserId(),
+                start, end, beforeAt, beforeId, wineId, toEventType(type), PageRequest.of(0, pageSize + 1));
+        String nextCursor = null;
+        if (entries.size() > pageSize) {
+            entries = entries.subList(0, pageSize);
+            WineHistoryEntry last = entries.get(pageSize - 1);
+            nextCursor = last.getOccurredAt().toInstant(ZoneOffset.UTC).toEpochMilli() + ":" + last.getId();
+        }
+        return new WineHistoryResponse(entries.stream().map(this::toResponse).collect(Collectors.toList()), nextCursor);
+    }
+
+    private WineHistoryEntry.EventType toEventType(String type) {
+        if (type == null || type.isBlank()) {
+            return null;
+        }
+        try {
+            return WineHistoryEntry.EventType.valueOf(type.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown history type: " + type);
+        }
+    }
+
+    private WineHistoryResponse.Entry toResponse(WineHistoryEntry entry) {
+        return new WineHistoryResponse.Entry(
+                entry.getId(),
+                entry.getWineId(),
+                entry.getEventType().name(),
+                entry.getWineName(),
+                entry.getVintageYear() == null ? null : entry.getVintageYear().toString(),
+                entry.getQuantityDelta(),
+                entry.getQuantityAfter(),
+                entry.getRating(),
+                entry.getNote(),
+                entry.getLocation() == null ? null : entry.getLocation().name(),
+                entry.getRowId(),
+                entry.getOccurredAt()
+        );
+    }
+}
@@ -0,0 +1,40 @@
+package com.vindex.service;
+
+import com.vindex.entity.WineCatalogEntry;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Identity of a wine within a cellar, independent of spelling details: the name and winery
+ * with accents, case and punctuation folded away, plus the vintage. Stored hashed in
+ * {@code wines.identity_key}, so finding an existing bottle of the same wine is one probe on
+ * a fixed-width index.
+ */
+public final class WineIdentity {
+
+    private WineIdentity() {
+    }
+
+    public static byte[] keyOf(String name, String winery, Integer vintage) {
+        String identity = normalize(name) + '|' + normalize(winery) + '|' + (vintage == null ? "" : vintage);
+        return DigestUtils.md5Digest(identity.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static byte[] keyOf(WineCatalogEntry entry) {
+        return keyOf(entry.getWineName(), entry.getWinery(), entry.getVintageYear());
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(value, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{Alnum}]+", " ");
+        return folded.trim();
+    }
+}
@@ -0,0 +1,237 @@
+package com.vindex.service;
+
+import com.vindex.dto.WineBatchRequest;
+import com.vindex.dto.WineBatchResponse;
+import com.vindex.dto.WineReplayRequest;
+import com.vindex.dto.WineReplayResponse;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Replays an offline client's ordered mutation log in one transaction. Keys that were already
+ * processed are looked up in {@code client_mutations} with one query and answered from there;
+ * the rest are applied through {@link WineBatchService} in best-effort chunks, a new chunk
+ * starting whenever a wine comes up again so every write sees the previous one. The outcome of
+ * every new key, conflicts included, is stored with one batched insert before commit, so a
+ * retry after a lost response never applies a mutation twice. A retry that overlaps the
+ * original request misses the stored keys too; its insert then waits for the original and
+ * fails on the primary key, so the whole attempt is rolled back and run again, this time
+ * answered from what the original stored.
+ */
+@Service
+public class WineReplayService {
+
+    private static final String REMEMBER_SQL =
+            "INSERT INTO client_mutations (user_id, key_hash, status, wine_id) VALUES (?, ?, ?, ?)";
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final WineBatchService wineBatchService;
+    private final CurrentUserService currentUserService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public WineReplayService(WineBatchService wineBatchService,
+                             CurrentUserService currentUserService,
+                             DataSource dataSource,
+                             TransactionTemplate transactionTemplate) {
+        this.wineBatchService = wineBatchService;
+        this.currentUserService = currentUserService;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    public WineReplayResponse replay(WineReplayRequest request) {
+        Long userId = currentUserService.getCurrentUserId();
+        List<WineReplayRequest.Mutation> mutations = request.getMutations();
+        // Attempts rewrite base versions while rebasing; each one starts from the client's
+        Long[] clientBases = mutations.stream().map(WineReplayRequest.Mutation::getBaseVersion).toArray(Long[]::new);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> replayOnce(userId, mutations));
+            } catch (KeysStoredConcurrently ex) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw (DuplicateKeyException) ex.getCause();
+                }
+                for (int i = 0; i < mutations.size(); i++) {
+                    mutations.get(i).setBaseVersion(clientBases[i]);
+                }
+            }
+        }
+    }
+
+    private WineReplayResponse replayOnce(Long userId, List<WineReplayRequest.Mutation> mutations) {
+        WineReplayResponse.Result[] results = new WineReplayResponse.Result[mutations.size()];
+
+        List<byte[]> hashes = mutations.stream().map(mutation -> hash(mutation.getKey())).collect(Collectors.toList());
+        Map<String, StoredOutcome> stored = loadStored(userId, hashes);
+        Map<String, Integer> firstByKey = new HashMap<>();
+        List<Integer> pending = new ArrayList<>();
+        int replayed = 0;
+        for (int i = 0; i < mutations.size(); i++) {
+            String hex = HexFormat.of().formatHex(hashes.get(i));
+            StoredOutcome outcome = stored.get(hex);
+            if (outcome != null) {
+                results[i] = outcome.toResult(i, mutations.get(i));
+                replayed++;
+            } else if (firstByKey.putIfAbsent(hex, i) == null) {
+                pending.add(i);
+            }
+        }
+
+        Map<Long, Rebase> rebases = new HashMap<>();
+        int next = 0;
+        while (next < pending.size()) {
+            List<Integer> chunk = new ArrayList<>();
+            Set<Long> wines = new HashSet<>();
+            for (; next < pending.size() && chunk.size() < WineBatchRequest.MAX_OPERATIONS; next++) {
+                WineReplayRequest.Mutation mutation = mutations.get(pending.get(next));
+                if (mutation.getOp() != WineBatchRequest.Type.CREATE && mutation.getId() != null
+                        && !wines.add(mutation.getId())) {
+                    break;
+                }
+                chunk.add(pending.get(next));
+            }
+            applyChunk(userId, mutations, chunk, rebases, results);
+        }
+
+        // Repeats of a key within the same log share the outcome of its first occurrence
+        for (int i = 0; i < mutations.size(); i++) {
+            if (results[i] == null) {
+                WineReplayResponse.Result first = results[firstByKey.get(HexFormat.of().formatHex(hashes.get(i)))];
+                results[i] = new WineReplayResponse.Result(i, first.getKey(), first.getOp(), first.getStatus(),
+                        first.getId(), null, first.getError(), true);
+                replayed++;
+            }
+        }
+
+        List<Object[]> remembered = new ArrayList<>();
+        for (int index : pending) {
+            remembered.add(new Object[]{userId, hashes.get(index), results[index].getStatus(), results[index].getId()});
+        }
+        if (!remembered.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(REMEMBER_SQL, remembered);
+            } catch (DuplicateKeyException ex) {
+                throw new KeysStoredConcurrently(ex);
+            }
+        }
+
+        List<WineReplayResponse.Result> all = Arrays.asList(results);
+        List<WineReplayResponse.Result> conflicts = all.stream()
+                .filter(result -> result.getStatus() == HttpStatus.CONFLICT.value())
+                .collect(Collectors.toList());
+        return new WineReplayResponse(pending.size(), replayed, all, conflicts);
+    }
+
+    /**
+     * Deletes up to {@code limit} stored outcomes older than the cutoff on the current shard.
+     */
+    @Transactional
+    public int deleteExpiredKeys(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.update("DELETE FROM client_mutations WHERE created_at < ? LIMIT ?", cutoff, limit);
+    }
+
+    private void applyChunk(Long userId, List<WineReplayRequest.Mutation> mutations, List<Integer> chunk,
+                            Map<Long, Rebase> rebases, WineReplayResponse.Result[] results) {
+        List<WineReplayRequest.Mutation> operations = new ArrayList<>();
+        Long[] clientBases = new Long[chunk.size()];
+        for (int k = 0; k < chunk.size(); k++) {
+            WineReplayRequest.Mutation mutation = mutations.get(chunk.get(k));
+            clientBases[k] = mutation.getBaseVersion();
+            Rebase rebase = mutation.getId() == null ? null : rebases.get(mutation.getId());
+            if (rebase != null && mutation.getBaseVersion() != null && mutation.getBaseVersion() == rebase.clientBase) {
+                // Written earlier in this log from the same base: check against that write instead
+                mutation.setBaseVersion(rebase.current);
+            }
+            operations.add(mutation);
+        }
+
+        WineBatchResponse outcome = wineBatchService.apply(userId, operations, WineBatchRequest.Mode.BEST_EFFORT);
+        for (int k = 0; k < chunk.size(); k++) {
+            WineBatchResponse.Result result = outcome.getResults().get(k);
+            WineReplayRequest.Mutation mutation = operations.get(k);
+            if (result.getStatus() == HttpStatus.OK.value() && clientBases[k] != null) {
+                rebases.put(result.getId(), new Rebase(clientBases[k], result.getWine().getVersion()));
+            }
+            results[chunk.get(k)] = new WineReplayResponse.Result(chunk.get(k), mutation.getKey(), result.getOp(),
+                    result.getStatus(), result.getId(), result.getWine(), result.getError(), false);
+        }
+    }
+
+    private Map<String, StoredOutcome> loadStored(Long userId, List<byte[]> hashes) {
+        Map<String, StoredOutcome> stored = new HashMap<>();
+        namedJdbcTemplate.query("SELECT key_hash, status, wine_id FROM client_mutations " +
+                        "WHERE user_id = :userId AND key_hash IN (:hashes)",
+                new MapSqlParameterSource().addValue("userId", userId).addValue("hashes", hashes),
+                rs -> {
+                    stored.put(HexFormat.of().formatHex(rs.getBytes("key_hash")),
+                            new StoredOutcome(rs.getInt("status"), rs.getObject("wine_id", Long.class)));
+                });
+        return stored;
+    }
+
+    /**
+     * Keys are stored as their MD5 so every row has the same small, fixed width whatever the
+     * client sends.
+     */
+    private byte[] hash(String key) {
+        return DigestUtils.md5Digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Another request stored some of the same keys after this attempt looked them up.
+     */
+    private static final class KeysStoredConcurrently extends RuntimeException {
+        private KeysStoredConcurrently(DuplicateKeyException cause) {
+            super(cause);
+        }
+    }
+
+    private static final class StoredOutcome {
+        private final int status;
+        private final Long wineId;
+
+        private StoredOutcome(int status, Long wineId) {
+            this.status = status;
+            this.wineId = wineId;
+        }
+
+        private WineReplayResponse.Result toResult(int index, WineReplayRequest.Mutation mutation) {
+            String op = mutation.getOp() == null ? null : mutation.getOp().name();
+            return new WineReplayResponse.Result(index, mutation.getKey(), op, status, wineId, null, null, true);
+        }
+    }
+
+    private static final class Rebase {
+        private final long clientBase;
+        private final long current;
+
+        private Rebase(long clientBase, long current) {
+            this.clientBase = clientBase;
+            this.current = current;
+        }
+    }
+}
@@ -1,20 +1,39 @@
 package com.vindex.service;
 
+import com.vindex.dto.CellarStatsResponse;
+import com.vindex.dto.QuantityResponse;
 import com.vindex.dto.WineRequest;
 import com.vindex.dto.WineResponse;
-import com.vindex.entity.User;
 import com.vindex.entity.Wine;
+import com.vindex.entity.WineCatalogEntry;
+import com.vindex.entity.WineHistoryEntry;
+import com.vindex.entity.WineQuantityEvent;
+import com.vindex.exception.DuplicateWineException;
 import com.vindex.repository.UserRepository;
+import com.vindex.repository.WineQuantityEventRepository;
 import com.vindex.repository.WineRepository;
+import com.vindex.stream.WineChangeEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,64 +41,418 @@ public class WineService {
 
     private static final String DEFAULT_IMAGE = "/wine-placeholder.svg";
 
+    /**
+     * What {@code POST /wines} does when the cellar already holds the same wine.
+     */
+    public enum OnDuplicate {
+        /** Adds another row regardless. */
+        CREATE,
+        /** Answers 409 with the existing wine, so the client can offer the choices below. */
+        ASK,
+        /** Adds the new bottles to the existing wine. */
+        INCREMENT,
+        /** Adds the bottles and fills the existing wine's blank fields from the request. */
+        MERGE
+    }
+
     private final WineRepository wineRepository;
+    private final WineQuantityEventRepository wineQuantityEventRepository;
+    private final CurrentUserService currentUserService;
+    private final CellarStatsService cellarStatsService;
+    private final ImageStorageService imageStorageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WineHistoryService wineHistoryService;
+    private final WineCatalogService wineCatalogService;
     private final UserRepository userRepository;
 
-    public WineService(WineRepository wineRepository, UserRepository userRepository) {
+    public WineService(WineRepository wineRepository,
+                       WineQuantityEventRepository wineQuantityEventRepository,
+                       CurrentUserService currentUserService,
+                       CellarStatsService cellarStatsService,
+                       ImageStorageService imageStorageService,
+                       ApplicationEventPublisher eventPublisher,
+                       WineHistoryService wineHistoryService,
+                       WineCatalogService wineCatalogService,
+                       UserRepository userRepository) {
         this.wineRepository = wineRepository;
+        this.wineQuantityEventRepository = wineQuantityEventRepository;
+        this.currentUserService = currentUserService;
+        this.cellarStatsService = cellarStatsService;
+        this.imageStorageService = imageStorageService;
+        this.eventPublisher = eventPublisher;
+        this.wineHistoryService = wineHistoryService;
+        this.wineCatalogService = wineCatalogService;
         this.userRepository = userRepository;
     }
 
+    /**
+     * Read-only transactions run with {@code FlushMode.MANUAL} and read-only entities, so
+     * Hibernate skips dirty checking and keeps no snapshots; responses are mapped before the
+     * connection goes back to the pool, and serialized after.
+     */
+    @Transactional(readOnly = true)
     public List<WineResponse> listWines() {
-        User user = getCurrentUser();
-        return wineRepository.findByUserIdOrderByCreatedAtDesc(user.getId()).stream()
+        Long userId = currentUserService.getCurrentUserId();
+        return wineRepository.findByUserIdOrderByCreatedAtDesc(userId).stream()
                 .map(this::toResponse)
                 .collect(Collectors.toList());
     }
 
+    public CellarStatsResponse getCellarStats() {
+        return cellarStatsService.getStats(currentUserService.getCurrentUserId());
+    }
+
+    /**
+     * The pooled connection is only taken at the first statement, so request mapping runs
+     * before any query and the connection is held just for the catalog row, the insert and the
+     * stats delta.
+     */
+    @Transactional
     public WineResponse createWine(WineRequest request) {
-        User user = getCurrentUser();
+        Long userId = currentUserService.getCurrentUserId();
+        validateRequest(request);
         Wine wine = new Wine();
-        wine.setUser(user);
-        applyRequest(wine, request);
+        applyRequest(wine, request, wineCatalogService.resolve(catalogEntryFor(request, null)));
+        wine.setUser(currentUserService.getCurrentUserReference());
         Wine saved = wineRepository.save(wine);
-        return toResponse(saved);
+        cellarStatsService.recordCreated(userId, saved);
+        return afterCreate(userId, saved);
     }
 
+    /**
+     * Creates the wine, unless {@code onDuplicate} is not {@code CREATE} and the cellar already
+     * holds it. The probe and the insert share one transaction, which first locks the user's
+     * row: a second post of the same wine waits there, and its probe then finds the row the
+     * first one inserted. Locking the probe alone would not do, as two probes that find nothing
+     * take gap locks that do not block each other.
+     */
+    @Transactional
+    public Posted createWine(WineRequest request, OnDuplicate onDuplicate) {
+        if (onDuplicate != OnDuplicate.CREATE) {
+            userRepository.lockById(currentUserService.getCurrentUserId());
+            Optional<WineResponse> existing = addToExisting(request, onDuplicate);
+            if (existing.isPresent()) {
+                return new Posted(existing.get(), false);
+            }
+        }
+        return new Posted(createWine(request), true);
+    }
+
+    /**
+     * Looks the requested wine up in the cellar with one probe on the identity index and, when
+     * it is already there, handles it as {@code onDuplicate} says.
+     *
+     * @return the existing wine after the change, or empty if the wine should be created
+     */
+    private Optional<WineResponse> addToExisting(WineRequest request, OnDuplicate onDuplicate) {
+        Long userId = currentUserService.getCurrentUserId();
+        validateRequest(request);
+        // Never saved, so it can keep the catalog draft: the probe needs no catalog row
+        Wine incoming = new Wine();
+        applyRequest(incoming, request, catalogEntryFor(request, null));
+        Optional<Wine> match = wineRepository.findFirstByUserIdAndIdentityKeyOrderByIdAsc(userId, incoming.getIdentityKey());
+        if (match.isEmpty()) {
+            return Optional.empty();
+        }
+        if (onDuplicate == OnDuplicate.ASK) {
+            throw new DuplicateWineException(toResponse(match.get()));
+        }
+        return Optional.of(absorb(userId, match.get(), List.of(incoming), onDuplicate == OnDuplicate.MERGE, List.of()));
+    }
+
+    /**
+     * Folds every other wine of the user sharing this identity key and placement into the
+     * oldest one: bottles, quantity log and shelf position move over, notes and prices are
+     * combined, blank fields are filled in, the rest is deleted. Copies kept elsewhere are
+     * left alone.
+     *
+     * @return number of wines merged away
+     */
+    @Transactional
+    public int mergeDuplicates(Long userId, byte[] identityKey, Wine.WineLocation location, Integer rowId) {
+        List<Wine> wines = wineRepository.findByUserIdAndIdentityKeyOrderByIdAsc(userId, identityKey).stream()
+                .filter(wine -> wine.getLocation() == location && Objects.equals(wine.getRowId(), rowId))
+                .collect(Collectors.toList());
+        if (wines.size() < 2) {
+            return 0;
+        }
+        Wine survivor = wines.get(0);
+        List<Wine> duplicates = new ArrayList<>(wines.subList(1, wines.size()));
+        List<Long> duplicateIds = duplicates.stream().map(Wine::getId).collect(Collectors.toList());
+        List<CellarStatsService.Snapshot> removed = duplicates.stream()
+                .map(CellarStatsService.Snapshot::of)
+                .collect(Collectors.toList());
+
+        wineRepository.reassignQuantityEvents(duplicateIds, survivor.getId());
+        wineRepository.reassignPositions(duplicateIds, survivor.getId());
+        wineRepository.deleteAll(duplicates);
+        absorb(userId, survivor, duplicates, true, removed);
+        duplicates.forEach(duplicate -> afterDelete(userId, duplicate));
+        return duplicates.size();
+    }
+
+    @Transactional
     public WineResponse updateWine(Long id, WineRequest request) {
-        User user = getCurrentUser();
-        Wine wine = wineRepository.findByIdAndUserId(id, user.getId())
+        Long userId = currentUserService.getCurrentUserId();
+        validateRequest(request);
+        Wine wine = wineRepository.findByIdAndUserId(id, userId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Wine not found"));
-        applyRequest(wine, request);
+        CellarStatsService.Snapshot before = CellarStatsService.Snapshot.of(wine);
+        Wine.WineLocation locationBefore = wine.getLocation();
+        Integer rowBefore = wine.getRowId();
+        applyRequest(wine, request, wineCatalogService.resolve(catalogEntryFor(request, wine.getCatalog())));
         wine.setUpdatedAt(LocalDateTime.now());
-        Wine saved = wineRepository.save(wine);
-        return toResponse(saved);
+        // Flushed so the response carries the bumped version
+        Wine saved = wineRepository.saveAndFlush(wine);
+        cellarStatsService.recordUpdated(userId, before, saved);
+        return afterUpdate(userId, saved, locationBefore, rowBefore);
     }
 
+    @Transactional
     public void deleteWine(Long id) {
-        User user = getCurrentUser();
-        Wine wine = wineRepository.findByIdAndUserId(id, user.getId())
+        Long userId = currentUserService.getCurrentUserId();
+        Wine wine = wineRepository.findByIdAndUserId(id, userId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Wine not found"));
+        CellarStatsService.Snapshot before = CellarStatsService.Snapshot.of(wine);
         wineRepository.delete(wine);
+        // Wine row before stats rows, the lock order of every other cellar write
+        wineRepository.flush();
+        cellarStatsService.recordDeleted(userId, before);
+        afterDelete(userId, wine);
     }
 
-    private void applyRequest(Wine wine, WineRequest request) {
+    /**
+     * Records history and publishes the change for a wine whose row and cellar stats are
+     * already written. Shared with {@link WineBatchService}, which writes those for many wines
+     * at once.
+     */
+    WineResponse afterCreate(Long userId, Wine saved) {
+        WineHistoryEntry created = WineHistoryService.snapshot(saved, userId, WineHistoryEntry.EventType.CREATED);
+        created.setQuantityDelta(saved.getQuantity());
+        created.setQuantityAfter(saved.getQuantity());
+        wineHistoryService.record(created);
+        WineResponse response = toResponse(saved);
+        publish(userId, WineChangeEvent.Type.CREATED, saved.getId(), response);
+        return response;
+    }
+
+    WineResponse afterUpdate(Long userId, Wine saved, Wine.WineLocation locationBefore, Integer rowBefore) {
+        WineResponse response = toResponse(saved);
+        boolean moved = locationBefore != saved.getLocation() || !Objects.equals(rowBefore, saved.getRowId());
+        if (moved) {
+            wineHistoryService.record(WineHistoryService.snapshot(saved, userId, WineHistoryEntry.EventType.MOVED));
+        }
+        publish(userId, moved ? WineChangeEvent.Type.MOVED : WineChangeEvent.Type.UPDATED, saved.getId(), response);
+        return response;
+    }
+
+    /**
+     * Reads the removed entity's fields, which Hibernate leaves in place after the delete.
+     */
+    void afterDelete(Long userId, Wine deletedWine) {
+        WineHistoryEntry deleted = WineHistoryService.snapshot(deletedWine, userId, WineHistoryEntry.EventType.DELETED);
+        deleted.setQuantityDelta(-deletedWine.getQuantity());
+        deleted.setQuantityAfter(0);
+        wineHistoryService.record(deleted);
+        publish(userId, WineChangeEvent.Type.DELETED, deletedWine.getId(), Map.of("id", deletedWine.getId()));
+    }
+
+    /**
+     * Adds the bottles of {@code sources} to {@code target} and records the change; the
+     * snapshots of sources that were rows of their own go in {@code removedSources}.
+     */
+    private WineResponse absorb(Long userId, Wine target, List<Wine> sources, boolean fillMissing,
+                                List<CellarStatsService.Snapshot> removedSources) {
+        CellarStatsService.Snapshot before = CellarStatsService.Snapshot.of(target);
+        Wine.WineLocation locationBefore = target.getLocation();
+        Integer rowBefore = target.getRowId();
+        if (fillMissing) {
+            WineCatalogEntry catalog = target.getCatalog();
+            for (Wine source : sources) {
+                catalog = catalog.withMissingFrom(source.getCatalog());
+            }
+            if (catalog != target.getCatalog()) {
+                assignCatalog(target, wineCatalogService.resolve(catalog));
+            }
+        }
+        if (fillMissing) {
+            mergeHoldings(target, sources);
+        }
+        int bottles = 0;
+        for (Wine source : sources) {
+            bottles += source.getQuantity() == null ? 0 : source.getQuantity();
+        }
+        target.setQuantity((target.getQuantity() == null ? 0 : target.getQuantity()) + bottles);
+        target.setUpdatedAt(LocalDateTime.now());
+        Wine saved = wineRepository.saveAndFlush(target);
+
+        List<CellarStatsService.Snapshot> removed = new ArrayList<>(removedSources);
+        removed.add(before);
+        cellarStatsService.recordBatch(userId, removed, List.of(CellarStatsService.Snapshot.of(saved)));
+        if (bottles != 0) {
+            WineHistoryEntry restocked = WineHistoryService.snapshot(saved, userId, WineHistoryEntry.EventType.RESTOCKED);
+            restocked.setQuantityDelta(bottles);
+            restocked.setQuantityAfter(saved.getQuantity());
+            wineHistoryService.record(restocked);
+        }
+        return afterUpdate(userId, saved, locationBefore, rowBefore);
+    }
+
+    /**
+     * The cellar's own fields; the catalog ones are filled in by {@link #absorb}. Every note is
+     * kept, and differing prices become the average paid per priced bottle, so the cellar's
+     * value does not change. Called before the quantities are added up.
+     */
+    private void mergeHoldings(Wine target, List<Wine> sources) {
+        List<Wine> all = new ArrayList<>();
+        all.add(target);
+        all.addAll(sources);
+
+        BigDecimal paid = BigDecimal.ZERO;
+        int pricedBottles = 0;
+        Set<String> notes = new LinkedHashSet<>();
+        for (Wine wine : all) {
+            int quantity = wine.getQuantity() == null ? 0 : wine.getQuantity();
+            if (wine.getPrice() != null && quantity > 0) {
+                paid = paid.add(BigDecimal.valueOf(wine.getPrice()).multiply(BigDecimal.valueOf(quantity)));
+                pricedBottles += quantity;
+            }
+            if (wine.getNotes() != null && !wine.getNotes().isBlank()) {
+                notes.add(wine.getNotes().strip());
+            }
+        }
+        if (pricedBottles > 0) {
+            target.setPrice(paid.divide(BigDecimal.valueOf(pricedBottles), 2, RoundingMode.HALF_UP).doubleValue());
+        } else if (target.getPrice() == null) {
+            all.stream().map(Wine::getPrice).filter(Objects::nonNull).findFirst().ifPresent(target::setPrice);
+        }
+        target.setNotes(notes.isEmpty() ? target.getNotes() : String.join("\n\n", notes));
+
+        for (Wine source : sources) {
+            if ((target.getImageUrl() == null || DEFAULT_IMAGE.equals(target.getImageUrl())) && source.getImageUrl() != null) {
+                target.setImageUrl(source.getImageUrl());
+            }
+        }
+    }
+
+    /**
+     * Takes bottles out with a single conditional update, so concurrent consumers on several
+     * devices can never drive the quantity below zero or lose each other's decrement.
+     */
+    @Transactional
+    public QuantityResponse consume(Long id, int count) {
+        Long userId = currentUserService.getCurrentUserId();
+        if (wineRepository.consume(id, userId, count, LocalDateTime.now()) == 0) {
+            if (!wineRepository.existsByIdAndUserId(id, userId)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Wine not found");
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Not enough bottles left");
+        }
+        return recordQuantityChange(id, userId, WineQuantityEvent.EventType.CONSUME, -count);
+    }
+
+    @Transactional
+    public QuantityResponse restock(Long id, int count) {
+        Long userId = currentUserService.getCurrentUserId();
+        if (wineRepository.restock(id, userId, count, LocalDateTime.now()) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Wine not found");
+        }
+        return recordQuantityChange(id, userId, WineQuantityEvent.EventType.RESTOCK, count);
+    }
+
+    private QuantityResponse recordQuantityChange(Long id, Long userId, WineQuantityEvent.EventType type, int delta) {
+        // Read before the event insert below overwrites LAST_INSERT_ID
+        int quantity = (int) wineRepository.lastUpdatedQuantity();
+        cellarStatsService.recordQuantityChanged(userId, id, delta);
+        wineQuantityEventRepository.save(new WineQuantityEvent(id, userId, type, delta, quantity));
+        WineHistoryEntry entry = new WineHistoryEntry(userId, id, type == WineQuantityEvent.EventType.CONSUME
+                ? WineHistoryEntry.EventType.CONSUMED : WineHistoryEntry.EventType.RESTOCKED);
+        entry.setQuantityDelta(delta);
+        entry.setQuantityAfter(quantity);
+        wineHistoryService.record(entry);
+        QuantityResponse response = new QuantityResponse(id, quantity);
+        publish(userId, WineChangeEvent.Type.QUANTITY, id, response);
+        return response;
+    }
+
+    /**
+     * Stores the label photo before touching the wine row, so the (possibly slow) upload never
+     * runs inside a transaction.
+     */
+    public WineResponse uploadImage(Long id, MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Image file is required");
+        }
+        Long userId = currentUserService.getCurrentUserId();
+        if (!wineRepository.existsByIdAndUserId(id, userId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Wine not found");
+        }
+
+        String imageUrl;
+        try (InputStream content = file.getInputStream()) {
+            imageUrl = imageStorageService.store(content);
+        } catch (IOException ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not store image", ex);
+        }
+
+        Wine wine = wineRepository.findByIdAndUserId(id, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Wine not found"));
+        wine.setImageUrl(imageUrl);
+        wine.setUpdatedAt(LocalDateTime.now());
+        WineResponse response = toResponse(wineRepository.saveAndFlush(wine));
+        publish(userId, WineChangeEvent.Type.UPDATED, id, response);
+        return response;
+    }
+
+    /**
+     * Delivered to the user's change streams after commit; dropped if the transaction rolls back.
+     */
+    private void publish(Long userId, WineChangeEvent.Type type, Long wineId, Object payload) {
+        eventPublisher.publishEvent(new WineChangeEvent(userId, type, wineId, payload));
+    }
+
+    void validateRequest(WineRequest request) {
         if (request.getName() == null || request.getName().trim().isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Wine name is required");
         }
+    }
 
-        wine.setWineName(request.getName().trim());
-        wine.setWineType(toWineType(request.getType()));
-        wine.setVintageYear(parseVintage(request.getVintage()));
+    /**
+     * The catalog draft for a validated request. The request has no grape, so the one of the
+     * wine's {@code current} entry is kept.
+     */
+    WineCatalogEntry catalogEntryFor(WineRequest request, WineCatalogEntry current) {
+        return new WineCatalogEntry(
+                request.getName().trim(),
+                toWineType(request.getType()),
+                parseVintage(request.getVintage()),
+                trimToNull(request.getWinery()),
+                trimToNull(request.getRegion()),
+                trimToNull(request.getCountry()),
+                current == null ? null : current.getGrapeVariety());
+    }
+
+    /**
+     * @param catalog the resolved entry from {@link #catalogEntryFor}; a wine that is saved
+     *                must not reference a draft
+     */
+    void applyRequest(Wine wine, WineRequest request, WineCatalogEntry catalog) {
+        assignCatalog(wine, catalog);
         wine.setQuantity(normalizeQuantity(request.getQuantity()));
-        wine.setWinery(trimToNull(request.getWinery()));
-        wine.setRegion(trimToNull(request.getRegion()));
-        wine.setCountry(trimToNull(request.getCountry()));
+        wine.setPrice(normalizePrice(request.getPrice()));
         wine.setLocation(toWineLocation(request.getLocation()));
         wine.setRowId(request.getRowId());
 
         String imageUrl = trimToNull(request.getImageUrl());
         wine.setImageUrl(imageUrl == null ? DEFAULT_IMAGE : imageUrl);
+
+        // Edited wines become eligible for background enrichment again
+        wine.setEnrichedAt(null);
+    }
+
+    private void assignCatalog(Wine wine, WineCatalogEntry catalog) {
+        wine.setCatalog(catalog);
+        wine.setIdentityKey(WineIdentity.keyOf(catalog));
     }
 
     private Integer parseVintage(String vintage) {
@@ -100,6 +473,13 @@ public class WineService {
         return quantity;
     }
 
+    private Double normalizePrice(Double price) {
+        if (price == null || price < 0) {
+            return null;
+        }
+        return price;
+    }
+
     private String trimToNull(String value) {
         if (value == null) {
             return null;
@@ -144,7 +524,7 @@ public class WineService {
         }
     }
 
-    private WineResponse toResponse(Wine wine) {
+    WineResponse toResponse(Wine wine) {
         String vintage = wine.getVintageYear() == null ? null : wine.getVintageYear().toString();
         String location = wine.getLocation() == null ? "CELLAR" : wine.getLocation().name();
         return new WineResponse(
@@ -153,22 +533,37 @@ public class WineService {
                 fromWineType(wine.getWineType()),
                 vintage,
                 wine.getQuantity(),
+                wine.getPrice(),
                 wine.getWinery(),
                 wine.getRegion(),
                 wine.getCountry(),
+                wine.getGrapeVariety(),
                 wine.getImageUrl(),
+                imageStorageService.thumbnailUrlFor(wine.getImageUrl()),
                 location,
-                wine.getRowId()
+                wine.getRowId(),
+                wine.getVersion()
         );
     }
 
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated() || authentication.getName() == null) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
+    /**
+     * A posted wine, and whether it became a row of its own or went into one already there.
+     */
+    public static final class Posted {
+        private final WineResponse wine;
+        private final boolean created;
+
+        private Posted(WineResponse wine, boolean created) {
+            this.wine = wine;
+            this.created = created;
+        }
+
+        public WineResponse getWine() {
+            return wine;
         }
 
-        return userRepository.findByEmail(authentication.getName())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+        public boolean isCreated() {
+            return created;
+        }
     }
 }
@@ -2,6 +2,7 @@ package com.vindex.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vindex.cache.TwoTierCache;
 import com.vindex.dto.WineSuggestionDto;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -12,6 +13,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,6 +23,8 @@ public class WineSuggestionService {
     private final List<WineSuggestionDto> catalog = new ArrayList<>();
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RemoteImageProxyService remoteImageProxyService;
+    private final TwoTierCache<List<WineSuggestionDto>> suggestionCache;
 
     @Value("${snooth.api.base-url:https://api.snooth.com/wines/}")
     private String apiBaseUrl;
@@ -28,7 +32,11 @@ public class WineSuggestionService {
     @Value("${snooth.api.key:}")
     private String apiKey;
 
-    public WineSuggestionService() {
+    public WineSuggestionService(RemoteImageProxyService remoteImageProxyService,
+                                 TwoTierCache<List<WineSuggestionDto>> suggestionCache) {
+        this.remoteImageProxyService = remoteImageProxyService;
+        this.suggestionCache = suggestionCache;
+
         // Israeli wines (curated sample list for autocomplete)
         catalog.add(new WineSuggestionDto("Yarden Cabernet Sauvignon", "RED", "2018", "Golan Heights Winery", "Golan Heights", "Israel", PLACEHOLDER_IMAGE));
         catalog.add(new WineSuggestionDto("Yarden Chardonnay", "WHITE", "2020", "Golan Heights Winery", "Galilee", "Israel", PLACEHOLDER_IMAGE));
@@ -53,15 +61,19 @@ public class WineSuggestionService {
             return List.of();
         }
 
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+
         if (apiKey != null && !apiKey.isBlank()) {
-            List<WineSuggestionDto> apiResults = fetchFromApi(query.trim());
-            if (!apiResults.isEmpty()) {
+            // Shared across nodes so a popular query reaches Snooth once per TTL, not once per node
+            List<WineSuggestionDto> apiResults = suggestionCache.get(normalized, () -> {
+                List<WineSuggestionDto> fetched = fetchFromApi(query.trim());
+                return fetched.isEmpty() ? null : fetched;
+            });
+            if (apiResults != null) {
                 return apiResults;
             }
         }
 
-        String normalized = query.trim().toLowerCase(Locale.ROOT);
-
         return catalog.stream()
             .filter(item -> item.getName().toLowerCase(Locale.ROOT).contains(normalized))
                 .sorted(Comparator.comparing(WineSuggestionDto::getName))
@@ -69,6 +81,36 @@ public class WineSuggestionService {
                 .collect(Collectors.toList());
     }
 
+    public boolean isRemoteLookupEnabled() {
+        return apiKey != null && !apiKey.isBlank();
+    }
+
+    /**
+     * Best local catalog match for an exact (case-insensitive) name, preferring the same vintage.
+     */
+    public Optional<WineSuggestionDto> findInCatalog(String name, Integer vintage) {
+        return bestMatch(catalog, name, vintage);
+    }
+
+    /**
+     * Best Snooth match for an exact (case-insensitive) name. Callers are responsible for rate
+     * limiting; returns empty when no API key is configured.
+     */
+    public Optional<WineSuggestionDto> findRemote(String name, Integer vintage) {
+        if (!isRemoteLookupEnabled()) {
+            return Optional.empty();
+        }
+        return bestMatch(fetchFromApi(name), name, vintage);
+    }
+
+    private Optional<WineSuggestionDto> bestMatch(List<WineSuggestionDto> candidates, String name, Integer vintage) {
+        String wanted = name.trim().toLowerCase(Locale.ROOT);
+        String wantedVintage = vintage == null ? null : vintage.toString();
+        return candidates.stream()
+                .filter(item -> item.getName().toLowerCase(Locale.ROOT).equals(wanted))
+                .min(Comparator.comparing((WineSuggestionDto item) -> !item.getVintage().equals(wantedVintage)));
+    }
+
     private List<WineSuggestionDto> fetchFromApi(String query) {
         try {
             String url = UriComponentsBuilder.fromHttpUrl(apiBaseUrl)
@@ -103,11 +145,10 @@ public class WineSuggestionService {
                 String region = wine.path("region").asText("").trim();
                 String country = wine.path("country").asText("").trim();
                 String imageUrl = wine.path("image").asText("").trim();
-                if (imageUrl.isEmpty()) {
-                    imageUrl = PLACEHOLDER_IMAGE;
-                }
+                imageUrl = imageUrl.isEmpty() ? PLACEHOLDER_IMAGE : remoteImageProxyService.proxyUrlFor(imageUrl);
+                String grapeVariety = wine.path("varietal").asText("").trim();
 
-                results.add(new WineSuggestionDto(name, type, vintage, winery, region, country, imageUrl));
+                results.add(new WineSuggestionDto(name, type, vintage, winery, region, country, imageUrl, grapeVariety));
             }
 
                 String normalized = query.toLowerCase(Locale.ROOT);
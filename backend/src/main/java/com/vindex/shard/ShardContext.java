@@ -0,0 +1,29 @@
+package com.vindex.shard;
+
+/**
+ * Shard the current thread's database work is routed to. {@code null} means the directory
+ * database, which also holds the global tables (users, refresh tokens, jobs).
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    static void set(String shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+}
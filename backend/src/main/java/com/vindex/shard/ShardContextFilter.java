@@ -0,0 +1,75 @@
+package com.vindex.shard;
+
+import com.vindex.security.UserPrincipal;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Routes requests to user-scoped endpoints to the caller's shard for their whole duration.
+ * Runs after authentication so the placement can be read from the principal. While a user is
+ * being moved between shards, reads keep going to the old shard and writes are turned away
+ * with a short Retry-After.
+ */
+public class ShardContextFilter extends OncePerRequestFilter {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final ShardRouter shardRouter;
+    private final List<String> userScopedPaths;
+    private final long moveRetryAfterSeconds;
+
+    public ShardContextFilter(ShardRouter shardRouter, List<String> userScopedPaths, long moveRetryAfterSeconds) {
+        this.shardRouter = shardRouter;
+        this.userScopedPaths = List.copyOf(userScopedPaths);
+        this.moveRetryAfterSeconds = moveRetryAfterSeconds;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!shardRouter.isEnabled()) {
+            return true;
+        }
+        String path = request.getServletPath();
+        return userScopedPaths.stream().noneMatch(pattern -> PATH_MATCHER.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal principal)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (principal.isShardMoving() && !isRead(request)) {
+            response.setContentType("application/json;charset=UTF-8");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(moveRetryAfterSeconds));
+            response.getWriter().write("{\"message\": \"Your cellar is being moved, please retry shortly\"}");
+            return;
+        }
+
+        ShardContext.set(principal.getShard());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ShardContext.clear();
+        }
+    }
+
+    private boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+}
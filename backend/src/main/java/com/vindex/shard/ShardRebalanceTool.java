@@ -0,0 +1,96 @@
+package com.vindex.shard;
+
+import com.vindex.config.CacheConfig;
+import com.vindex.config.ReplicaConfig;
+import com.vindex.config.ShardingConfig;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.Banner;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command-line tool that moves users between shards while the application keeps running.
+ * It starts only the data sources, not the web server, JPA or the schedulers:
+ *
+ * <pre>
+ * java -cp 'application.jar:lib/*' com.vindex.shard.ShardRebalanceTool --user=42 --to=shard2
+ * java -cp 'application.jar:lib/*' com.vindex.shard.ShardRebalanceTool --user=42      (to the ring's placement)
+ * java -cp 'application.jar:lib/*' com.vindex.shard.ShardRebalanceTool --all [--dry-run]
+ * </pre>
+ *
+ * Use the same configuration (profiles, {@code SHARDING_*} and {@code CACHE_SHARED_*} variables)
+ * as the application, so the moved user's cached principal is invalidated on every node.
+ */
+@EnableConfigurationProperties(DataSourceProperties.class)
+@ImportAutoConfiguration(RedisAutoConfiguration.class)
+@Import({ShardingConfig.class, ReplicaConfig.class, CacheConfig.class, ShardRouter.class, ShardRebalancer.class})
+public class ShardRebalanceTool {
+
+    public static void main(String[] args) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ShardRebalanceTool.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args);
+        int exitCode;
+        try {
+            exitCode = run(context, new DefaultApplicationArguments(args));
+        } finally {
+            context.close();
+        }
+        System.exit(exitCode);
+    }
+
+    private static int run(ConfigurableApplicationContext context, ApplicationArguments args) {
+        ShardRebalancer rebalancer = context.getBean(ShardRebalancer.class);
+        ShardRegistry registry = context.getBean(ShardRegistry.class);
+        boolean dryRun = args.containsOption("dry-run");
+        String target = args.containsOption("to") ? args.getOptionValues("to").get(0) : null;
+
+        List<Long> userIds = new ArrayList<>();
+        if (args.containsOption("all")) {
+            userIds.addAll(new JdbcTemplate(registry.getDirectoryDataSource())
+                    .queryForList("SELECT id FROM users WHERE shard_moving = FALSE ORDER BY id", Long.class));
+        } else if (args.containsOption("user")) {
+            for (String value : args.getOptionValues("user")) {
+                for (String id : value.split(",")) {
+                    userIds.add(Long.valueOf(id.trim()));
+                }
+            }
+        } else {
+            System.err.println("Usage: ShardRebalanceTool (--user=<id>[,<id>...] [--to=<shard>] | --all) [--dry-run]");
+            return 2;
+        }
+
+        int failed = 0;
+        for (Long userId : userIds) {
+            String destination = target != null ? target : rebalancer.misplacedTarget(userId);
+            if (destination == null) {
+                continue;
+            }
+            if (dryRun) {
+                System.out.println("Would move user " + userId + " to " + destination);
+                continue;
+            }
+            try {
+                Map<String, Integer> copied = rebalancer.move(userId, destination);
+                System.out.println("Moved user " + userId + " to " + destination + " " + copied);
+            } catch (RuntimeException ex) {
+                failed++;
+                System.err.println("Moving user " + userId + " to " + destination + " failed: " + ex.getMessage());
+            }
+        }
+        return failed == 0 ? 0 : 1;
+    }
+}
@@ -0,0 +1,281 @@
+package com.vindex.shard;
+
+import com.vindex.cache.SharedCacheTier;
+import com.vindex.config.CacheConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Moves one user's rows between shards while the application keeps serving. The user is
+ * flagged as moving in the directory (writes get 503 + Retry-After, reads stay on the old
+ * shard, background jobs skip the user), in-flight writes are given time to drain, the rows
+ * are copied in one transaction on the target and their content checked against the source,
+ * and only then is the directory flipped and the source cleaned up. Any failure before the
+ * flip leaves the user where it was.
+ */
+@Component
+public class ShardRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    /**
+     * Every table holding per-user rows, parents before children. Keep in sync with new
+     * user-scoped tables. Shared tables are copied only where the target lacks the row and
+     * never deleted from, as other users on the shard may reference the same rows.
+     */
+    private static final List<UserTable> USER_TABLES = List.of(
+            new UserTable("user_preferences", "user_id = ?"),
+            new UserTable("fridge_layouts", "user_id = ?"),
+            new UserTable("wine_catalog", "id IN (SELECT catalog_id FROM wines WHERE user_id = ?)", true),
+            new UserTable("wines", "user_id = ?"),
+            new UserTable("wine_positions", "wine_id IN (SELECT id FROM wines WHERE user_id = ?)"),
+            new UserTable("cellar_stats", "user_id = ?"),
+            new UserTable("wine_quantity_events", "user_id = ?"),
+            new UserTable("wine_history", "user_id = ?"),
+            new UserTable("client_mutations", "user_id = ?")
+    );
+
+    private final ShardRegistry registry;
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate directory;
+    private final SharedCacheTier sharedCacheTier;
+
+    @Value("${sharding.rebalance.drain-ms:5000}")
+    private long drainMs;
+
+    @Value("${sharding.rebalance.batch-size:500}")
+    private int batchSize;
+
+    public ShardRebalancer(ShardRegistry registry, ShardRouter shardRouter, SharedCacheTier sharedCacheTier) {
+        this.registry = registry;
+        this.shardRouter = shardRouter;
+        this.directory = new JdbcTemplate(registry.getDirectoryDataSource());
+        this.sharedCacheTier = sharedCacheTier;
+    }
+
+    /**
+     * @return rows copied per table, empty when the user already lives on the target
+     */
+    public Map<String, Integer> move(long userId, String targetShard) {
+        if (!registry.isEnabled()) {
+            throw new IllegalStateException("Sharding is not enabled");
+        }
+        registry.dataSource(targetShard);
+        String sourceShard = currentShard(userId);
+        if (sourceShard.equals(targetShard)) {
+            return Map.of();
+        }
+
+        if (directory.update("UPDATE users SET shard_moving = TRUE WHERE id = ? AND shard_moving = FALSE", userId) == 0) {
+            throw new IllegalStateException("User " + userId + " does not exist or is already being moved");
+        }
+        // Cached principals carry the placement; the drain below also covers nodes that miss this
+        String email = directory.queryForObject("SELECT email FROM users WHERE id = ?", String.class, userId);
+        sharedCacheTier.invalidate(CacheConfig.PRINCIPALS, email);
+
+        Map<String, Integer> copied;
+        try {
+            drain();
+            copied = copy(userId, sourceShard, targetShard);
+            directory.update("UPDATE users SET shard = ?, shard_moving = FALSE WHERE id = ?",
+                    registry.isDirectory(targetShard) ? null : targetShard, userId);
+        } catch (RuntimeException ex) {
+            directory.update("UPDATE users SET shard_moving = FALSE WHERE id = ?", userId);
+            sharedCacheTier.invalidate(CacheConfig.PRINCIPALS, email);
+            throw ex;
+        }
+        sharedCacheTier.invalidate(CacheConfig.PRINCIPALS, email);
+
+        try {
+            deleteFrom(userId, sourceShard);
+        } catch (RuntimeException ex) {
+            // The directory already points at the target, so leftovers are unreachable; the next
+            // move onto this shard clears them before copying
+            log.warn("User {} moved to {}, but cleaning up {} failed", userId, targetShard, sourceShard, ex);
+        }
+        log.info("Moved user {} from {} to {}: {}", userId, sourceShard, targetShard, copied);
+        return copied;
+    }
+
+    /**
+     * @return the shard the ring assigns to the user when it differs from the current one
+     */
+    public String misplacedTarget(long userId) {
+        String placement = registry.placementFor(userId);
+        return placement.equals(currentShard(userId)) ? null : placement;
+    }
+
+    private String currentShard(long userId) {
+        String shard = shardRouter.shardOf(userId);
+        return shard == null ? registry.getDirectoryShard() : shard;
+    }
+
+    private Map<String, Integer> copy(long userId, String sourceShard, String targetShard) {
+        JdbcTemplate source = new JdbcTemplate(registry.dataSource(sourceShard));
+        DataSource targetDataSource = registry.dataSource(targetShard);
+        JdbcTemplate target = new JdbcTemplate(targetDataSource);
+        TransactionTemplate targetTransaction = new TransactionTemplate(new DataSourceTransactionManager(targetDataSource));
+
+        return targetTransaction.execute(status -> {
+            // Leftovers of an earlier move that could not be cleaned up
+            deleteRows(target, userId);
+            if (!registry.isDirectory(targetShard)) {
+                shardRouter.copyUserRow(userId, target);
+            }
+
+            Map<String, Integer> copied = new LinkedHashMap<>();
+            Map<String, String> checksums = new LinkedHashMap<>();
+            for (UserTable table : USER_TABLES) {
+                Rows rows = readRows(table, userId, source);
+                insertRows(table, rows, target);
+                copied.put(table.name, rows.values.size());
+                checksums.put(table.name, checksum(rows.values));
+            }
+            // A count would miss updates, e.g. a quantity or enrichment written after its table
+            // was read; comparing the content catches anything that slipped past the fence
+            for (UserTable table : USER_TABLES) {
+                List<Object[]> now = readRows(table, userId, source).values;
+                if (!checksum(now).equals(checksums.get(table.name))) {
+                    throw new IllegalStateException("Rows of " + table.name + " changed during the move of user "
+                            + userId + " (copied " + copied.get(table.name) + ", source has " + now.size() + ")");
+                }
+            }
+            return copied;
+        });
+    }
+
+    private Rows readRows(UserTable table, long userId, JdbcTemplate source) {
+        List<String> columns = new ArrayList<>();
+        List<Object[]> values = source.query(table.selectSql(), rs -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnName(i));
+            }
+            List<Object[]> result = new ArrayList<>();
+            while (rs.next()) {
+                Object[] row = new Object[columns.size()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                result.add(row);
+            }
+            return result;
+        }, userId);
+        return new Rows(columns, values == null ? List.of() : values);
+    }
+
+    private void insertRows(UserTable table, Rows rows, JdbcTemplate target) {
+        if (rows.values.isEmpty()) {
+            return;
+        }
+        StringJoiner names = new StringJoiner(", ");
+        StringJoiner placeholders = new StringJoiner(", ");
+        for (String column : rows.columns) {
+            names.add(column);
+            placeholders.add("?");
+        }
+        String insert = (table.shared ? "INSERT IGNORE INTO " : "INSERT INTO ") + table.name + " (" + names + ") VALUES (" + placeholders + ")";
+        for (int from = 0; from < rows.values.size(); from += batchSize) {
+            target.batchUpdate(insert, rows.values.subList(from, Math.min(rows.values.size(), from + batchSize)));
+        }
+    }
+
+    /**
+     * Order-independent digest of the rows' full content.
+     */
+    static String checksum(List<Object[]> rows) {
+        List<String> rendered = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            rendered.add(Arrays.deepToString(row));
+        }
+        rendered.sort(null);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String row : rendered) {
+                digest.update(row.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    private void deleteFrom(long userId, String shard) {
+        DataSource dataSource = registry.dataSource(shard);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource)).executeWithoutResult(status -> {
+            deleteRows(jdbc, userId);
+            if (!registry.isDirectory(shard)) {
+                jdbc.update("DELETE FROM users WHERE id = ?", userId);
+            }
+        });
+    }
+
+    private void deleteRows(JdbcTemplate jdbc, long userId) {
+        for (int i = USER_TABLES.size() - 1; i >= 0; i--) {
+            UserTable table = USER_TABLES.get(i);
+            if (table.shared) {
+                continue;
+            }
+            jdbc.update("DELETE FROM " + table.name + " WHERE " + table.condition, userId);
+        }
+    }
+
+    private void drain() {
+        try {
+            Thread.sleep(drainMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while draining writes", ex);
+        }
+    }
+
+    private static final class UserTable {
+        private final String name;
+        private final String condition;
+        private final boolean shared;
+
+        private UserTable(String name, String condition) {
+            this(name, condition, false);
+        }
+
+        private UserTable(String name, String condition, boolean shared) {
+            this.name = name;
+            this.condition = condition;
+            this.shared = shared;
+        }
+
+        private String selectSql() {
+            return "SELECT * FROM " + name + " WHERE " + condition;
+        }
+    }
+
+    private static final class Rows {
+        private final List<String> columns;
+        private final List<Object[]> values;
+
+        private Rows(List<String> columns, List<Object[]> values) {
+            this.columns = columns;
+            this.values = values;
+        }
+    }
+}
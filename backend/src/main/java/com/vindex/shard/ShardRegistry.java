@@ -0,0 +1,120 @@
+package com.vindex.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The connection pools of every shard plus the ring that places new users. The directory
+ * database is itself a shard: it keeps the users that were never moved, and it is the only
+ * place the global tables are read from.
+ */
+public class ShardRegistry implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRegistry.class);
+
+    private final boolean enabled;
+    private final String directoryShard;
+    private final Map<String, DataSource> dataSources;
+    private final ConsistentHashRing ring;
+
+    public ShardRegistry(boolean enabled, String directoryShard, Map<String, DataSource> dataSources,
+                         List<String> placementShards, int virtualNodes) {
+        this.enabled = enabled;
+        this.directoryShard = directoryShard;
+        this.dataSources = Collections.unmodifiableMap(new LinkedHashMap<>(dataSources));
+        this.ring = new ConsistentHashRing(placementShards, virtualNodes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getDirectoryShard() {
+        return directoryShard;
+    }
+
+    public boolean isDirectory(String shard) {
+        return shard == null || directoryShard.equals(shard);
+    }
+
+    public DataSource getDirectoryDataSource() {
+        return dataSources.get(directoryShard);
+    }
+
+    public Map<String, DataSource> getDataSources() {
+        return dataSources;
+    }
+
+    public Set<String> getShardNames() {
+        return dataSources.keySet();
+    }
+
+    public DataSource dataSource(String shard) {
+        DataSource dataSource = dataSources.get(shard == null ? directoryShard : shard);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Unknown shard: " + shard);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Where the ring would put this user today; the directory row has the final say.
+     */
+    public String placementFor(long userId) {
+        return ring.shardFor(userId);
+    }
+
+    /**
+     * Raises each shard's AUTO_INCREMENT counters above the directory's highest ids. Rows the
+     * directory wrote before sharding was turned on have contiguous ids rather than ids from
+     * its slot, so a shard counting from below them could issue an id one of those rows
+     * already has, and moving either user across would then fail on the primary key. Must
+     * run before a shard's first insert; counters are only ever raised.
+     */
+    public void raiseIdCounters() {
+        if (!enabled) {
+            return;
+        }
+        JdbcTemplate directory = new JdbcTemplate(getDirectoryDataSource());
+        List<Map<String, Object>> columns = directory.queryForList("SELECT table_name AS t, column_name AS c "
+                + "FROM information_schema.columns WHERE table_schema = DATABASE() AND extra LIKE '%auto_increment%'");
+        for (Map.Entry<String, DataSource> shard : dataSources.entrySet()) {
+            if (isDirectory(shard.getKey())) {
+                continue;
+            }
+            JdbcTemplate jdbc = new JdbcTemplate(shard.getValue());
+            for (Map<String, Object> column : columns) {
+                String table = (String) column.get("t");
+                Long highest = directory.queryForObject("SELECT MAX(" + column.get("c") + ") FROM " + table, Long.class);
+                Long next = jdbc.queryForObject("SELECT auto_increment FROM information_schema.tables "
+                        + "WHERE table_schema = DATABASE() AND table_name = ?", Long.class, table);
+                if (highest == null || (next != null && next > highest)) {
+                    continue;
+                }
+                jdbc.execute("ALTER TABLE " + table + " AUTO_INCREMENT = " + (highest + 1));
+                log.info("Raised the id counter of {} on shard {} above the directory's {}", table, shard.getKey(), highest);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Map.Entry<String, DataSource> entry : dataSources.entrySet()) {
+            if (entry.getValue() instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception ex) {
+                    log.warn("Could not close pool of shard {}", entry.getKey(), ex);
+                }
+            }
+        }
+    }
+}
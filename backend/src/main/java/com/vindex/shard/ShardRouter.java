@@ -0,0 +1,150 @@
+package com.vindex.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Runs work against a chosen shard and keeps the directory's user placement. Everything here
+ * is a no-op pass-through when sharding is disabled, so callers do not need two code paths.
+ */
+@Component
+public class ShardRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+
+    private final ShardRegistry registry;
+    private final JdbcTemplate directory;
+
+    public ShardRouter(ShardRegistry registry) {
+        this.registry = registry;
+        this.directory = new JdbcTemplate(registry.getDirectoryDataSource());
+    }
+
+    public boolean isEnabled() {
+        return registry.isEnabled();
+    }
+
+    public Set<String> getShardNames() {
+        return registry.getShardNames();
+    }
+
+    public <T> T callOnShard(String shard, Supplier<T> action) {
+        if (!registry.isEnabled()) {
+            return action.get();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("The shard must be chosen before a transaction starts");
+        }
+        registry.dataSource(shard);
+        String previous = ShardContext.current();
+        ShardContext.set(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    public void runOnShard(String shard, Runnable action) {
+        callOnShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void runForUser(Long userId, Runnable action) {
+        runOnShard(shardOf(userId), action);
+    }
+
+    /**
+     * Runs the action once per shard; with sharding disabled that is once, on the only database.
+     */
+    public void forEachShard(Runnable action) {
+        if (!registry.isEnabled()) {
+            action.run();
+            return;
+        }
+        for (String shard : registry.getShardNames()) {
+            runOnShard(shard, action);
+        }
+    }
+
+    /**
+     * @return the user's shard, or {@code null} for the directory database
+     */
+    public String shardOf(Long userId) {
+        if (!registry.isEnabled()) {
+            return null;
+        }
+        List<String> shards = directory.queryForList("SELECT shard FROM users WHERE id = ?", String.class, userId);
+        return shards.isEmpty() ? null : shards.get(0);
+    }
+
+    /**
+     * Users whose rows are being copied to another shard. The move only turns away HTTP writes,
+     * so background jobs must leave these users alone; a job write that lands on the source
+     * during the copy would fail the move.
+     */
+    public Set<Long> movingUsers() {
+        if (!registry.isEnabled()) {
+            return Set.of();
+        }
+        return new HashSet<>(directory.queryForList("SELECT id FROM users WHERE shard_moving = TRUE", Long.class));
+    }
+
+    public boolean isMoving(Long userId) {
+        if (!registry.isEnabled()) {
+            return false;
+        }
+        return directory.queryForList("SELECT shard_moving FROM users WHERE id = ?", Boolean.class, userId)
+                .contains(Boolean.TRUE);
+    }
+
+    /**
+     * Places a freshly registered user with the ring. If the copy to the chosen shard fails the
+     * user simply stays on the directory database, which is always a valid placement.
+     */
+    public void placeNewUser(Long userId) {
+        if (!registry.isEnabled()) {
+            return;
+        }
+        String shard = registry.placementFor(userId);
+        if (registry.isDirectory(shard)) {
+            return;
+        }
+        try {
+            copyUserRow(userId, new JdbcTemplate(registry.dataSource(shard)));
+            directory.update("UPDATE users SET shard = ? WHERE id = ?", shard, userId);
+        } catch (DataAccessException ex) {
+            log.warn("Could not place user {} on shard {}, keeping it on the directory", userId, shard, ex);
+        }
+    }
+
+    /**
+     * Copies the user row a shard needs for its foreign keys. Credentials stay in the directory;
+     * the copy is never used to authenticate.
+     */
+    void copyUserRow(Long userId, JdbcTemplate target) {
+        List<Object[]> rows = directory.query(
+                "SELECT id, username, email, first_name, last_name, preferred_language, created_at FROM users WHERE id = ?",
+                (rs, rowNum) -> new Object[] {
+                        rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                        rs.getString(6), rs.getTimestamp(7)
+                },
+                userId);
+        if (rows.isEmpty()) {
+            throw new IllegalStateException("User " + userId + " not found in the directory");
+        }
+        target.update("INSERT IGNORE INTO users (id, username, email, password, first_name, last_name, preferred_language, created_at) " +
+                "VALUES (?, ?, ?, '!', ?, ?, ?, ?)", rows.get(0));
+    }
+}
@@ -0,0 +1,28 @@
+package com.vindex.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hands out connections from the shard selected by {@link ShardContext}, falling back to the
+ * directory database when no shard is selected. An unknown shard name fails instead of
+ * silently landing on the directory. The choice is made when a transaction first
+ * asks for a connection, so the context must be set before the transaction starts.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public ShardRoutingDataSource(ShardRegistry registry) {
+        Map<Object, Object> targets = new LinkedHashMap<>(registry.getDataSources());
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(registry.getDirectoryDataSource());
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
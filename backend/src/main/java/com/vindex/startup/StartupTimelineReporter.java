@@ -0,0 +1,181 @@
+package com.vindex.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Logs where startup time went once the application is ready: framework phases, the beans we
+ * know to be expensive, the slowest remaining beans by self time and the warm-up steps. The
+ * recorded steps are drained afterwards so they do not stay on the heap.
+ */
+@Component
+public class StartupTimelineReporter implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimelineReporter.class);
+
+    private static final String INSTANTIATE = "spring.beans.instantiate";
+
+    private static final Map<String, String> PHASES = phases();
+    private static final Map<String, String> KNOWN_BEANS = knownBeans();
+
+    @Value("${startup.timeline.enabled:true}")
+    private boolean enabled;
+
+    @Value("${startup.timeline.top-beans:10}")
+    private int topBeans;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ApplicationStartup startup = event.getApplicationContext().getApplicationStartup();
+        if (!(startup instanceof BufferingApplicationStartup buffering)) {
+            return;
+        }
+        StartupTimeline timeline = buffering.drainBufferedTimeline();
+        if (enabled) {
+            log.info(render(timeline, event.getTimeTaken()));
+        }
+    }
+
+    private String render(StartupTimeline timeline, Duration timeTaken) {
+        List<StartupTimeline.TimelineEvent> events = timeline.getEvents();
+
+        Map<Long, StartupTimeline.TimelineEvent> byId = new HashMap<>();
+        for (StartupTimeline.TimelineEvent event : events) {
+            byId.put(event.getStartupStep().getId(), event);
+        }
+
+        Map<String, Duration> phases = new LinkedHashMap<>();
+        Map<String, Duration> known = new LinkedHashMap<>();
+        Map<String, Duration> warmup = new LinkedHashMap<>();
+        Map<Long, Duration> childTime = new HashMap<>();
+        Duration beanCreation = Duration.ZERO;
+
+        for (StartupTimeline.TimelineEvent event : events) {
+            StartupStep step = event.getStartupStep();
+            String name = step.getName();
+
+            String phase = PHASES.get(name);
+            if (phase != null) {
+                phases.merge(phase, event.getDuration(), Duration::plus);
+            }
+            if (name.startsWith("vindex.warmup.")) {
+                warmup.put(name.substring("vindex.warmup.".length()), event.getDuration());
+            }
+            if (INSTANTIATE.equals(name)) {
+                StartupTimeline.TimelineEvent parent = step.getParentId() == null ? null : byId.get(step.getParentId());
+                if (parent != null && INSTANTIATE.equals(parent.getStartupStep().getName())) {
+                    childTime.merge(step.getParentId(), event.getDuration(), Duration::plus);
+                } else {
+                    beanCreation = beanCreation.plus(event.getDuration());
+                }
+                String label = KNOWN_BEANS.get(beanName(step));
+                if (label != null) {
+                    known.merge(label, event.getDuration(), Duration::plus);
+                }
+            }
+        }
+
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        Duration jvmBootstrap = Duration.ofMillis(Math.max(0, timeline.getStartTime().toEpochMilli() - jvmStart));
+
+        StringBuilder out = new StringBuilder("Startup timeline (ready after ")
+                .append(format(timeTaken)).append(", JVM start to main ").append(format(jvmBootstrap)).append(')');
+        appendSection(out, "Phases", phases);
+        out.append("\n    ").append(pad("bean creation (all beans)")).append(format(beanCreation));
+        appendSection(out, "Known expensive beans (inclusive)", known);
+
+        Set<String> listed = new HashSet<>(KNOWN_BEANS.keySet());
+        out.append("\n  Slowest other beans (self time)");
+        events.stream()
+                .filter(event -> INSTANTIATE.equals(event.getStartupStep().getName()))
+                .filter(event -> !listed.contains(beanName(event.getStartupStep())))
+                .map(event -> Map.entry(beanName(event.getStartupStep()),
+                        event.getDuration().minus(childTime.getOrDefault(event.getStartupStep().getId(), Duration.ZERO))))
+                .sorted(Map.Entry.<String, Duration>comparingByValue(Comparator.reverseOrder()))
+                .limit(topBeans)
+                .forEach(entry -> out.append("\n    ").append(pad(abbreviate(entry.getKey()))).append(format(entry.getValue())));
+
+        if (!warmup.isEmpty()) {
+            appendSection(out, "Warm-up", warmup);
+        }
+        return out.toString();
+    }
+
+    private void appendSection(StringBuilder out, String title, Map<String, Duration> entries) {
+        out.append("\n  ").append(title);
+        entries.forEach((name, duration) -> out.append("\n    ").append(pad(name)).append(format(duration)));
+    }
+
+    private String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if ("beanName".equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return "?";
+    }
+
+    /**
+     * Shortens configuration class bean names the way log patterns do: o.s.b.a.SomeConfiguration.
+     */
+    private String abbreviate(String beanName) {
+        String[] parts = beanName.split("\\.");
+        StringBuilder shortened = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            boolean lastOrType = i == parts.length - 1 || (!parts[i].isEmpty() && Character.isUpperCase(parts[i].charAt(0)));
+            if (shortened.length() > 0) {
+                shortened.append('.');
+            }
+            shortened.append(lastOrType || parts[i].isEmpty() ? parts[i] : parts[i].substring(0, 1));
+        }
+        return shortened.toString();
+    }
+
+    private String pad(String label) {
+        return String.format("%-40s", label);
+    }
+
+    private String format(Duration duration) {
+        return String.format("%6d ms", duration.toMillis());
+    }
+
+    private static Map<String, String> phases() {
+        Map<String, String> phases = new LinkedHashMap<>();
+        phases.put("spring.boot.application.starting", "starting");
+        phases.put("spring.boot.application.environment-prepared", "environment prepared");
+        phases.put("spring.boot.application.context-prepared", "context prepared");
+        phases.put("spring.boot.application.context-loaded", "context loaded");
+        phases.put("spring.context.refresh", "context refresh (total)");
+        phases.put("spring.context.beans.post-process", "bean definition processing");
+        phases.put("spring.data.repository.scanning", "repository scanning");
+        phases.put("spring.boot.application.started", "started listeners");
+        return phases;
+    }
+
+    private static Map<String, String> knownBeans() {
+        Map<String, String> beans = new LinkedHashMap<>();
+        beans.put("flywayInitializer", "flyway migration/validation");
+        beans.put("entityManagerFactory", "hibernate metamodel");
+        beans.put("springSecurityFilterChain", "security filter chain");
+        beans.put("wineSuggestionService", "wine suggestion catalog");
+        return beans;
+    }
+}
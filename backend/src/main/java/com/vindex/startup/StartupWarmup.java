@@ -0,0 +1,136 @@
+package com.vindex.startup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vindex.config.JwtTokenProvider;
+import com.vindex.dto.WineResponse;
+import com.vindex.repository.UserRepository;
+import com.vindex.repository.WineRepository;
+import com.vindex.service.WineSuggestionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Optional warm-up that runs after the context has started but before readiness flips to
+ * accepting traffic. It pulls in lazily initialized request-path beans and exercises the hot
+ * code of the busiest endpoints in-process, so the first real requests neither pay for bean
+ * creation nor run in the interpreter. Requests are not sent through HTTP on purpose: cold
+ * latencies would teach the concurrency limiter to back off before any traffic arrives.
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+    private static final List<String> SAMPLE_QUERIES = List.of("yarden", "cabernet", "barolo", "reserve", "galilee");
+
+    private final ConfigurableApplicationContext context;
+
+    @Value("${startup.warmup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${startup.warmup.iterations:500}")
+    private int iterations;
+
+    public StartupWarmup(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        step("beans", this::initializeRequestBeans);
+        step("database", this::primeDatabase);
+        step("catalog", this::exerciseCatalog);
+        step("jwt", this::exerciseTokens);
+        step("json", this::exerciseSerialization);
+        log.info("Warm-up finished in {} ms", (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void step(String name, Runnable action) {
+        StartupStep step = context.getApplicationStartup().start("vindex.warmup." + name);
+        try {
+            action.run();
+        } catch (RuntimeException ex) {
+            // A failed warm-up only costs latency later, it must not keep the node out of rotation
+            log.warn("Warm-up step '{}' failed", name, ex);
+            step.tag("failed", "true");
+        } finally {
+            step.end();
+        }
+    }
+
+    private void initializeRequestBeans() {
+        context.getBeansWithAnnotation(RestController.class);
+        if (context.containsBean("springSecurityFilterChain")) {
+            context.getBean("springSecurityFilterChain");
+        }
+    }
+
+    private void primeDatabase() {
+        // Opens the pool's connections and fills Hibernate's query plan cache for the list path
+        TransactionTemplate readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        WineRepository wineRepository = context.getBean(WineRepository.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        readOnly.executeWithoutResult(status -> {
+            userRepository.findByUsername("");
+            userRepository.findByEmail("");
+            wineRepository.findByUserIdOrderByCreatedAtDesc(-1L);
+            wineRepository.findByIdAndUserId(-1L, -1L);
+        });
+    }
+
+    private void exerciseCatalog() {
+        WineSuggestionService suggestions = context.getBean(WineSuggestionService.class);
+        // search() goes to Snooth when a key is configured; never spend the remote quota here
+        boolean catalogOnly = !suggestions.isRemoteLookupEnabled();
+        for (int i = 0; i < iterations; i++) {
+            String query = SAMPLE_QUERIES.get(i % SAMPLE_QUERIES.size());
+            if (catalogOnly) {
+                suggestions.search(query);
+            }
+            suggestions.findInCatalog(query, null);
+        }
+    }
+
+    private void exerciseTokens() {
+        JwtTokenProvider tokenProvider = context.getBean(JwtTokenProvider.class);
+        for (int i = 0; i < iterations; i++) {
+            String token = tokenProvider.generateAccessToken("warmup");
+            if (tokenProvider.validateToken(token)) {
+                tokenProvider.getUsernameFromToken(token);
+            }
+        }
+    }
+
+    private void exerciseSerialization() {
+        ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+        List<WineResponse> sample = List.of(
+                new WineResponse(1L, "Yarden Cabernet Sauvignon", "RED", "2018", 3, 120.0,
+                        "Golan Heights Winery", "Golan Heights", "Israel", "Cabernet Sauvignon", "/wine-placeholder.svg",
+                        "/wine-placeholder.svg", "A1", 1, 4L),
+                new WineResponse(2L, "Prosecco Extra Dry", "SPARKLING", "2021", 6, 45.0,
+                        "La Marca", "Veneto", "Italy", null, null, null, null, null, 0L));
+        try {
+            for (int i = 0; i < iterations; i++) {
+                objectMapper.writeValueAsBytes(sample);
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.vindex.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process fan-out of cellar changes to the owner's open change streams. Each user has a
+ * channel with a bounded replay buffer of recent events, so a reconnecting device can resume
+ * from its Last-Event-ID; when the gap is no longer covered (or the server restarted in
+ * between) it is told to reload with a {@code stream.reset} event. Events are only handed
+ * out after the publishing transaction commits. Subscribers on other instances are not
+ * reached; devices of one user may miss each other's changes when routed to different nodes.
+ */
+@Component
+public class CellarEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(CellarEventBus.class);
+
+    private static final String RESET_EVENT = "stream.reset";
+
+    private final ObjectMapper objectMapper;
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    /** Event ids are {@code <epoch>-<sequence>}; a new epoch per process start invalidates old ids. */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Counter overflows;
+
+    @Value("${cellar-stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${cellar-stream.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${cellar-stream.replay-size:100}")
+    private int replaySize;
+
+    @Value("${cellar-stream.replay-retention-ms:600000}")
+    private long replayRetentionMs;
+
+    @Value("${cellar-stream.max-connections-per-user:5}")
+    private int maxConnectionsPerUser;
+
+    public CellarEventBus(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        meterRegistry.gauge("cellar.stream.connections", connections);
+        this.overflows = meterRegistry.counter("cellar.stream.overflows");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onWineChange(WineChangeEvent event) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(event.getPayload());
+        } catch (JsonProcessingException ex) {
+            log.warn("Could not serialize {} event for wine {}", event.getType(), event.getWineId(), ex);
+            return;
+        }
+        long now = System.nanoTime();
+        List<CellarStreamSubscriber> lagging = new ArrayList<>();
+        channels.compute(event.getUserId(), (userId, channel) -> {
+            Channel target = channel == null ? new Channel() : channel;
+            Envelope envelope = new Envelope(sequence.incrementAndGet(), epoch, event.getType().eventName(), json);
+            target.remember(envelope, replaySize);
+            target.lastEventNanos = now;
+            for (CellarStreamSubscriber subscriber : target.subscribers) {
+                if (!subscriber.offer(envelope)) {
+                    target.subscribers.remove(subscriber);
+                    connections.decrementAndGet();
+                    lagging.add(subscriber);
+                }
+            }
+            return target;
+        });
+        // Completing a response may call back into unsubscribe, so never inside compute()
+        for (CellarStreamSubscriber subscriber : lagging) {
+            log.debug("Change stream of user {} fell too far behind, closing it", subscriber.getUserId());
+            overflows.increment();
+            subscriber.end();
+        }
+    }
+
+    /**
+     * Opens a stream for the user, first replaying what they missed since {@code lastEventId}.
+     */
+    public SseEmitter subscribe(Long userId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        CellarStreamSubscriber subscriber = new CellarStreamSubscriber(userId, emitter, bufferSize + replaySize);
+        Runnable unsubscribe = () -> unsubscribe(subscriber);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(ex -> unsubscribe.run());
+
+        List<CellarStreamSubscriber> replaced = new ArrayList<>();
+        channels.compute(userId, (id, channel) -> {
+            Channel target = channel == null ? new Channel() : channel;
+            // Sent first so the response headers go out right away
+            subscriber.offer(CellarStreamSubscriber.HEARTBEAT);
+            for (Envelope missed : target.missedSince(lastEventId, epoch, sequence.get())) {
+                subscriber.offer(missed);
+            }
+            while (target.subscribers.size() >= maxConnectionsPerUser) {
+                replaced.add(target.subscribers.remove(0));
+                connections.decrementAndGet();
+            }
+            target.subscribers.add(subscriber);
+            connections.incrementAndGet();
+            return target;
+        });
+        replaced.forEach(CellarStreamSubscriber::end);
+        subscriber.start();
+        return emitter;
+    }
+
+    private void unsubscribe(CellarStreamSubscriber subscriber) {
+        subscriber.close();
+        channels.computeIfPresent(subscriber.getUserId(), (id, channel) -> {
+            if (channel.subscribers.remove(subscriber)) {
+                connections.decrementAndGet();
+            }
+            return channel;
+        });
+    }
+
+    /**
+     * Keeps idle connections alive through proxies and drops replay buffers nobody can resume
+     * from any more.
+     */
+    @Scheduled(fixedDelayString = "${cellar-stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        for (Long userId : new ArrayList<>(channels.keySet())) {
+            channels.computeIfPresent(userId, (id, channel) -> {
+                channel.subscribers.forEach(CellarStreamSubscriber::heartbeat);
+                boolean idle = channel.subscribers.isEmpty() && now - channel.lastEventNanos > replayRetentionMs * 1_000_000L;
+                return idle ? null : channel;
+            });
+        }
+    }
+
+    private static final class Channel {
+        private final ArrayDeque<Envelope> replay = new ArrayDeque<>();
+        private final List<CellarStreamSubscriber> subscribers = new CopyOnWriteArrayList<>();
+        private long evictedUpTo;
+        private long lastEventNanos = System.nanoTime();
+
+        private void remember(Envelope envelope, int replaySize) {
+            replay.addLast(envelope);
+            while (replay.size() > replaySize) {
+                evictedUpTo = replay.removeFirst().getSequence();
+            }
+        }
+
+        /**
+         * A reset carries the newest id, so the client resumes from there after reloading.
+         */
+        private List<Envelope> missedSince(String lastEventId, String epoch, long latestSequence) {
+            if (lastEventId == null || lastEventId.isBlank()) {
+                return List.of();
+            }
+            int dash = lastEventId.indexOf('-');
+            long lastSequence;
+            try {
+                lastSequence = dash < 0 ? -1 : Long.parseLong(lastEventId.substring(dash + 1).trim());
+            } catch (NumberFormatException ex) {
+                lastSequence = -1;
+            }
+            if (lastSequence < 0 || !epoch.equals(lastEventId.substring(0, dash)) || lastSequence < evictedUpTo) {
+                return List.of(new Envelope(latestSequence, epoch, RESET_EVENT, "{}"));
+            }
+            List<Envelope> missed = new ArrayList<>();
+            for (Envelope envelope : replay) {
+                if (envelope.getSequence() > lastSequence) {
+                    missed.add(envelope);
+                }
+            }
+            return missed;
+        }
+    }
+
+    static final class Envelope {
+        private final long sequence;
+        private final String epoch;
+        private final String name;
+        private final String json;
+
+        Envelope(long sequence, String epoch, String name, String json) {
+            this.sequence = sequence;
+            this.epoch = epoch;
+            this.name = name;
+            this.json = json;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        String getId() {
+            return epoch + "-" + sequence;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getJson() {
+            return json;
+        }
+    }
+}
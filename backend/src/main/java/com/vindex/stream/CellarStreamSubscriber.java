@@ -0,0 +1,96 @@
+package com.vindex.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * One open stream. Events are queued without blocking the publisher and written by a virtual
+ * thread of its own, so a slow client only ever delays itself. When its queue overflows the
+ * stream is closed; the client reconnects with Last-Event-ID and catches up from the replay
+ * buffer.
+ */
+class CellarStreamSubscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(CellarStreamSubscriber.class);
+
+    static final CellarEventBus.Envelope HEARTBEAT = new CellarEventBus.Envelope(0, null, null, null);
+
+    private final Long userId;
+    private final SseEmitter emitter;
+    private final BlockingQueue<CellarEventBus.Envelope> queue;
+    private volatile boolean closed;
+    private Thread sender;
+
+    CellarStreamSubscriber(Long userId, SseEmitter emitter, int bufferSize) {
+        this.userId = userId;
+        this.emitter = emitter;
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    Long getUserId() {
+        return userId;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void start() {
+        sender = Thread.ofVirtual().name("cellar-stream-" + userId).start(this::drain);
+    }
+
+    /**
+     * @return false when the subscriber is closed or too far behind and should be ended
+     */
+    boolean offer(CellarEventBus.Envelope envelope) {
+        return !closed && queue.offer(envelope);
+    }
+
+    void heartbeat() {
+        // A full queue already has something to send, no need for a keep-alive
+        if (!closed) {
+            queue.offer(HEARTBEAT);
+        }
+    }
+
+    /**
+     * Completes the response; the client reconnects and resumes from its last event id.
+     */
+    void end() {
+        close();
+        emitter.complete();
+    }
+
+    void close() {
+        closed = true;
+        if (sender != null) {
+            sender.interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!closed) {
+                CellarEventBus.Envelope envelope = queue.take();
+                if (envelope == HEARTBEAT) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    emitter.send(SseEmitter.event().id(envelope.getId()).name(envelope.getName()).data(envelope.getJson()));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException ex) {
+            // The client went away; the emitter's callbacks unregister this subscriber
+            log.debug("Change stream of user {} closed while sending", userId);
+            emitter.completeWithError(ex);
+        } finally {
+            closed = true;
+        }
+    }
+}
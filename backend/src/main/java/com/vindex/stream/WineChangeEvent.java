@@ -0,0 +1,50 @@
+package com.vindex.stream;
+
+import java.util.Locale;
+
+/**
+ * A change to one wine in a user's cellar, published by {@code WineService} and delivered to
+ * the user's open change streams once the transaction that made it has committed.
+ */
+public class WineChangeEvent {
+
+    public enum Type {
+        CREATED, UPDATED, MOVED, DELETED, QUANTITY;
+
+        public String eventName() {
+            return "wine." + name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Long userId;
+    private final Type type;
+    private final Long wineId;
+    private final Object payload;
+
+    public WineChangeEvent(Long userId, Type type, Long wineId, Object payload) {
+        this.userId = userId;
+        this.type = type;
+        this.wineId = wineId;
+        this.payload = payload;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getWineId() {
+        return wineId;
+    }
+
+    /**
+     * What clients receive as the event data: the full wine for creates, updates and moves,
+     * the new quantity for consume and restock, and just the id for deletes.
+     */
+    public Object getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,61 @@
+package com.vindex.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One {@code key=value} line per request on the {@code access} logger, with the route, the
+ * status and the latency. Failed ({@code 5xx}) and slow requests are always logged, the rest
+ * at {@code sampleRate}; with the logger off the filter costs a level check.
+ */
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger("access");
+
+    private final double sampleRate;
+    private final long slowNanos;
+
+    public AccessLogFilter(double sampleRate, long slowMs) {
+        this.sampleRate = sampleRate;
+        this.slowNanos = slowMs * 1_000_000L;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!log.isInfoEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long started = System.nanoTime();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            filterChain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            if (status >= 500 || elapsed >= slowNanos || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                log.info("method={} route={} path={} status={} ms={}", request.getMethod(),
+                        route == null ? "unmatched" : route, request.getRequestURI(), status, elapsed / 1_000_000);
+            }
+        }
+    }
+
+    /**
+     * Streams and async handlers are logged when the handler returns, not when they end.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return true;
+    }
+}
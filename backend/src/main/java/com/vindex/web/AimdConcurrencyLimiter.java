@@ -0,0 +1,84 @@
+package com.vindex.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Additive-increase / multiplicative-decrease limit on in-flight requests. Every completion
+ * faster than the target latency grows the limit by one while the limiter is being used;
+ * a slow or failed completion multiplies it by the backoff ratio. When the database slows
+ * down the limit therefore shrinks toward what it can actually serve, and excess requests
+ * are rejected up front instead of queueing on Tomcat threads.
+ * <p>
+ * The backoff is applied at most once per latency window: requests that were already in
+ * flight when the limit was last cut describe the same slowdown, so their slow completions
+ * are ignored rather than compounding the ratio once per request.
+ */
+public class AimdConcurrencyLimiter {
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger limit;
+    private final AtomicLong lastBackoffNanos = new AtomicLong(System.nanoTime());
+
+    public AimdConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                  long targetLatencyMs, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid concurrency limit settings for " + name);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.backoffRatio = backoffRatio;
+        this.limit = new AtomicInteger(Math.max(minLimit, Math.min(maxLimit, initialLimit)));
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a permit taken by {@link #tryAcquire()} and feeds the observed latency back into
+     * the limit.
+     */
+    public void release(long latencyNanos, boolean failed) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        if (failed || latencyNanos > targetLatencyNanos) {
+            long now = System.nanoTime();
+            long lastBackoff = lastBackoffNanos.get();
+            // Only a request started after the previous cut may cut again, and only one of them wins
+            if (now - latencyNanos - lastBackoff >= 0 && lastBackoffNanos.compareAndSet(lastBackoff, now)) {
+                limit.updateAndGet(current -> Math.max(minLimit, (int) (current * backoffRatio)));
+            }
+        } else if (inFlightBefore * 2 >= limit.get()) {
+            // Only probe upwards when the current limit is actually being exercised
+            limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,93 @@
+package com.vindex.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sheds load with 503 before any security or database work happens once the adaptive limit
+ * for the request's endpoint class is reached. Each class has its own limiter so, for example,
+ * a burst of logins cannot use up the capacity reserved for cellar reads.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    public enum EndpointClass {
+        AUTH, WINE_READ, WINE_WRITE, SEARCH
+    }
+
+    private static final String STREAM_PATH = "/wines/stream";
+    private static final String[] UNLIMITED_PREFIXES = {"/actuator/", "/images/"};
+    private static final String HEALTH_PATH = "/health";
+
+    private final Map<EndpointClass, AimdConcurrencyLimiter> limiters;
+
+    public ConcurrencyLimitFilter(Map<EndpointClass, AimdConcurrencyLimiter> limiters) {
+        this.limiters = limiters;
+    }
+
+    /**
+     * Change streams stay open for minutes; counting them would pin permits and teach the
+     * limiter that reads are slow. Health probes and image downloads never touch the cellar
+     * tables, so they neither take cellar read permits nor feed their latency into that limit
+     * (a failing probe must not be turned into a 503 by shed load either).
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if ("OPTIONS".equals(request.getMethod())) {
+            return true;
+        }
+        String path = request.getServletPath();
+        if (STREAM_PATH.equals(path) || HEALTH_PATH.equals(path)) {
+            return true;
+        }
+        for (String prefix : UNLIMITED_PREFIXES) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AimdConcurrencyLimiter limiter = limiters.get(classify(request));
+        if (!limiter.tryAcquire()) {
+            response.setContentType("application/json;charset=UTF-8");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.getWriter().write("{\"message\": \"Server is busy, please retry\"}");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            limiter.release(System.nanoTime() - start, failed);
+        }
+    }
+
+    static EndpointClass classify(HttpServletRequest request) {
+        String path = request.getServletPath();
+        if (path.startsWith("/auth/")) {
+            return EndpointClass.AUTH;
+        }
+        if (path.equals("/wines/search")) {
+            return EndpointClass.SEARCH;
+        }
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return EndpointClass.WINE_READ;
+        }
+        return EndpointClass.WINE_WRITE;
+    }
+}
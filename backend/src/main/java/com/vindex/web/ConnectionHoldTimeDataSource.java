@@ -0,0 +1,119 @@
+package com.vindex.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each physical connection stays checked out, tagged with the endpoint that
+ * took it ({@code datasource.connection.hold}). Lookups made by filters before a handler is
+ * chosen show up as {@code unmatched}, scheduled jobs as {@code background}. Sits below the
+ * lazy connection proxy, so only time with a real pooled connection is counted.
+ */
+public class ConnectionHoldTimeDataSource extends DelegatingDataSource {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public ConnectionHoldTimeDataSource(DataSource target, MeterRegistry meterRegistry) {
+        super(target);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection track(Connection connection) {
+        Timer timer = timerForCurrentRequest();
+        return (Connection) Proxy.newProxyInstance(ConnectionHoldTimeDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new HoldTimer(connection, timer));
+    }
+
+    private Timer timerForCurrentRequest() {
+        String method = "none";
+        String endpoint = "background";
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            HttpServletRequest request = servletAttributes.getRequest();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            method = request.getMethod();
+            endpoint = pattern == null ? "unmatched" : pattern.toString();
+        }
+        String tagMethod = method;
+        String tagEndpoint = endpoint;
+        return timers.computeIfAbsent(method + ' ' + endpoint, key -> Timer.builder("datasource.connection.hold")
+                .tag("method", tagMethod)
+                .tag("endpoint", tagEndpoint)
+                .register(meterRegistry));
+    }
+
+    private static final class HoldTimer implements InvocationHandler {
+        private final Connection target;
+        private final Timer timer;
+        private final long acquiredAt = System.nanoTime();
+        private boolean closed;
+
+        private HoldTimer(Connection target, Timer timer) {
+            this.target = target;
+            this.timer = timer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        timer.record(System.nanoTime() - acquiredAt, TimeUnit.NANOSECONDS);
+                    }
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "unwrap" -> {
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                }
+                case "isWrapperFor" -> {
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                }
+                default -> {
+                }
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.vindex.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+
+/**
+ * Writes JSON that was encoded ahead of time straight to the response, choosing the gzip
+ * variant when the client accepts it, and answers a matching {@code If-None-Match} with 304.
+ * The body bypasses the message converters entirely.
+ */
+public final class EncodedJsonResponseWriter {
+
+    private EncodedJsonResponseWriter() {
+    }
+
+    /**
+     * @param gzip gzip encoding of {@code json}, or null to always send it uncompressed
+     */
+    public static void write(HttpServletRequest request, HttpServletResponse response,
+                             byte[] json, byte[] gzip, String etag) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(etag))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = json;
+        if (gzip != null && acceptsGzip(request)) {
+            body = gzip;
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        if (!"HEAD".equals(request.getMethod())) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            // "gzip;q=0" explicitly refuses it
+            return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+}
@@ -0,0 +1,18 @@
+-- Bumped by every write to a wine, so offline clients can tell whether a wine changed since
+-- they last saw it
+ALTER TABLE wines
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- Outcome of every replayed client mutation, keyed by the MD5 of its idempotency key, so a
+-- retried replay returns the stored outcome instead of applying the mutation again. Rows are
+-- pruned by ClientMutationSweeper once they are older than replay.dedupe.ttl-hours.
+CREATE TABLE client_mutations (
+    user_id BIGINT NOT NULL,
+    key_hash BINARY(16) NOT NULL,
+    status SMALLINT NOT NULL,
+    wine_id BIGINT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, key_hash),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    INDEX idx_created_at (created_at)
+) ENGINE=InnoDB;
@@ -0,0 +1,5 @@
+-- MD5 of the wine's folded name, winery and vintage (see WineIdentity). The folding cannot be
+-- reproduced in SQL, so existing rows are filled in by WineDuplicateMergeJob.
+ALTER TABLE wines
+    ADD COLUMN identity_key BINARY(16) NULL,
+    ADD INDEX idx_user_identity_key (user_id, identity_key);
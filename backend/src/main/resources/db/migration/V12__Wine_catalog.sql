@@ -0,0 +1,42 @@
+-- Wine identities shared by all cellars on the shard; wines keep only the per-user fields and
+-- point at their catalog row. The id is the MD5 of the identity fields joined with 0x1F, nulls
+-- as empty strings (see WineCatalogEntry.idOf), so every node computes it without a lookup and
+-- the same wine entered by any number of users is stored once. Rows are never updated: a wine
+-- whose identity changes is pointed at another row.
+CREATE TABLE wine_catalog (
+    id BINARY(16) NOT NULL PRIMARY KEY,
+    wine_name VARCHAR(255) NOT NULL,
+    wine_type VARCHAR(50),
+    vintage_year INT,
+    winery VARCHAR(255),
+    grape_variety VARCHAR(100),
+    region VARCHAR(100),
+    country VARCHAR(100),
+    INDEX idx_wine_name (wine_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+ALTER TABLE wines
+    ADD COLUMN catalog_id BINARY(16) NULL AFTER user_id;
+
+UPDATE wines
+SET catalog_id = UNHEX(MD5(CONCAT_WS(CHAR(31 USING utf8mb4), wine_name, IFNULL(wine_type, ''),
+        IFNULL(vintage_year, ''), IFNULL(winery, ''), IFNULL(region, ''), IFNULL(country, ''),
+        IFNULL(grape_variety, ''))));
+
+INSERT IGNORE INTO wine_catalog (id, wine_name, wine_type, vintage_year, winery, grape_variety, region, country)
+SELECT catalog_id, wine_name, wine_type, vintage_year, winery, grape_variety, region, country
+FROM wines;
+
+-- Needs every node on the catalog-aware build: older nodes still read the dropped columns
+ALTER TABLE wines
+    MODIFY catalog_id BINARY(16) NOT NULL,
+    ADD CONSTRAINT fk_wines_catalog FOREIGN KEY (catalog_id) REFERENCES wine_catalog(id),
+    DROP INDEX idx_wine_type,
+    DROP INDEX idx_vintage_year,
+    DROP COLUMN wine_name,
+    DROP COLUMN wine_type,
+    DROP COLUMN vintage_year,
+    DROP COLUMN winery,
+    DROP COLUMN grape_variety,
+    DROP COLUMN region,
+    DROP COLUMN country;
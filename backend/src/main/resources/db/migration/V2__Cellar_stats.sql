@@ -0,0 +1,11 @@
+CREATE TABLE cellar_stats (
+    user_id BIGINT NOT NULL,
+    dimension VARCHAR(20) NOT NULL,
+    dim_value VARCHAR(255) NOT NULL,
+    wine_count BIGINT NOT NULL DEFAULT 0,
+    bottle_count BIGINT NOT NULL DEFAULT 0,
+    total_value DECIMAL(14,2) NOT NULL DEFAULT 0,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, dimension, dim_value),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
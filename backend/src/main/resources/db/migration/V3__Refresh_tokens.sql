@@ -0,0 +1,22 @@
+CREATE TABLE refresh_tokens (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    token_hash CHAR(64) NOT NULL,
+    family_id CHAR(36) NOT NULL,
+    expires_at DATETIME NOT NULL,
+    used_at DATETIME,
+    revoked_at DATETIME,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    UNIQUE KEY uk_token_hash (token_hash),
+    INDEX idx_family_id (family_id),
+    INDEX idx_user_id (user_id),
+    INDEX idx_expires_at (expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO refresh_tokens (user_id, token_hash, family_id, expires_at)
+SELECT id, SHA2(refresh_token, 256), UUID(), refresh_token_expiry
+FROM users
+WHERE refresh_token IS NOT NULL AND refresh_token_expiry IS NOT NULL;
+
+ALTER TABLE users DROP COLUMN refresh_token, DROP COLUMN refresh_token_expiry;
@@ -0,0 +1,3 @@
+ALTER TABLE wines
+    ADD COLUMN enriched_at DATETIME NULL,
+    ADD INDEX idx_enriched_at (enriched_at);
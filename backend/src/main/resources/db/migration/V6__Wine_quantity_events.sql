@@ -0,0 +1,13 @@
+CREATE TABLE wine_quantity_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    wine_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    quantity_delta INT NOT NULL,
+    quantity_after INT NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (wine_id) REFERENCES wines(id) ON DELETE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    INDEX idx_wine_created (wine_id, created_at),
+    INDEX idx_user_created (user_id, created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
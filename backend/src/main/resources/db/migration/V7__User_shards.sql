@@ -0,0 +1,5 @@
+-- Directory columns: NULL shard means the user's rows live on the directory database itself
+ALTER TABLE users
+    ADD COLUMN shard VARCHAR(64) NULL,
+    ADD COLUMN shard_moving BOOLEAN NOT NULL DEFAULT FALSE,
+    ADD INDEX idx_shard (shard);
@@ -0,0 +1,5 @@
+-- Written on every primary and read back from its replica to measure replication lag
+CREATE TABLE replication_heartbeat (
+    id TINYINT PRIMARY KEY,
+    beat_at BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,25 @@
+-- Append-only log of what happened to each wine. It outlives the wine row, so there is no
+-- foreign key (partitioned tables cannot have one anyway). Partitioned by month; newer
+-- partitions are split off p_future ahead of time by WineHistoryPartitionMaintainer.
+CREATE TABLE wine_history (
+    id BIGINT AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    wine_id BIGINT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    wine_name VARCHAR(255),
+    vintage_year INT,
+    quantity_delta INT,
+    quantity_after INT,
+    rating INT,
+    note TEXT,
+    location VARCHAR(50),
+    row_id INT,
+    occurred_at DATETIME(3) NOT NULL,
+    PRIMARY KEY (id, occurred_at),
+    INDEX idx_user_occurred (user_id, occurred_at, id),
+    INDEX idx_user_wine_occurred (user_id, wine_id, occurred_at, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+PARTITION BY RANGE COLUMNS (occurred_at) (
+    PARTITION p202610 VALUES LESS THAN ('2026-11-01'),
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
@@ -0,0 +1,132 @@
+package com.vindex.cache;
+
+import com.vindex.dto.CellarFacetsResponse;
+import com.vindex.dto.WineResponse;
+import com.vindex.stream.WineChangeEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CellarFacetIndexTest {
+
+    private static final long USER = 7L;
+
+    private CellarFacetIndex index;
+    private AtomicInteger loads;
+    private Supplier<List<WineResponse>> cellar;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SharedCacheTier inProcess = new SharedCacheTier((RedisConnectionFactory) null, meterRegistry);
+        index = new CellarFacetIndex(inProcess, meterRegistry, 100, 600_000, 3_600_000);
+        loads = new AtomicInteger();
+        cellar = () -> {
+            loads.incrementAndGet();
+            return List.of(
+                    wine(1, "RED", "2016", "Nebbiolo", "Vietti", "CELLAR", 0),
+                    wine(2, "RED", "2018", "Tempranillo", "Muga", "CELLAR", 0),
+                    wine(3, "WHITE", "2020", "Chardonnay", "Raveneau", "FRIDGE", 0),
+                    wine(4, "RED", "2016", "Nebbiolo", "Giacosa", "FRIDGE", 0));
+        };
+    }
+
+    @Test
+    void combinedFiltersIntersectAndLeaveTheirOwnFacetPickable() {
+        CellarFacetsResponse response = index.query(USER, filters(CellarFacetIndex.Facet.TYPE, "RED",
+                CellarFacetIndex.Facet.LOCATION, "FRIDGE"), cellar);
+
+        assertThat(response.getTotalWines()).isEqualTo(4);
+        assertThat(response.getIds()).containsExactly(4L);
+        // Type counts ignore the type selection but honour the location one
+        assertThat(response.getCounts().get("type")).containsEntry("RED", 1).containsEntry("WHITE", 1);
+        assertThat(response.getCounts().get("location")).containsEntry("CELLAR", 2).containsEntry("FRIDGE", 1);
+        assertThat(response.getCounts().get("year")).containsEntry("2016", 1).containsEntry("2018", 0);
+    }
+
+    @Test
+    void writesPatchTheIndexWithoutReloading() {
+        index.query(USER, Map.of(), cellar);
+
+        index.onWineChange(new WineChangeEvent(USER, WineChangeEvent.Type.UPDATED, 2L,
+                wine(2, "ROSE", "2018", "Tempranillo", "Muga", "CELLAR", 1)));
+        index.onWineChange(new WineChangeEvent(USER, WineChangeEvent.Type.DELETED, 3L, 3L));
+        index.onWineChange(new WineChangeEvent(USER, WineChangeEvent.Type.CREATED, 5L,
+                wine(5, "WHITE", "2021", "Fiano", "Feudi", "CELLAR", 0)));
+        index.onWineChange(new WineChangeEvent(USER, WineChangeEvent.Type.QUANTITY, 1L, 2));
+        CellarFacetsResponse response = index.query(USER, Map.of(), cellar);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(response.getIds()).containsExactlyInAnyOrder(1L, 2L, 4L, 5L);
+        assertThat(response.getCounts().get("type")).containsEntry("RED", 2).containsEntry("ROSE", 1)
+                .containsEntry("WHITE", 1);
+        assertThat(response.getCounts().get("grape")).doesNotContainKey("Chardonnay");
+    }
+
+    @Test
+    void lateEventsCannotUndoNewerOnes() {
+        index.query(USER, Map.of(), cellar);
+
+        index.onWineChange(new WineChangeEvent(USER, WineChangeEvent.Type.UPDATED, 1L,
+                wine(1, "RED", "2016", "Nebbiolo", "Vietti", "FRIDGE", 2)));
+        index.onWineChange(new WineChangeEvent(USER, WineChangeEvent.Type.UPDATED, 1L,
+                wine(1, "RED", "2016", "Nebbiolo", "Vietti", "CELLAR", 1)));
+        index.onWineChange(new WineChangeEvent(USER, WineChangeEvent.Type.DELETED, 2L, 2L));
+        index.onWineChange(new WineChangeEvent(USER, WineChangeEvent.Type.UPDATED, 2L,
+                wine(2, "RED", "2018", "Tempranillo", "Muga", "CELLAR", 1)));
+        CellarFacetsResponse response = index.query(USER, filters(CellarFacetIndex.Facet.LOCATION, "FRIDGE"), cellar);
+
+        assertThat(response.getIds()).containsExactlyInAnyOrder(1L, 3L, 4L);
+        assertThat(response.getTotalWines()).isEqualTo(3);
+    }
+
+    @Test
+    void indexLoadedDuringAChangeIsNotKept() {
+        index.query(USER, Map.of(), () -> {
+            index.onWineChange(new WineChangeEvent(USER, WineChangeEvent.Type.CREATED, 5L,
+                    wine(5, "WHITE", "2021", "Fiano", "Feudi", "CELLAR", 0)));
+            return cellar.get();
+        });
+        index.query(USER, Map.of(), cellar);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void idleIndexesAreDropped() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SharedCacheTier inProcess = new SharedCacheTier((RedisConnectionFactory) null, meterRegistry);
+        CellarFacetIndex shortLived = new CellarFacetIndex(inProcess, meterRegistry, 100, 1, 3_600_000);
+        shortLived.query(USER, Map.of(), cellar);
+
+        Thread.sleep(5);
+        shortLived.evictIdle();
+        shortLived.query(USER, Map.of(), cellar);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private static Map<CellarFacetIndex.Facet, Set<String>> filters(Object... facetsAndValues) {
+        Map<CellarFacetIndex.Facet, Set<String>> filters = new EnumMap<>(CellarFacetIndex.Facet.class);
+        for (int i = 0; i < facetsAndValues.length; i += 2) {
+            filters.put((CellarFacetIndex.Facet) facetsAndValues[i], Set.of((String) facetsAndValues[i + 1]));
+        }
+        return filters;
+    }
+
+    private static WineResponse wine(long id, String type, String vintage, String grape, String winery,
+                                     String location, long version) {
+        return new WineResponse(id, "Wine " + id, type, vintage, 1, 10.0, winery, null, null, grape, null, null,
+                location, null, version);
+    }
+}
@@ -0,0 +1,54 @@
+package com.vindex.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vindex.replica.ReplicaContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CellarSnapshotCacheTest {
+
+    private CellarSnapshotCache cache;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SharedCacheTier inProcess = new SharedCacheTier((RedisConnectionFactory) null, meterRegistry);
+        cache = new CellarSnapshotCache(new ObjectMapper(), inProcess, meterRegistry, 1 << 20, 1 << 16, 1024, 60_000);
+    }
+
+    @Test
+    void missesAreLoadedFromThePrimary() {
+        List<Boolean> pinned = new ArrayList<>();
+
+        cache.get(7L, () -> {
+            pinned.add(ReplicaContext.isPrimaryPinned());
+            return List.of("Barolo");
+        });
+
+        assertThat(pinned).containsExactly(true);
+        assertThat(ReplicaContext.isPrimaryPinned()).isFalse();
+    }
+
+    @Test
+    void changeDropsTheListing() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(7L, () -> List.of("Barolo", loads.incrementAndGet()));
+        CellarSnapshotCache.Snapshot cached = cache.get(7L, () -> List.of("Barolo", loads.incrementAndGet()));
+        cache.invalidate(7L);
+        CellarSnapshotCache.Snapshot reloaded = cache.get(7L, () -> List.of("Barolo", loads.incrementAndGet()));
+
+        assertThat(new String(cached.getJson(), StandardCharsets.UTF_8)).isEqualTo("[\"Barolo\",1]");
+        assertThat(new String(reloaded.getJson(), StandardCharsets.UTF_8)).isEqualTo("[\"Barolo\",2]");
+        assertThat(reloaded.getEtag()).isNotEqualTo(cached.getEtag());
+    }
+}
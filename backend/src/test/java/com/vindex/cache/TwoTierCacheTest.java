@@ -0,0 +1,121 @@
+package com.vindex.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoTierCacheTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private InMemoryRedis redis;
+    private TwoTierCache<String> nodeA;
+    private TwoTierCache<String> nodeB;
+
+    @BeforeEach
+    void setUp() {
+        redis = new InMemoryRedis();
+        // Two nodes on one store; pub/sub is not delivered, as when a message is still in flight
+        nodeA = cache();
+        nodeB = cache();
+    }
+
+    @Test
+    void undisturbedLoadIsSharedWithOtherNodes() {
+        assertThat(nodeA.get("7", () -> "v1")).isEqualTo("v1");
+
+        assertThat(nodeB.get("7", () -> "not loaded")).isEqualTo("v1");
+    }
+
+    @Test
+    void loadOverlappingAnotherNodesInvalidationIsNotWrittenBack() {
+        String loaded = nodeA.get("7", () -> {
+            // Another node commits a change and invalidates while this one is still reading
+            nodeB.invalidate("7");
+            return "stale";
+        });
+
+        assertThat(loaded).isEqualTo("stale");
+        assertThat(redis.data).doesNotContainKey("vindex:cache:test:7");
+        assertThat(nodeB.get("7", () -> "fresh")).isEqualTo("fresh");
+        assertThat(redis.data).containsEntry("vindex:cache:test:7", "\"fresh\"");
+    }
+
+    @Test
+    void invalidationDropsTheStoredValue() {
+        nodeA.get("7", () -> "v1");
+
+        nodeB.invalidate("7");
+
+        assertThat(nodeB.get("7", () -> "v2")).isEqualTo("v2");
+        assertThat(redis.published).containsExactly("test 7");
+    }
+
+    private TwoTierCache<String> cache() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new TwoTierCache<>("test", MAPPER.constructType(String.class), MAPPER,
+                new SharedCacheTier(redis, meterRegistry), 16, Duration.ofSeconds(2), Duration.ofMinutes(5),
+                meterRegistry);
+    }
+
+    /**
+     * Stand-in for the Redis operations the shared tier uses, with the two scripts done natively.
+     */
+    private static final class InMemoryRedis extends StringRedisTemplate {
+        private final Map<String, String> data = new ConcurrentHashMap<>();
+        private final List<String> published = new ArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ValueOperations<String, String> opsForValue() {
+            return (ValueOperations<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> {
+                        if (!method.getName().equals("multiGet")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        List<String> values = new ArrayList<>();
+                        for (Object key : (Iterable<?>) args[0]) {
+                            values.add(data.get((String) key));
+                        }
+                        return values;
+                    });
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            if (script == SharedCacheTier.PUT_IF_UNCHANGED) {
+                if (!data.getOrDefault(keys.get(1), "").equals(args[0])) {
+                    return (T) Long.valueOf(0);
+                }
+                data.put(keys.get(0), (String) args[1]);
+                return (T) Long.valueOf(1);
+            }
+            if (script == SharedCacheTier.BUMP) {
+                data.remove(keys.get(0));
+                return (T) Long.valueOf(data.merge(keys.get(1), "1", (old, one) -> String.valueOf(Long.parseLong(old) + 1)));
+            }
+            throw new UnsupportedOperationException(script.getScriptAsString());
+        }
+
+        @Override
+        public Long convertAndSend(String channel, Object message) {
+            String text = message.toString();
+            published.add(text.substring(text.indexOf(' ') + 1));
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.vindex.controller;
+
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AuthControllerQueryBudgetTest extends IntegrationTest {
+
+    @Test
+    void registerChecksBothNamesThenInsertsUserAndToken() throws Exception {
+        String name = "u" + UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+
+        performWithin(4, post("/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\": \"" + name + "\", \"email\": \"" + name + "@example.com\", "
+                        + "\"password\": \"correct horse battery\"}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void loginIsTheUserLookupAndTheTokenInsert() throws Exception {
+        TestUser user = register();
+
+        performWithin(2, login(user)).andExpect(status().isOk());
+    }
+
+    @Test
+    void refreshRotatesUnderOneLock() throws Exception {
+        TestUser user = register();
+        String refreshToken = json(mockMvc.perform(login(user))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()).get("refreshToken").asText();
+
+        // Locked token read, user, new token insert, old token marked used
+        performWithin(4, post("/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\": \"" + refreshToken + "\"}"))
+                .andExpect(status().isOk());
+    }
+
+    private static MockHttpServletRequestBuilder login(TestUser user) {
+        return post("/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + user.email() + "\", \"password\": \"correct horse battery\"}");
+    }
+}
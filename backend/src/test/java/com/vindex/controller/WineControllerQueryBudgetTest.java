@@ -0,0 +1,118 @@
+package com.vindex.controller;
+
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statements each cellar endpoint is designed to send. Every budget allows for the JWT filter's
+ * user lookup, which the principal cache only skips while its entry is fresh.
+ */
+class WineControllerQueryBudgetTest extends IntegrationTest {
+
+    private static final int PRINCIPAL = 1;
+
+    @Test
+    void listingIsOneQueryWhateverTheCellarSize() throws Exception {
+        TestUser user = register();
+        createWine(user, wine("Barolo", "RED", "2016", 6, 40.0));
+        performWithin(PRINCIPAL + 1, authorized(get("/wines"), user)).andExpect(status().isOk());
+
+        for (int i = 0; i < 20; i++) {
+            createWine(user, wine("Rioja " + i, "RED", String.valueOf(2000 + i), 2, 18.0));
+        }
+        performWithin(PRINCIPAL + 1, authorized(get("/wines"), user)).andExpect(status().isOk());
+    }
+
+    @Test
+    void summariesAreOneQueryEach() throws Exception {
+        TestUser user = register();
+        for (int i = 0; i < 5; i++) {
+            createWine(user, wine("Chianti " + i, "RED", String.valueOf(2010 + i), 3, 15.0));
+        }
+
+        performWithin(PRINCIPAL + 1, authorized(get("/wines/stats"), user)).andExpect(status().isOk());
+        performWithin(PRINCIPAL + 1, authorized(get("/wines/facets"), user)).andExpect(status().isOk());
+        performWithin(PRINCIPAL + 1, authorized(get("/wines/history"), user)).andExpect(status().isOk());
+    }
+
+    @Test
+    void creatingResolvesTheCatalogAndBatchesTheStats() throws Exception {
+        TestUser user = register();
+
+        // Catalog insert-ignore and share-locked read, wine insert, stats batch
+        performWithin(PRINCIPAL + 4, authorized(post("/wines"), user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(wine("Chablis", "WHITE", "2020", 3, 25.0))))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void updatingLoadsTheWineOnce() throws Exception {
+        TestUser user = register();
+        long id = createWine(user, wine("Barolo", "RED", "2016", 6, 40.0)).get("id").asLong();
+
+        // Wine select, catalog insert-ignore and read, wine update, stats batch
+        performWithin(PRINCIPAL + 5, authorized(put("/wines/{id}", id), user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(wine("Barolo Riserva", "RED", "2015", 5, 45.0))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void quantityChangesDoNotLoadTheWine() throws Exception {
+        TestUser user = register();
+        long id = createWine(user, wine("Barolo", "RED", "2016", 6, 40.0)).get("id").asLong();
+
+        // Conditional update, its LAST_INSERT_ID, stats upsert, quantity event
+        performWithin(PRINCIPAL + 4, authorized(post("/wines/{id}/consume", id), user))
+                .andExpect(status().isOk());
+        performWithin(PRINCIPAL + 4, authorized(post("/wines/{id}/restock", id), user))
+                .andExpect(status().isOk());
+        performWithin(PRINCIPAL + 1, authorized(post("/wines/{id}/tastings", id), user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"rating\": 4}"))
+                .andExpect(status().isAccepted());
+    }
+
+    @Test
+    void batchAndReplayCostTheSameWhateverTheirSize() throws Exception {
+        TestUser user = register();
+        long id = createWine(user, wine("Barolo", "RED", "2016", 6, 40.0)).get("id").asLong();
+
+        // Wines by id, catalog insert-ignore and read, multi-row insert, update, stats batch
+        performWithin(PRINCIPAL + 6, authorized(post("/wines/batch"), user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"operations\": ["
+                        + "{\"op\": \"CREATE\", \"wine\": {\"name\": \"Rioja\", \"type\": \"RED\", \"vintage\": \"2018\", \"quantity\": 1, \"price\": 18}},"
+                        + "{\"op\": \"CREATE\", \"wine\": {\"name\": \"Chablis\", \"type\": \"WHITE\", \"vintage\": \"2020\", \"quantity\": 2, \"price\": 25}},"
+                        + "{\"op\": \"UPDATE\", \"id\": " + id + ", \"wine\": {\"name\": \"Barolo\", \"type\": \"RED\", \"vintage\": \"2016\", \"quantity\": 9, \"price\": 40}}"
+                        + "]}"))
+                .andExpect(status().isOk());
+
+        // The same plus the key lookup and the multi-row key insert
+        performWithin(PRINCIPAL + 8, authorized(post("/wines/replay"), user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"mutations\": ["
+                        + "{\"key\": \"k1\", \"op\": \"CREATE\", \"wine\": {\"name\": \"Soave\", \"type\": \"WHITE\", \"vintage\": \"2021\", \"quantity\": 1, \"price\": 12}},"
+                        + "{\"key\": \"k2\", \"op\": \"CREATE\", \"wine\": {\"name\": \"Fiano\", \"type\": \"WHITE\", \"vintage\": \"2022\", \"quantity\": 1, \"price\": 14}},"
+                        + "{\"key\": \"k3\", \"op\": \"UPDATE\", \"id\": " + id + ", \"wine\": {\"name\": \"Barolo\", \"type\": \"RED\", \"vintage\": \"2016\", \"quantity\": 7, \"price\": 40}}"
+                        + "]}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void deletingIsASelectTheDeleteAndTheStats() throws Exception {
+        TestUser user = register();
+        long id = createWine(user, wine("Barolo", "RED", "2016", 6, 40.0)).get("id").asLong();
+
+        performWithin(PRINCIPAL + 3, authorized(delete("/wines/{id}", id), user))
+                .andExpect(status().isNoContent());
+    }
+}
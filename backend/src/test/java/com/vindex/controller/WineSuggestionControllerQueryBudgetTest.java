@@ -0,0 +1,15 @@
+package com.vindex.controller;
+
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WineSuggestionControllerQueryBudgetTest extends IntegrationTest {
+
+    @Test
+    void anonymousSearchNeverTouchesTheDatabase() throws Exception {
+        performWithin(0, get("/wines/search").param("query", "Barolo")).andExpect(status().isOk());
+    }
+}
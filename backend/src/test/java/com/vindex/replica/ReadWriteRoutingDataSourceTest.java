@@ -0,0 +1,55 @@
+package com.vindex.replica;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final ReplicaRegistry replicas = new ReplicaRegistry(Map.of("primary", replica), 2000, 3000);
+    private final ReadWriteRoutingDataSource routing =
+            new ReadWriteRoutingDataSource(primary, replicas, "primary", new SimpleMeterRegistry());
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void explicitCredentialsAreRoutedLikeDefaultOnes() throws SQLException {
+        Connection onPrimary = mock(Connection.class);
+        Connection onReplica = mock(Connection.class);
+        when(primary.getConnection("reporting", "secret")).thenReturn(onPrimary);
+        when(replica.getConnection("reporting", "secret")).thenReturn(onReplica);
+        replicas.recordLag("primary", 100);
+
+        assertThat(routing.getConnection("reporting", "secret")).isSameAs(onPrimary);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routing.getConnection("reporting", "secret")).isSameAs(onReplica);
+    }
+
+    @Test
+    void refusedReplicaFallsBackToThePrimaryWithTheSameCredentials() throws SQLException {
+        Connection onPrimary = mock(Connection.class);
+        when(primary.getConnection("reporting", "secret")).thenReturn(onPrimary);
+        when(replica.getConnection("reporting", "secret")).thenThrow(new SQLException("too many connections"));
+        replicas.recordLag("primary", 100);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(routing.getConnection("reporting", "secret")).isSameAs(onPrimary);
+        assertThat(replicas.usableReplica("primary")).isNull();
+    }
+}
@@ -0,0 +1,48 @@
+package com.vindex.replica;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRegistryTest {
+
+    private final DataSource replica = new DriverManagerDataSource();
+    private final ReplicaRegistry registry = new ReplicaRegistry(Map.of("primary", replica), 2000, 3000);
+
+    @Test
+    void replicaServesReadsOnlyOnceItsLagIsKnownAndSmall() {
+        assertThat(registry.lagMs("primary")).isEqualTo(ReplicaRegistry.UNKNOWN_LAG);
+        assertThat(registry.usableReplica("primary")).isNull();
+
+        registry.recordLag("primary", 500);
+        assertThat(registry.usableReplica("primary")).isSameAs(replica);
+
+        registry.recordLag("primary", 2500);
+        assertThat(registry.usableReplica("primary")).isNull();
+
+        registry.recordLag("primary", ReplicaRegistry.UNKNOWN_LAG);
+        assertThat(registry.usableReplica("primary")).isNull();
+        assertThat(registry.usableReplica("shard2")).isNull();
+    }
+
+    @Test
+    void readingOlderThanTheMaximumAgeCountsAsUnknown() {
+        long now = System.currentTimeMillis();
+
+        registry.recordLag("primary", 0, now - 2000);
+        assertThat(registry.lagMs("primary")).isZero();
+        assertThat(registry.usableReplica("primary")).isSameAs(replica);
+
+        // The heartbeat stalled: the last good reading no longer vouches for the replica
+        registry.recordLag("primary", 0, now - 10_000);
+        assertThat(registry.lagMs("primary")).isEqualTo(ReplicaRegistry.UNKNOWN_LAG);
+        assertThat(registry.usableReplica("primary")).isNull();
+
+        registry.recordLag("primary", 100);
+        assertThat(registry.usableReplica("primary")).isSameAs(replica);
+    }
+}
@@ -0,0 +1,45 @@
+package com.vindex.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IteratedPbkdf2PasswordEncoderTest {
+
+    @Test
+    void hashesRecordTheirIterationCount() {
+        String hash = new IteratedPbkdf2PasswordEncoder(1000, 500).encode("secret");
+
+        assertThat(hash).startsWith("1000$");
+    }
+
+    @Test
+    void raisingTheCountKeepsOldHashesValidAndMarksThemForUpgrade() {
+        String hash = new IteratedPbkdf2PasswordEncoder(1000, 500).encode("secret");
+        IteratedPbkdf2PasswordEncoder raised = new IteratedPbkdf2PasswordEncoder(2000, 500);
+
+        assertThat(raised.matches("secret", hash)).isTrue();
+        assertThat(raised.matches("wrong", hash)).isFalse();
+        assertThat(raised.upgradeEncoding(hash)).isTrue();
+        assertThat(raised.upgradeEncoding(raised.encode("secret"))).isFalse();
+    }
+
+    @Test
+    void hashesWithoutACountUseTheLegacyCountAndAreUpgraded() {
+        String legacy = new Pbkdf2PasswordEncoder("", 16, 500,
+                Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256).encode("secret");
+        IteratedPbkdf2PasswordEncoder encoder = new IteratedPbkdf2PasswordEncoder(500, 500);
+
+        assertThat(encoder.matches("secret", legacy)).isTrue();
+        assertThat(encoder.upgradeEncoding(legacy)).isTrue();
+    }
+
+    @Test
+    void unreadableHashesNeverMatch() {
+        IteratedPbkdf2PasswordEncoder encoder = new IteratedPbkdf2PasswordEncoder(1000, 500);
+
+        assertThat(encoder.matches("secret", "abc$0011")).isFalse();
+        assertThat(encoder.matches("secret", "")).isFalse();
+    }
+}
@@ -0,0 +1,88 @@
+package com.vindex.security;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.vindex.config.JwtTokenProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JwtAuthenticationFilterTest {
+
+    private final Logger filterLogger = (Logger) LoggerFactory.getLogger(JwtAuthenticationFilter.class);
+    private final ListAppender<ILoggingEvent> lines = new ListAppender<>();
+    private Level previousLevel;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        previousLevel = filterLogger.getLevel();
+        lines.start();
+        filterLogger.addAppender(lines);
+
+        // A validly signed token for an account that no longer exists
+        JwtTokenProvider tokenProvider = mock(JwtTokenProvider.class);
+        when(tokenProvider.validateToken(anyString())).thenReturn(true);
+        when(tokenProvider.getUsernameFromToken(anyString())).thenReturn("gone@example.com");
+        CustomUserDetailsService userDetailsService = mock(CustomUserDetailsService.class);
+        when(userDetailsService.loadPrincipal(anyString())).thenThrow(new UsernameNotFoundException("User not found"));
+        filter = new JwtAuthenticationFilter(tokenProvider, userDetailsService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        filterLogger.detachAppender(lines);
+        filterLogger.setLevel(previousLevel);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void repeatedFailuresAreLoggedAsThrottledOneLiners() throws Exception {
+        filterLogger.setLevel(Level.INFO);
+
+        for (int i = 0; i < 20; i++) {
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(request(), new MockHttpServletResponse(), chain);
+            // The request still goes on, unauthenticated
+            assertThat(chain.getRequest()).isNotNull();
+        }
+
+        assertThat(lines.list).hasSize(5).allSatisfy(line -> {
+            assertThat(line.getLevel()).isEqualTo(Level.WARN);
+            assertThat(line.getThrowableProxy()).isNull();
+            assertThat(line.getFormattedMessage()).contains("UsernameNotFoundException", "User not found");
+        });
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    @Test
+    void stackTraceIsLoggedAtDebugLevel() throws Exception {
+        filterLogger.setLevel(Level.DEBUG);
+
+        filter.doFilter(request(), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(lines.list).singleElement().satisfies(line -> {
+            assertThat(line.getLevel()).isEqualTo(Level.DEBUG);
+            assertThat(line.getThrowableProxy().getClassName()).isEqualTo(UsernameNotFoundException.class.getName());
+        });
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/wines");
+        request.addHeader("Authorization", "Bearer signed.but.orphaned");
+        return request;
+    }
+}
@@ -0,0 +1,47 @@
+package com.vindex.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchRateLimitFilterTest {
+
+    private final SearchRateLimitFilter filter =
+            new SearchRateLimitFilter(new TokenBucketRateLimiter(2, 0.2, 100, 60_000, 4));
+
+    @Test
+    void anonymousClientsAreLimitedPerAddress() throws Exception {
+        assertThat(search("10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(search("10.0.0.1").getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse limited = search("10.0.0.1");
+        assertThat(limited.getStatus()).isEqualTo(429);
+        assertThat(limited.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+
+        assertThat(search("10.0.0.2").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void otherEndpointsAreNotLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/wines");
+            request.setServletPath("/wines");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            assertThat(response.getStatus()).isEqualTo(200);
+        }
+    }
+
+    private MockHttpServletResponse search(String address) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/wines/search");
+        request.setServletPath("/wines/search");
+        request.setRemoteAddr(address);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,81 @@
+package com.vindex.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketRateLimiterTest {
+
+    @Test
+    void allowsTheBurstThenReportsTheWait() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 0.5, 100, 60_000, 4);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("client")).isZero();
+        }
+        // One token every two seconds
+        assertThat(limiter.tryAcquire("client"))
+                .isGreaterThan(TimeUnit.MILLISECONDS.toNanos(1900))
+                .isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void clientsHaveSeparateBuckets() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 0.01, 100, 60_000, 4);
+
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isPositive();
+        assertThat(limiter.tryAcquire("b")).isZero();
+    }
+
+    @Test
+    void tokensRefillOverTime() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 100, 100, 60_000, 1);
+
+        assertThat(limiter.tryAcquire("client")).isZero();
+        assertThat(limiter.tryAcquire("client")).isPositive();
+        Thread.sleep(30);
+        assertThat(limiter.tryAcquire("client")).isZero();
+    }
+
+    @Test
+    void bucketCountStaysBounded() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, 64, 60_000, 4);
+
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("client-" + i);
+        }
+        assertThat(limiter.size()).isLessThanOrEqualTo(64);
+    }
+
+    @Test
+    void concurrentCallersNeverShareMoreThanTheBurst() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(50, 0.001, 100, 60_000, 16);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 400; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                if (limiter.tryAcquire("shared") == 0) {
+                    allowed.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(allowed.get()).isEqualTo(50);
+    }
+}
@@ -0,0 +1,56 @@
+package com.vindex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vindex.dto.WineRequest;
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CellarStatsIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private CellarStatsService cellarStatsService;
+
+    @Test
+    void incrementalStatsMatchRebuildAfterMixedWrites() throws Exception {
+        TestUser user = register();
+        JsonNode barolo = createWine(user, wine("Barolo", "RED", "2016", 3, 40.0));
+        JsonNode chablis = createWine(user, wine("Chablis", "WHITE", "2020", 6, 22.5));
+        JsonNode cava = createWine(user, wine("Cava", "SPARKLING", null, 2, 9.99));
+
+        WineRequest moved = wine("Barolo", "RED", "2017", 5, 45.0);
+        moved.setCountry("Italy");
+        mockMvc.perform(authorized(put("/wines/{id}", barolo.get("id").asLong()), user)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(moved)))
+                .andExpect(status().isOk());
+        mockMvc.perform(authorized(post("/wines/{id}/consume", chablis.get("id").asLong()), user))
+                .andExpect(status().isOk());
+        mockMvc.perform(authorized(delete("/wines/{id}", cava.get("id").asLong()), user))
+                .andExpect(status().isNoContent());
+
+        JsonNode incremental = stats(user);
+        assertThat(incremental.get("totalWines").asLong()).isEqualTo(2);
+        assertThat(incremental.get("totalBottles").asLong()).isEqualTo(10);
+        assertThat(incremental.get("totalValue").decimalValue()).isEqualByComparingTo("337.50");
+        assertThat(incremental.get("byVintage").has("2016")).isFalse();
+        assertThat(incremental.get("byCountry").get("Italy").get("wines").asLong()).isEqualTo(1);
+
+        cellarStatsService.rebuild(user.id());
+        assertThat(stats(user)).isEqualTo(incremental);
+    }
+
+    private JsonNode stats(TestUser user) throws Exception {
+        return json(mockMvc.perform(authorized(get("/wines/stats"), user))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+}
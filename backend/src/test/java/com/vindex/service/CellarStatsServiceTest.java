@@ -0,0 +1,90 @@
+package com.vindex.service;
+
+import com.vindex.cache.TwoTierCache;
+import com.vindex.dto.CellarStatsResponse;
+import com.vindex.entity.Wine;
+import com.vindex.entity.WineCatalogEntry;
+import com.vindex.repository.CellarStatRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CellarStatsServiceTest {
+
+    private CellarStatRepository repository;
+    private TwoTierCache<CellarStatsResponse> cache;
+    private DataSource dataSource;
+    private CellarStatsService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(CellarStatRepository.class);
+        cache = mock(TwoTierCache.class);
+        dataSource = mock(DataSource.class);
+        service = new CellarStatsService(repository, cache, dataSource);
+    }
+
+    @Test
+    void quantityOnlyUpdateShiftsBottlesWithoutCountingTheWineAgain() throws Exception {
+        PreparedStatement statement = batchStatement();
+        Wine wine = wine(3, 10.0);
+        CellarStatsService.Snapshot before = CellarStatsService.Snapshot.of(wine);
+        wine.setQuantity(5);
+
+        service.recordUpdated(7L, before, wine);
+
+        // TOTAL, TYPE, COUNTRY, REGION and VINTAGE each move by two bottles worth 20.00, in one batch
+        verify(statement, times(5)).addBatch();
+        verify(statement, times(5)).setObject(4, 0L);
+        verify(statement, times(5)).setObject(5, 2L);
+        verify(statement, times(5)).setObject(6, new BigDecimal("20.00"));
+        verify(statement).executeBatch();
+        verify(cache).invalidateAfterCommit("7");
+    }
+
+    @Test
+    void batchThatNetsToNothingWritesNothing() {
+        CellarStatsService.Snapshot snapshot = CellarStatsService.Snapshot.of(wine(2, 15.0));
+
+        service.recordBatch(7L, List.of(snapshot), List.of(snapshot));
+
+        verifyNoInteractions(dataSource);
+        verify(cache, never()).invalidateAfterCommit(anyString());
+    }
+
+    private PreparedStatement batchStatement() throws Exception {
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.supportsBatchUpdates()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.getConnection()).thenReturn(connection);
+        when(statement.executeBatch()).thenReturn(new int[] {1, 1, 1, 1, 1});
+        return statement;
+    }
+
+    private static Wine wine(int quantity, double price) {
+        Wine wine = new Wine();
+        wine.setCatalog(new WineCatalogEntry("Barolo", Wine.WineType.RED, 2016, "Vietti", "Piedmont", "Italy", null));
+        wine.setQuantity(quantity);
+        wine.setPrice(price);
+        return wine;
+    }
+}
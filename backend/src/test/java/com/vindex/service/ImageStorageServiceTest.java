@@ -0,0 +1,117 @@
+package com.vindex.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageStorageServiceTest {
+
+    @TempDir
+    Path storageDir;
+
+    private ImageStorageService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new ImageStorageService(storageDir.toString(), List.of(16, 64), 1, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void identicalUploadsShareOneFile() throws Exception {
+        byte[] png = png(200, 100);
+
+        String first = service.store(new ByteArrayInputStream(png));
+        String second = service.store(new ByteArrayInputStream(png));
+
+        assertThat(first).isEqualTo(second).startsWith(ImageStorageService.URL_PREFIX).endsWith(".png");
+        String fileName = first.substring(ImageStorageService.URL_PREFIX.length());
+        Path original = service.findOriginal(fileName).orElseThrow();
+        assertThat(Files.readAllBytes(original)).isEqualTo(png);
+        try (var files = Files.walk(storageDir.resolve("originals"))) {
+            assertThat(files.filter(Files::isRegularFile).count()).isEqualTo(1);
+        }
+        try (var files = Files.list(storageDir.resolve("tmp"))) {
+            assertThat(files.filter(path -> path.getFileName().toString().startsWith("upload-"))).isEmpty();
+        }
+    }
+
+    @Test
+    void rejectsContentThatIsNotAnImage() {
+        byte[] text = "definitely not a label".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> service.store(new ByteArrayInputStream(text)))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Only JPEG, PNG and GIF");
+    }
+
+    @Test
+    void generatesThumbnailsInTheBackground() throws Exception {
+        String url = service.store(new ByteArrayInputStream(png(200, 100)));
+        String hash = url.substring(ImageStorageService.URL_PREFIX.length(), url.length() - ".png".length());
+
+        Path thumbnail = awaitThumbnail(16, hash + ".jpg");
+        BufferedImage image = ImageIO.read(thumbnail.toFile());
+        assertThat(image.getWidth()).isEqualTo(16);
+        assertThat(image.getHeight()).isEqualTo(8);
+        assertThat(awaitThumbnail(64, hash + ".jpg")).exists();
+
+        assertThat(service.findThumbnail(32, hash + ".jpg")).isEmpty();
+    }
+
+    @Test
+    void mapsImageUrlsToTheirGridThumbnail() {
+        String hash = "ab".repeat(32);
+
+        assertThat(service.thumbnailUrlFor(ImageStorageService.URL_PREFIX + hash + ".png"))
+                .isEqualTo(ImageStorageService.URL_PREFIX + "thumbs/16/" + hash + ".jpg");
+        assertThat(service.thumbnailUrlFor(RemoteImageProxyService.PROXY_PATH + "?url=x"))
+                .isEqualTo(RemoteImageProxyService.PROXY_PATH + "?url=x&w=16");
+        assertThat(service.thumbnailUrlFor("https://example.com/label.jpg")).isEqualTo("https://example.com/label.jpg");
+        assertThat(service.thumbnailUrlFor(null)).isNull();
+    }
+
+    @Test
+    void ignoresNamesOutsideTheStore() {
+        assertThat(service.findOriginal("../../etc/passwd")).isEmpty();
+        assertThat(service.findOriginalByHash("not-a-hash")).isEmpty();
+    }
+
+    private Path awaitThumbnail(int size, String fileName) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            Optional<Path> thumbnail = service.findThumbnail(size, fileName);
+            if (thumbnail.isPresent()) {
+                return thumbnail.get();
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Thumbnail " + size + "/" + fileName + " was not generated");
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
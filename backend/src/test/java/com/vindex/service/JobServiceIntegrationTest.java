@@ -0,0 +1,128 @@
+package com.vindex.service;
+
+import com.vindex.entity.Job;
+import com.vindex.repository.JobRepository;
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JobServiceIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void clearQueue() {
+        // Tests share the jobs table; leftovers of earlier tests must not be claimed here
+        new JdbcTemplate(dataSource).update("UPDATE jobs SET status = 'FAILED' WHERE status IN ('QUEUED', 'RUNNING')");
+    }
+
+    @Test
+    void concurrentClaimsSkipRowsLockedByAnotherWorker() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            jobService.enqueue(Job.JobType.LABEL_SCAN, null, Map.of("n", i), 3);
+        }
+
+        CountDownLatch firstHoldsLocks = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CompletableFuture<List<Long>> first = CompletableFuture.supplyAsync(() -> transaction.execute(status -> {
+            List<Long> ids = jobService.claim(Job.JobType.LABEL_SCAN, 2, "worker-a").stream().map(Job::getId).toList();
+            firstHoldsLocks.countDown();
+            await(secondDone);
+            return ids;
+        }));
+
+        await(firstHoldsLocks);
+        // Would block on the first worker's row locks without SKIP LOCKED
+        List<Long> second = CompletableFuture.supplyAsync(() -> jobService.claim(Job.JobType.LABEL_SCAN, 4, "worker-b")
+                        .stream().map(Job::getId).toList())
+                .get(10, TimeUnit.SECONDS);
+        secondDone.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).hasSize(2);
+        assertThat(second).hasSize(2).doesNotContainAnyElementsOf(first.get());
+        assertThat(jobRepository.findAllById(first.get())).allSatisfy(job -> assertThat(job.getLockedBy()).isEqualTo("worker-a"));
+        assertThat(jobRepository.findAllById(second)).allSatisfy(job -> assertThat(job.getLockedBy()).isEqualTo("worker-b"));
+    }
+
+    @Test
+    void aWorkerWhoseLeaseWasReapedCannotFinishTheJob() {
+        Long id = jobService.enqueue(Job.JobType.LABEL_SCAN, null, Map.of(), 3).getId();
+        assertThat(jobService.claim(Job.JobType.LABEL_SCAN, 1, "worker-a")).hasSize(1);
+
+        assertThat(jobService.requeueStale(LocalDateTime.now().plusSeconds(1))).isEqualTo(1);
+        assertThat(jobService.claim(Job.JobType.LABEL_SCAN, 1, "worker-b")).hasSize(1);
+
+        assertThat(jobService.reportProgress(id, "worker-a", 50)).isFalse();
+        assertThat(jobService.complete(id, "worker-a", Map.of("from", "a"))).isFalse();
+        assertThat(jobService.fail(id, "worker-a", new IllegalStateException("late"))).isFalse();
+        Job job = jobRepository.findById(id).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(Job.JobStatus.RUNNING);
+        assertThat(job.getLockedBy()).isEqualTo("worker-b");
+        assertThat(job.getErrorMessage()).isNull();
+
+        assertThat(jobService.complete(id, "worker-b", Map.of("from", "b"))).isTrue();
+        job = jobRepository.findById(id).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(Job.JobStatus.SUCCEEDED);
+        assertThat(job.getResult()).contains("\"b\"");
+        assertThat(job.getLockedBy()).isNull();
+        assertThat(job.getProgress()).isEqualTo(100);
+
+        assertThat(jobService.complete(id, "worker-b", Map.of())).isFalse();
+    }
+
+    @Test
+    void failuresBackOffUntilAttemptsAreUsedUp() {
+        Long id = jobService.enqueue(Job.JobType.LABEL_SCAN, null, Map.of(), 2).getId();
+
+        jobService.claim(Job.JobType.LABEL_SCAN, 1, "worker-a");
+        assertThat(jobService.fail(id, "worker-a", new IllegalStateException("first"))).isTrue();
+        Job job = jobRepository.findById(id).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(Job.JobStatus.QUEUED);
+        assertThat(job.getRunAfter()).isAfter(LocalDateTime.now());
+        assertThat(jobService.claim(Job.JobType.LABEL_SCAN, 1, "worker-a")).isEmpty();
+
+        new JdbcTemplate(dataSource).update("UPDATE jobs SET run_after = NOW() - INTERVAL 1 SECOND WHERE id = ?", id);
+        jobService.claim(Job.JobType.LABEL_SCAN, 1, "worker-a");
+        assertThat(jobService.fail(id, "worker-a", new IllegalStateException("second"))).isTrue();
+        job = jobRepository.findById(id).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(Job.JobStatus.FAILED);
+        assertThat(job.getErrorMessage()).isEqualTo("second");
+        assertThat(job.getLockedBy()).isNull();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.vindex.service;
+
+import com.vindex.dto.WineSuggestionDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class LabelScanServiceTest {
+
+    private final LabelRecognizer stub = new StubLabelRecognizer(mock(WineSuggestionService.class));
+    private final LabelRecognizer vision = new LabelRecognizer() {
+        @Override
+        public String getName() {
+            return "vision";
+        }
+
+        @Override
+        public List<WineSuggestionDto> recognize(byte[] image, String hint) {
+            return List.of();
+        }
+    };
+
+    @Test
+    void picksTheRecognizerNamedByTheProperty() {
+        assertThat(service("vision")).extracting("labelRecognizer").isSameAs(vision);
+        assertThat(service("stub")).extracting("labelRecognizer").isSameAs(stub);
+    }
+
+    @Test
+    void failsFastOnAnUnknownRecognizer() {
+        assertThatThrownBy(() -> service("cloud"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("'cloud'")
+                .hasMessageContaining("[stub, vision]");
+    }
+
+    private LabelScanService service(String recognizer) {
+        return new LabelScanService(mock(CurrentUserService.class), mock(ImageStorageService.class),
+                mock(JobService.class), List.of(stub, vision), recognizer);
+    }
+}
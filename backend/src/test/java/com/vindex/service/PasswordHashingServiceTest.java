@@ -0,0 +1,71 @@
+package com.vindex.service;
+
+import com.vindex.exception.OverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordHashingServiceTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PasswordHashingService service;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void callsBeyondThreadsAndQueueAreRejectedWithoutWaiting() throws Exception {
+        PasswordEncoder encoder = mock(PasswordEncoder.class);
+        when(encoder.encode(any())).thenAnswer(invocation -> {
+            release.await();
+            return "hash";
+        });
+        service = new PasswordHashingService(encoder, 1, 1, 10_000);
+
+        // One call runs, one waits in the queue, the third has nowhere to go
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(CompletableFuture.supplyAsync(() -> service.encode("secret"), Executors.newSingleThreadExecutor()));
+        }
+        CompletableFuture<Object> first = CompletableFuture.anyOf(calls.toArray(CompletableFuture[]::new));
+        assertThatThrownBy(() -> first.get(2, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(OverloadedException.class);
+
+        release.countDown();
+        long completed = calls.stream().filter(call -> {
+            try {
+                return "hash".equals(call.get(5, TimeUnit.SECONDS));
+            } catch (Exception ex) {
+                return false;
+            }
+        }).count();
+        assertThat(completed).isEqualTo(2);
+    }
+
+    @Test
+    void slowHashTimesOutAsOverloaded() {
+        PasswordEncoder encoder = mock(PasswordEncoder.class);
+        when(encoder.matches(any(), any())).thenAnswer(invocation -> release.await(10, TimeUnit.SECONDS));
+        service = new PasswordHashingService(encoder, 1, 4, 50);
+
+        assertThatThrownBy(() -> service.matches("a", "hash")).isInstanceOf(OverloadedException.class);
+    }
+}
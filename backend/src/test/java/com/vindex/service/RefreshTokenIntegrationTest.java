@@ -0,0 +1,68 @@
+package com.vindex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.ResultActions;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RefreshTokenIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void devicesRotateIndependentlyAndReuseRevokesOnlyThatFamily() throws Exception {
+        TestUser user = register();
+        String phone = login(user);
+        String laptop = login(user);
+
+        String phoneNext = refreshToken(refresh(phone).andExpect(status().isOk()));
+        refresh(phone).andExpect(status().isUnauthorized());
+        // The replayed token revoked its whole family, including the successor
+        refresh(phoneNext).andExpect(status().isUnauthorized());
+
+        String laptopNext = refreshToken(refresh(laptop).andExpect(status().isOk()));
+        refresh(laptopNext).andExpect(status().isOk());
+    }
+
+    @Test
+    void onlyHashesAreStored() throws Exception {
+        TestUser user = register();
+        String token = login(user);
+
+        List<Map<String, Object>> rows = new JdbcTemplate(dataSource)
+                .queryForList("SELECT token_hash FROM refresh_tokens WHERE user_id = ?", user.id());
+        assertThat(rows).hasSize(2);
+        assertThat(rows).allSatisfy(row -> assertThat((String) row.get("token_hash"))
+                .hasSize(64)
+                .isNotEqualTo(token));
+    }
+
+    private String login(TestUser user) throws Exception {
+        String body = objectMapper.writeValueAsString(Map.of("email", user.email(), "password", "correct horse battery"));
+        return refreshToken(mockMvc.perform(post("/auth/login").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk()));
+    }
+
+    private ResultActions refresh(String refreshToken) throws Exception {
+        return mockMvc.perform(post("/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("refreshToken", refreshToken))));
+    }
+
+    private String refreshToken(ResultActions result) throws Exception {
+        JsonNode response = json(result.andReturn().getResponse().getContentAsString());
+        return response.get("refreshToken").asText();
+    }
+}
@@ -0,0 +1,130 @@
+package com.vindex.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RemoteImageProxyServiceTest {
+
+    @TempDir
+    Path storageDir;
+
+    private HttpServer server;
+    private String base;
+    private byte[] png;
+    private final AtomicInteger imageFetches = new AtomicInteger();
+    private final AtomicInteger outsideFetches = new AtomicInteger();
+    private RemoteImageProxyService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        png = png();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        int port = server.getAddress().getPort();
+        base = "http://127.0.0.1:" + port;
+
+        server.createContext("/label.png", exchange -> {
+            imageFetches.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            respond(exchange, 200, png);
+        });
+        server.createContext("/moved.png", exchange -> redirect(exchange, "/label.png"));
+        server.createContext("/escape.png", exchange -> redirect(exchange, "http://localhost:" + port + "/outside.png"));
+        server.createContext("/loop.png", exchange -> redirect(exchange, "/loop.png"));
+        server.createContext("/outside.png", exchange -> {
+            outsideFetches.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            respond(exchange, 200, png);
+        });
+        server.start();
+
+        service = new RemoteImageProxyService(storageDir.toString(), List.of("127.0.0.1"), List.of(16),
+                1 << 20, 1 << 20, Duration.ofDays(1), Duration.ofSeconds(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void cachesTheFirstFetch() throws Exception {
+        RemoteImageProxyService.CachedImage first = service.get(base + "/label.png", null);
+        RemoteImageProxyService.CachedImage second = service.get(base + "/label.png", null);
+
+        assertThat(Files.readAllBytes(first.getPath())).isEqualTo(png);
+        assertThat(first.getContentType()).isEqualTo("image/png");
+        assertThat(second.getEtag()).isEqualTo(first.getEtag());
+        assertThat(imageFetches).hasValue(1);
+    }
+
+    @Test
+    void followsRedirectsWithinAllowedHosts() throws Exception {
+        RemoteImageProxyService.CachedImage image = service.get(base + "/moved.png", null);
+
+        assertThat(Files.readAllBytes(image.getPath())).isEqualTo(png);
+        assertThat(imageFetches).hasValue(1);
+    }
+
+    @Test
+    void refusesRedirectsToOtherHosts() {
+        assertThatThrownBy(() -> service.get(base + "/escape.png", null))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Remote image unavailable");
+        assertThat(outsideFetches).hasValue(0);
+    }
+
+    @Test
+    void givesUpOnRedirectLoops() {
+        assertThatThrownBy(() -> service.get(base + "/loop.png", null))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Remote image unavailable");
+    }
+
+    @Test
+    void rejectsHostsOutsideTheAllowList() {
+        assertThatThrownBy(() -> service.get("http://localhost/label.png", null))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Image host not allowed");
+        assertThat(service.proxyUrlFor("http://localhost/label.png")).isEqualTo("http://localhost/label.png");
+        assertThat(service.proxyUrlFor(base + "/label.png")).startsWith(RemoteImageProxyService.PROXY_PATH + "?url=");
+    }
+
+    private static void redirect(HttpExchange exchange, String location) throws IOException {
+        exchange.getResponseHeaders().add("Location", location);
+        respond(exchange, 302, new byte[0]);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] png() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
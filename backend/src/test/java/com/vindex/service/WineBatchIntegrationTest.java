@@ -0,0 +1,135 @@
+package com.vindex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vindex.dto.WineBatchRequest;
+import com.vindex.dto.WineRequest;
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WineBatchIntegrationTest extends IntegrationTest {
+
+    @Test
+    void mixedBatchIsAppliedWithItsStats() throws Exception {
+        TestUser user = register();
+        JsonNode barolo = createWine(user, wine("Barolo", "RED", "2016", 3, 40.0));
+        JsonNode cava = createWine(user, wine("Cava", "SPARKLING", "2021", 2, 10.0));
+
+        JsonNode response = batch(user, WineBatchRequest.Mode.ATOMIC, status().isOk(),
+                create(wine("Chablis", "WHITE", "2020", 6, 20.0)),
+                create(wine("Rioja", "RED", "2018", 1, 15.0)),
+                update(barolo.get("id").asLong(), wine("Barolo", "RED", "2016", 5, 40.0)),
+                delete(cava.get("id").asLong()));
+
+        assertThat(response.get("applied").asInt()).isEqualTo(4);
+        assertThat(statuses(response)).containsExactly(201, 201, 200, 204);
+        assertThat(response.get("results").get(0).get("wine").get("name").asText()).isEqualTo("Chablis");
+        assertThat(response.get("results").get(2).get("wine").get("quantity").asInt()).isEqualTo(5);
+
+        assertThat(names(listWines(user))).containsExactlyInAnyOrder("Barolo", "Chablis", "Rioja");
+        JsonNode stats = stats(user);
+        assertThat(stats.get("totalWines").asLong()).isEqualTo(3);
+        assertThat(stats.get("totalBottles").asLong()).isEqualTo(12);
+        assertThat(stats.get("totalValue").decimalValue()).isEqualByComparingTo("335.00");
+    }
+
+    @Test
+    void atomicBatchWritesNothingWhenAnOperationFails() throws Exception {
+        TestUser user = register();
+        JsonNode barolo = createWine(user, wine("Barolo", "RED", "2016", 3, 40.0));
+
+        JsonNode response = batch(user, WineBatchRequest.Mode.ATOMIC, status().isUnprocessableEntity(),
+                create(wine("Chablis", "WHITE", "2020", 6, 20.0)),
+                update(barolo.get("id").asLong(), wine("Barolo", "RED", "2016", 9, 40.0)),
+                delete(Long.MAX_VALUE));
+
+        assertThat(response.get("committed").asBoolean()).isFalse();
+        assertThat(statuses(response)).containsExactly(424, 424, 404);
+        JsonNode wines = listWines(user);
+        assertThat(names(wines)).containsExactly("Barolo");
+        assertThat(wines.get(0).get("quantity").asInt()).isEqualTo(3);
+        assertThat(stats(user).get("totalBottles").asLong()).isEqualTo(3);
+    }
+
+    @Test
+    void bestEffortSkipsStaleAndRepeatedTargets() throws Exception {
+        TestUser user = register();
+        JsonNode barolo = createWine(user, wine("Barolo", "RED", "2016", 3, 40.0));
+        long id = barolo.get("id").asLong();
+        long version = barolo.get("version").asLong();
+
+        WineBatchRequest.Operation stale = update(id, wine("Barolo", "RED", "2016", 1, 40.0));
+        stale.setBaseVersion(version + 1);
+        JsonNode response = batch(user, WineBatchRequest.Mode.BEST_EFFORT, status().isOk(),
+                stale,
+                create(wine("Chablis", "WHITE", "2020", 6, 20.0)));
+        assertThat(statuses(response)).containsExactly(409, 201);
+        assertThat(response.get("results").get(0).get("wine").get("quantity").asInt()).isEqualTo(3);
+
+        JsonNode twice = batch(user, WineBatchRequest.Mode.BEST_EFFORT, status().isOk(),
+                update(id, wine("Barolo", "RED", "2016", 4, 40.0)),
+                delete(id));
+        assertThat(statuses(twice)).containsExactly(200, 409);
+        assertThat(names(listWines(user))).containsExactlyInAnyOrder("Barolo", "Chablis");
+    }
+
+    private JsonNode batch(TestUser user, WineBatchRequest.Mode mode, ResultMatcher expected,
+                           WineBatchRequest.Operation... operations) throws Exception {
+        WineBatchRequest request = new WineBatchRequest();
+        request.setMode(mode);
+        request.setOperations(List.of(operations));
+        return json(mockMvc.perform(authorized(post("/wines/batch"), user)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(expected)
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private JsonNode listWines(TestUser user) throws Exception {
+        return json(mockMvc.perform(authorized(get("/wines"), user))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private JsonNode stats(TestUser user) throws Exception {
+        return json(mockMvc.perform(authorized(get("/wines/stats"), user))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private static WineBatchRequest.Operation create(WineRequest wine) {
+        return operation(WineBatchRequest.Type.CREATE, null, wine);
+    }
+
+    private static WineBatchRequest.Operation update(long id, WineRequest wine) {
+        return operation(WineBatchRequest.Type.UPDATE, id, wine);
+    }
+
+    private static WineBatchRequest.Operation delete(long id) {
+        return operation(WineBatchRequest.Type.DELETE, id, null);
+    }
+
+    private static WineBatchRequest.Operation operation(WineBatchRequest.Type type, Long id, WineRequest wine) {
+        WineBatchRequest.Operation operation = new WineBatchRequest.Operation();
+        operation.setOp(type);
+        operation.setId(id);
+        operation.setWine(wine);
+        return operation;
+    }
+
+    private static List<Integer> statuses(JsonNode response) {
+        return response.get("results").findValues("status").stream().map(JsonNode::asInt).toList();
+    }
+
+    private static List<String> names(JsonNode wines) {
+        return wines.findValues("name").stream().map(JsonNode::asText).toList();
+    }
+}
@@ -0,0 +1,86 @@
+package com.vindex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vindex.dto.WineRequest;
+import com.vindex.repository.WineRepository;
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WineCatalogIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private WineRepository wineRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void wineCanBeSavedAgainWithAnUnchangedIdentity() throws Exception {
+        TestUser user = register();
+        JsonNode barolo = createWine(user, wine("Barolo", "RED", "2016", 3, 40.0));
+
+        JsonNode updated = update(user, barolo.get("id").asLong(), wine("Barolo", "RED", "2016", 4, 42.0));
+
+        assertThat(updated.get("quantity").asInt()).isEqualTo(4);
+        assertThat(updated.get("version").asLong()).isGreaterThan(barolo.get("version").asLong());
+    }
+
+    @Test
+    void enrichmentOnlyRepointsWinesStillOnTheCatalogRowItRead() throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        TestUser user = register();
+        long plain = createWine(user, wine("Barolo", "RED", "2016", 3, 40.0)).get("id").asLong();
+        long edited = createWine(user, wine("Barolo", "RED", "2016", 2, 40.0)).get("id").asLong();
+        WineRequest complete = wine("Barolo", "RED", "2016", 1, 40.0);
+        complete.setWinery("Vietti");
+        long reference = createWine(user, complete).get("id").asLong();
+        byte[] read = catalogOf(jdbc, plain);
+        byte[] enrichedRow = catalogOf(jdbc, reference);
+        byte[] identityKey = jdbc.queryForObject("SELECT identity_key FROM wines WHERE id = ?", byte[].class, reference);
+
+        // The owner edits one wine between the enrichment read and its write
+        WineRequest renamed = wine("Barolo Riserva", "RED", "2016", 2, 40.0);
+        long versionAfterEdit = update(user, edited, renamed).get("version").asLong();
+
+        Integer applied = transactionTemplate.execute(status -> wineRepository.applyEnrichment(List.of(plain, edited),
+                read, enrichedRow, identityKey, null, LocalDateTime.now()));
+        Integer again = transactionTemplate.execute(status -> wineRepository.applyEnrichment(List.of(plain),
+                read, enrichedRow, identityKey, null, LocalDateTime.now()));
+
+        assertThat(applied).isEqualTo(1);
+        assertThat(again).isZero();
+        assertThat(catalogOf(jdbc, plain)).isEqualTo(enrichedRow);
+        assertThat(jdbc.queryForObject("SELECT version FROM wines WHERE id = ?", Long.class, plain)).isEqualTo(1);
+        assertThat(jdbc.queryForObject("SELECT c.wine_name FROM wines w JOIN wine_catalog c ON c.id = w.catalog_id "
+                + "WHERE w.id = ?", String.class, edited)).isEqualTo("Barolo Riserva");
+        assertThat(jdbc.queryForObject("SELECT version FROM wines WHERE id = ?", Long.class, edited))
+                .isEqualTo(versionAfterEdit);
+    }
+
+    private JsonNode update(TestUser user, long id, WineRequest request) throws Exception {
+        return json(mockMvc.perform(authorized(put("/wines/{id}", id), user)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private static byte[] catalogOf(JdbcTemplate jdbc, long wineId) {
+        return jdbc.queryForObject("SELECT catalog_id FROM wines WHERE id = ?", byte[].class, wineId);
+    }
+}
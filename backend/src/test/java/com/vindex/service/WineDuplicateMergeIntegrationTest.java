@@ -0,0 +1,126 @@
+package com.vindex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vindex.dto.WineRequest;
+import com.vindex.entity.Wine;
+import com.vindex.repository.WineRepository;
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WineDuplicateMergeIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private WineService wineService;
+
+    @Autowired
+    private WineRepository wineRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void mergesCopiesInTheSamePlaceAndKeepsWhatTheyCarried() throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        TestUser user = register();
+        long oldest = createWine(user, wine("Barolo", "RED", "2016", 2, 40.0)).get("id").asLong();
+        long copy = createWine(user, wine("Barolo", "RED", "2016", 2, 55.0)).get("id").asLong();
+        WineRequest inFridge = wine("Barolo", "RED", "2016", 3, 40.0);
+        inFridge.setLocation("FRIDGE");
+        inFridge.setRowId(2);
+        long elsewhere = createWine(user, inFridge).get("id").asLong();
+
+        mockMvc.perform(authorized(post("/wines/{id}/consume", copy), user)).andExpect(status().isOk());
+        jdbc.update("UPDATE wines SET notes = ? WHERE id = ?", "Gift from Anna", oldest);
+        jdbc.update("UPDATE wines SET notes = ? WHERE id = ?", "Opened one at dinner", copy);
+        jdbc.update("INSERT INTO wine_positions (wine_id, shelf_number, position_on_shelf) VALUES (?, 3, 4)", copy);
+
+        List<WineRepository.DuplicateGroup> groups = wineRepository.findDuplicateGroups(100_000).stream()
+                .filter(group -> group.getUserId() == user.id())
+                .collect(Collectors.toList());
+        assertThat(groups).hasSize(1);
+        assertThat(groups.get(0).getLocation()).isEqualTo("CELLAR");
+        assertThat(groups.get(0).getRowId()).isNull();
+
+        int merged = wineService.mergeDuplicates(user.id(), groups.get(0).getIdentityKey(),
+                Wine.WineLocation.CELLAR, null);
+
+        assertThat(merged).isEqualTo(1);
+        JsonNode wines = json(mockMvc.perform(authorized(get("/wines"), user))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertThat(wines.findValues("id").stream().map(JsonNode::asLong).toList())
+                .containsExactlyInAnyOrder(oldest, elsewhere);
+        JsonNode survivor = wines.get(0).get("id").asLong() == oldest ? wines.get(0) : wines.get(1);
+        assertThat(survivor.get("quantity").asInt()).isEqualTo(3);
+        // 2 at 40.00 and 1 at 55.00
+        assertThat(survivor.get("price").asDouble()).isEqualTo(45.0);
+
+        assertThat(jdbc.queryForObject("SELECT notes FROM wines WHERE id = ?", String.class, oldest))
+                .isEqualTo("Gift from Anna\n\nOpened one at dinner");
+        assertThat(jdbc.queryForList("SELECT wine_id FROM wine_positions WHERE shelf_number = 3 AND position_on_shelf = 4 "
+                + "AND wine_id IN (?, ?)", Long.class, oldest, copy)).containsExactly(oldest);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM wine_quantity_events WHERE wine_id = ?", Integer.class, oldest))
+                .isEqualTo(1);
+
+        JsonNode stats = json(mockMvc.perform(authorized(get("/wines/stats"), user))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertThat(stats.get("totalWines").asLong()).isEqualTo(2);
+        assertThat(stats.get("totalBottles").asLong()).isEqualTo(6);
+        assertThat(stats.get("totalValue").decimalValue()).isEqualByComparingTo("255.00");
+    }
+
+    @Test
+    void concurrentIncrementsOfTheSameWineAddUpInOneRow() throws Exception {
+        TestUser user = register();
+        WineRequest barolo = wine("Barolo", "RED", "2016", 2, 40.0);
+
+        // Both posts arrive while the user's row is held, so their probes and inserts race
+        List<CompletableFuture<Integer>> posts = transactionTemplate.execute(status -> {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            jdbc.queryForObject("SELECT id FROM users WHERE id = ? FOR UPDATE", Long.class, user.id());
+            List<CompletableFuture<Integer>> started = List.of(increment(user, barolo), increment(user, barolo));
+            awaitLockWaits(jdbc, 2);
+            return started;
+        });
+
+        List<Integer> statuses = List.of(posts.get(0).get(30, TimeUnit.SECONDS), posts.get(1).get(30, TimeUnit.SECONDS));
+        assertThat(statuses).containsExactlyInAnyOrder(201, 200);
+        JsonNode wines = json(mockMvc.perform(authorized(get("/wines"), user))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertThat(wines).hasSize(1);
+        assertThat(wines.get(0).get("quantity").asInt()).isEqualTo(4);
+    }
+
+    private CompletableFuture<Integer> increment(TestUser user, WineRequest request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return mockMvc.perform(authorized(post("/wines").param("onDuplicate", "INCREMENT"), user)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsBytes(request)))
+                        .andReturn().getResponse().getStatus();
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+}
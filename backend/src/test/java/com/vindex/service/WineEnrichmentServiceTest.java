@@ -0,0 +1,104 @@
+package com.vindex.service;
+
+import com.vindex.cache.CellarFacetIndex;
+import com.vindex.cache.CellarSnapshotCache;
+import com.vindex.repository.WineRepository;
+import com.vindex.shard.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WineEnrichmentServiceTest {
+
+    private WineRepository wineRepository;
+    private WineSuggestionService wineSuggestionService;
+    private WineEnrichmentService service;
+
+    @BeforeEach
+    void setUp() {
+        wineRepository = mock(WineRepository.class);
+        wineSuggestionService = mock(WineSuggestionService.class);
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(shardRouter).forEachShard(any());
+
+        // One Snooth request right away, the next one only after about 1000 seconds
+        service = new WineEnrichmentService(wineRepository, wineSuggestionService, mock(WineCatalogService.class),
+                mock(CellarStatsService.class), mock(CellarSnapshotCache.class), mock(CellarFacetIndex.class),
+                mock(TransactionTemplate.class), shardRouter, new SimpleMeterRegistry(), 0.001, 1);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "batchSize", 200);
+        ReflectionTestUtils.setField(service, "maxBatchesPerRun", 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void waitingForTheRemoteRateLimitDoesNotHoldTheSchedulerThread() throws Exception {
+        List<WineRepository.EnrichmentCandidate> candidates = List.of(candidate(1L, "Barolo"), candidate(2L, "Chablis"));
+        when(wineRepository.findEnrichmentCandidates(anyInt())).thenReturn(candidates);
+        when(wineSuggestionService.findInCatalog(anyString(), any())).thenReturn(Optional.empty());
+        when(wineSuggestionService.isRemoteLookupEnabled()).thenReturn(true);
+        CountDownLatch firstRemoteLookup = new CountDownLatch(1);
+        String[] lookupThread = new String[1];
+        when(wineSuggestionService.findRemote(anyString(), any())).thenAnswer(invocation -> {
+            lookupThread[0] = Thread.currentThread().getName();
+            firstRemoteLookup.countDown();
+            return Optional.empty();
+        });
+
+        long start = System.nanoTime();
+        service.trigger();
+        assertThat(firstRemoteLookup.await(5, TimeUnit.SECONDS)).isTrue();
+        // The second wine now waits for a permit, but on the enrichment thread
+        service.trigger();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5_000);
+
+        assertThat(lookupThread[0]).isEqualTo("wine-enrichment");
+        verify(wineRepository, times(1)).findEnrichmentCandidates(anyInt());
+        verify(wineSuggestionService, times(1)).findRemote(anyString(), any());
+    }
+
+    @Test
+    void doesNothingWhenDisabled() {
+        ReflectionTestUtils.setField(service, "enabled", false);
+
+        service.trigger();
+        service.shutdown();
+
+        verify(wineRepository, times(0)).findEnrichmentCandidates(anyInt());
+    }
+
+    private static WineRepository.EnrichmentCandidate candidate(long id, String name) {
+        WineRepository.EnrichmentCandidate candidate = mock(WineRepository.EnrichmentCandidate.class);
+        when(candidate.getId()).thenReturn(id);
+        when(candidate.getUserId()).thenReturn(7L);
+        when(candidate.getWineName()).thenReturn(name);
+        when(candidate.getWineType()).thenReturn("RED");
+        when(candidate.getVintageYear()).thenReturn(2016);
+        return candidate;
+    }
+}
@@ -0,0 +1,95 @@
+package com.vindex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WineHistoryIntegrationTest extends IntegrationTest {
+
+    @Test
+    void changesShowUpNewestFirstWithQuantitiesAndTastings() throws Exception {
+        TestUser user = register();
+        long wine = createWine(user, wine("Barolo", "RED", "2016", 2, 40.0)).get("id").asLong();
+        mockMvc.perform(authorized(post("/wines/{id}/consume", wine), user)).andExpect(status().isOk());
+        mockMvc.perform(authorized(post("/wines/{id}/consume", wine), user)).andExpect(status().isOk());
+        // Rolled back: nothing to consume, so nothing is recorded
+        mockMvc.perform(authorized(post("/wines/{id}/consume", wine), user)).andExpect(status().isConflict());
+        mockMvc.perform(authorized(post("/wines/{id}/restock", wine), user)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"count\": 6}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(authorized(post("/wines/{id}/tastings", wine), user)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"rating\": 5, \"note\": \"Still closed\"}"))
+                .andExpect(status().isAccepted());
+
+        JsonNode items = awaitHistory(user, 5).get("items");
+
+        assertThat(types(items)).containsExactly("TASTED", "RESTOCKED", "CONSUMED", "CONSUMED", "CREATED");
+        assertThat(items.get(1).get("quantityAfter").asInt()).isEqualTo(6);
+        assertThat(items.get(2).get("quantityAfter").asInt()).isZero();
+        assertThat(items.get(3).get("quantityDelta").asInt()).isEqualTo(-1);
+        assertThat(items.get(0).get("note").asText()).isEqualTo("Still closed");
+        assertThat(items.get(0).get("wineName").asText()).isEqualTo("Barolo");
+    }
+
+    @Test
+    void pagesFollowTheCursorAndFiltersApply() throws Exception {
+        TestUser user = register();
+        long wine = createWine(user, wine("Rioja", "RED", "2018", 6, 18.0)).get("id").asLong();
+        for (int i = 0; i < 4; i++) {
+            mockMvc.perform(authorized(post("/wines/{id}/consume", wine), user)).andExpect(status().isOk());
+        }
+        awaitHistory(user, 5);
+
+        JsonNode first = history(user, get("/wines/history").param("limit", "2"));
+        JsonNode second = history(user, get("/wines/history").param("limit", "2")
+                .param("cursor", first.get("nextCursor").asText()));
+        JsonNode last = history(user, get("/wines/history").param("limit", "2")
+                .param("cursor", second.get("nextCursor").asText()));
+
+        assertThat(first.get("items").get(0).get("quantityAfter").asInt()).isEqualTo(2);
+        assertThat(second.get("items").get(0).get("quantityAfter").asInt()).isEqualTo(4);
+        assertThat(types(last.get("items"))).containsExactly("CREATED");
+        assertThat(last.get("nextCursor").isNull()).isTrue();
+
+        JsonNode consumed = history(user, get("/wines/history").param("type", "CONSUMED"));
+        assertThat(types(consumed.get("items"))).containsOnly("CONSUMED").hasSize(4);
+    }
+
+    /**
+     * The writer batches entries off the request path, so they appear shortly after the change.
+     */
+    private JsonNode awaitHistory(TestUser user, int entries) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        JsonNode page = history(user, get("/wines/history"));
+        while (page.get("items").size() < entries && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            page = history(user, get("/wines/history"));
+        }
+        assertThat(page.get("items")).hasSize(entries);
+        return page;
+    }
+
+    private JsonNode history(TestUser user, MockHttpServletRequestBuilder request) throws Exception {
+        return json(mockMvc.perform(authorized(request, user))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private static List<String> types(JsonNode items) {
+        List<String> types = new ArrayList<>();
+        items.forEach(item -> types.add(item.get("type").asText()));
+        return types;
+    }
+}
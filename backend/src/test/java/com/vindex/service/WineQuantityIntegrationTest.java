@@ -0,0 +1,108 @@
+package com.vindex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WineQuantityIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void concurrentConsumersNeitherLoseUpdatesNorOversell() throws Exception {
+        TestUser user = register();
+        long id = createWine(user, wine("Barolo", "RED", "2016", 10, 40.0)).get("id").asLong();
+
+        ExecutorService devices = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            results.add(devices.submit(() -> consume(user, id)));
+        }
+        devices.shutdown();
+        assertThat(devices.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        int consumed = 0;
+        int conflicts = 0;
+        for (Future<Integer> result : results) {
+            int status = result.get();
+            if (status == 200) {
+                consumed++;
+            } else if (status == 409) {
+                conflicts++;
+            }
+        }
+        assertThat(consumed).isEqualTo(10);
+        assertThat(conflicts).isEqualTo(14);
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        assertThat(jdbc.queryForObject("SELECT quantity FROM wines WHERE id = ?", Integer.class, id)).isZero();
+        assertThat(jdbc.queryForList("SELECT quantity_after FROM wine_quantity_events WHERE wine_id = ?", Integer.class, id))
+                .hasSize(10)
+                .containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        JsonNode stats = json(mockMvc.perform(authorized(get("/wines/stats"), user))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+        assertThat(stats.get("totalBottles").asLong()).isZero();
+    }
+
+    @Test
+    void restockAndConsumeReturnTheNewQuantity() throws Exception {
+        TestUser user = register();
+        long id = createWine(user, wine("Chablis", "WHITE", "2020", 1, 25.0)).get("id").asLong();
+
+        mockMvc.perform(authorized(post("/wines/{id}/restock", id), user)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"count\": 5}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(6));
+        mockMvc.perform(authorized(post("/wines/{id}/consume", id), user)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"count\": 4}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(2));
+        mockMvc.perform(authorized(post("/wines/{id}/consume", id), user)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"count\": 3}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void otherUsersWinesAreNotFound() throws Exception {
+        TestUser owner = register();
+        TestUser other = register();
+        long id = createWine(owner, wine("Rioja", "RED", "2018", 3, 18.0)).get("id").asLong();
+
+        mockMvc.perform(authorized(post("/wines/{id}/consume", id), other)).andExpect(status().isNotFound());
+        mockMvc.perform(authorized(post("/wines/{id}/restock", id), other)).andExpect(status().isNotFound());
+        assertThat(new JdbcTemplate(dataSource).queryForObject("SELECT quantity FROM wines WHERE id = ?", Integer.class, id))
+                .isEqualTo(3);
+    }
+
+    /**
+     * @return the final status; requests shed by the concurrency limiter are retried
+     */
+    private int consume(TestUser user, long id) throws Exception {
+        while (true) {
+            int status = mockMvc.perform(authorized(post("/wines/{id}/consume", id), user))
+                    .andReturn().getResponse().getStatus();
+            if (status != 503) {
+                return status;
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.vindex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vindex.dto.WineBatchRequest;
+import com.vindex.dto.WineReplayRequest;
+import com.vindex.dto.WineReplayResponse;
+import com.vindex.dto.WineRequest;
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WineReplayIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private WineReplayService wineReplayService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void retriedLogIsAnsweredFromStoredOutcomes() throws Exception {
+        TestUser user = register();
+        long barolo = createWine(user, wine("Barolo", "RED", "2016", 3, 40.0)).get("id").asLong();
+        List<WineReplayRequest.Mutation> log = List.of(
+                mutation("k1", WineBatchRequest.Type.CREATE, null, null, wine("Chablis", "WHITE", "2020", 6, 20.0)),
+                mutation("k2", WineBatchRequest.Type.UPDATE, barolo, null, wine("Barolo", "RED", "2016", 5, 40.0)));
+
+        JsonNode first = replay(user, log);
+        // The response was lost; the device sends the same log again
+        JsonNode retry = replay(user, log);
+
+        assertThat(first.get("applied").asInt()).isEqualTo(2);
+        assertThat(retry.get("applied").asInt()).isZero();
+        assertThat(retry.get("replayed").asInt()).isEqualTo(2);
+        assertThat(retry.get("results").findValues("status").stream().map(JsonNode::asInt).toList())
+                .containsExactly(201, 200);
+        assertThat(retry.get("results").get(0).get("id").asLong())
+                .isEqualTo(first.get("results").get(0).get("id").asLong());
+        assertThat(wines(user).size()).isEqualTo(2);
+    }
+
+    @Test
+    void editsFromTheSameBaseApplyInOrderAndStaleOnesConflict() throws Exception {
+        TestUser user = register();
+        JsonNode barolo = createWine(user, wine("Barolo", "RED", "2016", 3, 40.0));
+        long id = barolo.get("id").asLong();
+        long base = barolo.get("version").asLong();
+
+        JsonNode offline = replay(user, List.of(
+                mutation("a1", WineBatchRequest.Type.UPDATE, id, base, wine("Barolo", "RED", "2016", 2, 40.0)),
+                mutation("a2", WineBatchRequest.Type.UPDATE, id, base, wine("Barolo", "RED", "2016", 1, 40.0)),
+                mutation("a1", WineBatchRequest.Type.UPDATE, id, base, wine("Barolo", "RED", "2016", 2, 40.0))));
+        assertThat(offline.get("results").findValues("status").stream().map(JsonNode::asInt).toList())
+                .containsExactly(200, 200, 200);
+        assertThat(offline.get("results").get(2).get("replayed").asBoolean()).isTrue();
+        assertThat(offline.get("conflicts")).isEmpty();
+
+        // A second device still holding the original version
+        JsonNode stale = replay(user, List.of(
+                mutation("b1", WineBatchRequest.Type.UPDATE, id, base, wine("Barolo", "RED", "2016", 9, 40.0))));
+        assertThat(stale.get("conflicts")).hasSize(1);
+        assertThat(stale.get("conflicts").get(0).get("status").asInt()).isEqualTo(409);
+        assertThat(stale.get("conflicts").get(0).get("wine").get("quantity").asInt()).isEqualTo(1);
+        assertThat(wines(user).get(0).get("quantity").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredKeysAreForgotten() throws Exception {
+        TestUser user = register();
+        List<WineReplayRequest.Mutation> log = List.of(
+                mutation("c1", WineBatchRequest.Type.CREATE, null, null, wine("Soave", "WHITE", "2021", 1, 12.0)));
+        replay(user, log);
+
+        assertThat(wineReplayService.deleteExpiredKeys(LocalDateTime.now().plusMinutes(1), 10_000)).isPositive();
+
+        assertThat(replay(user, log).get("applied").asInt()).isEqualTo(1);
+        assertThat(wines(user).size()).isEqualTo(2);
+    }
+
+    @Test
+    void retryOverlappingTheOriginalIsAnsweredFromItsOutcomes() throws Exception {
+        TestUser user = register();
+        List<WineReplayRequest.Mutation> log = List.of(
+                mutation("r1", WineBatchRequest.Type.CREATE, null, null, wine("Chablis", "WHITE", "2020", 6, 20.0)),
+                mutation("r2", WineBatchRequest.Type.CREATE, null, null, wine("Soave", "WHITE", "2021", 2, 12.0)));
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        // The original has applied and stored its keys but not committed when the retry arrives
+        CompletableFuture<JsonNode> retry = new CompletableFuture<>();
+        WineReplayResponse original = transactionTemplate.execute(status -> {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(user.email(), null, List.of()));
+            try {
+                WineReplayResponse response = wineReplayService.replay(request(log));
+                CompletableFuture.runAsync(() -> {
+                    try {
+                        retry.complete(replay(user, log));
+                    } catch (Exception ex) {
+                        retry.completeExceptionally(ex);
+                    }
+                });
+                awaitLockWaits(jdbc, 1);
+                return response;
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        });
+
+        JsonNode retried = retry.get(30, TimeUnit.SECONDS);
+        assertThat(retried.get("applied").asInt()).isZero();
+        assertThat(retried.get("replayed").asInt()).isEqualTo(2);
+        assertThat(retried.get("results").findValues("id").stream().map(JsonNode::asLong).toList())
+                .containsExactly(original.getResults().get(0).getId(), original.getResults().get(1).getId());
+        assertThat(wines(user).size()).isEqualTo(2);
+    }
+
+    private JsonNode replay(TestUser user, List<WineReplayRequest.Mutation> mutations) throws Exception {
+        return json(mockMvc.perform(authorized(post("/wines/replay"), user)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request(mutations))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private static WineReplayRequest request(List<WineReplayRequest.Mutation> mutations) {
+        WineReplayRequest request = new WineReplayRequest();
+        request.setMutations(mutations);
+        return request;
+    }
+
+    private JsonNode wines(TestUser user) throws Exception {
+        return json(mockMvc.perform(authorized(get("/wines"), user))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private static WineReplayRequest.Mutation mutation(String key, WineBatchRequest.Type type, Long id,
+                                                       Long baseVersion, WineRequest wine) {
+        WineReplayRequest.Mutation mutation = new WineReplayRequest.Mutation();
+        mutation.setKey(key);
+        mutation.setOp(type);
+        mutation.setId(id);
+        mutation.setBaseVersion(baseVersion);
+        mutation.setWine(wine);
+        return mutation;
+    }
+}
@@ -0,0 +1,168 @@
+package com.vindex.shard;
+
+import com.vindex.cache.SharedCacheTier;
+import com.vindex.config.CacheConfig;
+import com.vindex.service.CellarStatsRebuildJob;
+import com.vindex.support.IntegrationTest;
+import com.vindex.support.TestDatabases;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs with the first database as the directory and the second as shard {@code shard2}.
+ */
+@ExtendWith(TestDatabases.TwoRequired.class)
+class ShardRebalancerIntegrationTest extends IntegrationTest {
+
+    private static final String DIRECTORY = "primary";
+    private static final String SHARD = "shard2";
+
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) {
+        registry.add("sharding.enabled", () -> "true");
+        registry.add("sharding.shards[0].name", () -> SHARD);
+        registry.add("sharding.shards[0].url", () -> TestDatabases.get(1).url());
+        registry.add("sharding.shards[0].username", () -> TestDatabases.get(1).username());
+        registry.add("sharding.shards[0].password", () -> TestDatabases.get(1).password());
+        registry.add("sharding.shards[0].id-slot", () -> "2");
+        registry.add("sharding.rebalance.drain-ms", () -> "50");
+    }
+
+    @Autowired
+    private ShardRebalancer rebalancer;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRegistry registry;
+
+    @Autowired
+    private SharedCacheTier sharedCacheTier;
+
+    @Autowired
+    private CellarStatsRebuildJob cellarStatsRebuildJob;
+
+    @Test
+    void moveCopiesTheCellarAndRequestsFollowTheUser() throws Exception {
+        TestUser user = register();
+        long barolo = createWine(user, wine("Barolo", "RED", "2016", 10, 40.0)).get("id").asLong();
+        createWine(user, wine("Chablis", "WHITE", "2020", 3, 25.0));
+        mockMvc.perform(authorized(post("/wines/{id}/consume", barolo), user)).andExpect(status().isOk());
+
+        String from = shardOf(user);
+        String to = from.equals(DIRECTORY) ? SHARD : DIRECTORY;
+        Map<String, Integer> copied = rebalancer.move(user.id(), to);
+
+        assertThat(copied).containsEntry("wines", 2).containsEntry("wine_quantity_events", 1);
+        assertThat(shardOf(user)).isEqualTo(to);
+        assertThat(count(to, "SELECT COUNT(*) FROM wines WHERE user_id = ?", user.id())).isEqualTo(2);
+        assertThat(count(from, "SELECT COUNT(*) FROM wines WHERE user_id = ?", user.id())).isZero();
+        assertThat(rebalancer.move(user.id(), to)).isEmpty();
+
+        // Reads and writes now go to the new shard
+        mockMvc.perform(authorized(get("/wines"), user))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'Barolo')].quantity").value(9));
+        mockMvc.perform(authorized(post("/wines/{id}/consume", barolo), user)).andExpect(status().isOk());
+        assertThat(count(to, "SELECT quantity FROM wines WHERE id = ?", barolo)).isEqualTo(8);
+
+        rebalancer.move(user.id(), from);
+        assertThat(shardOf(user)).isEqualTo(from);
+        assertThat(count(from, "SELECT quantity FROM wines WHERE id = ?", barolo)).isEqualTo(8);
+        assertThat(count(to, "SELECT COUNT(*) FROM wine_quantity_events WHERE user_id = ?", user.id())).isZero();
+    }
+
+    @Test
+    void whileMovingWritesAreTurnedAwayAndJobsSkipTheUser() throws Exception {
+        TestUser user = register();
+        long wine = createWine(user, wine("Rioja", "RED", "2018", 6, 18.0)).get("id").asLong();
+        String shard = shardOf(user);
+        JdbcTemplate jdbc = new JdbcTemplate(registry.dataSource(shard));
+        jdbc.update("UPDATE cellar_stats SET bottle_count = 999 WHERE user_id = ? AND dimension = 'TOTAL'", user.id());
+
+        setMoving(user, true);
+        try {
+            mockMvc.perform(authorized(post("/wines/{id}/consume", wine), user))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+            mockMvc.perform(authorized(get("/wines"), user)).andExpect(status().isOk());
+
+            cellarStatsRebuildJob.rebuildAll();
+            assertThat(totalBottles(jdbc, user)).isEqualTo(999);
+        } finally {
+            setMoving(user, false);
+        }
+
+        cellarStatsRebuildJob.rebuildAll();
+        assertThat(totalBottles(jdbc, user)).isEqualTo(6);
+    }
+
+    @Test
+    void usersWrittenBeforeShardingMoveWithoutIdClashes() throws Exception {
+        TestUser legacy = register();
+        if (!shardOf(legacy).equals(DIRECTORY)) {
+            rebalancer.move(legacy.id(), DIRECTORY);
+        }
+        long written = createWine(legacy, wine("Barolo", "RED", "2016", 4, 40.0)).get("id").asLong();
+        registry.raiseIdCounters();
+
+        // Give the wine the id shard2 hands out next, as a contiguous pre-sharding id can be
+        JdbcTemplate shard = new JdbcTemplate(registry.dataSource(SHARD));
+        long counter = shard.queryForObject("SELECT auto_increment FROM information_schema.tables "
+                + "WHERE table_schema = DATABASE() AND table_name = 'wines'", Long.class);
+        long clashing = counter + Math.floorMod(2 - counter, 16);
+        new JdbcTemplate(registry.getDirectoryDataSource())
+                .update("UPDATE wines SET id = ? WHERE id = ?", clashing, written);
+        // What startup does with the directory's rows from before sharding
+        registry.raiseIdCounters();
+
+        TestUser placed = register();
+        if (!shardOf(placed).equals(SHARD)) {
+            rebalancer.move(placed.id(), SHARD);
+        }
+        long issued = createWine(placed, wine("Chablis", "WHITE", "2020", 2, 25.0)).get("id").asLong();
+        assertThat(issued).isGreaterThan(clashing);
+
+        assertThat(rebalancer.move(legacy.id(), SHARD)).containsEntry("wines", 1);
+        assertThat(count(SHARD, "SELECT COUNT(*) FROM wines WHERE id IN (?, ?)", clashing, issued)).isEqualTo(2);
+        rebalancer.move(placed.id(), DIRECTORY);
+        assertThat(count(DIRECTORY, "SELECT COUNT(*) FROM wines WHERE id = ?", issued)).isEqualTo(1);
+    }
+
+    private String shardOf(TestUser user) {
+        String shard = shardRouter.shardOf(user.id());
+        return shard == null ? DIRECTORY : shard;
+    }
+
+    private void setMoving(TestUser user, boolean moving) {
+        new JdbcTemplate(registry.getDirectoryDataSource())
+                .update("UPDATE users SET shard_moving = ? WHERE id = ?", moving, user.id());
+        sharedCacheTier.invalidate(CacheConfig.PRINCIPALS, user.email());
+    }
+
+    private long count(String shard, String sql, Object... args) {
+        Long value = new JdbcTemplate(registry.dataSource(shard)).queryForObject(sql, Long.class, args);
+        return value == null ? 0 : value;
+    }
+
+    private static long totalBottles(JdbcTemplate jdbc, TestUser user) {
+        Long value = jdbc.queryForObject("SELECT bottle_count FROM cellar_stats WHERE user_id = ? AND dimension = 'TOTAL'",
+                Long.class, user.id());
+        return value == null ? 0 : value;
+    }
+}
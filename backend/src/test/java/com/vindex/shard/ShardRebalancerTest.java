@@ -0,0 +1,24 @@
+package com.vindex.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardRebalancerTest {
+
+    @Test
+    void checksumIgnoresRowOrderButNotContent() {
+        Object[] barolo = {1L, "Barolo", 6, new BigDecimal("40.00")};
+        Object[] chablis = {2L, "Chablis", 3, null};
+
+        String checksum = ShardRebalancer.checksum(List.of(barolo, chablis));
+
+        assertThat(ShardRebalancer.checksum(List.of(chablis, barolo))).isEqualTo(checksum);
+        assertThat(ShardRebalancer.checksum(List.of(new Object[] {1L, "Barolo", 5, new BigDecimal("40.00")}, chablis)))
+                .isNotEqualTo(checksum);
+        assertThat(ShardRebalancer.checksum(List.<Object[]>of(barolo))).isNotEqualTo(checksum);
+    }
+}
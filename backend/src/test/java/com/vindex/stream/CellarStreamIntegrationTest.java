@@ -0,0 +1,75 @@
+package com.vindex.stream;
+
+import com.vindex.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CellarStreamIntegrationTest extends IntegrationTest {
+
+    private static final Pattern CREATED_ID = Pattern.compile("id:(\\S+)\nevent:wine.created\n");
+
+    @Test
+    void changesReachOnlyTheOwnersStreamsAfterCommit() throws Exception {
+        TestUser owner = register();
+        TestUser other = register();
+        MockHttpServletResponse ownerStream = open(owner, null);
+        MockHttpServletResponse otherStream = open(other, null);
+
+        long wine = createWine(owner, wine("Barolo", "RED", "2016", 6, 40.0)).get("id").asLong();
+        mockMvc.perform(authorized(post("/wines/{id}/consume", wine), owner)).andExpect(status().isOk());
+
+        String events = awaitContent(ownerStream, "event:wine.quantity");
+        assertThat(events).contains("event:wine.created").contains("\"quantity\":5");
+        assertThat(otherStream.getContentAsString()).doesNotContain("event:wine");
+    }
+
+    @Test
+    void reconnectReplaysWhatWasMissedOrAsksForAReload() throws Exception {
+        TestUser user = register();
+        MockHttpServletResponse first = open(user, null);
+        long wine = createWine(user, wine("Rioja", "RED", "2018", 3, 18.0)).get("id").asLong();
+        Matcher created = CREATED_ID.matcher(awaitContent(first, "event:wine.created"));
+        assertThat(created.find()).isTrue();
+
+        // Changes made while the device was offline
+        mockMvc.perform(authorized(post("/wines/{id}/restock", wine), user)).andExpect(status().isOk());
+
+        String replayed = awaitContent(open(user, created.group(1)), "event:wine.quantity");
+        assertThat(replayed).doesNotContain("event:wine.created");
+
+        // An id from before a restart cannot be resumed from
+        String reset = awaitContent(open(user, "0-1"), "event:stream.reset");
+        assertThat(reset).doesNotContain("event:wine.");
+    }
+
+    private MockHttpServletResponse open(TestUser user, String lastEventId) throws Exception {
+        MockHttpServletRequestBuilder stream = authorized(get("/wines/stream"), user);
+        if (lastEventId != null) {
+            stream.header("Last-Event-ID", lastEventId);
+        }
+        MvcResult result = mockMvc.perform(stream).andExpect(request().asyncStarted()).andReturn();
+        return result.getResponse();
+    }
+
+    private static String awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = response.getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = response.getContentAsString();
+        }
+        assertThat(content).contains(expected);
+        return content;
+    }
+}
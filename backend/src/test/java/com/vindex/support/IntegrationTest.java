@@ -0,0 +1,147 @@
+package com.vindex.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vindex.dto.RegisterRequest;
+import com.vindex.dto.WineRequest;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Base of the tests that run the whole application against MySQL ({@link TestDatabases}).
+ * Classes share one application context and database, so every test works in the cellars of
+ * users it registers itself.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@ExtendWith(TestDatabases.Required.class)
+@Import(StatementCounter.Config.class)
+public abstract class IntegrationTest {
+
+    @Autowired
+    protected MockMvc mockMvc;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> TestDatabases.get(0).url());
+        registry.add("spring.datasource.username", () -> TestDatabases.get(0).username());
+        registry.add("spring.datasource.password", () -> TestDatabases.get(0).password());
+    }
+
+    /**
+     * Registers a new user with a random name.
+     */
+    protected TestUser register() throws Exception {
+        String name = "u" + UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+        RegisterRequest request = new RegisterRequest();
+        request.setUsername(name);
+        request.setEmail(name + "@example.com");
+        request.setPassword("correct horse battery");
+        JsonNode response = json(mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        return new TestUser(response.get("user").get("id").asLong(), request.getEmail(),
+                response.get("accessToken").asText());
+    }
+
+    /**
+     * Adds a wine to the token owner's cellar and returns it as the API does.
+     */
+    protected JsonNode createWine(TestUser user, WineRequest request) throws Exception {
+        return json(mockMvc.perform(authorized(post("/wines"), user)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    /**
+     * Also fills in the servlet path the way Tomcat does behind the dispatcher servlet (MockMvc
+     * leaves it empty), since filters such as the shard router match request paths on it.
+     */
+    protected static MockHttpServletRequestBuilder authorized(MockHttpServletRequestBuilder request, TestUser user) {
+        return request.header(HttpHeaders.AUTHORIZATION, "Bearer " + user.token())
+                .with(servletRequest -> {
+                    servletRequest.setServletPath(servletRequest.getRequestURI());
+                    return servletRequest;
+                });
+    }
+
+    /**
+     * Performs the request and fails, listing what ran, when it sends more than {@code budget}
+     * SQL statements. A budget is what the endpoint is designed to need and must not grow with
+     * the size of the cellar; a count that does has an N+1.
+     */
+    protected ResultActions performWithin(int budget, RequestBuilder request) throws Exception {
+        StatementCounter.Recorded<ResultActions> recorded = StatementCounter.record(() -> mockMvc.perform(request));
+        List<String> statements = recorded.statements();
+        if (statements.size() > budget) {
+            fail(statements.size() + " SQL statements, budget is " + budget + ":\n  " + String.join("\n  ", statements));
+        }
+        return recorded.result();
+    }
+
+    /**
+     * Waits until {@code transactions} transactions are blocked on row locks, e.g. on one the
+     * test holds. Polls slower than every 0.1 s, as InnoDB only refreshes {@code innodb_trx}
+     * when it has not been read for that long.
+     */
+    protected static void awaitLockWaits(JdbcTemplate jdbc, int transactions) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (jdbc.queryForObject("SELECT COUNT(*) FROM information_schema.innodb_trx WHERE trx_state = 'LOCK WAIT'",
+                Integer.class) < transactions) {
+            assertThat(System.nanoTime()).as("waiting for %d blocked transactions", transactions).isLessThan(deadline);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    protected static WineRequest wine(String name, String type, String vintage, int quantity, double price) {
+        WineRequest request = new WineRequest();
+        request.setName(name);
+        request.setType(type);
+        request.setVintage(vintage);
+        request.setQuantity(quantity);
+        request.setPrice(price);
+        return request;
+    }
+
+    protected JsonNode json(String content) throws Exception {
+        return objectMapper.readTree(content);
+    }
+
+    protected record TestUser(long id, String email, String token) {
+    }
+}
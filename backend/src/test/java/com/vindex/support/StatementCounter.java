@@ -0,0 +1,130 @@
+package com.vindex.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Records the SQL statements the calling thread sends through the application's
+ * {@code dataSource} while {@link #record} runs. MockMvc handles a request on the test thread,
+ * so wrapping {@code mockMvc.perform} captures everything the request issued, from the JWT
+ * filter's user lookup to the handler's last query. A JDBC batch counts once, like the single
+ * round trip it becomes.
+ */
+public final class StatementCounter {
+
+    private static final ThreadLocal<List<String>> CURRENT = new ThreadLocal<>();
+
+    private StatementCounter() {
+    }
+
+    public static <T> Recorded<T> record(Callable<T> action) throws Exception {
+        List<String> statements = new ArrayList<>();
+        List<String> outer = CURRENT.get();
+        CURRENT.set(statements);
+        try {
+            return new Recorded<>(action.call(), statements);
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    private static void recordStatement(String sql) {
+        List<String> statements = CURRENT.get();
+        if (statements != null) {
+            statements.add(sql.strip());
+        }
+    }
+
+    public record Recorded<T>(T result, List<String> statements) {
+    }
+
+    /**
+     * Wraps the application's primary DataSource; imported by {@link IntegrationTest}.
+     */
+    @TestConfiguration(proxyBeanMethods = false)
+    public static class Config {
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return "dataSource".equals(beanName) && bean instanceof DataSource dataSource
+                            ? new CountingDataSource(dataSource)
+                            : bean;
+                }
+            };
+        }
+    }
+
+    private static final class CountingDataSource extends DelegatingDataSource {
+
+        private CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return proxy(Connection.class, obtainTargetDataSource().getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return proxy(Connection.class, obtainTargetDataSource().getConnection(username, password));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target) {
+        return (T) Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[]{type},
+                new Recording(target));
+    }
+
+    private static final class Recording implements InvocationHandler {
+        private final Object target;
+
+        private Recording(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (target instanceof Connection && (name.equals("prepareStatement") || name.equals("prepareCall"))) {
+                recordStatement((String) args[0]);
+            } else if (target instanceof Statement && name.startsWith("execute") && args != null
+                    && args.length > 0 && args[0] instanceof String sql) {
+                recordStatement(sql);
+            } else if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy)) {
+                return proxy;
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+            return target instanceof Connection && name.equals("createStatement")
+                    ? proxy(Statement.class, (Statement) result)
+                    : result;
+        }
+    }
+}
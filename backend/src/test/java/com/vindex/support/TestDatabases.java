@@ -0,0 +1,104 @@
+package com.vindex.support;
+
+import org.junit.jupiter.api.extension.ConditionEvaluationResult;
+import org.junit.jupiter.api.extension.ExecutionCondition;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MySQL servers for the integration tests. Running instances can be passed as a
+ * comma-separated list of JDBC URLs in {@code -Dtest.mysql.urls}, e.g. the databases of
+ * docker-compose.yml and docker-compose.shards.yml; otherwise a MySQL container is started
+ * for each server on first use and kept for the rest of the run. With neither, the tests that
+ * need a database are skipped.
+ */
+public final class TestDatabases {
+
+    public static final String URLS_PROPERTY = "test.mysql.urls";
+
+    private static final List<MySQLContainer<?>> containers = new ArrayList<>();
+    private static Boolean dockerAvailable;
+
+    private TestDatabases() {
+    }
+
+    public static synchronized boolean available() {
+        if (!external().isEmpty()) {
+            return true;
+        }
+        if (dockerAvailable == null) {
+            dockerAvailable = DockerClientFactory.instance().isDockerAvailable();
+        }
+        return dockerAvailable;
+    }
+
+    /**
+     * The {@code index}-th server, numbered from 0.
+     */
+    public static synchronized Database get(int index) {
+        List<String> urls = external();
+        if (!urls.isEmpty()) {
+            if (index >= urls.size()) {
+                throw new IllegalStateException(URLS_PROPERTY + " lists " + urls.size() + " databases, "
+                        + (index + 1) + " are needed");
+            }
+            return new Database(urls.get(index),
+                    System.getProperty("test.mysql.username", "vindex_user"),
+                    System.getProperty("test.mysql.password", "vindex_password"));
+        }
+        while (containers.size() <= index) {
+            MySQLContainer<?> container = new MySQLContainer<>(DockerImageName.parse("mysql:8.0"))
+                    .withDatabaseName("vindex_db")
+                    .withUrlParam("rewriteBatchedStatements", "true")
+                    .withUrlParam("serverTimezone", "UTC");
+            container.start();
+            containers.add(container);
+        }
+        MySQLContainer<?> container = containers.get(index);
+        return new Database(container.getJdbcUrl(), container.getUsername(), container.getPassword());
+    }
+
+    private static List<String> external() {
+        String urls = System.getProperty(URLS_PROPERTY, "");
+        return Arrays.stream(urls.split(",")).map(String::trim).filter(url -> !url.isEmpty()).toList();
+    }
+
+    public record Database(String url, String username, String password) {
+    }
+
+    /**
+     * Skips the annotated test class when no database is available.
+     */
+    public static class Required implements ExecutionCondition {
+
+        @Override
+        public ConditionEvaluationResult evaluateExecutionCondition(ExtensionContext context) {
+            return available()
+                    ? ConditionEvaluationResult.enabled("MySQL available")
+                    : ConditionEvaluationResult.disabled("No Docker and no " + URLS_PROPERTY);
+        }
+    }
+
+    /**
+     * Skips the annotated test class unless a second server is available as a shard.
+     */
+    public static class TwoRequired implements ExecutionCondition {
+
+        @Override
+        public ConditionEvaluationResult evaluateExecutionCondition(ExtensionContext context) {
+            if (!available()) {
+                return ConditionEvaluationResult.disabled("No Docker and no " + URLS_PROPERTY);
+            }
+            int urls = external().size();
+            return urls == 0 || urls >= 2
+                    ? ConditionEvaluationResult.enabled("Two MySQL servers available")
+                    : ConditionEvaluationResult.disabled(URLS_PROPERTY + " lists only one database");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.vindex.web;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccessLogFilterTest {
+
+    private final Logger accessLogger = (Logger) LoggerFactory.getLogger("access");
+    private final ListAppender<ILoggingEvent> lines = new ListAppender<>();
+    private Level previousLevel;
+
+    @BeforeEach
+    void captureAccessLog() {
+        previousLevel = accessLogger.getLevel();
+        accessLogger.setLevel(Level.INFO);
+        lines.start();
+        accessLogger.addAppender(lines);
+    }
+
+    @AfterEach
+    void restoreAccessLog() {
+        accessLogger.detachAppender(lines);
+        accessLogger.setLevel(previousLevel);
+    }
+
+    @Test
+    void logsRouteStatusAndLatency() throws Exception {
+        AccessLogFilter filter = new AccessLogFilter(1.0, 60_000);
+
+        run(filter, (request, response) -> {
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/wines/{id}");
+            ((MockHttpServletResponse) response).setStatus(404);
+        });
+
+        assertThat(lines.list).hasSize(1);
+        assertThat(lines.list.get(0).getFormattedMessage())
+                .matches("method=GET route=/wines/\\{id} path=/wines/12 status=404 ms=\\d+");
+    }
+
+    @Test
+    void unsampledRequestsAreLoggedOnlyWhenFailedOrSlow() throws Exception {
+        AccessLogFilter sampledOut = new AccessLogFilter(0.0, 60_000);
+
+        run(sampledOut, (request, response) -> { });
+        run(sampledOut, (request, response) -> ((MockHttpServletResponse) response).setStatus(503));
+        assertThatThrownBy(() -> run(sampledOut, (request, response) -> {
+            throw new ServletException("handler failed");
+        })).isInstanceOf(ServletException.class);
+        run(new AccessLogFilter(0.0, 0), (request, response) -> { });
+
+        assertThat(lines.list).extracting(ILoggingEvent::getFormattedMessage).satisfiesExactly(
+                shed -> assertThat(shed).contains("route=unmatched", "status=503"),
+                failed -> assertThat(failed).contains("status=500"),
+                slow -> assertThat(slow).contains("status=200"));
+    }
+
+    @Test
+    void disabledLoggerOnlyPassesTheRequestOn() throws Exception {
+        accessLogger.setLevel(Level.WARN);
+        AtomicInteger calls = new AtomicInteger();
+
+        run(new AccessLogFilter(1.0, 0), (request, response) -> calls.incrementAndGet());
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(lines.list).isEmpty();
+    }
+
+    private static void run(AccessLogFilter filter, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/wines/12");
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+    }
+}
@@ -0,0 +1,78 @@
+package com.vindex.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AimdConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @Test
+    void rejectsOnceTheLimitIsInFlight() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter("test", 3, 1, 10, 50, 0.5);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(3);
+    }
+
+    @Test
+    void fastCompletionsGrowTheLimitOnlyWhenItIsUsed() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter("test", 4, 1, 5, 50, 0.5);
+
+        limiter.tryAcquire();
+        limiter.release(FAST, false);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire();
+        }
+        for (int i = 0; i < 4; i++) {
+            limiter.release(FAST, false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void aBurstOfSlowCompletionsBacksOffOnce() throws InterruptedException {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter("test", 20, 1, 40, 1, 0.9);
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+        }
+        Thread.sleep(10);
+        long slow = TimeUnit.MILLISECONDS.toNanos(5);
+        limiter.release(slow, false);
+        assertThat(limiter.getLimit()).isEqualTo(18);
+
+        // These were all in flight when the limit was cut, so they describe the same slowdown
+        for (int i = 0; i < 19; i++) {
+            limiter.release(slow, true);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(18);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void aSlowRequestStartedAfterTheLastBackoffBacksOffAgain() throws InterruptedException {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter("test", 20, 4, 40, 1, 0.5);
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        Thread.sleep(20);
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(5), false);
+        assertThat(limiter.getLimit()).isEqualTo(10);
+
+        Thread.sleep(20);
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(5), false);
+        assertThat(limiter.getLimit()).isEqualTo(5);
+
+        Thread.sleep(20);
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(5), true);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,54 @@
+package com.vindex.web;
+
+import com.vindex.web.ConcurrencyLimitFilter.EndpointClass;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    @Test
+    void classifiesApiRequests() {
+        assertThat(ConcurrencyLimitFilter.classify(request("POST", "/auth/login"))).isEqualTo(EndpointClass.AUTH);
+        assertThat(ConcurrencyLimitFilter.classify(request("GET", "/wines/search"))).isEqualTo(EndpointClass.SEARCH);
+        assertThat(ConcurrencyLimitFilter.classify(request("GET", "/wines/12"))).isEqualTo(EndpointClass.WINE_READ);
+        assertThat(ConcurrencyLimitFilter.classify(request("PUT", "/wines/12"))).isEqualTo(EndpointClass.WINE_WRITE);
+    }
+
+    @Test
+    void shedsCellarRequestsButNotProbesOrImages() throws Exception {
+        Map<EndpointClass, AimdConcurrencyLimiter> limiters = new EnumMap<>(EndpointClass.class);
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            limiters.put(endpointClass, new AimdConcurrencyLimiter(endpointClass.name(), 1, 1, 1, 1000, 0.9));
+        }
+        // Pin the only read permit as if a cellar read were still running
+        limiters.get(EndpointClass.WINE_READ).tryAcquire();
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiters);
+
+        assertThat(run(filter, request("GET", "/wines")).getStatus()).isEqualTo(503);
+        assertThat(run(filter, request("GET", "/actuator/health")).getStatus()).isEqualTo(200);
+        assertThat(run(filter, request("GET", "/health")).getStatus()).isEqualTo(200);
+        assertThat(run(filter, request("GET", "/images/label.jpg")).getStatus()).isEqualTo(200);
+        assertThat(run(filter, request("GET", "/images/thumbs/200/label.jpg")).getStatus()).isEqualTo(200);
+        assertThat(limiters.get(EndpointClass.WINE_READ).getInFlight()).isEqualTo(1);
+    }
+
+    private static MockHttpServletResponse run(ConcurrencyLimitFilter filter, MockHttpServletRequest request)
+            throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        return request;
+    }
+}
@@ -0,0 +1,86 @@
+package com.vindex.web;
+
+import com.vindex.dto.LoginRequest;
+import com.vindex.service.PasswordHashingService;
+import com.vindex.shard.ShardRegistry;
+import com.vindex.support.IntegrationTest;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ConnectionLifecycleIntegrationTest extends IntegrationTest {
+
+    @SpyBean
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private ShardRegistry shardRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void passwordsAreHashedAndCheckedWithoutATransaction() throws Exception {
+        List<Object> boundDuringHashing = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            boundDuringHashing.addAll(TransactionSynchronizationManager.getResourceMap().keySet());
+            return invocation.callRealMethod();
+        }).when(passwordHashingService).encode(any());
+        doAnswer(invocation -> {
+            boundDuringHashing.addAll(TransactionSynchronizationManager.getResourceMap().keySet());
+            return invocation.callRealMethod();
+        }).when(passwordHashingService).matches(any(), any());
+
+        TestUser user = register();
+        LoginRequest login = new LoginRequest();
+        login.setEmail(user.email());
+        login.setPassword("correct horse battery");
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(login)))
+                .andExpect(status().isOk());
+
+        assertThat(boundDuringHashing).isEmpty();
+        assertThat(activeConnections()).isZero();
+    }
+
+    @Test
+    void connectionsGoBackBeforeTheResponseAndAreTimedPerEndpoint() throws Exception {
+        TestUser user = register();
+        createWine(user, wine("Barolo", "RED", "2016", 6, 40.0));
+        long listings = holds("GET", "/wines");
+
+        mockMvc.perform(authorized(get("/wines"), user)).andExpect(status().isOk());
+
+        assertThat(activeConnections()).isZero();
+        assertThat(holds("GET", "/wines")).isGreaterThan(listings);
+        assertThat(holds("POST", "/wines")).isPositive();
+    }
+
+    private int activeConnections() {
+        return ((HikariDataSource) shardRegistry.getDirectoryDataSource()).getHikariPoolMXBean().getActiveConnections();
+    }
+
+    private long holds(String method, String endpoint) {
+        Timer timer = meterRegistry.find("datasource.connection.hold")
+                .tag("method", method)
+                .tag("endpoint", endpoint)
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
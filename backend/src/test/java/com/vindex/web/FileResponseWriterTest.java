@@ -0,0 +1,93 @@
+package com.vindex.web;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileResponseWriterTest {
+
+    private static final String ETAG = "\"label.jpg\"";
+    private static final String CACHE = "public, max-age=31536000, immutable";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesTheWholeFileWithCachingHeaders() throws Exception {
+        MockHttpServletResponse response = write(new MockHttpServletRequest("GET", "/images/label.jpg"));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+        assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo(CACHE);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+    }
+
+    @Test
+    void revalidatesAgainstTheEtag() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/label.jpg");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+
+        MockHttpServletResponse response = write(request);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void servesSingleRanges() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/label.jpg");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        MockHttpServletResponse response = write(request);
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentAsString()).isEqualTo("2345");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-5/10");
+
+        MockHttpServletRequest suffix = new MockHttpServletRequest("GET", "/images/label.jpg");
+        suffix.addHeader(HttpHeaders.RANGE, "bytes=-3");
+        assertThat(write(suffix).getContentAsString()).isEqualTo("789");
+
+        MockHttpServletRequest outside = new MockHttpServletRequest("GET", "/images/label.jpg");
+        outside.addHeader(HttpHeaders.RANGE, "bytes=20-");
+        MockHttpServletResponse unsatisfiable = write(outside);
+        assertThat(unsatisfiable.getStatus()).isEqualTo(416);
+        assertThat(unsatisfiable.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+
+        MockHttpServletRequest stale = new MockHttpServletRequest("GET", "/images/label.jpg");
+        stale.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        stale.addHeader(HttpHeaders.IF_RANGE, "\"other\"");
+        assertThat(write(stale).getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void handsTheBodyToTomcatWhenSendfileIsSupported() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/label.jpg");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=4-");
+
+        MockHttpServletResponse response = write(request);
+
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(response.getContentLengthLong()).isEqualTo(6);
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(4L);
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(10L);
+    }
+
+    private MockHttpServletResponse write(MockHttpServletRequest request) throws Exception {
+        Path file = dir.resolve("label.jpg");
+        if (!Files.exists(file)) {
+            Files.writeString(file, "0123456789", StandardCharsets.US_ASCII);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FileResponseWriter.write(request, response, file, "image/jpeg", ETAG, CACHE);
+        return response;
+    }
+}
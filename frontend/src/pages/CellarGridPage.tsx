@@ -9,6 +9,7 @@ interface LocalWine {
   vintage: string | null;
   quantity: number;
   imageUrl?: string;
+  thumbnailUrl?: string;
   winery?: string;
   region?: string;
   country?: string;
@@ -647,7 +648,7 @@ export default function CellarGridPage() {
                       <div className="flex-1">
                         <div className="flex items-center gap-3">
                           <img
-                            src={wine.imageUrl || '/wine-placeholder.svg'}
+                            src={wine.thumbnailUrl || wine.imageUrl || '/wine-placeholder.svg'}
                             alt="Wine"
                             className="w-10 h-10 rounded-md object-cover border border-cream"
                           />
@@ -797,6 +798,7 @@ export default function CellarGridPage() {
                                         <div className="flex items-center gap-3 flex-1 min-w-0">
                                           <img
                                             src={
+                                              wine.thumbnailUrl ||
                                               wine.imageUrl ||
                                               '/wine-placeholder.svg'
                                             }